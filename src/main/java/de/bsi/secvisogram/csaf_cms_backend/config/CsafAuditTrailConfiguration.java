@@ -0,0 +1,131 @@
+package de.bsi.secvisogram.csaf_cms_backend.config;
+
+/**
+ * Configuration of the audit trail of the advisories.
+ */
+public class CsafAuditTrailConfiguration {
+
+    /**
+     * Number of changes after which an audit trail entry additionally stores the complete advisory,
+     * so the history is reconstructed from the nearest snapshot instead of the creation. 0 disables the checkpoints.
+     */
+    private int checkpointInterval = 20;
+
+    /**
+     * Number of reconstructed advisory states kept in memory.
+     */
+    private int historyCacheSize = 200;
+
+    /**
+     * Time in seconds after the first of consecutive updates of an advisory by the same user, in which the later
+     * updates are merged into the audit trail entry of the first one. 0 writes one entry per update.
+     */
+    private int coalesceWindow = 0;
+
+    /**
+     * Directory of the archive of old audit trail entries, should be shared by all replicas.
+     * Empty disables the archive, then audit trail entries stay in the database and are deleted with their advisory.
+     */
+    private String archiveDirectory = "";
+
+    /**
+     * Cron expression of the archive job.
+     */
+    private String archiveCron = "0 0 3 * * *";
+
+    /**
+     * Age in days after which audit trail entries are moved to the archive. 0 archives only the entries of deleted
+     * advisories.
+     */
+    private int retentionDays = 365;
+
+    /**
+     * Number of audit trail entries read, archived and deleted with one request.
+     */
+    private int archiveBatchSize = 500;
+
+    /**
+     * Time in milliseconds a replica holds the lease of the archive job without renewing it,
+     * has to be larger than the clock difference between the replicas.
+     */
+    private long archiveLeaseTtl = 60 * 1000L;
+
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public CsafAuditTrailConfiguration setCheckpointInterval(int checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+        return this;
+    }
+
+    public int getHistoryCacheSize() {
+        return historyCacheSize;
+    }
+
+    public CsafAuditTrailConfiguration setHistoryCacheSize(int historyCacheSize) {
+        this.historyCacheSize = historyCacheSize;
+        return this;
+    }
+
+    public int getCoalesceWindow() {
+        return coalesceWindow;
+    }
+
+    public CsafAuditTrailConfiguration setCoalesceWindow(int coalesceWindow) {
+        this.coalesceWindow = coalesceWindow;
+        return this;
+    }
+
+    public String getArchiveDirectory() {
+        return archiveDirectory;
+    }
+
+    public CsafAuditTrailConfiguration setArchiveDirectory(String archiveDirectory) {
+        this.archiveDirectory = archiveDirectory;
+        return this;
+    }
+
+    /**
+     * @return true if old audit trail entries are moved to the archive
+     */
+    public boolean isArchiveEnabled() {
+        return archiveDirectory != null && !archiveDirectory.isBlank();
+    }
+
+    public String getArchiveCron() {
+        return archiveCron;
+    }
+
+    public CsafAuditTrailConfiguration setArchiveCron(String archiveCron) {
+        this.archiveCron = archiveCron;
+        return this;
+    }
+
+    public int getRetentionDays() {
+        return retentionDays;
+    }
+
+    public CsafAuditTrailConfiguration setRetentionDays(int retentionDays) {
+        this.retentionDays = retentionDays;
+        return this;
+    }
+
+    public int getArchiveBatchSize() {
+        return archiveBatchSize;
+    }
+
+    public CsafAuditTrailConfiguration setArchiveBatchSize(int archiveBatchSize) {
+        this.archiveBatchSize = archiveBatchSize;
+        return this;
+    }
+
+    public long getArchiveLeaseTtl() {
+        return archiveLeaseTtl;
+    }
+
+    public CsafAuditTrailConfiguration setArchiveLeaseTtl(long archiveLeaseTtl) {
+        this.archiveLeaseTtl = archiveLeaseTtl;
+        return this;
+    }
+}
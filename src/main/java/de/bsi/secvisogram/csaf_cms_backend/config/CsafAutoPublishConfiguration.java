@@ -1,5 +1,8 @@
 package de.bsi.secvisogram.csaf_cms_backend.config;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
@@ -8,7 +11,15 @@ public class CsafAutoPublishConfiguration {
   private boolean enableInsecureTLS = false;
   private String url = "";
   private String password = "";
-  private String cron = "0 * * * * *";
+  private String cron = "0 */15 * * * *";
+  private double rateLimit = 0;
+  private List<CsafPublishTargetConfiguration> targets = new ArrayList<>();
+  private int workerThreads = 4;
+  private int maxAttempts = 10;
+  private long initialBackoff = 30 * 1000L;
+  private long maxBackoff = 60 * 60 * 1000L;
+  private long leaseTtl = 60 * 1000L;
+  private long authenticationRotation = 60 * 60 * 1000L;
     
   public boolean isEnabled() {
     return enabled;
@@ -54,4 +65,117 @@ public class CsafAutoPublishConfiguration {
     this.enableInsecureTLS = enableInsecureTLS;
     return this;
   }
+
+  /**
+   * @return maximum number of uploads per second to the provider configured by url and password, 0 for no limit
+   */
+  public double getRateLimit() {
+    return rateLimit;
+  }
+
+  public CsafAutoPublishConfiguration setRateLimit(double rateLimit) {
+    this.rateLimit = rateLimit;
+    return this;
+  }
+
+  /**
+   * @return additional providers, if set the advisories are uploaded to all of them instead of the provider
+   *     configured by url and password
+   */
+  public List<CsafPublishTargetConfiguration> getTargets() {
+    return targets;
+  }
+
+  public CsafAutoPublishConfiguration setTargets(List<CsafPublishTargetConfiguration> targets) {
+    this.targets = targets;
+    return this;
+  }
+
+  /**
+   * Get all providers to upload the advisories to
+   * @return the configured targets or a single target from url and password
+   */
+  public List<CsafPublishTargetConfiguration> getEffectiveTargets() {
+    if (this.targets != null && !this.targets.isEmpty()) {
+      return this.targets;
+    }
+    return List.of(new CsafPublishTargetConfiguration()
+        .setUrl(this.url)
+        .setPassword(this.password)
+        .setEnableInsecureTLS(this.enableInsecureTLS)
+        .setRateLimit(this.rateLimit));
+  }
+
+  /**
+   * @return number of concurrent uploads
+   */
+  public int getWorkerThreads() {
+    return workerThreads;
+  }
+
+  public CsafAutoPublishConfiguration setWorkerThreads(int workerThreads) {
+    this.workerThreads = workerThreads;
+    return this;
+  }
+
+  /**
+   * @return number of failed uploads to a provider after which the upload is no longer retried
+   */
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  public CsafAutoPublishConfiguration setMaxAttempts(int maxAttempts) {
+    this.maxAttempts = maxAttempts;
+    return this;
+  }
+
+  /**
+   * @return delay in milliseconds before the first retry, it is doubled for every further retry
+   */
+  public long getInitialBackoff() {
+    return initialBackoff;
+  }
+
+  public CsafAutoPublishConfiguration setInitialBackoff(long initialBackoff) {
+    this.initialBackoff = initialBackoff;
+    return this;
+  }
+
+  /**
+   * @return maximum delay in milliseconds between two retries
+   */
+  public long getMaxBackoff() {
+    return maxBackoff;
+  }
+
+  public CsafAutoPublishConfiguration setMaxBackoff(long maxBackoff) {
+    this.maxBackoff = maxBackoff;
+    return this;
+  }
+
+  /**
+   * @return time in milliseconds a replica holds the lease of the publish job without renewing it,
+   *     has to be larger than the clock difference between the replicas
+   */
+  public long getLeaseTtl() {
+    return leaseTtl;
+  }
+
+  public CsafAutoPublishConfiguration setLeaseTtl(long leaseTtl) {
+    this.leaseTtl = leaseTtl;
+    return this;
+  }
+
+  /**
+   * @return time in milliseconds after which the BCrypt hash sent to the providers is computed again
+   */
+  public long getAuthenticationRotation() {
+    return authenticationRotation;
+  }
+
+  public CsafAutoPublishConfiguration setAuthenticationRotation(long authenticationRotation) {
+    this.authenticationRotation = authenticationRotation;
+    return this;
+  }
 }
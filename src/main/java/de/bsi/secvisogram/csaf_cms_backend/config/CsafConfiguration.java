@@ -12,6 +12,9 @@ public class CsafConfiguration {
     
     private CsafWorkflowConfiguration workflow;
     private CsafAutoPublishConfiguration autoPublish;
+    private CsafEventsConfiguration events;
+    private CsafMaintenanceConfiguration maintenance;
+    private CsafAuditTrailConfiguration auditTrail;
     
     public CsafSummaryConfiguration getSummary() {
         return summary;
@@ -47,4 +50,31 @@ public class CsafConfiguration {
     public void setAutoPublish(CsafAutoPublishConfiguration autoPublish) {
       this.autoPublish = autoPublish;
     }
+
+    public CsafEventsConfiguration getEvents() {
+        return events;
+    }
+
+    public CsafConfiguration setEvents(CsafEventsConfiguration events) {
+        this.events = events;
+        return this;
+    }
+
+    public CsafMaintenanceConfiguration getMaintenance() {
+        return maintenance;
+    }
+
+    public CsafConfiguration setMaintenance(CsafMaintenanceConfiguration maintenance) {
+        this.maintenance = maintenance;
+        return this;
+    }
+
+    public CsafAuditTrailConfiguration getAuditTrail() {
+        return auditTrail;
+    }
+
+    public CsafConfiguration setAuditTrail(CsafAuditTrailConfiguration auditTrail) {
+        this.auditTrail = auditTrail;
+        return this;
+    }
 }
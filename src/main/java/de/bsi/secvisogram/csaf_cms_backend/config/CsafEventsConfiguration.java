@@ -0,0 +1,51 @@
+package de.bsi.secvisogram.csaf_cms_backend.config;
+
+/**
+ * Configuration for the Server-Sent Events stream of advisory changes.
+ */
+public class CsafEventsConfiguration {
+
+    /**
+     * Time in milliseconds after which a subscription is closed and the client has to reconnect.
+     */
+    private long timeout = 30 * 60 * 1000L;
+
+    /**
+     * Interval in milliseconds in which a heartbeat comment is sent to keep idle connections open
+     * and to detect disconnected clients.
+     */
+    private long heartbeatInterval = 30 * 1000L;
+
+    /**
+     * Maximum number of events waiting to be sent to a subscriber. A subscriber that does not read its events
+     * fast enough is closed when the limit is reached and has to reconnect.
+     */
+    private int maxPendingEvents = 100;
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public CsafEventsConfiguration setTimeout(long timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public long getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    public CsafEventsConfiguration setHeartbeatInterval(long heartbeatInterval) {
+        this.heartbeatInterval = heartbeatInterval;
+        return this;
+    }
+
+    public int getMaxPendingEvents() {
+        return maxPendingEvents;
+    }
+
+    public CsafEventsConfiguration setMaxPendingEvents(int maxPendingEvents) {
+        this.maxPendingEvents = maxPendingEvents;
+        return this;
+    }
+}
@@ -0,0 +1,119 @@
+package de.bsi.secvisogram.csaf_cms_backend.config;
+
+/**
+ * Configuration for the database maintenance: compaction, view cleanup and purge of deleted documents.
+ */
+public class CsafMaintenanceConfiguration {
+
+    private boolean enabled = true;
+
+    /**
+     * Cron expression of the maintenance window, should be outside the office hours.
+     */
+    private String cron = "0 30 3 * * *";
+
+    /**
+     * Share of the database file not used by live data above which the database is compacted.
+     */
+    private double fragmentationThreshold = 0.3;
+
+    /**
+     * Minimum size of the database file in bytes to compact it.
+     */
+    private long minFileSize = 10 * 1024 * 1024L;
+
+    /**
+     * Maximum time in milliseconds to wait for the compaction to measure the size afterward.
+     */
+    private long compactionTimeout = 30 * 60 * 1000L;
+
+    /**
+     * Purge deleted documents that were deleted before the previous maintenance window.
+     * Purging can not be undone, so it has to be enabled explicitly. Must not be enabled if the database is replicated.
+     */
+    private boolean purgeTombstones = false;
+
+    /**
+     * Number of changes read from the changes feed with one request. The documents are purged with requests
+     * of at most {@link de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService#MAX_PURGE_IDS_PER_REQUEST} ids.
+     */
+    private int purgeBatchSize = 1000;
+
+    /**
+     * Time in milliseconds a replica holds the lease of the maintenance without renewing it,
+     * has to be larger than the clock difference between the replicas.
+     */
+    private long leaseTtl = 60 * 1000L;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public CsafMaintenanceConfiguration setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public String getCron() {
+        return cron;
+    }
+
+    public CsafMaintenanceConfiguration setCron(String cron) {
+        this.cron = cron;
+        return this;
+    }
+
+    public double getFragmentationThreshold() {
+        return fragmentationThreshold;
+    }
+
+    public CsafMaintenanceConfiguration setFragmentationThreshold(double fragmentationThreshold) {
+        this.fragmentationThreshold = fragmentationThreshold;
+        return this;
+    }
+
+    public long getMinFileSize() {
+        return minFileSize;
+    }
+
+    public CsafMaintenanceConfiguration setMinFileSize(long minFileSize) {
+        this.minFileSize = minFileSize;
+        return this;
+    }
+
+    public long getCompactionTimeout() {
+        return compactionTimeout;
+    }
+
+    public CsafMaintenanceConfiguration setCompactionTimeout(long compactionTimeout) {
+        this.compactionTimeout = compactionTimeout;
+        return this;
+    }
+
+    public boolean isPurgeTombstones() {
+        return purgeTombstones;
+    }
+
+    public CsafMaintenanceConfiguration setPurgeTombstones(boolean purgeTombstones) {
+        this.purgeTombstones = purgeTombstones;
+        return this;
+    }
+
+    public int getPurgeBatchSize() {
+        return purgeBatchSize;
+    }
+
+    public CsafMaintenanceConfiguration setPurgeBatchSize(int purgeBatchSize) {
+        this.purgeBatchSize = purgeBatchSize;
+        return this;
+    }
+
+    public long getLeaseTtl() {
+        return leaseTtl;
+    }
+
+    public CsafMaintenanceConfiguration setLeaseTtl(long leaseTtl) {
+        this.leaseTtl = leaseTtl;
+        return this;
+    }
+}
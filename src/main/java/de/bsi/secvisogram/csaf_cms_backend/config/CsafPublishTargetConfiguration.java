@@ -0,0 +1,63 @@
+package de.bsi.secvisogram.csaf_cms_backend.config;
+
+/**
+ * A CSAF provider the advisories are uploaded to by the auto publisher
+ */
+public class CsafPublishTargetConfiguration {
+  private String name = "default";
+  private String url = "";
+  private String password = "";
+  private boolean enableInsecureTLS = false;
+  private double rateLimit = 0;
+
+  public String getName() {
+    return name;
+  }
+
+  public CsafPublishTargetConfiguration setName(String name) {
+    this.name = name;
+    return this;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public CsafPublishTargetConfiguration setUrl(String url) {
+    this.url = url;
+    return this;
+  }
+
+  /**
+   * @return the PLAINTEXT password of the provider
+   */
+  public String getPassword() {
+    return password;
+  }
+
+  public CsafPublishTargetConfiguration setPassword(String password) {
+    this.password = password;
+    return this;
+  }
+
+  public boolean isEnableInsecureTLS() {
+    return enableInsecureTLS;
+  }
+
+  public CsafPublishTargetConfiguration setEnableInsecureTLS(boolean enableInsecureTLS) {
+    this.enableInsecureTLS = enableInsecureTLS;
+    return this;
+  }
+
+  /**
+   * @return maximum number of uploads per second to this provider, 0 for no limit
+   */
+  public double getRateLimit() {
+    return rateLimit;
+  }
+
+  public CsafPublishTargetConfiguration setRateLimit(double rateLimit) {
+    this.rateLimit = rateLimit;
+    return this;
+  }
+}
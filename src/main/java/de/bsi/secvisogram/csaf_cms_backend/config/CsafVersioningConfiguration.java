@@ -4,6 +4,11 @@ public class CsafVersioningConfiguration {
 
     private int levenshtein;
 
+    /**
+     * Store the product tree and the vulnerabilities of advisory versions in blobs shared between the versions.
+     */
+    private boolean sharedSubtrees;
+
     public int getLevenshtein() {
         return levenshtein;
     }
@@ -12,4 +17,13 @@ public class CsafVersioningConfiguration {
         this.levenshtein = levenshtein;
         return this;
     }
+
+    public boolean isSharedSubtrees() {
+        return sharedSubtrees;
+    }
+
+    public CsafVersioningConfiguration setSharedSubtrees(boolean sharedSubtrees) {
+        this.sharedSubtrees = sharedSubtrees;
+        return this;
+    }
 }
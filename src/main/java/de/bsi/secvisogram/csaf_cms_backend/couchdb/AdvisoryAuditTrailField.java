@@ -6,6 +6,18 @@ public enum AdvisoryAuditTrailField implements DbField {
     OLD_DOC_VERSION("oldDocVersion"),
     DOC_VERSION("docVersion"),
     DIFF("diff"),
+    /** the diff as base64 encoded gzip of its JSON, used for large diffs */
+    DIFF_COMPRESSED("diffGz"),
+    /** the created advisory, stored instead of a diff against the empty advisory */
+    SNAPSHOT("snapshot"),
+    /** the snapshot as base64 encoded gzip of its JSON, used for large snapshots */
+    SNAPSHOT_COMPRESSED("snapshotGz"),
+    /** true if the entry holds a snapshot of the advisory after the change */
+    CHECKPOINT("checkpoint"),
+    /** time of the last update merged into the entry */
+    COALESCED_UNTIL("coalescedUntil"),
+    /** number of updates merged into the entry */
+    CHANGE_COUNT("changeCount"),
 
     OLD_WORKFLOW_STATE("oldState"),
     NEW_WORKFLOW_STATE("newState");
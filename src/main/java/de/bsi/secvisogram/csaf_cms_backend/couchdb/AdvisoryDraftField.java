@@ -0,0 +1,26 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+public enum AdvisoryDraftField implements DbField {
+
+    ADVISORY_ID("advisoryId"),
+    USER("user"),
+    SAVED_AT("savedAt");
+
+    private final String dbName;
+    private final String[] fieldPath;
+
+    AdvisoryDraftField(String dbName) {
+        this.dbName = dbName;
+        this.fieldPath = new String[] {dbName};
+    }
+
+    @Override
+    public String getDbName() {
+        return dbName;
+    }
+
+    @Override
+    public String[] getFieldPath() {
+        return this.fieldPath.clone();
+    }
+}
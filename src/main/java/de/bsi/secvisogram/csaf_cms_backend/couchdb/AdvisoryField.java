@@ -14,7 +14,17 @@ public enum AdvisoryField implements DbField {
      * The final ID is assigned during publishing
      * It must be traceable which TEMP ID became which final ID.
      * Therefore, the temp id is stored in the metadata after publishing.*/
-    TMP_TRACKING_ID("tmpTrackingId");
+    TMP_TRACKING_ID("tmpTrackingId"),
+    /** ids of the AdvisoryBlob documents holding the subtrees split from the csaf of an AdvisoryVersion */
+    SUBTREE_BLOBS("subtreeBlobs"),
+    /** number of changes since the last audit trail entry holding a snapshot of the advisory */
+    CHANGES_SINCE_CHECKPOINT("changesSinceCheckpoint"),
+    /** id of the audit trail entry further updates of its user may be merged into */
+    OPEN_AUDIT_TRAIL("openAuditTrail"),
+    /** content of an AdvisoryBlob */
+    BLOB_CONTENT("content"),
+    /** lower case, ASCII folded copies of searchable csaf fields, see {@link NormalizedSearchField} */
+    NORMALIZED("normalized");
 
     private final String dbName;
     private final String[] fieldPath;
@@ -16,7 +16,9 @@ public enum AdvisorySearchField implements DbField {
 
     DOCUMENT_TRACKING_CURRENT_RELEASE_DATE("csaf", "document", "tracking", "current_release_date"),
 
-    DOCUMENT_TRACKING_INITIAL_RELEASE_DATE("csaf", "document", "tracking", "initial_release_date");
+    DOCUMENT_TRACKING_INITIAL_RELEASE_DATE("csaf", "document", "tracking", "initial_release_date"),
+
+    DOCUMENT_PUBLISHER_NAME("csaf", "document", "publisher", "name");
 
 
     private final String dbName;
@@ -0,0 +1,52 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import tools.jackson.databind.JsonNode;
+
+/**
+ * A page of changed documents read from the changes feed of the database
+ */
+public class ChangedDocuments {
+
+    private final List<JsonNode> documents;
+    private final Set<String> deletedIds;
+    private final String lastSeq;
+    private final boolean complete;
+
+    public ChangedDocuments(List<JsonNode> documents, Set<String> deletedIds, String lastSeq, boolean complete) {
+        this.documents = Collections.unmodifiableList(documents);
+        this.deletedIds = Collections.unmodifiableSet(deletedIds);
+        this.lastSeq = lastSeq;
+        this.complete = complete;
+    }
+
+    /**
+     * @return the current content of the changed documents
+     */
+    public List<JsonNode> getDocuments() {
+        return documents;
+    }
+
+    /**
+     * @return the ids of the deleted documents
+     */
+    public Set<String> getDeletedIds() {
+        return deletedIds;
+    }
+
+    /**
+     * @return the sequence to continue reading the changes feed after this page
+     */
+    public String getLastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * @return true if there are no further changes at the time of reading
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+}
@@ -3,6 +3,7 @@ package de.bsi.secvisogram.csaf_cms_backend.couchdb;
 public enum CommentAuditTrailField implements DbField {
 
     COMMENT_ID("commentId"),
+    ADVISORY_ID("advisoryId"),
     COMMENT_TEXT("commentText");
 
     private final String dbName;
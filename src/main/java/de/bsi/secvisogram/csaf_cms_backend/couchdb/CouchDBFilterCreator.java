@@ -2,6 +2,7 @@ package de.bsi.secvisogram.csaf_cms_backend.couchdb;
 
 import de.bsi.secvisogram.csaf_cms_backend.model.filter.*;
 import java.util.*;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -20,6 +21,12 @@ public class CouchDBFilterCreator {
         return new CouchDBFilterCreator().expression2CouchDbFilter(expr);
     }
 
+    /**
+     * Upper end of the range of strings starting with a prefix, sorts after all other characters in the
+     * collation of CouchDB
+     */
+    private static final String HIGH_CHARACTER = "\ufff0";
+
     private final Map<TypeOfOperator, String> operator2CouchDB = Map.of(
             TypeOfOperator.Equal, "$eq",
             TypeOfOperator.Greater, "$gt",
@@ -27,7 +34,9 @@ public class CouchDBFilterCreator {
             TypeOfOperator.Less, "$lt",
             TypeOfOperator.LessOrEqual, "$lte",
             TypeOfOperator.NotEqual, "$ne",
-            TypeOfOperator.ContainsIgnoreCase, "$regex"
+            TypeOfOperator.ContainsIgnoreCase, "$regex",
+            TypeOfOperator.In, "$in",
+            TypeOfOperator.Exists, "$exists"
     );
 
 
@@ -123,32 +132,107 @@ public class CouchDBFilterCreator {
      */
     private Map<String, Object> createOperatorExpression(OperatorExpression opExpr) {
 
-        final String couchDBOperator = convertOperator(opExpr);
-
-        final Object compareValue;
-        if (opExpr.getValueType() == TypeOfValue.Decimal) {
-            compareValue = Double.valueOf(opExpr.getValue());
-        } else if (opExpr.getValueType() == TypeOfValue.Boolean) {
-            compareValue = "true".equals(opExpr.getValue());
+        String[] selector = opExpr.getSelector();
+        final Map<String, Object> condition;
+        if (opExpr.getOperatorType() == TypeOfOperator.StartsWith) {
+            condition = createStartsWithCondition(opExpr.getValue());
+        } else if (opExpr.getOperatorType() == TypeOfOperator.EqualIgnoreCase
+                || opExpr.getOperatorType() == TypeOfOperator.StartsWithIgnoreCase) {
+            boolean prefix = opExpr.getOperatorType() == TypeOfOperator.StartsWithIgnoreCase;
+            Optional<NormalizedSearchField> normalizedField = NormalizedSearchField.forSourceSelector(selector);
+            if (normalizedField.isPresent()) {
+                // the shadow field holds the normalized value, so the comparison can use an index on it
+                String normalizedValue = NormalizedSearchField.normalize(opExpr.getValue());
+                selector = normalizedField.get().getFieldPath();
+                condition = prefix ? createStartsWithCondition(normalizedValue) : Map.of("$eq", normalizedValue);
+            } else {
+                // without a shadow field only the case is ignored, the diacritics are compared as they are
+                condition = Map.of("$regex", "(?i)^" + Pattern.quote(opExpr.getValue()) + (prefix ? "" : "$"));
+            }
+        } else if (opExpr.getOperatorType() == TypeOfOperator.Between) {
+            List<Object> bounds = convertValues(opExpr);
+            if (bounds.size() != 2) {
+                throw new IllegalArgumentException("Operator Between needs 2 values");
+            }
+            condition = new LinkedHashMap<>();
+            condition.put("$gte", bounds.get(0));
+            condition.put("$lte", bounds.get(1));
+        } else if (opExpr.getOperatorType() == TypeOfOperator.In) {
+            List<Object> values = convertValues(opExpr);
+            if (values.isEmpty()) {
+                throw new IllegalArgumentException("Operator In needs at least 1 value");
+            }
+            condition = Map.of(convertOperator(opExpr), values);
+        } else if (opExpr.getOperatorType() == TypeOfOperator.Exists) {
+            condition = Map.of(convertOperator(opExpr), !"false".equals(opExpr.getValue()));
         } else if (opExpr.getOperatorType() == TypeOfOperator.ContainsIgnoreCase) {
-            compareValue = "(?i)^.*" + opExpr.getValue() + ".*";
+            condition = Map.of(convertOperator(opExpr), "(?i)^.*" + opExpr.getValue() + ".*");
         } else {
-            compareValue = opExpr.getValue();
+            condition = Map.of(convertOperator(opExpr), convertValue(opExpr.getValue(), opExpr.getValueType()));
         }
 
-        return createSelectorExpression(opExpr.getSelector(), couchDBOperator, compareValue);
+        return createSelectorExpression(selector, condition);
+    }
+
+    /**
+     * Create the condition of a field starting with the prefix. The range can be read from an index on the field,
+     * it compares like the collation of CouchDB mostly ignoring case, so the $regex keeps only the exact matches
+     * of the few documents in the range.
+     * @param prefix the prefix the field has to start with
+     * @return the couchDB operators with their values
+     */
+    private Map<String, Object> createStartsWithCondition(String prefix) {
+
+        Map<String, Object> condition = new LinkedHashMap<>();
+        condition.put("$gte", prefix);
+        condition.put("$lt", prefix + HIGH_CHARACTER);
+        condition.put("$regex", "^" + Pattern.quote(prefix));
+        return condition;
+    }
+
+    /**
+     * Convert the values of an operator with several values to the type of the value
+     * @param opExpr the expression to get the values
+     * @return the converted values
+     */
+    private List<Object> convertValues(OperatorExpression opExpr) {
+
+        if (opExpr.getValues() == null) {
+            return Collections.emptyList();
+        }
+        return opExpr.getValues().stream()
+                .map(value -> convertValue(value, opExpr.getValueType()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Convert the value of an expression to the type of the value
+     * @param value the value to convert
+     * @param valueType the type of the value
+     * @return the converted value
+     */
+    private Object convertValue(String value, TypeOfValue valueType) {
+
+        final Object compareValue;
+        if (valueType == TypeOfValue.Decimal) {
+            compareValue = Double.valueOf(value);
+        } else if (valueType == TypeOfValue.Boolean) {
+            compareValue = "true".equals(value);
+        } else {
+            compareValue = value;
+        }
+        return compareValue;
     }
 
     /**
      * Create operator selector expression
      * @param selector the json selector
-     * @param couchDBOperator the couchDB operator: $gt, $eq, ...
-     * @param compareValue the value to compare
+     * @param condition the couchDB operators with their values: $gt, $eq, ...
      * @return the created selector expression
      */
-    private Map<String, Object> createSelectorExpression(String[] selector, String couchDBOperator, Object compareValue) {
+    private Map<String, Object> createSelectorExpression(String[] selector, Map<String, Object> condition) {
         // create subfields selector for nested objects
-        Map<String, Object> lastOperator = Map.of(couchDBOperator, compareValue);
+        Map<String, Object> lastOperator = condition;
         for (int i = selector.length - 1; i >= 0; i--) {
             // a query on an array field needs a $elemMatch to be inserted
             if (isArrayFieldSelector(selector, i)) {
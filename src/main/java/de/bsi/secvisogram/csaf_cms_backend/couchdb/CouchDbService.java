@@ -15,15 +15,27 @@ import de.bsi.secvisogram.csaf_cms_backend.service.IdAndRevision;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Repository;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
 
 /**
  * Service to create, update and delete objects in a couchDB database
@@ -33,6 +45,14 @@ public class CouchDbService {
 
     private static final Logger LOG = LoggerFactory.getLogger(CouchDbService.class);
     private static final String CLOUDANT_SERVICE_NAME = "SECVISOGRAM";
+    /**
+     * maximum number of documents written in one _bulk_docs request
+     */
+    public static final int BULK_DOCS_CHUNK_SIZE = 500;
+    /**
+     * maximum number of document ids purged in one _purge request, the default of max_document_id_number of CouchDB
+     */
+    public static final int MAX_PURGE_IDS_PER_REQUEST = 100;
 
     @Value("${csaf.couchdb.dbname}")
     private String dbName;
@@ -259,6 +279,199 @@ public class CouchDbService {
                 .getResult();
     }
 
+    /**
+     * Read the information of the documents matching the selector using the given index.
+     * The result contains the execution statistics of the query in addition to the documents.
+     *
+     * @param selector       the selector to search for
+     * @param fields         the fields of information to select
+     * @param designDocument the design document of the index to use
+     * @param indexName      the name of the index to use
+     * @return the result as stream
+     */
+    public InputStream findDocumentsAsStream(Map<String, Object> selector, Collection<DbField> fields,
+                                             String designDocument, String indexName) {
+
+        Cloudant client = createCloudantClient();
+
+        PostFindOptions findOptions = new PostFindOptions.Builder()
+                .db(this.dbName)
+                .selector(selector)
+                .fields(fields.stream().map(DbField::getDbName).collect(Collectors.toList()))
+                .useIndex(List.of(designDocument, indexName))
+                .executionStats(Boolean.TRUE)
+                .limit((long) Integer.MAX_VALUE)
+                .build();
+
+        return client
+                .postFindAsStream(findOptions)
+                .execute()
+                .getResult();
+    }
+
+    /**
+     * Read one page of the information of the documents matching the selector using the given index.
+     * The result contains the bookmark to read the next page in addition to the documents.
+     *
+     * @param selector       the selector to search for
+     * @param fields         the fields of information to select, null to read the complete documents
+     * @param designDocument the design document of the index to use
+     * @param indexName      the name of the index to use
+     * @param sort           the fields to sort by with their direction, must match the order of the index,
+     *                       null for the order of the index
+     * @param limit          the maximum number of documents in the page
+     * @param bookmark       the bookmark of the previous page, null for the first page
+     * @return the result as stream
+     */
+    public InputStream findDocumentsPageAsStream(Map<String, Object> selector, Collection<DbField> fields,
+                                                 String designDocument, String indexName,
+                                                 List<Map<String, String>> sort, int limit, String bookmark) {
+
+        Cloudant client = createCloudantClient();
+
+        PostFindOptions.Builder findOptions = new PostFindOptions.Builder()
+                .db(this.dbName)
+                .selector(selector)
+                .useIndex(List.of(designDocument, indexName))
+                .limit(limit);
+        if (fields != null) {
+            findOptions.fields(fields.stream().map(DbField::getDbName).collect(Collectors.toList()));
+        }
+        if (sort != null) {
+            findOptions.sort(sort);
+        }
+        if (bookmark != null) {
+            findOptions.bookmark(bookmark);
+        }
+
+        return client
+                .postFindAsStream(findOptions.build())
+                .execute()
+                .getResult();
+    }
+
+    /**
+     * Create a json index on the given fields, an existing index with the same definition is kept
+     *
+     * @param designDocument the design document of the index
+     * @param indexName      the name of the index
+     * @param fields         the fields to index in the given order
+     * @return true if the index was created, false if it already existed
+     */
+    public boolean createIndex(String designDocument, String indexName, List<DbField> fields) {
+
+        Cloudant client = createCloudantClient();
+
+        IndexDefinition.Builder indexBuilder = new IndexDefinition.Builder();
+        for (DbField field : fields) {
+            indexBuilder.addFields(new IndexField.Builder().add(field.getDbName(), "asc").build());
+        }
+
+        PostIndexOptions indexOptions = new PostIndexOptions.Builder()
+                .db(this.dbName)
+                .ddoc(designDocument)
+                .name(indexName)
+                .type("json")
+                .index(indexBuilder.build())
+                .build();
+
+        IndexResult indexResult = client
+                .postIndex(indexOptions)
+                .execute()
+                .getResult();
+
+        return "created".equals(indexResult.getResult());
+    }
+
+    /**
+     * Create the design document with the given views or update it if the definition of a view has changed
+     *
+     * @param designDocument the name of the design document without the _design/ prefix
+     * @param views          map and reduce functions by view name
+     * @return true if the design document was written, false if it was up to date
+     */
+    public boolean createOrUpdateViews(String designDocument, Map<String, DesignDocumentViewsMapReduce> views) {
+
+        Cloudant client = createCloudantClient();
+
+        DesignDocument existing = null;
+        try {
+            existing = client.getDesignDocument(new GetDesignDocumentOptions.Builder()
+                            .db(this.dbName)
+                            .ddoc(designDocument)
+                            .build())
+                    .execute()
+                    .getResult();
+        } catch (NotFoundException nfEx) {
+            // the design document is created below
+        }
+        if (existing != null && sameViews(existing.getViews(), views)) {
+            return false;
+        }
+
+        DesignDocument newDocument = new DesignDocument();
+        newDocument.setViews(views);
+        if (existing != null) {
+            newDocument.setRev(existing.getRev());
+        }
+        client.putDesignDocument(new PutDesignDocumentOptions.Builder()
+                        .db(this.dbName)
+                        .ddoc(designDocument)
+                        .designDocument(newDocument)
+                        .build())
+                .execute();
+        return true;
+    }
+
+    private static boolean sameViews(Map<String, DesignDocumentViewsMapReduce> existing,
+                                     Map<String, DesignDocumentViewsMapReduce> views) {
+
+        if (existing == null || !existing.keySet().equals(views.keySet())) {
+            return false;
+        }
+        return views.entrySet().stream().allMatch(view -> {
+            DesignDocumentViewsMapReduce existingView = existing.get(view.getKey());
+            return Objects.equals(existingView.map(), view.getValue().map())
+                    && Objects.equals(existingView.reduce(), view.getValue().reduce());
+        });
+    }
+
+    /**
+     * Read the reduced values of a view grouped by key
+     *
+     * @param designDocument the name of the design document without the _design/ prefix
+     * @param view           the name of the view
+     * @param keys           the keys to read, keys without rows are not contained in the result
+     * @return the reduced value by key
+     */
+    public Map<String, Object> readReducedView(String designDocument, String view, Collection<String> keys) {
+
+        if (keys.isEmpty()) {
+            return Map.of();
+        }
+        Cloudant client = createCloudantClient();
+
+        PostViewOptions viewOptions = new PostViewOptions.Builder()
+                .db(this.dbName)
+                .ddoc(designDocument)
+                .view(view)
+                .reduce(Boolean.TRUE)
+                .group(Boolean.TRUE)
+                .keys(new ArrayList<>(keys))
+                .build();
+
+        ViewResult result = client
+                .postView(viewOptions)
+                .execute()
+                .getResult();
+
+        Map<String, Object> valuesByKey = new LinkedHashMap<>();
+        for (ViewResultRow row : result.getRows()) {
+            valuesByKey.put(String.valueOf(row.getKey()), row.getValue());
+        }
+        return valuesByKey;
+    }
+
     /**
      * Delete a document from the database
      *
@@ -293,44 +506,278 @@ public class CouchDbService {
     }
 
     /**
-     * Delete multiple objects from the database
+     * Delete multiple objects from the database. The objects are deleted in chunks of
+     * {@link #BULK_DOCS_CHUNK_SIZE} documents per request.
      *
      * @param objectsToDelete collection of ids and revisions of all documents to delete
      * @throws DatabaseException Deletion of at least one object failed
      */
     public void bulkDeleteDocuments(final Collection<IdAndRevision> objectsToDelete) throws DatabaseException {
 
-        Cloudant client = createCloudantClient();
         List<Document> documents = objectsToDelete.stream()
                 .map(this::createBulkDelete)
                 .collect(Collectors.toList());
+        if (documents.isEmpty()) {
+            return;
+        }
+
+        Cloudant client = createCloudantClient();
+        for (int start = 0; start < documents.size(); start += BULK_DOCS_CHUNK_SIZE) {
+            List<Document> chunk = documents.subList(start, Math.min(start + BULK_DOCS_CHUNK_SIZE, documents.size()));
+            BulkDocs bulkDocs = new BulkDocs.Builder()
+                    .docs(chunk)
+                    .build();
+
+            PostBulkDocsOptions bulkDocsOptions = new PostBulkDocsOptions.Builder()
+                    .db(this.dbName)
+                    .bulkDocs(bulkDocs)
+                    .build();
+
+            try {
+                List<DocumentResult> responses =
+                        client.postBulkDocs(bulkDocsOptions).execute()
+                                .getResult();
+                for (DocumentResult response : responses) {
+                    if (response.isOk() == null || !response.isOk()) {
+                        throw new DatabaseException(response.getError());
+                    }
+                }
+            } catch (BadRequestException brEx) {
+                String msg = "Bad request, possibly one of the given revisions is invalid";
+                LOG.error(msg);
+                throw new DatabaseException(msg, brEx);
+            }
+            LOG.debug("Deleted {} of {} documents", start + chunk.size(), documents.size());
+        }
+    }
 
+    /**
+     * Start collecting writes that are sent to the database with one request
+     *
+     * @return the new unit of work
+     */
+    public UnitOfWork createUnitOfWork() {
+        return new UnitOfWork(this);
+    }
 
-        BulkDocs bulkDocs = new BulkDocs.Builder()
-                .docs(documents)
-                .build();
+    /**
+     * Write multiple documents with one _bulk_docs request. Each document is written independently,
+     * the result of each write is returned in the order of the documents.
+     *
+     * @param documents the documents to write, new documents need an id, changed documents also a revision
+     * @return the result of each write
+     * @throws DatabaseException if the request as a whole was rejected
+     */
+    public List<DocumentResult> bulkWriteDocuments(List<? extends JsonNode> documents) throws DatabaseException {
+
+        Cloudant client = createCloudantClient();
+
+        JsonMapper mapper = new JsonMapper();
+        ObjectNode bulkDocs = mapper.createObjectNode();
+        bulkDocs.putArray("docs").addAll(documents);
 
         PostBulkDocsOptions bulkDocsOptions = new PostBulkDocsOptions.Builder()
                 .db(this.dbName)
-                .bulkDocs(bulkDocs)
+                .body(new ByteArrayInputStream(mapper.writeValueAsBytes(bulkDocs)))
                 .build();
 
         try {
-            List<DocumentResult> responses =
-                    client.postBulkDocs(bulkDocsOptions).execute()
-                            .getResult();
-            for (DocumentResult response : responses) {
-                if (response.isOk() == null || !response.isOk()) {
-                    throw new DatabaseException(response.getError());
-                }
-            }
+            return client.postBulkDocs(bulkDocsOptions)
+                    .execute()
+                    .getResult();
         } catch (BadRequestException brEx) {
-            String msg = "Bad request, possibly one of the given revisions is invalid";
+            String msg = "Bad request, possibly one of the given documents is invalid";
             LOG.error(msg);
             throw new DatabaseException(msg, brEx);
         }
     }
 
+    /**
+     * Get the sizes, the number of deleted documents and the compaction state of the database
+     *
+     * @return the information of the database
+     */
+    public DatabaseInformation getDatabaseInformation() {
+
+        Cloudant client = createCloudantClient();
+        GetDatabaseInformationOptions dbInformationOptions =
+                new GetDatabaseInformationOptions.Builder(this.dbName).build();
+
+        return client
+                .getDatabaseInformation(dbInformationOptions)
+                .execute()
+                .getResult();
+    }
+
+    /**
+     * Start the compaction of the database. The compaction runs in the background,
+     * {@link DatabaseInformation#isCompactRunning()} tells when it has finished.
+     *
+     * @throws DatabaseException if the compaction could not be started
+     */
+    public void compactDatabase() throws DatabaseException {
+
+        postMaintenanceRequest("/_compact", "{}");
+    }
+
+    /**
+     * Remove the index files of views that are no longer defined in a design document
+     *
+     * @throws DatabaseException if the cleanup could not be started
+     */
+    public void cleanupViews() throws DatabaseException {
+
+        postMaintenanceRequest("/_view_cleanup", "{}");
+    }
+
+    /**
+     * Read the deleted documents from the changes feed. The sequences of the feed are opaque on a clustered
+     * database, so the page only ends at the limit or the end of the feed and is continued with the returned
+     * last sequence.
+     *
+     * @param since the sequence to start reading after, "0" to start at the beginning
+     * @param limit the maximum number of changes to read
+     * @return the deleted documents with their leaf revisions
+     * @throws DatabaseException if the changes could not be read
+     */
+    public DeletedDocuments findDeletedDocuments(String since, int limit) throws DatabaseException {
+
+        JsonNode changes;
+        try {
+            String response = createMaintenanceClient().get()
+                    .uri("/_changes?style=all_docs&since={since}&limit={limit}", since, limit)
+                    .retrieve()
+                    .body(String.class);
+            changes = new JsonMapper().readTree(response);
+        } catch (RestClientException | JacksonException ex) {
+            throw new DatabaseException("Could not read the changes of the database", ex);
+        }
+
+        Map<String, List<String>> revisionsById = new LinkedHashMap<>();
+        for (JsonNode change : changes.path("results")) {
+            if (change.path("deleted").asBoolean(false)) {
+                List<String> revisions = new ArrayList<>();
+                change.path("changes").forEach(rev -> revisions.add(rev.path("rev").asString()));
+                revisionsById.put(change.path("id").asString(), revisions);
+            }
+        }
+        String lastSeq = changes.path("last_seq").asString(since);
+        return new DeletedDocuments(revisionsById, lastSeq, changes.path("pending").asLong(0) == 0);
+    }
+
+    /**
+     * Read the changed documents matching the selector and all deleted documents from the changes feed.
+     * Every document is only returned in its latest revision, also if it was changed several times.
+     *
+     * @param since    the sequence to start reading after, "0" to start at the beginning
+     * @param selector the selector the changed documents have to match
+     * @param limit    the maximum number of changes to read
+     * @return the changed and deleted documents
+     * @throws DatabaseException if the changes could not be read
+     */
+    public ChangedDocuments findChangedDocuments(String since, Map<String, Object> selector, int limit)
+            throws DatabaseException {
+
+        JsonNode changes;
+        try {
+            JsonMapper mapper = new JsonMapper();
+            // tombstones of deleted documents only contain id and revision, so they need their own clause
+            Map<String, Object> selectorOrDeleted = Map.of("selector",
+                    Map.of("$or", List.of(selector, Map.of("_deleted", true))));
+            String response = createMaintenanceClient().post()
+                    .uri("/_changes?filter=_selector&include_docs=true&since={since}&limit={limit}", since, limit)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(mapper.writeValueAsString(selectorOrDeleted))
+                    .retrieve()
+                    .body(String.class);
+            changes = mapper.readTree(response);
+        } catch (RestClientException | JacksonException ex) {
+            throw new DatabaseException("Could not read the changes of the database", ex);
+        }
+
+        List<JsonNode> documents = new ArrayList<>();
+        Set<String> deletedIds = new LinkedHashSet<>();
+        for (JsonNode change : changes.path("results")) {
+            if (change.path("deleted").asBoolean(false)) {
+                deletedIds.add(change.path("id").asString());
+            } else if (change.hasNonNull("doc")) {
+                documents.add(change.get("doc"));
+            }
+        }
+        String lastSeq = changes.path("last_seq").asString(since);
+        return new ChangedDocuments(documents, deletedIds, lastSeq, changes.path("pending").asLong(0) == 0);
+    }
+
+    /**
+     * Remove the given revisions of the documents permanently from the database.
+     * Other than deleting, purging leaves no tombstone, so it should only be used for deleted documents.
+     * The documents are purged with one request per {@value #MAX_PURGE_IDS_PER_REQUEST} ids, the default
+     * maximum number of ids CouchDB accepts in one request.
+     *
+     * @param revisionsById the revisions to purge by document id
+     * @return the number of purged documents
+     * @throws DatabaseException if the documents could not be purged
+     */
+    public int purgeDocuments(Map<String, List<String>> revisionsById) throws DatabaseException {
+
+        int purged = 0;
+        Map<String, List<String>> request = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> revisions : revisionsById.entrySet()) {
+            request.put(revisions.getKey(), revisions.getValue());
+            if (request.size() == MAX_PURGE_IDS_PER_REQUEST) {
+                purged += postPurgeRequest(request);
+                request.clear();
+            }
+        }
+        if (!request.isEmpty()) {
+            purged += postPurgeRequest(request);
+        }
+        return purged;
+    }
+
+    private int postPurgeRequest(Map<String, List<String>> revisionsById) throws DatabaseException {
+
+        try {
+            JsonMapper mapper = new JsonMapper();
+            String response = createMaintenanceClient().post()
+                    .uri("/_purge")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(mapper.writeValueAsString(revisionsById))
+                    .retrieve()
+                    .body(String.class);
+            return mapper.readTree(response).path("purged").size();
+        } catch (RestClientException | JacksonException ex) {
+            throw new DatabaseException("Could not purge the deleted documents", ex);
+        }
+    }
+
+    private void postMaintenanceRequest(String path, String body) throws DatabaseException {
+
+        try {
+            createMaintenanceClient().post()
+                    .uri(path)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(body)
+                    .retrieve()
+                    .toBodilessEntity();
+        } catch (RestClientException ex) {
+            throw new DatabaseException("Maintenance request " + path + " failed", ex);
+        }
+    }
+
+    /**
+     * Create a client for the maintenance endpoints of the database, that are not supported by the Cloudant SDK
+     *
+     * @return the new client
+     */
+    private RestClient createMaintenanceClient() {
+
+        return RestClient.builder()
+                .baseUrl(getDbUrl() + "/" + this.dbName)
+                .defaultHeaders(headers -> headers.setBasicAuth(this.dbUser, this.dbPassword))
+                .build();
+    }
+
     /**
      * Convert IdAndRevision to delete document
      *
@@ -0,0 +1,42 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A page of deleted documents read from the changes feed of the database
+ */
+public class DeletedDocuments {
+
+    private final Map<String, List<String>> revisionsById;
+    private final String lastSeq;
+    private final boolean complete;
+
+    public DeletedDocuments(Map<String, List<String>> revisionsById, String lastSeq, boolean complete) {
+        this.revisionsById = Collections.unmodifiableMap(revisionsById);
+        this.lastSeq = lastSeq;
+        this.complete = complete;
+    }
+
+    /**
+     * @return the leaf revisions of the deleted documents by their id
+     */
+    public Map<String, List<String>> getRevisionsById() {
+        return revisionsById;
+    }
+
+    /**
+     * @return the sequence to continue reading the changes feed after this page
+     */
+    public String getLastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * @return true if there are no further deleted documents up to the requested sequence
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+}
@@ -0,0 +1,82 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Shadow fields of searchable csaf fields, holding the value in lower case with the diacritics removed.
+ * They are stored in the object {@link AdvisoryField#NORMALIZED} outside the csaf subtree, so the exported
+ * documents are not affected, and are updated on every write of an advisory. An index on a shadow field
+ * serves case-insensitive equality and prefix searches on its csaf field.
+ */
+public enum NormalizedSearchField implements DbField {
+
+    DOCUMENT_TITLE(AdvisorySearchField.DOCUMENT_TITLE, "title"),
+    DOCUMENT_TRACKING_ID(AdvisorySearchField.DOCUMENT_TRACKING_ID, "trackingId"),
+    DOCUMENT_PUBLISHER_NAME(AdvisorySearchField.DOCUMENT_PUBLISHER_NAME, "publisherName");
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private final AdvisorySearchField sourceField;
+    private final String dbName;
+    private final String[] fieldPath;
+
+    NormalizedSearchField(AdvisorySearchField sourceField, String name) {
+        this.sourceField = sourceField;
+        this.dbName = AdvisoryField.NORMALIZED.getDbName() + "." + name;
+        this.fieldPath = new String[] {AdvisoryField.NORMALIZED.getDbName(), name};
+    }
+
+    @Override
+    public String getDbName() {
+        return dbName;
+    }
+
+    @Override
+    public String[] getFieldPath() {
+        return this.fieldPath.clone();
+    }
+
+    /**
+     * @return the name of the field in the normalized object
+     */
+    public String getName() {
+        return this.fieldPath[1];
+    }
+
+    /**
+     * @return the csaf field the value of this field is derived from
+     */
+    public AdvisorySearchField getSourceField() {
+        return sourceField;
+    }
+
+    /**
+     * Find the shadow field of a csaf field
+     *
+     * @param selector the path of the csaf field
+     * @return the shadow field, empty if the csaf field has none
+     */
+    public static Optional<NormalizedSearchField> forSourceSelector(String[] selector) {
+
+        return Arrays.stream(values())
+                .filter(field -> Arrays.equals(field.sourceField.getFieldPath(), selector))
+                .findFirst();
+    }
+
+    /**
+     * Normalize a value for the comparison with a shadow field: decompose it, remove the diacritics
+     * and convert it to lower case, so 'Résumé' and 'RESUME' both result in 'resume'
+     *
+     * @param value the value to normalize
+     * @return the normalized value
+     */
+    public static String normalize(String value) {
+
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFKD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,30 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+public enum PublishOutboxField implements DbField {
+
+    ADVISORY_ID("advisoryId"),
+    ADVISORY_REVISION("advisoryRevision"),
+    TARGET("target"),
+    STATE("state"),
+    ATTEMPTS("attempts"),
+    NEXT_ATTEMPT_AT("nextAttemptAt"),
+    LAST_ERROR("lastError");
+
+    private final String dbName;
+    private final String[] fieldPath;
+
+    PublishOutboxField(String dbName) {
+        this.dbName = dbName;
+        this.fieldPath = new String[] {dbName};
+    }
+
+    @Override
+    public String getDbName() {
+        return dbName;
+    }
+
+    @Override
+    public String[] getFieldPath() {
+        return this.fieldPath.clone();
+    }
+}
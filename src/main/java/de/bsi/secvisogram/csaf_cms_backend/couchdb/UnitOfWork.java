@@ -0,0 +1,214 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import com.ibm.cloud.cloudant.v1.model.DocumentResult;
+import de.bsi.secvisogram.csaf_cms_backend.service.IdAndRevision;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
+
+/**
+ * Collects the writes of a service call and sends them with one _bulk_docs request on {@link #commit()}.
+ * <p>
+ * CouchDB writes each document of a bulk request independently. If one of the writes fails, the successful
+ * writes of the unit are compensated: created documents are deleted and updated documents are reset to their
+ * previous content, if it was given. Shared documents addressed by their content are kept. Deletions can not be
+ * compensated without the deleted content, so they are sent in a second request, only after all other writes of
+ * the unit succeeded.
+ */
+public class UnitOfWork {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UnitOfWork.class);
+
+    private final CouchDbService couchDbService;
+    private final JsonMapper jsonMapper = new JsonMapper();
+    private final List<PendingWrite> writes = new ArrayList<>();
+    private final List<IdAndRevision> deletions = new ArrayList<>();
+    private boolean committed;
+
+    UnitOfWork(CouchDbService couchDbService) {
+        this.couchDbService = couchDbService;
+    }
+
+    /**
+     * Add a new document to the unit
+     *
+     * @param uuid         id of the new document
+     * @param createString JSON encoded string of the document to add
+     * @return this unit
+     */
+    public UnitOfWork create(UUID uuid, String createString) {
+        return create(uuid.toString(), createString);
+    }
+
+    /**
+     * Add a new document to the unit
+     *
+     * @param objectId     id of the new document
+     * @param createString JSON encoded string of the document to add
+     * @return this unit
+     */
+    public UnitOfWork create(String objectId, String createString) {
+
+        ObjectNode document = readDocument(createString);
+        document.put(CouchDbField.ID_FIELD.getDbName(), objectId);
+        this.writes.add(new PendingWrite(objectId, document, null, true, false));
+        return this;
+    }
+
+    /**
+     * Add a document whose id is derived from its content. An existing document with the same id has the
+     * same content, so it is kept. The document may be shared with other units, so it is not compensated.
+     *
+     * @param objectId     id of the document derived from its content
+     * @param createString JSON encoded string of the document to add
+     * @return this unit
+     */
+    public UnitOfWork createShared(String objectId, String createString) {
+
+        ObjectNode document = readDocument(createString);
+        document.put(CouchDbField.ID_FIELD.getDbName(), objectId);
+        this.writes.add(new PendingWrite(objectId, document, null, true, true));
+        return this;
+    }
+
+    /**
+     * Add a change of a document to the unit
+     *
+     * @param updateString   the new document including id and revision for concurrent control
+     * @param previousString the document before the change to restore it if the unit fails, may be null
+     * @return this unit
+     */
+    public UnitOfWork update(String updateString, String previousString) {
+
+        ObjectNode document = readDocument(updateString);
+        ObjectNode previous = previousString != null ? readDocument(previousString) : null;
+        this.writes.add(new PendingWrite(document.path(CouchDbField.ID_FIELD.getDbName()).asString(),
+                document, previous, false, false));
+        return this;
+    }
+
+    /**
+     * Add the deletion of documents to the unit
+     *
+     * @param objectsToDelete ids and revisions of the documents to delete
+     * @return this unit
+     */
+    public UnitOfWork delete(Collection<IdAndRevision> objectsToDelete) {
+
+        this.deletions.addAll(objectsToDelete);
+        return this;
+    }
+
+    /**
+     * Write all collected changes to the database
+     *
+     * @return the new revisions of the created and updated documents by their id
+     * @throws IdNotFoundException if a document was changed concurrently or does not exist anymore,
+     *                             the other writes of the unit are compensated
+     * @throws DatabaseException   if a write failed, the other writes of the unit are compensated
+     */
+    public Map<String, String> commit() throws DatabaseException {
+
+        if (this.committed) {
+            throw new IllegalStateException("Unit of work is already committed");
+        }
+        this.committed = true;
+
+        Map<String, String> revisionsById = new LinkedHashMap<>();
+        if (!this.writes.isEmpty()) {
+            List<DocumentResult> results = this.couchDbService.bulkWriteDocuments(
+                    this.writes.stream().map(PendingWrite::document).toList());
+            List<DocumentResult> failed = new ArrayList<>();
+            for (int i = 0; i < this.writes.size(); i++) {
+                DocumentResult result = results.get(i);
+                PendingWrite write = this.writes.get(i);
+                if (Boolean.TRUE.equals(result.isOk())) {
+                    if (!write.shared()) {
+                        revisionsById.put(write.id(), result.getRev());
+                    }
+                } else if (!(write.shared() && "conflict".equals(result.getError()))) {
+                    failed.add(result);
+                }
+            }
+            if (!failed.isEmpty()) {
+                compensate(revisionsById);
+                DocumentResult firstFailure = failed.get(0);
+                String msg = "Write of " + firstFailure.getId() + " failed: " + firstFailure.getError();
+                LOG.error(msg);
+                if ("conflict".equals(firstFailure.getError()) || "not_found".equals(firstFailure.getError())) {
+                    throw new IdNotFoundException(msg);
+                }
+                throw new DatabaseException(msg);
+            }
+        }
+        if (!this.deletions.isEmpty()) {
+            this.couchDbService.bulkDeleteDocuments(this.deletions);
+        }
+        return revisionsById;
+    }
+
+    /**
+     * Undo the successful writes of the unit
+     *
+     * @param revisionsById the new revisions of the successfully written documents
+     */
+    private void compensate(Map<String, String> revisionsById) {
+
+        List<JsonNode> compensations = new ArrayList<>();
+        for (PendingWrite write : this.writes) {
+            String newRevision = revisionsById.get(write.id());
+            if (newRevision != null) {
+                ObjectNode compensation;
+                if (write.created()) {
+                    compensation = this.jsonMapper.createObjectNode();
+                    compensation.put(CouchDbField.ID_FIELD.getDbName(), write.id());
+                    compensation.put("_deleted", true);
+                } else if (write.previous() != null) {
+                    compensation = write.previous().deepCopy();
+                } else {
+                    LOG.warn("Can not compensate the update of {}, the previous content is unknown", write.id());
+                    continue;
+                }
+                compensation.put(CouchDbField.REVISION_FIELD.getDbName(), newRevision);
+                compensations.add(compensation);
+            }
+        }
+        if (!compensations.isEmpty()) {
+            try {
+                for (DocumentResult result : this.couchDbService.bulkWriteDocuments(compensations)) {
+                    if (!Boolean.TRUE.equals(result.isOk())) {
+                        LOG.error("Compensation of {} failed: {}", result.getId(), result.getError());
+                    }
+                }
+            } catch (DatabaseException | RuntimeException ex) {
+                LOG.error("Compensation of the unit of work failed", ex);
+            }
+        }
+    }
+
+    private ObjectNode readDocument(String documentString) {
+
+        try {
+            JsonNode document = this.jsonMapper.readTree(documentString);
+            if (!(document instanceof ObjectNode objectNode)) {
+                throw new IllegalArgumentException("Document must be a JSON object");
+            }
+            return objectNode;
+        } catch (JacksonException ex) {
+            throw new IllegalArgumentException("Document is no valid JSON", ex);
+        }
+    }
+
+    private record PendingWrite(String id, ObjectNode document, ObjectNode previous, boolean created,
+                                boolean shared) {
+    }
+}
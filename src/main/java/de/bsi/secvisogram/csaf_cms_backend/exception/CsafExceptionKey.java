@@ -13,5 +13,8 @@ public enum CsafExceptionKey {
     ErrorAccessingValidationServer,
     SummaryInHistoryEmpty,
     ErrorCreatingTrackingIdCounter,
-    DuplicateImport;
+    DuplicateImport,
+    AuditTrailNotFound,
+    DraftNotFound,
+    TooManyProductIdentifiers;
 }
@@ -1,15 +1,42 @@
 package de.bsi.secvisogram.csaf_cms_backend.json;
 
 import de.bsi.secvisogram.csaf_cms_backend.couchdb.AdvisoryAuditTrailField;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ArrayNode;
 import tools.jackson.databind.node.ObjectNode;
 
 /**
- * Wrapper around JsonNode to read and write audit trail objects for CSAF document changes from/to the CouchDB
+ * Wrapper around JsonNode to read and write audit trail objects for CSAF document changes from/to the CouchDB.
+ * <p>
+ * A change is stored as diff in JSON Patch format. The creation of an advisory is stored as snapshot of the
+ * created advisory instead of a diff against the empty advisory. Periodic checkpoints store a snapshot of the
+ * advisory after the change in addition to the diff. Diffs and snapshots larger than
+ * {@link #COMPRESSION_THRESHOLD} are stored gzip compressed. {@link #getDiffPatch()} and
+ * {@link #applyTo(AdvisoryWrapper)} expand all representations transparently.
  */
 public class AdvisoryAuditTrailDiffWrapper extends AdvisoryAuditTrailWrapper {
 
+    /**
+     * Size in bytes of the JSON of a diff or snapshot above which it is stored compressed
+     */
+    static final int COMPRESSION_THRESHOLD = 8 * 1024;
+
+    private int uncompressedSize;
+    private int storedSize;
+
     /**
      * Calculate a CSAF document diff in JSON Patch format for the given AdvisoryWrapper
      * and create an AuditTrailDocumentWrapper for this diff.
@@ -31,19 +58,278 @@ public class AdvisoryAuditTrailDiffWrapper extends AdvisoryAuditTrailWrapper {
         return wrapper;
     }
 
+    /**
+     * Create an AuditTrailDocumentWrapper for the creation of an advisory. The created advisory is stored as
+     * snapshot, so no diff against the empty advisory has to be calculated.
+     * @param createdAdvisory the created advisory
+     * @return the new wrapper
+     */
+    public static AdvisoryAuditTrailDiffWrapper createNewFromCreatedAdvisory(AdvisoryWrapper createdAdvisory) {
+
+        ObjectNode rootNode = new JsonMapper().createObjectNode();
+
+        AdvisoryAuditTrailDiffWrapper wrapper =  new AdvisoryAuditTrailDiffWrapper(rootNode)
+                .setSnapshot(createdAdvisory.getAdvisoryNode().deepCopy());
+        wrapper.setDocVersion(createdAdvisory.getDocumentTrackingVersion())
+                .setOldDocVersion("")
+                .setType(ObjectType.AuditTrailDocument)
+                .setCreatedAtToNow();
+        return wrapper;
+    }
+
+    /**
+     * Store the advisory after the change in addition to the diff, so the history can be reconstructed
+     * from this entry without replaying the earlier diffs
+     * @param changedAdvisory the advisory after the change
+     * @return this
+     */
+    public AdvisoryAuditTrailDiffWrapper addCheckpoint(AdvisoryWrapper changedAdvisory) {
+
+        return setSnapshot(changedAdvisory.getAdvisoryNode().deepCopy());
+    }
+
+    /**
+     * Merge a further update into this entry. The diff of the entry is extended by the diff of the update, so it
+     * leads from the advisory before the first merged update to the advisory after the given update. Replacements
+     * overwritten by a later operation are dropped from the combined diff.
+     * @param oldAdvisory the advisory before the update, it has to be the advisory after the change of this entry
+     * @param newAdvisory the advisory after the update
+     * @return this
+     */
+    public AdvisoryAuditTrailDiffWrapper mergeUpdate(AdvisoryWrapper oldAdvisory, AdvisoryWrapper newAdvisory) {
+
+        JsonNode combined = combinePatches(getDiffPatch(), oldAdvisory.calculateDiffTo(newAdvisory));
+        setDiffPatch(combined);
+        if (isCheckpoint()) {
+            setSnapshot(newAdvisory.getAdvisoryNode().deepCopy());
+        }
+        ObjectNode node = this.getAuditTrailNode();
+        node.put(AdvisoryAuditTrailField.CHANGE_COUNT.getDbName(), getChangeCount() + 1);
+        node.put(AdvisoryAuditTrailField.COALESCED_UNTIL.getDbName(), DateTimeFormatter.ISO_INSTANT.format(Instant.now()));
+        setDocVersion(newAdvisory.getDocumentTrackingVersion());
+        return this;
+    }
+
+    /**
+     * @return the number of updates recorded in this entry
+     */
+    public int getChangeCount() {
+
+        return this.getAuditTrailNode().path(AdvisoryAuditTrailField.CHANGE_COUNT.getDbName()).asInt(1);
+    }
+
+    /**
+     * Wrap an audit trail entry read from the CouchDB
+     * @param auditTrailNode the audit trail entry
+     * @return the wrapper
+     */
+    public static AdvisoryAuditTrailDiffWrapper createFromCouchDb(ObjectNode auditTrailNode) {
+
+        return new AdvisoryAuditTrailDiffWrapper(auditTrailNode);
+    }
+
     private AdvisoryAuditTrailDiffWrapper(ObjectNode auditTrailNode) {
         super(auditTrailNode);
     }
 
+    /**
+     * @return the diff of the change in JSON Patch format,
+     *     for a snapshot the diff from the empty advisory of the user to the snapshot
+     */
     public JsonNode getDiffPatch() {
 
-        return this.getAuditTrailNode().get(AdvisoryAuditTrailField.DIFF.getDbName());
+        JsonNode diff = readField(AdvisoryAuditTrailField.DIFF, AdvisoryAuditTrailField.DIFF_COMPRESSED);
+        JsonNode snapshot = (diff == null) ? getSnapshot() : null;
+        if (snapshot != null) {
+            try {
+                return AdvisoryWrapper.createInitialEmptyAdvisoryForUser(getUser()).calculateDiffTo(
+                        new AdvisoryWrapper((ObjectNode) snapshot));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return diff;
+    }
+
+    /**
+     * @return true if the entry holds a snapshot of the advisory after the change
+     */
+    public boolean isCheckpoint() {
+
+        return this.getAuditTrailNode().path(AdvisoryAuditTrailField.CHECKPOINT.getDbName()).asBoolean(false);
+    }
+
+    /**
+     * @return the advisory after the change, null if the entry holds only a diff
+     */
+    public JsonNode getSnapshot() {
+
+        return readField(AdvisoryAuditTrailField.SNAPSHOT, AdvisoryAuditTrailField.SNAPSHOT_COMPRESSED);
+    }
+
+    /**
+     * Apply the change of this entry to the advisory
+     * @param previousAdvisory the advisory before the change
+     * @return the advisory after the change
+     */
+    public AdvisoryWrapper applyTo(AdvisoryWrapper previousAdvisory) {
+
+        JsonNode snapshot = getSnapshot();
+        if (snapshot != null) {
+            return new AdvisoryWrapper((ObjectNode) snapshot.deepCopy());
+        }
+        return previousAdvisory.applyJsonPatch(getDiffPatch());
+    }
+
+    /**
+     * @return size in bytes of the JSON of the diff or snapshot last written by this wrapper
+     */
+    public int getUncompressedSize() {
+        return uncompressedSize;
+    }
+
+    /**
+     * @return size in bytes of the diff or snapshot as stored in the entry
+     */
+    public int getStoredSize() {
+        return storedSize;
     }
 
     private AdvisoryAuditTrailDiffWrapper setDiffPatch(JsonNode diff) {
 
-        this.getAuditTrailNode().set(AdvisoryAuditTrailField.DIFF.getDbName(), diff);
+        return writeField(AdvisoryAuditTrailField.DIFF, AdvisoryAuditTrailField.DIFF_COMPRESSED, diff);
+    }
+
+    private AdvisoryAuditTrailDiffWrapper setSnapshot(JsonNode snapshot) {
+
+        this.getAuditTrailNode().put(AdvisoryAuditTrailField.CHECKPOINT.getDbName(), true);
+        return writeField(AdvisoryAuditTrailField.SNAPSHOT, AdvisoryAuditTrailField.SNAPSHOT_COMPRESSED, snapshot);
+    }
+
+    private AdvisoryAuditTrailDiffWrapper writeField(AdvisoryAuditTrailField plainField,
+                                                     AdvisoryAuditTrailField compressedField, JsonNode value) {
+
+        this.getAuditTrailNode().remove(plainField.getDbName());
+        this.getAuditTrailNode().remove(compressedField.getDbName());
+        byte[] json = value.toString().getBytes(StandardCharsets.UTF_8);
+        this.uncompressedSize = json.length;
+        if (json.length > COMPRESSION_THRESHOLD) {
+            String compressed = compress(json);
+            this.storedSize = compressed.length();
+            this.getAuditTrailNode().put(compressedField.getDbName(), compressed);
+        } else {
+            this.storedSize = json.length;
+            this.getAuditTrailNode().set(plainField.getDbName(), value);
+        }
         return this;
     }
 
+    private JsonNode readField(AdvisoryAuditTrailField plainField, AdvisoryAuditTrailField compressedField) {
+
+        JsonNode compressed = this.getAuditTrailNode().get(compressedField.getDbName());
+        if (compressed != null && !compressed.isNull()) {
+            return decompress(compressed.asString());
+        }
+        return this.getAuditTrailNode().get(plainField.getDbName());
+    }
+
+    /**
+     * Concatenate the operations of both patches and drop the replacements that are overwritten later.
+     * Applying the result has the same effect as applying the first and then the second patch.
+     */
+    static ArrayNode combinePatches(JsonNode first, JsonNode second) {
+
+        List<JsonNode> operations = new ArrayList<>();
+        first.forEach(operations::add);
+        second.forEach(operations::add);
+        ArrayNode combined = new JsonMapper().createArrayNode();
+        for (int i = 0; i < operations.size(); i++) {
+            if (!isOverwrittenLater(operations, i)) {
+                combined.add(operations.get(i));
+            }
+        }
+        return combined;
+    }
+
+    /**
+     * A replacement is overwritten if a later operation replaces or removes its value or a parent of it, and no
+     * operation in between reads or changes the value, or shifts the array indices on its path.
+     */
+    private static boolean isOverwrittenLater(List<JsonNode> operations, int index) {
+
+        JsonNode operation = operations.get(index);
+        if (!"replace".equals(operation.path("op").asString())) {
+            return false;
+        }
+        String path = operation.path("path").asString();
+        for (JsonNode later : operations.subList(index + 1, operations.size())) {
+            String laterOp = later.path("op").asString();
+            String laterPath = later.path("path").asString();
+            if (("replace".equals(laterOp) || "remove".equals(laterOp)) && isSameOrParent(laterPath, path)) {
+                return true;
+            }
+            // adding, removing or moving an element may shift the array indices on the path
+            boolean structural = !"replace".equals(laterOp) && !"test".equals(laterOp);
+            if (isRelated(laterPath, path) || (structural && shiftsIndexOf(laterPath, path))) {
+                return false;
+            }
+            if (later.has("from")) {
+                String from = later.path("from").asString();
+                if (isRelated(from, path) || shiftsIndexOf(from, path)) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSameOrParent(String parent, String path) {
+        return path.equals(parent) || path.startsWith(parent + "/");
+    }
+
+    private static boolean isRelated(String path1, String path2) {
+        return isSameOrParent(path1, path2) || isSameOrParent(path2, path1);
+    }
+
+    /**
+     * Adding or removing an element at the given position shifts the following elements of its array. The path is
+     * affected if it continues with an array index below the parent of the position.
+     */
+    private static boolean shiftsIndexOf(String position, String path) {
+
+        String parent = parentOf(position);
+        if (!isSameOrParent(parent, path) || path.equals(parent)) {
+            return false;
+        }
+        String rest = path.substring(parent.length() + 1);
+        int separator = rest.indexOf('/');
+        String segment = (separator >= 0) ? rest.substring(0, separator) : rest;
+        return !segment.isEmpty() && segment.chars().allMatch(Character::isDigit);
+    }
+
+    private static String parentOf(String path) {
+        int lastSeparator = path.lastIndexOf('/');
+        return (lastSeparator > 0) ? path.substring(0, lastSeparator) : "";
+    }
+
+    private static String compress(byte[] json) {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(json);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    private static JsonNode decompress(String compressed) {
+
+        byte[] gzipped = Base64.getDecoder().decode(compressed);
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            return new JsonMapper().readTree(gzip);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
 }
@@ -0,0 +1,130 @@
+package de.bsi.secvisogram.csaf_cms_backend.json;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import de.bsi.secvisogram.csaf_cms_backend.rest.request.CreateAdvisoryRequest;
+import java.time.Instant;
+import tools.jackson.databind.JsonNode;
+
+/**
+ * Working copy of an advisory autosaved by a user in the CouchDB.
+ * There is at most one draft per advisory and user, its id is derived from both. The draft is stored as sent by the
+ * client, without versioning, revision history or audit trail. These are only created when the draft is committed
+ * to the advisory.
+ */
+public class AdvisoryDraft {
+
+    @JsonProperty("_id")
+    private String id;
+    @JsonProperty("_rev")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String rev;
+    @JsonProperty("type")
+    private final String type;
+    @JsonProperty("advisoryId")
+    private String advisoryId;
+    @JsonProperty("user")
+    private String user;
+    @JsonProperty("savedAt")
+    private String savedAt;
+    @JsonProperty("summary")
+    private String summary;
+    @JsonProperty("legacyVersion")
+    private String legacyVersion;
+    @JsonProperty("csaf")
+    private JsonNode csaf;
+
+    /**
+     * Create the draft of the given advisory and user, that has not been written to the database
+     * @param advisoryId the id of the advisory
+     * @param user the user editing the advisory
+     * @return the new draft
+     */
+    public static AdvisoryDraft create(String advisoryId, String user) {
+
+        AdvisoryDraft draft = new AdvisoryDraft();
+        draft.id = idOf(advisoryId, user);
+        draft.advisoryId = advisoryId;
+        draft.user = user;
+        return draft;
+    }
+
+    /**
+     * @param advisoryId the id of the advisory
+     * @param user the user editing the advisory
+     * @return the id of the draft of the given advisory and user
+     */
+    public static String idOf(String advisoryId, String user) {
+        return "DRAFT_" + advisoryId + "_" + user;
+    }
+
+    private AdvisoryDraft() {
+        this.type = ObjectType.AdvisoryDraft.name();
+    }
+
+    /**
+     * Replace the content of the draft
+     * @param request the changed advisory
+     * @param savedAt the time of the save
+     * @return this
+     */
+    public AdvisoryDraft setContent(CreateAdvisoryRequest request, Instant savedAt) {
+
+        this.summary = request.getSummary();
+        this.legacyVersion = request.getLegacyVersion();
+        this.csaf = request.getCsaf();
+        this.savedAt = savedAt.toString();
+        return this;
+    }
+
+    /**
+     * @return the content of the draft as request to update the advisory
+     */
+    public CreateAdvisoryRequest toRequest() {
+        return new CreateAdvisoryRequest(this.summary, this.legacyVersion).setCsaf(this.csaf);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getRev() {
+        return rev;
+    }
+
+    public AdvisoryDraft setRev(String rev) {
+        this.rev = rev;
+        return this;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getAdvisoryId() {
+        return advisoryId;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    /**
+     * @return the time of the last save as ISO instant
+     */
+    public String getSavedAt() {
+        return savedAt;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public String getLegacyVersion() {
+        return legacyVersion;
+    }
+
+    public JsonNode getCsaf() {
+        return csaf;
+    }
+}
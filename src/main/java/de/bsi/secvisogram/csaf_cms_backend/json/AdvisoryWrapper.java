@@ -22,13 +22,19 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.BiConsumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -242,15 +248,31 @@ public class AdvisoryWrapper {
         return wrapper;
     }
 
+    static final String BLOB_ID_PREFIX = "BLOB_";
+    private static final String PRODUCT_TREE = "product_tree";
+    private static final String VULNERABILITIES = "vulnerabilities";
+
     private final ObjectNode advisoryNode;
 
-    private AdvisoryWrapper(ObjectNode advisoryNode) {
+    AdvisoryWrapper(ObjectNode advisoryNode) {
 
         this.advisoryNode = advisoryNode;
     }
 
-    private JsonNode getAdvisoryNode() {
-        return advisoryNode;
+    /**
+     * @return the advisory without the normalized shadow fields, as it is compared and stored in the audit trail,
+     * the shadow fields are derived from the csaf on every write
+     */
+    JsonNode getAdvisoryNode() {
+
+        if (!this.advisoryNode.has(AdvisoryField.NORMALIZED.getDbName())) {
+            return advisoryNode;
+        }
+        ObjectNode withoutNormalized = this.advisoryNode.objectNode();
+        this.advisoryNode.properties().stream()
+                .filter(field -> !AdvisoryField.NORMALIZED.getDbName().equals(field.getKey()))
+                .forEach(field -> withoutNormalized.set(field.getKey(), field.getValue()));
+        return withoutNormalized;
     }
 
     public String getWorkflowStateString() {
@@ -360,6 +382,39 @@ public class AdvisoryWrapper {
         return this;
     }
 
+    /**
+     * @return number of changes since the last audit trail entry holding a snapshot of the advisory
+     */
+    public int getChangesSinceCheckpoint() {
+
+        return this.advisoryNode.path(AdvisoryField.CHANGES_SINCE_CHECKPOINT.getDbName()).asInt(0);
+    }
+
+    public AdvisoryWrapper setChangesSinceCheckpoint(int changes) {
+
+        this.advisoryNode.put(AdvisoryField.CHANGES_SINCE_CHECKPOINT.getDbName(), changes);
+        return this;
+    }
+
+    public String getOpenAuditTrailId() {
+
+        return this.advisoryNode.path(AdvisoryField.OPEN_AUDIT_TRAIL.getDbName()).asString(null);
+    }
+
+    /**
+     * @param auditTrailId the audit trail entry further updates may be merged into, null if a new entry is needed
+     * @return this
+     */
+    public AdvisoryWrapper setOpenAuditTrailId(String auditTrailId) {
+
+        if (auditTrailId != null) {
+            this.advisoryNode.put(AdvisoryField.OPEN_AUDIT_TRAIL.getDbName(), auditTrailId);
+        } else {
+            this.advisoryNode.remove(AdvisoryField.OPEN_AUDIT_TRAIL.getDbName());
+        }
+        return this;
+    }
+
     public boolean versionIsAfterInitialPublication() {
         if (usesSemanticVersioning()) {
             Semver semver = new Semver(this.getDocumentTrackingVersion());
@@ -502,7 +557,7 @@ public class AdvisoryWrapper {
 
     public String getDocumentPublisherName() {
 
-        JsonNode publisherNameNode = this.at("/csaf/document/publisher/name");
+        JsonNode publisherNameNode = this.at(AdvisorySearchField.DOCUMENT_PUBLISHER_NAME);
         return (publisherNameNode.isMissingNode()) ? null : publisherNameNode.asString();
     }
 
@@ -755,11 +810,121 @@ public class AdvisoryWrapper {
         return this;
     }
 
+    /**
+     * Move the product tree and each vulnerability from the csaf into blobs addressed by the hash of their
+     * content, so unchanged subtrees are stored only once for all versions of an advisory.
+     * The ids of the blobs are stored in the advisory instead.
+     *
+     * @return the content of the blobs by their id
+     */
+    public Map<String, JsonNode> moveSubtreesToBlobs() {
+
+        Map<String, JsonNode> blobsById = new LinkedHashMap<>();
+        ObjectNode csaf = (ObjectNode) getCsaf();
+        ObjectNode blobIds = this.advisoryNode.putObject(AdvisoryField.SUBTREE_BLOBS.getDbName());
+        JsonNode productTree = csaf.remove(PRODUCT_TREE);
+        if (productTree != null) {
+            String blobId = blobIdFor(productTree);
+            blobsById.put(blobId, productTree);
+            blobIds.put(PRODUCT_TREE, blobId);
+        }
+        JsonNode vulnerabilities = csaf.remove(VULNERABILITIES);
+        if (vulnerabilities != null) {
+            ArrayNode vulnerabilityIds = blobIds.putArray(VULNERABILITIES);
+            for (JsonNode vulnerability : vulnerabilities) {
+                String blobId = blobIdFor(vulnerability);
+                blobsById.put(blobId, vulnerability);
+                vulnerabilityIds.add(blobId);
+            }
+        }
+        return blobsById;
+    }
+
+    /**
+     * @return the ids of the blobs holding subtrees of the csaf, empty if the csaf is complete
+     */
+    public Set<String> getSubtreeBlobIds() {
+
+        Set<String> ids = new LinkedHashSet<>();
+        JsonNode blobIds = this.advisoryNode.path(AdvisoryField.SUBTREE_BLOBS.getDbName());
+        if (blobIds.hasNonNull(PRODUCT_TREE)) {
+            ids.add(blobIds.get(PRODUCT_TREE).asString());
+        }
+        blobIds.path(VULNERABILITIES).forEach(id -> ids.add(id.asString()));
+        return ids;
+    }
+
+    /**
+     * Put the subtrees moved by {@link #moveSubtreesToBlobs()} back into the csaf
+     *
+     * @param blobsById the content of the blobs by their id
+     * @return this
+     * @throws IllegalStateException if one of the blobs is missing
+     */
+    public AdvisoryWrapper restoreSubtreesFromBlobs(Map<String, JsonNode> blobsById) {
+
+        JsonNode blobIds = this.advisoryNode.remove(AdvisoryField.SUBTREE_BLOBS.getDbName());
+        if (blobIds == null) {
+            return this;
+        }
+        ObjectNode csaf = (ObjectNode) getCsaf();
+        if (blobIds.hasNonNull(PRODUCT_TREE)) {
+            csaf.set(PRODUCT_TREE, blobContent(blobsById, blobIds.get(PRODUCT_TREE).asString()));
+        }
+        if (blobIds.has(VULNERABILITIES)) {
+            ArrayNode vulnerabilities = csaf.putArray(VULNERABILITIES);
+            blobIds.get(VULNERABILITIES).forEach(id -> vulnerabilities.add(blobContent(blobsById, id.asString())));
+        }
+        return this;
+    }
+
+    private static JsonNode blobContent(Map<String, JsonNode> blobsById, String blobId) {
+
+        JsonNode content = blobsById.get(blobId);
+        if (content == null) {
+            throw new IllegalStateException("Missing subtree blob " + blobId);
+        }
+        return content.deepCopy();
+    }
+
+    /**
+     * @param content the content of a blob
+     * @return the id of the blob, derived from the SHA-256 hash of the content
+     */
+    static String blobIdFor(JsonNode content) {
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(content.toString().getBytes(StandardCharsets.UTF_8));
+            return BLOB_ID_PREFIX + HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+
     public String advisoryAsString() {
 
+        updateNormalizedFields(this.advisoryNode);
         return this.advisoryNode.toString();
     }
 
+    /**
+     * Set the {@link NormalizedSearchField normalized shadow fields} of an advisory document from its csaf,
+     * shadow fields of missing csaf fields are removed
+     *
+     * @param advisoryNode the advisory document as stored in the database
+     */
+    public static void updateNormalizedFields(ObjectNode advisoryNode) {
+
+        ObjectNode normalizedNode = advisoryNode.putObject(AdvisoryField.NORMALIZED.getDbName());
+        for (NormalizedSearchField field : NormalizedSearchField.values()) {
+            JsonNode sourceNode = advisoryNode.at("/" + String.join("/", field.getSourceField().getFieldPath()));
+            if (sourceNode.isString()) {
+                normalizedNode.put(field.getName(), NormalizedSearchField.normalize(sourceNode.asString()));
+            }
+        }
+    }
+
     public static AdvisoryInformationResponse convertToAdvisoryInfo(JsonNode doc, Map<DbField,
             BiConsumer<AdvisoryInformationResponse, String>> infoFields) {
         String advisoryId = doc.get(ID_FIELD.getDbName()).asString();
@@ -28,6 +28,19 @@ public class CommentAuditTrailWrapper extends AuditTrailWrapper {
         return this.getAuditTrailNode().get(CommentAuditTrailField.COMMENT_TEXT.getDbName()).asString();
     }
 
+    public String getAdvisoryId() {
+
+        return this.getAuditTrailNode().path(CommentAuditTrailField.ADVISORY_ID.getDbName()).asString(null);
+    }
+
+    public CommentAuditTrailWrapper setAdvisoryId(String newValue) {
+
+        if (newValue != null) {
+            this.getAuditTrailNode().put(CommentAuditTrailField.ADVISORY_ID.getDbName(), newValue);
+        }
+        return this;
+    }
+
     public CommentAuditTrailWrapper setCommentText(String newValue) {
 
         this.getAuditTrailNode().put(CommentAuditTrailField.COMMENT_TEXT.getDbName(), newValue);
@@ -46,6 +59,7 @@ public class CommentAuditTrailWrapper extends AuditTrailWrapper {
 
         CommentAuditTrailWrapper wrapper = new CommentAuditTrailWrapper(rootNode)
                 .setCommentId(comment.getCommentId())
+                .setAdvisoryId(comment.getAdvisoryId())
                 .setCommentText(comment.getText());
         wrapper.setType(ObjectType.CommentAuditTrail)
                 .setChangeType(ChangeType.Create)
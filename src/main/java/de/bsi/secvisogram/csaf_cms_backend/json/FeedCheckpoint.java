@@ -0,0 +1,77 @@
+package de.bsi.secvisogram.csaf_cms_backend.json;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Position of a task in the changes feed, stored next to the lease of the task, so the task continues after the
+ * last processed change after a restart and on every replica. The sequence is taken from the database unchanged,
+ * it is only passed back to the changes feed and never compared.
+ */
+public class FeedCheckpoint {
+
+    @JsonProperty("_id")
+    private String id;
+    @JsonProperty("_rev")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String rev;
+    @JsonProperty("type")
+    private final String type;
+    @JsonProperty("task")
+    private String task;
+    @JsonProperty("seq")
+    private String seq;
+
+    /**
+     * Create the checkpoint of the given task, that has not been written to the database
+     * @param task the name of the task
+     * @return the new checkpoint at the start of the changes feed
+     */
+    public static FeedCheckpoint create(String task) {
+
+        FeedCheckpoint checkpoint = new FeedCheckpoint();
+        checkpoint.id = "TASK_CHECKPOINT_" + task;
+        checkpoint.task = task;
+        checkpoint.seq = "0";
+        return checkpoint;
+    }
+
+    private FeedCheckpoint() {
+        this.type = ObjectType.FeedCheckpoint.name();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getRev() {
+        return rev;
+    }
+
+    public void setRev(String rev) {
+        this.rev = rev;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getTask() {
+        return task;
+    }
+
+    /**
+     * @return the sequence up to which all changes have been processed, "0" if nothing has been processed
+     */
+    public String getSeq() {
+        return seq;
+    }
+
+    /**
+     * Record the processed changes
+     * @param seq the sequence up to which all changes have been processed
+     */
+    public void advance(String seq) {
+        this.seq = seq;
+    }
+}
@@ -6,9 +6,15 @@ package de.bsi.secvisogram.csaf_cms_backend.json;
 public enum ObjectType {
     Advisory,
     AdvisoryVersion,
+    AdvisoryBlob,
+    AdvisoryDraft,
     AuditTrailDocument,
     AuditTrailWorkflow,
     Comment,
     CommentAuditTrail,
-    Counter
+    Counter,
+    FeedCheckpoint,
+    PublishOutbox,
+    PurgeCheckpoint,
+    TaskLease
 }
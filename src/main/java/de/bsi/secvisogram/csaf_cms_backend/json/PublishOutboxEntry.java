@@ -0,0 +1,156 @@
+package de.bsi.secvisogram.csaf_cms_backend.json;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.Instant;
+
+/**
+ * Upload of an advisory to one CSAF provider in the CouchDB.
+ * There is one entry for every advisory due for publication and every provider, it tracks the state of
+ * the upload, so failed uploads are retried with backoff and survive restarts.
+ */
+public class PublishOutboxEntry {
+
+    public enum State {
+        /** the upload has not been done yet or will be retried */
+        Pending,
+        /** the advisory was uploaded to the provider */
+        Uploaded,
+        /** the upload failed too often, it is retried when the advisory is set to AutoPublish again */
+        Failed
+    }
+
+    @JsonProperty("_id")
+    private String id;
+    @JsonProperty("_rev")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String rev;
+    @JsonProperty("type")
+    private final String type;
+    @JsonProperty("advisoryId")
+    private String advisoryId;
+    @JsonProperty("advisoryRevision")
+    private String advisoryRevision;
+    @JsonProperty("target")
+    private String target;
+    @JsonProperty("state")
+    private State state;
+    @JsonProperty("attempts")
+    private int attempts;
+    @JsonProperty("nextAttemptAt")
+    private String nextAttemptAt;
+    @JsonProperty("lastError")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String lastError;
+
+    /**
+     * Create a pending entry for the upload of the given advisory revision to the given target
+     * @param advisoryId the id of the advisory
+     * @param advisoryRevision the revision of the advisory when it became due
+     * @param target the name of the provider
+     * @return the new entry
+     */
+    public static PublishOutboxEntry create(String advisoryId, String advisoryRevision, String target) {
+
+        PublishOutboxEntry entry = new PublishOutboxEntry();
+        entry.id = "PUBLISH_OUTBOX_" + advisoryId + "_" + target;
+        entry.advisoryId = advisoryId;
+        entry.target = target;
+        entry.reset(advisoryRevision);
+        return entry;
+    }
+
+    private PublishOutboxEntry() {
+        this.type = ObjectType.PublishOutbox.name();
+    }
+
+    /**
+     * Start the upload again for the given advisory revision
+     * @param advisoryRevision the revision of the advisory
+     */
+    public void reset(String advisoryRevision) {
+        this.advisoryRevision = advisoryRevision;
+        this.state = State.Pending;
+        this.attempts = 0;
+        this.nextAttemptAt = Instant.EPOCH.toString();
+        this.lastError = null;
+    }
+
+    public void recordSuccess() {
+        this.state = State.Uploaded;
+        this.lastError = null;
+    }
+
+    /**
+     * Record a failed upload and compute the time of the next attempt with exponential backoff
+     * @param error the cause of the failure
+     * @param maxAttempts number of attempts after which the upload is not retried
+     * @param initialBackoff delay in milliseconds before the first retry
+     * @param maxBackoff maximum delay in milliseconds
+     */
+    public void recordFailure(String error, int maxAttempts, long initialBackoff, long maxBackoff) {
+        this.attempts++;
+        this.lastError = error;
+        if (this.attempts >= maxAttempts) {
+            this.state = State.Failed;
+        } else {
+            long backoff = initialBackoff << Math.min(this.attempts - 1, 30);
+            this.nextAttemptAt = Instant.now().plusMillis(Math.min(backoff, maxBackoff)).toString();
+        }
+    }
+
+    /**
+     * @param now the current time
+     * @return true if the upload is pending and its backoff has elapsed
+     */
+    public boolean isReady(Instant now) {
+        return this.state == State.Pending && !Instant.parse(this.nextAttemptAt).isAfter(now);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getRev() {
+        return rev;
+    }
+
+    public void setRev(String rev) {
+        this.rev = rev;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getAdvisoryId() {
+        return advisoryId;
+    }
+
+    public String getAdvisoryRevision() {
+        return advisoryRevision;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @return the earliest time of the next upload as ISO instant
+     */
+    public String getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+}
@@ -0,0 +1,90 @@
+package de.bsi.secvisogram.csaf_cms_backend.json;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Position of the purge of deleted documents in the changes feed, stored next to the lease of the task, so it
+ * survives restarts and is shared by all replicas. The sequences are taken from the database unchanged, they are
+ * only passed back to the changes feed and never compared.
+ */
+public class PurgeCheckpoint {
+
+    @JsonProperty("_id")
+    private String id;
+    @JsonProperty("_rev")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String rev;
+    @JsonProperty("type")
+    private final String type;
+    @JsonProperty("task")
+    private String task;
+    @JsonProperty("purgedSeq")
+    private String purgedSeq;
+    @JsonProperty("purgeUntilSeq")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String purgeUntilSeq;
+
+    /**
+     * Create the checkpoint of the given task, that has not been written to the database
+     * @param task the name of the task
+     * @return the new checkpoint, nothing has been purged yet
+     */
+    public static PurgeCheckpoint create(String task) {
+
+        PurgeCheckpoint checkpoint = new PurgeCheckpoint();
+        checkpoint.id = "TASK_CHECKPOINT_" + task;
+        checkpoint.task = task;
+        checkpoint.purgedSeq = "0";
+        return checkpoint;
+    }
+
+    private PurgeCheckpoint() {
+        this.type = ObjectType.PurgeCheckpoint.name();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getRev() {
+        return rev;
+    }
+
+    public void setRev(String rev) {
+        this.rev = rev;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getTask() {
+        return task;
+    }
+
+    /**
+     * @return the sequence up to which all deleted documents have been purged, "0" if nothing has been purged
+     */
+    public String getPurgedSeq() {
+        return purgedSeq;
+    }
+
+    /**
+     * @return the update sequence of the database at the previous run, documents deleted up to it are purged
+     * in the next run, null before the first run
+     */
+    public String getPurgeUntilSeq() {
+        return purgeUntilSeq;
+    }
+
+    /**
+     * Record a completed run
+     * @param purgedSeq the sequence up to which all deleted documents have been purged
+     * @param purgeUntilSeq the update sequence of the database at this run
+     */
+    public void advance(String purgedSeq, String purgeUntilSeq) {
+        this.purgedSeq = purgedSeq;
+        this.purgeUntilSeq = purgeUntilSeq;
+    }
+}
@@ -0,0 +1,94 @@
+package de.bsi.secvisogram.csaf_cms_backend.json;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.Instant;
+
+/**
+ * Lease of a scheduled task in the CouchDB.
+ * Only the replica that owns an unexpired lease runs the task. Every change of the lease is written with the
+ * revision read before, so of two replicas competing for the lease only one succeeds.
+ */
+public class TaskLease {
+
+    @JsonProperty("_id")
+    private String id;
+    @JsonProperty("_rev")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String rev;
+    @JsonProperty("type")
+    private final String type;
+    @JsonProperty("task")
+    private String task;
+    @JsonProperty("owner")
+    private String owner;
+    @JsonProperty("expiresAt")
+    private String expiresAt;
+
+    /**
+     * Create a lease of the given task, that has not been written to the database
+     * @param task the name of the task
+     * @return the new lease, it is already expired
+     */
+    public static TaskLease create(String task) {
+
+        TaskLease lease = new TaskLease();
+        lease.id = "TASK_LEASE_" + task;
+        lease.task = task;
+        lease.expiresAt = Instant.EPOCH.toString();
+        return lease;
+    }
+
+    private TaskLease() {
+        this.type = ObjectType.TaskLease.name();
+    }
+
+    /**
+     * Assign the lease to the given owner
+     * @param owner the id of the replica
+     * @param expiresAt the time the lease expires without renewal
+     */
+    public void assign(String owner, Instant expiresAt) {
+        this.owner = owner;
+        this.expiresAt = expiresAt.toString();
+    }
+
+    /**
+     * @param now the current time
+     * @return true if the lease is no longer valid and can be taken by every replica
+     */
+    public boolean isExpired(Instant now) {
+        return !Instant.parse(this.expiresAt).isAfter(now);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getRev() {
+        return rev;
+    }
+
+    public void setRev(String rev) {
+        this.rev = rev;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getTask() {
+        return task;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * @return the time the lease expires as ISO instant
+     */
+    public String getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,11 @@
+package de.bsi.secvisogram.csaf_cms_backend.model;
+
+/**
+ * Kind of change of an advisory that is pushed to the subscribers of the advisory event stream
+ */
+public enum AdvisoryChangeType {
+    Created,
+    Updated,
+    WorkflowStateChanged,
+    Deleted
+}
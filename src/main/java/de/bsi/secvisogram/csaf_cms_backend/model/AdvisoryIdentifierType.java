@@ -0,0 +1,24 @@
+package de.bsi.secvisogram.csaf_cms_backend.model;
+
+/**
+ * Identifiers in the csaf of an advisory that can be looked up in the identifier index
+ */
+public enum AdvisoryIdentifierType {
+
+    /**
+     * the CVE id of a vulnerability
+     */
+    Cve,
+    /**
+     * the CWE id of the weakness of a vulnerability
+     */
+    Cwe,
+    /**
+     * the product_id of a full product name in the product tree
+     */
+    ProductId,
+    /**
+     * the name of a full product name in the product tree, compared ignoring case
+     */
+    ProductName
+}
@@ -0,0 +1,24 @@
+package de.bsi.secvisogram.csaf_cms_backend.model;
+
+/**
+ * How a product identifier from an SBOM matches a product in the product tree of an advisory
+ */
+public enum ProductMatchType {
+
+    /**
+     * the versions of the identifier and the product are equal
+     */
+    Version,
+    /**
+     * the version of the identifier is in the version range of the product
+     */
+    VersionRange,
+    /**
+     * the identifier or the product has no version, or the version range of the product can not be evaluated
+     */
+    Package,
+    /**
+     * the identifier is a hash of a file of the product
+     */
+    Hash
+}
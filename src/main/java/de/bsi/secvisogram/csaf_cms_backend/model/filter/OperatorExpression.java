@@ -1,8 +1,12 @@
 package de.bsi.secvisogram.csaf_cms_backend.model.filter;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.List;
+
 /**
  * Expression which describes an Expression that compares a Property with a Value by a defined Operator
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class OperatorExpression implements Expression {
 
     public static OperatorExpression containsIgnoreCase(String value, String ... path) {
@@ -50,9 +54,40 @@ public class OperatorExpression implements Expression {
         return new OperatorExpression(path, TypeOfOperator.Less, value, TypeOfValue.Text);
     }
 
+    public static OperatorExpression in(List<String> values, String ... path) {
+
+        return new OperatorExpression(path, TypeOfOperator.In, values, TypeOfValue.Text);
+    }
+
+    public static OperatorExpression exists(boolean value, String ... path) {
+
+        return new OperatorExpression(path, TypeOfOperator.Exists, value ? "true" : "false", TypeOfValue.Boolean);
+    }
+
+    public static OperatorExpression startsWith(String value, String ... path) {
+
+        return new OperatorExpression(path, TypeOfOperator.StartsWith, value, TypeOfValue.Text);
+    }
+
+    public static OperatorExpression between(String from, String to, String ... path) {
+
+        return new OperatorExpression(path, TypeOfOperator.Between, List.of(from, to), TypeOfValue.Text);
+    }
+
+    public static OperatorExpression equalIgnoreCase(String value, String ... path) {
+
+        return new OperatorExpression(path, TypeOfOperator.EqualIgnoreCase, value, TypeOfValue.Text);
+    }
+
+    public static OperatorExpression startsWithIgnoreCase(String value, String ... path) {
+
+        return new OperatorExpression(path, TypeOfOperator.StartsWithIgnoreCase, value, TypeOfValue.Text);
+    }
+
     private String[] selector;
     private TypeOfOperator operatorType;
     private String value;
+    private List<String> values;
     private TypeOfValue valueType;
 
     public OperatorExpression() {
@@ -67,6 +102,19 @@ public class OperatorExpression implements Expression {
         this.valueType = valueType;
     }
 
+    /**
+     * Create an expression with several values, for the operators {@link TypeOfOperator#In} and
+     * {@link TypeOfOperator#Between}
+     */
+    public OperatorExpression(String[] selector, TypeOfOperator operatorType, List<String> values,
+                              TypeOfValue valueType) {
+        super();
+        this.selector = selector.clone();
+        this.operatorType = operatorType;
+        this.values = List.copyOf(values);
+        this.valueType = valueType;
+    }
+
     public String[] getSelector() {
         return selector.clone();
     }
@@ -79,6 +127,14 @@ public class OperatorExpression implements Expression {
         return this.value;
     }
 
+    /**
+     * @return the values of the operators {@link TypeOfOperator#In} and {@link TypeOfOperator#Between}, the lower
+     * and upper bound for the latter, null for the other operators
+     */
+    public List<String> getValues() {
+        return this.values;
+    }
+
     public TypeOfValue getValueType() {
         return valueType;
     }
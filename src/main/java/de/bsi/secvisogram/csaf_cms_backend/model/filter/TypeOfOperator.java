@@ -7,5 +7,31 @@ public enum TypeOfOperator {
     GreaterOrEqual,
     Less,
     LessOrEqual,
-    ContainsIgnoreCase
+    ContainsIgnoreCase,
+    /**
+     * the property is equal to one of the values
+     */
+    In,
+    /**
+     * the property exists if the boolean value is true, is missing otherwise
+     */
+    Exists,
+    /**
+     * the property starts with the value, compared case-sensitive
+     */
+    StartsWith,
+    /**
+     * the property is between the two values, both included
+     */
+    Between,
+    /**
+     * the property is equal to the value, compared ignoring case, diacritics are only ignored for the fields
+     * with a {@link de.bsi.secvisogram.csaf_cms_backend.couchdb.NormalizedSearchField}
+     */
+    EqualIgnoreCase,
+    /**
+     * the property starts with the value, compared ignoring case, diacritics are only ignored for the fields
+     * with a {@link de.bsi.secvisogram.csaf_cms_backend.couchdb.NormalizedSearchField}
+     */
+    StartsWithIgnoreCase
 }
@@ -1,28 +1,89 @@
 package de.bsi.secvisogram.csaf_cms_backend.model.template;
 
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
 import de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.io.IOException;
-import java.nio.file.FileSystem;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.access.annotation.Secured;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.json.JsonMapper;
 
 /**
- * Service to load all templates or the content of a specific template
+ * Service to load all templates or the content of a specific template.
+ * The template index and the template contents are cached in memory. The cache is replaced by an empty one
+ * when a file in one of the template directories changes, so changed templates are served without restart.
+ * The content and the entity tag of a template are read together into an immutable {@link TemplateContent},
+ * so a response never combines the content of one version of the file with the entity tag of another.
  */
 @Service
 public class DocumentTemplateService {
 
+    private static final Logger LOG = LoggerFactory.getLogger(DocumentTemplateService.class);
+
     @Value("${csaf.document.templates.file}")
     private String templatesFile;
 
+    // replaced on every file change, loads that started before a change only fill the replaced cache
+    private volatile TemplateCache cache = new TemplateCache();
+    private final Set<Path> watchedDirectories = ConcurrentHashMap.newKeySet();
+    private volatile WatchService watchService;
+
+    /**
+     * Start watching the template directory for changes. Without a watcher the templates are not cached.
+     */
+    @PostConstruct
+    void startWatching() {
+
+        Path parentPath = (templatesFile == null || templatesFile.isBlank()) ? null : getTemplatesDirectory();
+        if (parentPath == null || !Files.isDirectory(parentPath)) {
+            LOG.info("Template directory not found, templates are not cached");
+            return;
+        }
+        try {
+            this.watchService = parentPath.getFileSystem().newWatchService();
+            watchDirectory(parentPath);
+            Thread watcherThread = new Thread(this::watchForChanges, "Template-Watcher");
+            watcherThread.setDaemon(true);
+            watcherThread.start();
+        } catch (IOException | UnsupportedOperationException ex) {
+            LOG.warn("Could not watch template directory, templates are not cached", ex);
+            this.watchService = null;
+        }
+    }
+
+    @PreDestroy
+    void stopWatching() {
+
+        if (this.watchService != null) {
+            try {
+                this.watchService.close();
+            } catch (IOException ex) {
+                LOG.warn("Error closing template watcher", ex);
+            }
+            this.watchService = null;
+        }
+    }
 
     /**
      * Read all templates from the template file
@@ -31,13 +92,31 @@ public class DocumentTemplateService {
      */
     @Secured({CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUDITOR})
     public DocumentTemplateDescription[] getAllTemplates() throws IOException {
-    	
-        Path templateFilePath = Path.of(templatesFile);
-        String templatesJson = Files.readString(templateFilePath);
 
-        return DocumentTemplateReader.json2TemplateDescriptions(templatesJson);
+        return getTemplateIndex().descriptions();
     }
 
+    /**
+     * Read all templates from the template file together with the entity tag of the file
+     * @return all templates and the entity tag, it changes whenever the template file changes
+     * @throws IOException error reading the files
+     */
+    @Secured({CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUDITOR})
+    public TemplateIndex getTemplateIndex() throws IOException {
+
+        TemplateCache currentCache = this.cache;
+        TemplateIndex index = currentCache.index;
+        if (index == null) {
+            byte[] templatesJson = Files.readAllBytes(Path.of(templatesFile));
+            index = new TemplateIndex(
+                    DocumentTemplateReader.json2TemplateDescriptions(new String(templatesJson, StandardCharsets.UTF_8)),
+                    DigestUtils.md5DigestAsHex(templatesJson));
+            if (isCaching()) {
+                currentCache.index = index;
+            }
+        }
+        return index;
+    }
 
     /**
      * Get template filename of the template with the given Id
@@ -47,7 +126,7 @@ public class DocumentTemplateService {
     @Secured({CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUDITOR})
     public Optional<String> getTemplateFileName(String templateId) throws IOException {
 
-        return Arrays.stream(this.getAllTemplates())
+        return Arrays.stream(getTemplateIndex().descriptions())
                 .filter(template -> template.getId().equals(templateId))
                 .map(DocumentTemplateDescription::getFile)
                 .findFirst();
@@ -61,17 +140,125 @@ public class DocumentTemplateService {
      */
     public Optional<JsonNode> getTemplate(String templateId) throws IOException {
 
+        return getTemplateContent(templateId).map(TemplateContent::template);
+    }
+
+    /**
+     * Reads the template with given ID together with the entity tag of its file
+     * @param templateId the ID of the template to read
+     * @return the template and the entity tag, empty if there is no template with this ID
+     * @throws IOException when there are errors reading the file
+     */
+    public Optional<TemplateContent> getTemplateContent(String templateId) throws IOException {
+
+        TemplateCache currentCache = this.cache;
+        TemplateContent content = currentCache.contents.get(templateId);
+        if (content != null) {
+            return Optional.of(content);
+        }
+
         Optional<String> relativeFileName = getTemplateFileName(templateId);
         if (relativeFileName.isPresent()) {
-            Path parentPath = Path.of(templatesFile).getParent();
+            Path parentPath = getTemplatesDirectory();
             if (parentPath == null) {
                 throw new IOException("Could not find directory containing templates!");
             }
             Path templatePath = parentPath.resolve(relativeFileName.get());
             final ObjectMapper jacksonMapper = new JsonMapper();
-            return Optional.of(jacksonMapper.readValue(Files.readAllBytes(templatePath), JsonNode.class));
+            byte[] templateBytes = Files.readAllBytes(templatePath);
+            content = new TemplateContent(jacksonMapper.readValue(templateBytes, JsonNode.class),
+                    DigestUtils.md5DigestAsHex(templateBytes));
+            if (isCaching()) {
+                watchDirectory(templatePath.toAbsolutePath().getParent());
+                currentCache.contents.put(templateId, content);
+            }
+            return Optional.of(content);
         }
         return Optional.empty();
     }
 
+    /**
+     * Drop the cached templates, the next requests read the files again
+     */
+    void reloadTemplates() {
+
+        LOG.info("Template files changed, reloading templates");
+        this.cache = new TemplateCache();
+    }
+
+    private Path getTemplatesDirectory() {
+        return Path.of(templatesFile).toAbsolutePath().getParent();
+    }
+
+    private boolean isCaching() {
+        return this.watchService != null;
+    }
+
+    private void watchDirectory(Path directory) throws IOException {
+
+        if (directory != null && this.watchedDirectories.add(directory)) {
+            directory.register(this.watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        }
+    }
+
+    private void watchForChanges() {
+
+        try {
+            while (true) {
+                WatchKey key = this.watchService.take();
+                // drop the events, every change invalidates the whole cache
+                key.pollEvents();
+                reloadTemplates();
+                if (!key.reset()) {
+                    this.watchedDirectories.remove((Path) key.watchable());
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ex) {
+            LOG.debug("Template watcher closed");
+        }
+    }
+
+    /**
+     * The descriptions of all templates and the entity tag of the template file they were read from
+     */
+    public record TemplateIndex(DocumentTemplateDescription[] descriptions, String etag) {
+
+        public TemplateIndex {
+            descriptions = descriptions.clone();
+        }
+
+        @Override
+        public DocumentTemplateDescription[] descriptions() {
+            return descriptions.clone();
+        }
+    }
+
+    /**
+     * The content of a template and the entity tag of the file it was read from
+     */
+    public record TemplateContent(JsonNode template, String etag) {
+
+        public TemplateContent {
+            template = template.deepCopy();
+        }
+
+        /**
+         * @return a copy of the template, the cached template is not affected by changes of the returned node
+         */
+        @Override
+        public JsonNode template() {
+            return template.deepCopy();
+        }
+    }
+
+    /**
+     * The templates read since the last change of the files
+     */
+    private static final class TemplateCache {
+
+        private volatile TemplateIndex index;
+        private final Map<String, TemplateContent> contents = new ConcurrentHashMap<>();
+    }
 }
@@ -6,21 +6,34 @@ import de.bsi.secvisogram.csaf_cms_backend.SecvisogramApplication;
 import de.bsi.secvisogram.csaf_cms_backend.couchdb.DatabaseException;
 import de.bsi.secvisogram.csaf_cms_backend.couchdb.IdNotFoundException;
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
+import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
+import de.bsi.secvisogram.csaf_cms_backend.model.AdvisoryIdentifierType;
 import de.bsi.secvisogram.csaf_cms_backend.model.DocumentTrackingStatus;
 import de.bsi.secvisogram.csaf_cms_backend.model.ExportFormat;
 import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
 import de.bsi.secvisogram.csaf_cms_backend.model.template.DocumentTemplateService;
 import de.bsi.secvisogram.csaf_cms_backend.rest.request.CreateAdvisoryRequest;
 import de.bsi.secvisogram.csaf_cms_backend.rest.request.CreateCommentRequest;
+import de.bsi.secvisogram.csaf_cms_backend.rest.request.MatchProductsRequest;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryChangeEventResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryDraftResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryHistoryResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryTemplateInfoResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AffectedProductResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.AnswerInformationResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AuditTrailPageResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.error.ApiError;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.CommentInformationResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.CommentThreadsResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.EntityCreateResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.EntityUpdateResponse;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryEventService;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryProductIndex;
 import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryService;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryTextIndex;
+import de.bsi.secvisogram.csaf_cms_backend.service.AuditTrailQuery;
 import de.bsi.secvisogram.csaf_cms_backend.service.IdAndRevision;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -48,6 +61,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -57,11 +71,13 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import tools.jackson.core.JacksonException;
 import tools.jackson.databind.JsonNode;
 
@@ -87,6 +103,9 @@ public class AdvisoryController {
     @Autowired
     private DocumentTemplateService templateService;
 
+    @Autowired
+    private AdvisoryEventService advisoryEventService;
+
     /**
      * Read all advisories, optionally filtered by a search expression
      *
@@ -144,17 +163,32 @@ public class AdvisoryController {
                               "value" : "title1",
                               "valueType" : "Text"
                             }.
-                             Possible operatorType's: 'Equal', 'NotEqual', 'Greater', 'GreaterOrEqual', 'Less', 'LessOrEqual', 'ContainsIgnoreCase'.
+                             Possible operatorType's: 'Equal', 'NotEqual', 'Greater', 'GreaterOrEqual', 'Less', 'LessOrEqual', 'ContainsIgnoreCase',
+                             'In', 'Exists', 'StartsWith', 'Between', 'EqualIgnoreCase', 'StartsWithIgnoreCase'. 'In' and 'Between' take a list
+                             of 'values' instead of a 'value', 'Between' the lower and upper bound, both included. 'Exists' takes the value 'true'
+                             or 'false'. 'StartsWith' compares case-sensitive. Unlike 'ContainsIgnoreCase' these operators can use the database indexes.
+                             'EqualIgnoreCase' and 'StartsWithIgnoreCase' ignore case. For the title, the tracking id and the publisher name of the
+                             document they also ignore diacritics and use an index, for all other attributes they compare the diacritics and
+                             cannot use an index.
                              Possible valueType's: 'Text', 'Decimal', 'Boolean'. You can search for all attributes in 'csaf/document""",
                     schema = @Schema(type = "string", format = "json",
                             description = "An optional expression in JSON to filter documents by.")
             )
-            String expression
+            String expression,
+            @RequestParam(required = false, defaultValue = "false")
+            @Parameter(in = ParameterIn.QUERY, name = "withCounts",
+                    description = "Add the number of comments, answers and audit trail entries to each advisory."
+                            + " Comment and answer counts are only added if the user may view the comments of the advisory,"
+                            + " audit trail counts only for auditors.")
+            boolean withCounts
     ) {
 
         LOG.debug("findAdvisories");
         try {
-            return ResponseEntity.ok(advisoryService.getAdvisoryInformations(expression));
+            List<AdvisoryInformationResponse> advisories = withCounts
+                    ? advisoryService.getAdvisoryInformations(expression, true)
+                    : advisoryService.getAdvisoryInformations(expression);
+            return ResponseEntity.ok(advisories);
         } catch (IOException e) {
             LOG.info("Error reading Advisory");
             return ResponseEntity.internalServerError().build();
@@ -163,6 +197,217 @@ public class AdvisoryController {
         }
     }
 
+    /**
+     * Search the texts of all advisories visible to the logged in user
+     *
+     * @param q     the terms to search for
+     * @param limit the maximum number of advisories to return
+     * @return response with the matching advisories, best match first
+     */
+    @GetMapping("/search")
+    @Operation(
+      summary = "Search the text of authorized advisories.",
+      tags = {"Advisory"},
+      description = "Full-text search in all texts of the CSAF documents for which the logged in user is authorized."
+                    + " All terms have to match. A term ending with * matches words starting with the term, a term in"
+                    + " double quotes matches the words in this order. The advisories are ranked by relevance."
+    )
+    @ApiResponses(value = {
+      @ApiResponse(
+        responseCode = "200",
+        description = "The matching advisories, best match first.",
+        content = {
+          @Content(
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            array = @ArraySchema(
+              schema = @Schema(implementation = AdvisoryInformationResponse.class)
+            )
+          )
+        }
+      ),
+      @ApiResponse(
+        responseCode = "400",
+        description = "Empty search query."
+      ),
+      @ApiResponse(
+        responseCode = "401",
+        description = "Unauthorized access."
+      ),
+      @ApiResponse(
+        responseCode = "500",
+        description = "Error reading advisories"
+      )
+    })
+    public ResponseEntity<List<AdvisoryInformationResponse>> searchCsafDocuments(
+            @RequestParam
+            @Parameter(in = ParameterIn.QUERY, description = "The terms to search for.",
+                    example = "openssl \"remote code execution\" CVE-2024-*")
+            String q,
+            @RequestParam(defaultValue = "" + AdvisoryTextIndex.DEFAULT_LIMIT)
+            @Parameter(in = ParameterIn.QUERY, description = "The maximum number of advisories to return, at most "
+                    + AdvisoryTextIndex.MAX_LIMIT + ".")
+            int limit
+    ) {
+
+        LOG.debug("searchAdvisories");
+        try {
+            return ResponseEntity.ok(advisoryService.searchAdvisories(q, limit));
+        } catch (IOException e) {
+            LOG.info("Error reading Advisory");
+            return ResponseEntity.internalServerError().build();
+        } catch (CsafException ex) {
+            return apiError(ex.getRecommendedHttpState(), ex.getMessage());
+        }
+    }
+
+    /**
+     * Find the advisories visible to the logged in user containing a CVE, CWE, product id or product name
+     *
+     * @param type  the type of the identifier
+     * @param value the identifier
+     * @return response with the matching advisories
+     */
+    @GetMapping("/lookup")
+    @Operation(
+      summary = "Find the authorized advisories containing an identifier.",
+      tags = {"Advisory"},
+      description = "Find the CSAF documents for which the logged in user is authorized that contain the given CVE id"
+                    + " or CWE id of a vulnerability, or the given product id or product name in the product tree."
+                    + " CVE ids, CWE ids and product names are compared ignoring case."
+    )
+    @ApiResponses(value = {
+      @ApiResponse(
+        responseCode = "200",
+        description = "The advisories containing the identifier.",
+        content = {
+          @Content(
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            array = @ArraySchema(
+              schema = @Schema(implementation = AdvisoryInformationResponse.class)
+            )
+          )
+        }
+      ),
+      @ApiResponse(
+        responseCode = "400",
+        description = "Empty identifier."
+      ),
+      @ApiResponse(
+        responseCode = "401",
+        description = "Unauthorized access."
+      ),
+      @ApiResponse(
+        responseCode = "500",
+        description = "Error reading advisories"
+      )
+    })
+    public ResponseEntity<List<AdvisoryInformationResponse>> lookupCsafDocuments(
+            @RequestParam
+            @Parameter(in = ParameterIn.QUERY, description = "The type of the identifier.")
+            AdvisoryIdentifierType type,
+            @RequestParam
+            @Parameter(in = ParameterIn.QUERY, description = "The identifier.", example = "CVE-2024-1234")
+            String value
+    ) {
+
+        LOG.debug("lookupAdvisories");
+        try {
+            return ResponseEntity.ok(advisoryService.lookupAdvisories(type, value));
+        } catch (IOException e) {
+            LOG.info("Error reading Advisory");
+            return ResponseEntity.internalServerError().build();
+        } catch (CsafException ex) {
+            return apiError(ex.getRecommendedHttpState(), ex.getMessage());
+        }
+    }
+
+    /**
+     * Find the products of the advisories visible to the logged in user matching the given product identifiers
+     *
+     * @param request the purls, CPEs or file hashes to match
+     * @return response with the matching products
+     */
+    @PostMapping("/products/match")
+    @Operation(
+      summary = "Match product identifiers against the product trees of authorized advisories.",
+      tags = {"Advisory"},
+      description = "Find the products in the product trees of the CSAF documents for which the logged in user is"
+                    + " authorized that match the given purls, CPEs or file hashes, for example the components of an"
+                    + " SBOM. The product identification helpers of the products are compared by package, and the"
+                    + " versions by equality or by the vers range of an enclosing product_version_range branch."
+                    + " At most " + AdvisoryProductIndex.MAX_IDENTIFIERS + " identifiers can be matched in one call."
+    )
+    @ApiResponses(value = {
+      @ApiResponse(
+        responseCode = "200",
+        description = "The matching products, in the order of the identifiers.",
+        content = {
+          @Content(
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            array = @ArraySchema(
+              schema = @Schema(implementation = AffectedProductResponse.class)
+            )
+          )
+        }
+      ),
+      @ApiResponse(
+        responseCode = "400",
+        description = "No or too many identifiers."
+      ),
+      @ApiResponse(
+        responseCode = "401",
+        description = "Unauthorized access."
+      )
+    })
+    public ResponseEntity<List<AffectedProductResponse>> matchProducts(@RequestBody MatchProductsRequest request) {
+
+        LOG.debug("matchProducts");
+        try {
+            return ResponseEntity.ok(advisoryService.matchProducts(request.getIdentifiers()));
+        } catch (CsafException ex) {
+            return apiError(ex.getRecommendedHttpState(), ex.getMessage());
+        }
+    }
+
+    /**
+     * Subscribe to the changes of all advisories visible to the logged in user
+     *
+     * @return stream of advisory change events
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+      summary = "Subscribe to changes of authorized advisories.",
+      tags = {"Advisory"},
+      description = "Server-Sent Events stream of created, updated, deleted advisories and workflow state changes."
+                    + " Only advisories the logged in user is authorized for are sent, the event data contains"
+                    + " the new list entry of the advisory. Advisories that are no longer visible to the user"
+                    + " are sent as 'Deleted' event. Clients can read the list once and keep it current by this stream."
+                    + " The stream only contains the changes made on the backend instance the client is connected"
+                    + " to. When several instances share the database, clients should also read the list again"
+                    + " periodically and after reconnecting."
+    )
+    @ApiResponses(value = {
+      @ApiResponse(
+        responseCode = "200",
+        description = "Stream of advisory change events.",
+        content = {
+          @Content(
+            mediaType = MediaType.TEXT_EVENT_STREAM_VALUE,
+            schema = @Schema(implementation = AdvisoryChangeEventResponse.class)
+          )
+        }
+      ),
+      @ApiResponse(
+        responseCode = "401",
+        description = "Unauthorized access."
+      )
+    })
+    public SseEmitter subscribeAdvisoryEvents() {
+
+        LOG.debug("subscribeAdvisoryEvents");
+        return advisoryEventService.subscribe();
+    }
+
 
     /**
      * Get a single advisory
@@ -417,6 +662,227 @@ public class AdvisoryController {
 
     }
 
+    /**
+     * Autosave the working copy of a CSAF document of the current user
+     *
+     * @param advisoryId      ID of the CSAF document
+     * @param revision        optimistic locking revision of the draft, missing to start a new draft
+     * @param changedCsafJson the changed CSAF document
+     * @return response with the new optimistic locking revision of the draft
+     */
+    @PutMapping(value = "/{advisoryId}/draft", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Autosave a draft of an advisory.",
+               tags = {"Advisory"},
+               description = "Store the working copy of a CSAF document of the current user as it is. The"
+                   + " advisory itself is not changed: there is no versioning, no revision history and no audit"
+                   + " trail until the draft is committed.")
+    @ApiResponses(value = {
+        @ApiResponse(
+          responseCode = "200",
+          description = "Revision of the saved draft.",
+          content = {
+            @Content(
+              mediaType = MediaType.APPLICATION_JSON_VALUE,
+              schema = @Schema(implementation = EntityUpdateResponse.class)
+            )
+          }
+        ),
+        @ApiResponse(
+          responseCode = "401",
+          description = "Unauthorized access."
+        ),
+        @ApiResponse(
+          responseCode = "404",
+          description = "Advisory not found or draft changed concurrently."
+        ),
+        @ApiResponse(
+          responseCode = "500",
+          description = "Error storing or reading database."
+        )
+      })
+    public ResponseEntity<EntityUpdateResponse> saveDraft(
+            @PathVariable
+            @Parameter(in = ParameterIn.PATH, description = "The ID of the advisory to save the draft of.")
+            String advisoryId,
+            @RequestParam(required = false)
+            @Parameter(description = "The optimistic locking revision of the draft, missing to start a new draft.")
+            String revision,
+            @RequestBody
+            CreateAdvisoryRequest changedCsafJson
+    ) {
+
+        LOG.debug("saveDraft");
+        checkValidUuid(advisoryId);
+        try {
+            return ResponseEntity.ok(new EntityUpdateResponse(advisoryService.saveDraft(advisoryId, revision, changedCsafJson)));
+        } catch (DatabaseException dbEx) {
+            return ResponseEntity.notFound().build();
+        } catch (AccessDeniedException adEx) {
+            return apiError(HttpStatus.UNAUTHORIZED, adEx.getMessage());
+        } catch (CsafException ex) {
+            return apiError(ex.getRecommendedHttpState(), ex.getMessage());
+        }
+    }
+
+    /**
+     * Read the autosaved working copy of a CSAF document of the current user
+     *
+     * @param advisoryId ID of the CSAF document
+     * @return the draft
+     */
+    @GetMapping("/{advisoryId}/draft")
+    @Operation(summary = "Get the draft of an advisory.",
+               tags = {"Advisory"},
+               description = "Get the autosaved working copy of a CSAF document of the current user.")
+    @ApiResponses(value = {
+        @ApiResponse(
+          responseCode = "200",
+          description = "The draft.",
+          content = {
+            @Content(
+              mediaType = MediaType.APPLICATION_JSON_VALUE,
+              schema = @Schema(implementation = AdvisoryDraftResponse.class)
+            )
+          }
+        ),
+        @ApiResponse(
+          responseCode = "401",
+          description = "Unauthorized access."
+        ),
+        @ApiResponse(
+          responseCode = "404",
+          description = "There is no draft of the advisory."
+        )
+      })
+    public ResponseEntity<AdvisoryDraftResponse> readDraft(
+            @PathVariable
+            @Parameter(in = ParameterIn.PATH, description = "The ID of the advisory to read the draft of.")
+            String advisoryId
+    ) throws IOException {
+
+        LOG.debug("readDraft");
+        checkValidUuid(advisoryId);
+        try {
+            return ResponseEntity.ok(advisoryService.getDraft(advisoryId));
+        } catch (AccessDeniedException adEx) {
+            return apiError(HttpStatus.UNAUTHORIZED, adEx.getMessage());
+        } catch (CsafException ex) {
+            return apiError(ex.getRecommendedHttpState(), ex.getMessage());
+        }
+    }
+
+    /**
+     * Apply the autosaved working copy of the current user to the CSAF document
+     *
+     * @param advisoryId ID of the CSAF document to change
+     * @param revision   optimistic locking revision of the CSAF document
+     * @param summary    summary of the change, missing to use the summary of the draft
+     * @return response with the new optimistic locking revision of the CSAF document
+     */
+    @PostMapping("/{advisoryId}/draft/commit")
+    @Operation(summary = "Commit the draft of an advisory.",
+               tags = {"Advisory"},
+               description = "Change the CSAF document to the draft of the current user, like a change of the"
+                   + " advisory, and remove the draft. After the commit the document must be reloaded on the"
+                   + " client side.")
+    @ApiResponses(value = {
+        @ApiResponse(
+          responseCode = "200",
+          description = "Revision of the changed advisory.",
+          content = {
+            @Content(
+              mediaType = MediaType.APPLICATION_JSON_VALUE,
+              schema = @Schema(implementation = EntityUpdateResponse.class)
+            )
+          }
+        ),
+        @ApiResponse(
+          responseCode = "401",
+          description = "Unauthorized access."
+        ),
+        @ApiResponse(
+          responseCode = "404",
+          description = "Advisory or draft not found."
+        ),
+        @ApiResponse(
+          responseCode = "422",
+          description = "Advisory is not valid."
+        ),
+        @ApiResponse(
+          responseCode = "500",
+          description = "Error storing or reading database."
+        )
+      })
+    public ResponseEntity<EntityUpdateResponse> commitDraft(
+            @PathVariable
+            @Parameter(in = ParameterIn.PATH, description = "The ID of the advisory to change.")
+            String advisoryId,
+            @RequestParam
+            @Parameter(description = "The optimistic locking revision of the advisory.")
+            String revision,
+            @RequestParam(required = false)
+            @Parameter(description = "The summary of the change, missing to use the summary of the draft.")
+            String summary
+    ) throws IOException {
+
+        LOG.debug("commitDraft");
+        checkValidUuid(advisoryId);
+        try {
+            return ResponseEntity.ok(new EntityUpdateResponse(advisoryService.commitDraft(advisoryId, revision, summary)));
+        } catch (DatabaseException dbEx) {
+            return ResponseEntity.notFound().build();
+        } catch (AccessDeniedException adEx) {
+            return apiError(HttpStatus.UNAUTHORIZED, adEx.getMessage());
+        } catch (CsafException ex) {
+            return apiError(ex.getRecommendedHttpState(), ex.getMessage());
+        }
+    }
+
+    /**
+     * Remove the autosaved working copy of the current user without applying it
+     *
+     * @param advisoryId ID of the CSAF document
+     * @param revision   optimistic locking revision of the draft
+     */
+    @DeleteMapping("/{advisoryId}/draft")
+    @Operation(summary = "Discard the draft of an advisory.",
+               tags = {"Advisory"},
+               description = "Remove the autosaved working copy of a CSAF document of the current user.")
+    @ApiResponses(value = {
+        @ApiResponse(
+          responseCode = "200",
+          description = "Draft removed."
+        ),
+        @ApiResponse(
+          responseCode = "401",
+          description = "Unauthorized access."
+        ),
+        @ApiResponse(
+          responseCode = "404",
+          description = "Draft not found."
+        )
+      })
+    public ResponseEntity<Void> discardDraft(
+            @PathVariable
+            @Parameter(in = ParameterIn.PATH, description = "The ID of the advisory to discard the draft of.")
+            String advisoryId,
+            @RequestParam
+            @Parameter(description = "The optimistic locking revision of the draft.")
+            String revision
+    ) {
+
+        LOG.debug("discardDraft");
+        checkValidUuid(advisoryId);
+        try {
+            advisoryService.discardDraft(advisoryId, revision);
+            return ResponseEntity.ok().build();
+        } catch (DatabaseException dbEx) {
+            return ResponseEntity.notFound().build();
+        } catch (AccessDeniedException adEx) {
+            return apiError(HttpStatus.UNAUTHORIZED, adEx.getMessage());
+        }
+    }
+
     /**
      * Increase version of a CSAF document
      *
@@ -552,7 +1018,8 @@ public class AdvisoryController {
     }
 
     /**
-     * Get a list of all templates in the system
+     * Get a list of all templates in the system.
+     * The response contains an ETag, a request with a matching If-None-Match header is answered with 304.
      *
      * @return list of all templates
      */
@@ -574,6 +1041,10 @@ public class AdvisoryController {
             )
           )
         }
+      ),
+      @ApiResponse(
+        responseCode = "304",
+        description = "Templates have not changed since the given ETag."
       )
     })
     public ResponseEntity<List<AdvisoryTemplateInfoResponse>> listAllTemplates() {
@@ -581,10 +1052,11 @@ public class AdvisoryController {
         LOG.debug("listAllTemplates");
 
         try {
-            var response = Arrays.stream(this.templateService.getAllTemplates())
+            DocumentTemplateService.TemplateIndex templateIndex = this.templateService.getTemplateIndex();
+            var response = Arrays.stream(templateIndex.descriptions())
                     .map(template -> new AdvisoryTemplateInfoResponse(template.getId(), template.getDescription()))
                     .collect(Collectors.toList());
-            return ResponseEntity.ok(response);
+            return templateResponse(templateIndex.etag()).body(response);
         } catch (IOException ex) {
             LOG.error("Error loading templates", ex);
             return ResponseEntity.ok(Collections.emptyList());
@@ -592,7 +1064,8 @@ public class AdvisoryController {
     }
 
     /**
-     * Get the content of a template
+     * Get the content of a template.
+     * The response contains an ETag, a request with a matching If-None-Match header is answered with 304.
      *
      * @param templateId ID of the template that should be read
      * @return the requested template
@@ -608,6 +1081,10 @@ public class AdvisoryController {
           responseCode = "200", 
           description = "JSON template for advisory"
         ),
+        @ApiResponse(
+          responseCode = "304",
+          description = "Template has not changed since the given ETag."
+        ),
         @ApiResponse(
           responseCode = "401", 
           description = "Unauthorized access."
@@ -631,9 +1108,11 @@ public class AdvisoryController {
 
         LOG.debug("readTemplate");
         try {
-            Optional<JsonNode> templateJson = this.templateService.getTemplate(templateId);
-            return templateJson.map(ResponseEntity::ok)
-                    .orElseGet(() -> apiError(HttpStatus.NOT_FOUND, "Template not found"));
+            Optional<DocumentTemplateService.TemplateContent> template = this.templateService.getTemplateContent(templateId);
+            if (template.isEmpty()) {
+                return apiError(HttpStatus.NOT_FOUND, "Template not found");
+            }
+            return templateResponse(template.get().etag()).body(template.get().template());
         } catch (IOException ex) {
             LOG.error(String.format("Error loading template with id: %s", sanitize(templateId)), ex);
             return ResponseEntity.internalServerError().build();
@@ -1125,6 +1604,235 @@ public class AdvisoryController {
         }
     }
 
+    /**
+     * Get all comments of a CSAF document with their answers
+     *
+     * @param advisoryId id of the CSAF document to get the comments for
+     * @return the comment threads and the number of comments per CSAF node
+     */
+    @Operation(summary = "Show comments of an advisory with their answers.",
+        tags = {"Advisory"},
+        description = "Show all comments of the advisory with the given advisoryId together with their answers"
+                      + " and the number of comments per CSAF node. Replaces loading the answers of each comment"
+                      + " separately.")
+    @ApiResponses(value = {
+        @ApiResponse(
+          responseCode = "200",
+          description = "All comments of an advisory with their answers.",
+          content = {
+            @Content(
+              mediaType = MediaType.APPLICATION_JSON_VALUE,
+              schema = @Schema(implementation = CommentThreadsResponse.class)
+            )
+          }
+        ),
+        @ApiResponse(
+          responseCode = "400",
+          description = "Invalid advisory id."
+        ),
+        @ApiResponse(
+          responseCode = "401",
+          description = "Unauthorized access."
+        ),
+        @ApiResponse(
+          responseCode = "404",
+          description = "Advisory not found."
+        ),
+        @ApiResponse(
+          responseCode = "500",
+          description = "Error during process the advisory."
+        )
+      })
+    @GetMapping("/{advisoryId}/comments/threads")
+    public ResponseEntity<CommentThreadsResponse> listCommentThreads(
+            @PathVariable
+            @Parameter(in = ParameterIn.PATH, description = "The ID of the advisory to get the comments of.")
+            String advisoryId
+    ) throws IOException {
+        checkValidUuid(advisoryId);
+        LOG.debug("listCommentThreads");
+        try {
+            return ResponseEntity.ok(advisoryService.getCommentThreads(advisoryId));
+        } catch (CsafException ex) {
+            return apiError(ex.getRecommendedHttpState(), ex.getMessage());
+        } catch (AccessDeniedException adEx) {
+            return apiError(HttpStatus.UNAUTHORIZED, adEx.getMessage());
+        }
+    }
+
+    /**
+     * Get an advisory as it was after the change recorded in an audit trail entry
+     *
+     * @param advisoryId   the ID of the advisory
+     * @param auditTrailId the ID of the audit trail entry
+     * @param at           the timestamp to get the advisory at, used if no audit trail entry is given
+     * @return the reconstructed advisory
+     */
+    @Operation(summary = "Show an advisory as it was at an earlier change.",
+        tags = {"Advisory"},
+        description = "Reconstruct the advisory with the given advisoryId as it was after the change recorded in the"
+                      + " given audit trail entry, or after the last change before the given timestamp. Without"
+                      + " parameters the latest change is returned. Only available for auditors.")
+    @ApiResponses(value = {
+        @ApiResponse(
+          responseCode = "200",
+          description = "The reconstructed advisory.",
+          content = {
+            @Content(
+              mediaType = MediaType.APPLICATION_JSON_VALUE,
+              schema = @Schema(implementation = AdvisoryHistoryResponse.class)
+            )
+          }
+        ),
+        @ApiResponse(
+          responseCode = "400",
+          description = "Invalid advisory id or timestamp."
+        ),
+        @ApiResponse(
+          responseCode = "401",
+          description = "Unauthorized access."
+        ),
+        @ApiResponse(
+          responseCode = "404",
+          description = "Advisory or audit trail entry not found."
+        ),
+        @ApiResponse(
+          responseCode = "500",
+          description = "Error during process the advisory."
+        )
+      })
+    @GetMapping("/{advisoryId}/history")
+    public ResponseEntity<AdvisoryHistoryResponse> readAdvisoryHistory(
+            @PathVariable
+            @Parameter(in = ParameterIn.PATH, description = "The ID of the advisory to reconstruct.")
+            String advisoryId,
+            @RequestParam(required = false)
+            @Parameter(in = ParameterIn.QUERY, description = "The ID of the audit trail entry to reconstruct the advisory at.")
+            String auditTrailId,
+            @RequestParam(required = false)
+            @Parameter(in = ParameterIn.QUERY, description = "The timestamp in ISO 8601 format to reconstruct the advisory at.",
+                    example = "2022-01-12T11:00:00.000Z")
+            String at
+    ) throws IOException {
+        checkValidUuid(advisoryId);
+        LOG.debug("readAdvisoryHistory");
+        try {
+            return ResponseEntity.ok(advisoryService.getAdvisoryHistory(advisoryId, auditTrailId, at));
+        } catch (CsafException ex) {
+            return apiError(ex.getRecommendedHttpState(), ex.getMessage());
+        } catch (AccessDeniedException adEx) {
+            return apiError(HttpStatus.UNAUTHORIZED, adEx.getMessage());
+        }
+    }
+
+    /**
+     * List the audit trail entries matching the given filters, newest first
+     *
+     * @param advisoryId  the ID of the advisory of the entries
+     * @param commentId   the ID of the comment or answer of the entries
+     * @param type        the type of the entries
+     * @param user        the user who made the changes
+     * @param changeType  the type of the changes
+     * @param from        the earliest creation timestamp
+     * @param to          the latest creation timestamp
+     * @param limit       the maximum number of entries to return
+     * @param bookmark    the bookmark of the previous page
+     * @param includeDiff true to return the diffs of document changes
+     * @return a page of audit trail entries
+     */
+    @Operation(summary = "List audit trail entries.",
+        tags = {"Advisory"},
+        description = "Get a page of audit trail entries matching all given filters, newest first. Without a type"
+                      + " the entries of document changes are returned, or the entries of the comment if a"
+                      + " comment is given. Diffs are only returned on request. Use the returned bookmark to"
+                      + " read the next page.")
+    @ApiResponses(value = {
+        @ApiResponse(
+          responseCode = "200",
+          description = "A page of audit trail entries.",
+          content = {
+            @Content(
+              mediaType = MediaType.APPLICATION_JSON_VALUE,
+              schema = @Schema(implementation = AuditTrailPageResponse.class)
+            )
+          }
+        ),
+        @ApiResponse(
+          responseCode = "400",
+          description = "Invalid timestamp."
+        ),
+        @ApiResponse(
+          responseCode = "401",
+          description = "Unauthorized access."
+        ),
+        @ApiResponse(
+          responseCode = "500",
+          description = "Error during reading the audit trail."
+        )
+      })
+    @GetMapping("/auditTrails")
+    public ResponseEntity<AuditTrailPageResponse> listAuditTrail(
+            @RequestParam(required = false)
+            @Parameter(in = ParameterIn.QUERY, description = "The ID of the advisory of the entries.")
+            String advisoryId,
+            @RequestParam(required = false)
+            @Parameter(in = ParameterIn.QUERY, description = "The ID of the comment or answer of the entries.")
+            String commentId,
+            @RequestParam(required = false)
+            @Parameter(in = ParameterIn.QUERY, description = "The type of the entries.")
+            ObjectType type,
+            @RequestParam(required = false)
+            @Parameter(in = ParameterIn.QUERY, description = "The user who made the changes.")
+            String user,
+            @RequestParam(required = false)
+            @Parameter(in = ParameterIn.QUERY, description = "The type of the changes.", example = "Update")
+            String changeType,
+            @RequestParam(required = false)
+            @Parameter(in = ParameterIn.QUERY, description = "The earliest creation timestamp in ISO 8601 format.",
+                    example = "2022-01-12T11:00:00.000Z")
+            String from,
+            @RequestParam(required = false)
+            @Parameter(in = ParameterIn.QUERY, description = "The latest creation timestamp in ISO 8601 format.",
+                    example = "2022-01-13T11:00:00.000Z")
+            String to,
+            @RequestParam(defaultValue = "" + AuditTrailQuery.DEFAULT_LIMIT)
+            @Parameter(in = ParameterIn.QUERY, description = "The maximum number of entries to return, at most "
+                    + AuditTrailQuery.MAX_LIMIT + ".")
+            int limit,
+            @RequestParam(required = false)
+            @Parameter(in = ParameterIn.QUERY, description = "The bookmark of the previous page.")
+            String bookmark,
+            @RequestParam(defaultValue = "false")
+            @Parameter(in = ParameterIn.QUERY, description = "Return the diffs of document changes.")
+            boolean includeDiff
+    ) throws IOException {
+        if (advisoryId != null) {
+            checkValidUuid(advisoryId);
+        }
+        if (commentId != null) {
+            checkValidUuid(commentId);
+        }
+        LOG.debug("listAuditTrail");
+        AuditTrailQuery query = new AuditTrailQuery()
+                .setAdvisoryId(advisoryId)
+                .setCommentId(commentId)
+                .setType(type)
+                .setUser(user)
+                .setChangeType(changeType)
+                .setFrom(from)
+                .setTo(to)
+                .setLimit(limit)
+                .setBookmark(bookmark)
+                .setIncludeDiff(includeDiff);
+        try {
+            return ResponseEntity.ok(advisoryService.getAuditTrail(query));
+        } catch (CsafException ex) {
+            return apiError(ex.getRecommendedHttpState(), ex.getMessage());
+        } catch (AccessDeniedException adEx) {
+            return apiError(HttpStatus.UNAUTHORIZED, adEx.getMessage());
+        }
+    }
+
     /**
      * Create a new comment in the system, belonging to the advisory with given ID
      *
@@ -1493,6 +2201,15 @@ public class AdvisoryController {
         return (ResponseEntity<T>) ResponseEntity.status(status).body(new ApiError(message));
     }
 
+    /**
+     * Build an ok response for template content with the given ETag.
+     * Clients have to revalidate, Spring answers a matching If-None-Match with 304 Not Modified.
+     */
+    private static ResponseEntity.BodyBuilder templateResponse(@Nullable String etag) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().cacheControl(CacheControl.noCache());
+        return (etag != null) ? builder.eTag(etag) : builder;
+    }
+
     /**
      * Sanitize request parameter
      */
@@ -0,0 +1,34 @@
+package de.bsi.secvisogram.csaf_cms_backend.rest.request;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.List;
+
+@Schema(name = "MatchProducts")
+public class MatchProductsRequest {
+
+    private List<String> identifiers;
+
+    public MatchProductsRequest() {
+    }
+
+    @JsonCreator
+    public MatchProductsRequest(@JsonProperty(value = "identifiers", required = true) List<String> identifiers) {
+        this.identifiers = identifiers;
+    }
+
+    @ArraySchema(
+            arraySchema = @Schema(description = "The purls, CPEs or file hashes of the components, for example from an SBOM."),
+            schema = @Schema(example = "pkg:npm/example@1.2.3")
+    )
+    public List<String> getIdentifiers() {
+        return identifiers;
+    }
+
+    public MatchProductsRequest setIdentifiers(List<String> identifiers) {
+        this.identifiers = identifiers;
+        return this;
+    }
+}
@@ -0,0 +1,38 @@
+package de.bsi.secvisogram.csaf_cms_backend.rest.response;
+
+import de.bsi.secvisogram.csaf_cms_backend.model.AdvisoryChangeType;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * A change of a single advisory sent in the advisory event stream.
+ */
+@Schema(name = "AdvisoryChangeEvent")
+public class AdvisoryChangeEventResponse {
+
+    private final AdvisoryChangeType changeType;
+    private final String advisoryId;
+    private final AdvisoryInformationResponse advisory;
+
+    public AdvisoryChangeEventResponse(AdvisoryChangeType changeType, String advisoryId,
+                                       AdvisoryInformationResponse advisory) {
+        this.changeType = changeType;
+        this.advisoryId = advisoryId;
+        this.advisory = advisory;
+    }
+
+    @Schema(description = "The kind of change.", example = "WorkflowStateChanged")
+    public AdvisoryChangeType getChangeType() {
+        return changeType;
+    }
+
+    @Schema(description = "The unique ID of the changed advisory.", example = "9690e3a3-614f-44be-8709-3aa8d58b6cb5")
+    public String getAdvisoryId() {
+        return advisoryId;
+    }
+
+    @Schema(description = "The new list entry of the advisory, null if the advisory was deleted"
+                          + " or is no longer visible to the logged in user.")
+    public AdvisoryInformationResponse getAdvisory() {
+        return advisory;
+    }
+}
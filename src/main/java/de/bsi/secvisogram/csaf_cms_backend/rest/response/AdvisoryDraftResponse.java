@@ -0,0 +1,79 @@
+package de.bsi.secvisogram.csaf_cms_backend.rest.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import tools.jackson.databind.JsonNode;
+
+/**
+ * The autosaved working copy of an advisory of the current user.
+ */
+@Schema(name = "AdvisoryDraft")
+public class AdvisoryDraftResponse {
+
+    private String advisoryId;
+    private String revision;
+    private String savedAt;
+    private String summary;
+    private String legacyVersion;
+    private JsonNode csaf;
+
+    @Schema(description = "The unique ID of the advisory.", example = " 30f15a08-7ae8-4f6d-9a53-79f8a1c30ad4")
+    public String getAdvisoryId() {
+        return advisoryId;
+    }
+
+    public AdvisoryDraftResponse setAdvisoryId(String advisoryId) {
+        this.advisoryId = advisoryId;
+        return this;
+    }
+
+    @Schema(description = "The revision of the draft for optimistic concurrency of the next save.",
+            example = "2-efaa5db9409b2d4300535c70aaf6a66b")
+    public String getRevision() {
+        return revision;
+    }
+
+    public AdvisoryDraftResponse setRevision(String revision) {
+        this.revision = revision;
+        return this;
+    }
+
+    @Schema(description = "The timestamp of the last save.", example = "2022-01-12T11:00:00.000Z")
+    public String getSavedAt() {
+        return savedAt;
+    }
+
+    public AdvisoryDraftResponse setSavedAt(String savedAt) {
+        this.savedAt = savedAt;
+        return this;
+    }
+
+    @Schema(description = "The text of the summary in the revision history.", example = "This is a summary.")
+    public String getSummary() {
+        return summary;
+    }
+
+    public AdvisoryDraftResponse setSummary(String summary) {
+        this.summary = summary;
+        return this;
+    }
+
+    @Schema(description = "The text of the legacy version in the revision history.", example = "This is a legacy notice.")
+    public String getLegacyVersion() {
+        return legacyVersion;
+    }
+
+    public AdvisoryDraftResponse setLegacyVersion(String legacyVersion) {
+        this.legacyVersion = legacyVersion;
+        return this;
+    }
+
+    @Schema(description = "The CSAF document of the draft as it was saved.")
+    public JsonNode getCsaf() {
+        return csaf;
+    }
+
+    public AdvisoryDraftResponse setCsaf(JsonNode csaf) {
+        this.csaf = csaf;
+        return this;
+    }
+}
@@ -0,0 +1,90 @@
+package de.bsi.secvisogram.csaf_cms_backend.rest.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import tools.jackson.databind.JsonNode;
+
+/**
+ * An advisory as it was after the change recorded in an audit trail entry.
+ */
+@Schema(name = "AdvisoryHistory")
+public class AdvisoryHistoryResponse {
+
+    private String advisoryId;
+    private String auditTrailId;
+    private String createdAt;
+    private String user;
+    private String changeType;
+    private String docVersion;
+    private JsonNode csaf;
+
+    @Schema(description = "The unique ID of the advisory.", example = " 30f15a08-7ae8-4f6d-9a53-79f8a1c30ad4")
+    public String getAdvisoryId() {
+        return advisoryId;
+    }
+
+    public AdvisoryHistoryResponse setAdvisoryId(String advisoryId) {
+        this.advisoryId = advisoryId;
+        return this;
+    }
+
+    @Schema(description = "The ID of the audit trail entry the advisory is reconstructed at.",
+            example = "9690e3a3-614f-44be-8709-3aa8d58b6cb5")
+    public String getAuditTrailId() {
+        return auditTrailId;
+    }
+
+    public AdvisoryHistoryResponse setAuditTrailId(String auditTrailId) {
+        this.auditTrailId = auditTrailId;
+        return this;
+    }
+
+    @Schema(description = "The timestamp of the change.", example = "2022-01-12T11:00:00.000Z")
+    public String getCreatedAt() {
+        return createdAt;
+    }
+
+    public AdvisoryHistoryResponse setCreatedAt(String createdAt) {
+        this.createdAt = createdAt;
+        return this;
+    }
+
+    @Schema(description = "The user who made the change.", example = "Mustermann")
+    public String getUser() {
+        return user;
+    }
+
+    public AdvisoryHistoryResponse setUser(String user) {
+        this.user = user;
+        return this;
+    }
+
+    @Schema(description = "The type of the change.", example = "Update")
+    public String getChangeType() {
+        return changeType;
+    }
+
+    public AdvisoryHistoryResponse setChangeType(String changeType) {
+        this.changeType = changeType;
+        return this;
+    }
+
+    @Schema(description = "The document version after the change.", example = "0.0.2")
+    public String getDocVersion() {
+        return docVersion;
+    }
+
+    public AdvisoryHistoryResponse setDocVersion(String docVersion) {
+        this.docVersion = docVersion;
+        return this;
+    }
+
+    @Schema(description = "The CSAF document after the change.")
+    public JsonNode getCsaf() {
+        return csaf;
+    }
+
+    public AdvisoryHistoryResponse setCsaf(JsonNode csaf) {
+        this.csaf = csaf;
+        return this;
+    }
+}
@@ -1,5 +1,6 @@
 package de.bsi.secvisogram.csaf_cms_backend.rest.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
 import io.swagger.v3.oas.annotations.media.Schema;
 import java.util.Collections;
@@ -25,6 +26,10 @@ public class AdvisoryInformationResponse {
 
     private String currentReleaseDate;
 
+    private Integer commentCount;
+    private Integer answerCount;
+    private Integer auditTrailCount;
+
     public AdvisoryInformationResponse() {
 
         this.changeable = false;
@@ -163,6 +168,42 @@ public class AdvisoryInformationResponse {
         return this;
     }
 
+    @Schema(description = "The number of comments of the advisory, only returned if the counts are requested.",
+            example = "3")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Integer getCommentCount() {
+        return commentCount;
+    }
+
+    public AdvisoryInformationResponse setCommentCount(Integer commentCount) {
+        this.commentCount = commentCount;
+        return this;
+    }
+
+    @Schema(description = "The number of answers to comments of the advisory, only returned if the counts are requested.",
+            example = "5")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Integer getAnswerCount() {
+        return answerCount;
+    }
+
+    public AdvisoryInformationResponse setAnswerCount(Integer answerCount) {
+        this.answerCount = answerCount;
+        return this;
+    }
+
+    @Schema(description = "The number of changes in the audit trail of the advisory, only returned if the counts"
+            + " are requested.", example = "12")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Integer getAuditTrailCount() {
+        return auditTrailCount;
+    }
+
+    public AdvisoryInformationResponse setAuditTrailCount(Integer auditTrailCount) {
+        this.auditTrailCount = auditTrailCount;
+        return this;
+    }
+
     @Schema(
             description = "The document revision for optimistic concurrency.",
             example = "2-efaa5db9409b2d4300535c70aaf6a66b"
@@ -0,0 +1,69 @@
+package de.bsi.secvisogram.csaf_cms_backend.rest.response;
+
+import de.bsi.secvisogram.csaf_cms_backend.model.ProductMatchType;
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.List;
+
+/**
+ * A product in the product tree of an advisory matching a requested product identifier.
+ */
+@Schema(name = "AffectedProduct")
+public class AffectedProductResponse {
+
+    private String identifier;
+    private String advisoryId;
+    private String productId;
+    private ProductMatchType matchType;
+    private List<String> productStatus;
+
+    @Schema(description = "The requested purl, CPE or file hash.", example = "pkg:npm/example@1.2.3")
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public AffectedProductResponse setIdentifier(String identifier) {
+        this.identifier = identifier;
+        return this;
+    }
+
+    @Schema(description = "The unique ID of the advisory.", example = " 30f15a08-7ae8-4f6d-9a53-79f8a1c30ad4")
+    public String getAdvisoryId() {
+        return advisoryId;
+    }
+
+    public AffectedProductResponse setAdvisoryId(String advisoryId) {
+        this.advisoryId = advisoryId;
+        return this;
+    }
+
+    @Schema(description = "The product_id of the matching product in the product tree.", example = "CSAFPID-0001")
+    public String getProductId() {
+        return productId;
+    }
+
+    public AffectedProductResponse setProductId(String productId) {
+        this.productId = productId;
+        return this;
+    }
+
+    @Schema(description = "How the identifier matches the product.", example = "VersionRange")
+    public ProductMatchType getMatchType() {
+        return matchType;
+    }
+
+    public AffectedProductResponse setMatchType(ProductMatchType matchType) {
+        this.matchType = matchType;
+        return this;
+    }
+
+    @Schema(description = "The categories of the product status of the product in the vulnerabilities of the advisory.",
+            example = "[\"known_affected\"]")
+    public List<String> getProductStatus() {
+        return productStatus;
+    }
+
+    public AffectedProductResponse setProductStatus(List<String> productStatus) {
+        this.productStatus = productStatus;
+        return this;
+    }
+}
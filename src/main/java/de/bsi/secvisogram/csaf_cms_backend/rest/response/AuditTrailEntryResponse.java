@@ -0,0 +1,183 @@
+package de.bsi.secvisogram.csaf_cms_backend.rest.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import tools.jackson.databind.JsonNode;
+
+/**
+ * An entry of the audit trail of an advisory or comment. Only the fields of the type of the entry are set.
+ */
+@Schema(name = "AuditTrailEntry")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AuditTrailEntryResponse {
+    private String auditTrailId;
+    private String type;
+    private String advisoryId;
+    private String commentId;
+    private String createdAt;
+    private String user;
+    private String changeType;
+    private String docVersion;
+    private String oldDocVersion;
+    private String coalescedUntil;
+    private Integer changeCount;
+    private String oldState;
+    private String newState;
+    private String commentText;
+    private JsonNode diff;
+
+    @Schema(description = "The unique ID of the audit trail entry.", example = "9690e3a3-614f-44be-8709-3aa8d58b6cb5")
+    public String getAuditTrailId() {
+        return auditTrailId;
+    }
+
+    public AuditTrailEntryResponse setAuditTrailId(String auditTrailId) {
+        this.auditTrailId = auditTrailId;
+        return this;
+    }
+
+    @Schema(description = "The type of the entry: AuditTrailDocument, AuditTrailWorkflow or CommentAuditTrail.",
+            example = "AuditTrailDocument")
+    public String getType() {
+        return type;
+    }
+
+    public AuditTrailEntryResponse setType(String type) {
+        this.type = type;
+        return this;
+    }
+
+    @Schema(description = "The ID of the advisory the entry belongs to.",
+            example = "30f15a08-7ae8-4f6d-9a53-79f8a1c30ad4")
+    public String getAdvisoryId() {
+        return advisoryId;
+    }
+
+    public AuditTrailEntryResponse setAdvisoryId(String advisoryId) {
+        this.advisoryId = advisoryId;
+        return this;
+    }
+
+    @Schema(description = "The ID of the comment or answer the entry belongs to.",
+            example = "c2a8e2c6-6c5d-4a8b-9f4f-46e2f2d7a7e1")
+    public String getCommentId() {
+        return commentId;
+    }
+
+    public AuditTrailEntryResponse setCommentId(String commentId) {
+        this.commentId = commentId;
+        return this;
+    }
+
+    @Schema(description = "The timestamp of the change.", example = "2022-01-12T11:00:00.000Z")
+    public String getCreatedAt() {
+        return createdAt;
+    }
+
+    public AuditTrailEntryResponse setCreatedAt(String createdAt) {
+        this.createdAt = createdAt;
+        return this;
+    }
+
+    @Schema(description = "The user who made the change.", example = "Mustermann")
+    public String getUser() {
+        return user;
+    }
+
+    public AuditTrailEntryResponse setUser(String user) {
+        this.user = user;
+        return this;
+    }
+
+    @Schema(description = "The type of the change.", example = "Update")
+    public String getChangeType() {
+        return changeType;
+    }
+
+    public AuditTrailEntryResponse setChangeType(String changeType) {
+        this.changeType = changeType;
+        return this;
+    }
+
+    @Schema(description = "The document version after the change.", example = "0.0.2")
+    public String getDocVersion() {
+        return docVersion;
+    }
+
+    public AuditTrailEntryResponse setDocVersion(String docVersion) {
+        this.docVersion = docVersion;
+        return this;
+    }
+
+    @Schema(description = "The document version before the change.", example = "0.0.1")
+    public String getOldDocVersion() {
+        return oldDocVersion;
+    }
+
+    public AuditTrailEntryResponse setOldDocVersion(String oldDocVersion) {
+        this.oldDocVersion = oldDocVersion;
+        return this;
+    }
+
+    @Schema(description = "The timestamp of the last change merged into the entry, only set if successive"
+            + " changes were coalesced.", example = "2022-01-12T11:04:30.000Z")
+    public String getCoalescedUntil() {
+        return coalescedUntil;
+    }
+
+    public AuditTrailEntryResponse setCoalescedUntil(String coalescedUntil) {
+        this.coalescedUntil = coalescedUntil;
+        return this;
+    }
+
+    @Schema(description = "The number of changes coalesced into the entry, only set if successive changes were"
+            + " coalesced.", example = "3")
+    public Integer getChangeCount() {
+        return changeCount;
+    }
+
+    public AuditTrailEntryResponse setChangeCount(Integer changeCount) {
+        this.changeCount = changeCount;
+        return this;
+    }
+
+    @Schema(description = "The workflow state before the change.", example = "Draft")
+    public String getOldState() {
+        return oldState;
+    }
+
+    public AuditTrailEntryResponse setOldState(String oldState) {
+        this.oldState = oldState;
+        return this;
+    }
+
+    @Schema(description = "The workflow state after the change.", example = "Review")
+    public String getNewState() {
+        return newState;
+    }
+
+    public AuditTrailEntryResponse setNewState(String newState) {
+        this.newState = newState;
+        return this;
+    }
+
+    @Schema(description = "The text of the comment after the change.", example = "Please check the product tree.")
+    public String getCommentText() {
+        return commentText;
+    }
+
+    public AuditTrailEntryResponse setCommentText(String commentText) {
+        this.commentText = commentText;
+        return this;
+    }
+
+    @Schema(description = "The change of the CSAF document in JSON Patch format, only returned if requested.")
+    public JsonNode getDiff() {
+        return diff;
+    }
+
+    public AuditTrailEntryResponse setDiff(JsonNode diff) {
+        this.diff = diff;
+        return this;
+    }
+}
@@ -0,0 +1,45 @@
+package de.bsi.secvisogram.csaf_cms_backend.rest.response;
+
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.List;
+
+/**
+ * A page of audit trail entries, newest first.
+ */
+@Schema(name = "AuditTrailPage")
+public class AuditTrailPageResponse {
+
+    private List<AuditTrailEntryResponse> entries;
+    private String bookmark;
+
+    public AuditTrailPageResponse() {
+    }
+
+    public AuditTrailPageResponse(List<AuditTrailEntryResponse> entries, String bookmark) {
+        this.entries = entries;
+        this.bookmark = bookmark;
+    }
+
+    @ArraySchema(schema = @Schema(implementation = AuditTrailEntryResponse.class,
+            description = "The entries of the page."))
+    public List<AuditTrailEntryResponse> getEntries() {
+        return entries;
+    }
+
+    public AuditTrailPageResponse setEntries(List<AuditTrailEntryResponse> entries) {
+        this.entries = entries;
+        return this;
+    }
+
+    @Schema(description = "The bookmark to request the next page, null if this is the last page.",
+            example = "g1AAAABweJzLYWBgYMpgSmHgKy5JLCrJTq2MT8lPzkzJBYqLOBoaGhhbmBiZ")
+    public String getBookmark() {
+        return bookmark;
+    }
+
+    public AuditTrailPageResponse setBookmark(String bookmark) {
+        this.bookmark = bookmark;
+        return this;
+    }
+}
@@ -0,0 +1,44 @@
+package de.bsi.secvisogram.csaf_cms_backend.rest.response;
+
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A comment together with all its answers.
+ */
+@Schema(name = "CommentThread")
+public class CommentThreadResponse {
+
+    private CommentInformationResponse comment;
+    private List<AnswerInformationResponse> answers = new ArrayList<>();
+
+    public CommentThreadResponse() {
+    }
+
+    public CommentThreadResponse(CommentInformationResponse comment) {
+        this.comment = comment;
+    }
+
+    @Schema(description = "The comment that starts the thread.")
+    public CommentInformationResponse getComment() {
+        return comment;
+    }
+
+    public CommentThreadResponse setComment(CommentInformationResponse comment) {
+        this.comment = comment;
+        return this;
+    }
+
+    @ArraySchema(schema = @Schema(implementation = AnswerInformationResponse.class,
+            description = "The answers to the comment."))
+    public List<AnswerInformationResponse> getAnswers() {
+        return answers;
+    }
+
+    public CommentThreadResponse setAnswers(List<AnswerInformationResponse> answers) {
+        this.answers = answers;
+        return this;
+    }
+}
@@ -0,0 +1,46 @@
+package de.bsi.secvisogram.csaf_cms_backend.rest.response;
+
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All comments of an advisory with their answers.
+ */
+@Schema(name = "CommentThreads")
+public class CommentThreadsResponse {
+
+    private List<CommentThreadResponse> threads;
+    private Map<String, Integer> countByCsafNodeId;
+
+    public CommentThreadsResponse() {
+    }
+
+    public CommentThreadsResponse(List<CommentThreadResponse> threads, Map<String, Integer> countByCsafNodeId) {
+        this.threads = threads;
+        this.countByCsafNodeId = countByCsafNodeId;
+    }
+
+    @ArraySchema(schema = @Schema(implementation = CommentThreadResponse.class,
+            description = "The comments of the advisory, each with its answers."))
+    public List<CommentThreadResponse> getThreads() {
+        return threads;
+    }
+
+    public CommentThreadsResponse setThreads(List<CommentThreadResponse> threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    @Schema(description = "The number of comments and answers per CSAF node id.",
+            example = "{\"9690e3a3-614f-44be-8709-3aa8d58b6cb5\": 3}")
+    public Map<String, Integer> getCountByCsafNodeId() {
+        return countByCsafNodeId;
+    }
+
+    public CommentThreadsResponse setCountByCsafNodeId(Map<String, Integer> countByCsafNodeId) {
+        this.countByCsafNodeId = countByCsafNodeId;
+        return this;
+    }
+}
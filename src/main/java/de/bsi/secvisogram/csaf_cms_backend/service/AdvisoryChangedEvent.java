@@ -0,0 +1,43 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import de.bsi.secvisogram.csaf_cms_backend.model.AdvisoryChangeType;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
+import javax.annotation.Nullable;
+
+/**
+ * Application event published by the {@link AdvisoryEventService} after an advisory was changed in the database.
+ * Listeners run in the thread of the change, so they have to return quickly.
+ */
+public class AdvisoryChangedEvent {
+
+    private final AdvisoryChangeType changeType;
+    private final AdvisoryInformationResponse current;
+    private final AdvisoryInformationResponse previous;
+
+    public AdvisoryChangedEvent(AdvisoryChangeType changeType, @Nullable AdvisoryInformationResponse current,
+                                @Nullable AdvisoryInformationResponse previous) {
+        this.changeType = changeType;
+        this.current = current;
+        this.previous = previous;
+    }
+
+    public AdvisoryChangeType getChangeType() {
+        return changeType;
+    }
+
+    /**
+     * @return the advisory after the change, null if it was deleted
+     */
+    @Nullable
+    public AdvisoryInformationResponse getCurrent() {
+        return current;
+    }
+
+    /**
+     * @return the advisory before the change, null if it was created
+     */
+    @Nullable
+    public AdvisoryInformationResponse getPrevious() {
+        return previous;
+    }
+}
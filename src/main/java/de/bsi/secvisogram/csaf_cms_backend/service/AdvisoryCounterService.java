@@ -0,0 +1,138 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles.Role.AUDITOR;
+import static de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryWorkflowUtil.hasRole;
+
+import com.ibm.cloud.cloudant.v1.model.DesignDocumentViewsMapReduce;
+import com.ibm.cloud.sdk.core.service.exception.NotFoundException;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+
+/**
+ * Counts the comments, answers and audit trail entries of advisories with map/reduce views of the database,
+ * so the documents themselves don't have to be loaded. CouchDB keeps the reduced values in the view index
+ * and updates them incrementally on the next read after a change.
+ */
+@Service
+public class AdvisoryCounterService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdvisoryCounterService.class);
+
+    static final String COUNTERS_DESIGN_DOC = "csaf-counters";
+    static final String COMMENTS_VIEW = "comments-by-advisory";
+    static final String AUDIT_TRAIL_VIEW = "audit-trail-by-advisory";
+
+    /**
+     * Emits [1, 0] for comments and [0, 1] for answers, summed up to [comments, answers]
+     */
+    private static final String COMMENTS_MAP = """
+            function (doc) {
+              if (doc.type === 'Comment' && doc.advisoryId) {
+                emit(doc.advisoryId, doc.answerTo ? [0, 1] : [1, 0]);
+              }
+            }""";
+    private static final String AUDIT_TRAIL_MAP = """
+            function (doc) {
+              if ((doc.type === 'AuditTrailDocument' || doc.type === 'AuditTrailWorkflow') && doc.advisoryId) {
+                emit(doc.advisoryId, 1);
+              }
+            }""";
+
+    @Autowired
+    private CouchDbService couchDbService;
+
+    /**
+     * Create or update the views at startup, so the indexes are built before the first request
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void createViews() {
+
+        try {
+            ensureViews();
+        } catch (RuntimeException ex) {
+            // the views are created on first use
+            LOG.warn("Could not create the counter views", ex);
+        }
+    }
+
+    /**
+     * Set the number of comments, answers and audit trail entries in the given advisory information.
+     * The comment and answer counts are only set for advisories whose comments the user may view,
+     * the audit trail counts only for auditors, the other counts stay null.
+     *
+     * @param advisories  the advisories to add the counts to
+     * @param credentials the credentials of the user
+     */
+    public void addCounts(List<AdvisoryInformationResponse> advisories, Authentication credentials) {
+
+        Set<String> withCommentCounts = advisories.stream()
+                .filter(advisory -> AdvisoryWorkflowUtil.canViewComment(advisory, credentials))
+                .map(AdvisoryInformationResponse::getAdvisoryId)
+                .collect(Collectors.toSet());
+        Set<String> withAuditTrailCounts = hasRole(AUDITOR, credentials)
+                ? advisories.stream().map(AdvisoryInformationResponse::getAdvisoryId).collect(Collectors.toSet())
+                : Set.of();
+        Map<String, Object> commentCounts = readCounts(COMMENTS_VIEW, withCommentCounts);
+        Map<String, Object> auditTrailCounts = readCounts(AUDIT_TRAIL_VIEW, withAuditTrailCounts);
+
+        for (AdvisoryInformationResponse advisory : advisories) {
+            if (withCommentCounts.contains(advisory.getAdvisoryId())) {
+                Object commentCount = commentCounts.get(advisory.getAdvisoryId());
+                advisory.setCommentCount(countAt(commentCount, 0));
+                advisory.setAnswerCount(countAt(commentCount, 1));
+            }
+            if (withAuditTrailCounts.contains(advisory.getAdvisoryId())) {
+                advisory.setAuditTrailCount(countAt(auditTrailCounts.get(advisory.getAdvisoryId()), 0));
+            }
+        }
+    }
+
+    private Map<String, Object> readCounts(String view, Set<String> advisoryIds) {
+
+        try {
+            return this.couchDbService.readReducedView(COUNTERS_DESIGN_DOC, view, advisoryIds);
+        } catch (NotFoundException ex) {
+            // the views were not created at startup or the database was recreated
+            ensureViews();
+            return this.couchDbService.readReducedView(COUNTERS_DESIGN_DOC, view, advisoryIds);
+        }
+    }
+
+    private void ensureViews() {
+
+        boolean written = this.couchDbService.createOrUpdateViews(COUNTERS_DESIGN_DOC, Map.of(
+                COMMENTS_VIEW, new DesignDocumentViewsMapReduce.Builder().map(COMMENTS_MAP).reduce("_sum").build(),
+                AUDIT_TRAIL_VIEW, new DesignDocumentViewsMapReduce.Builder().map(AUDIT_TRAIL_MAP).reduce("_count").build()
+        ));
+        if (written) {
+            LOG.info("Created counter views in design document {}", COUNTERS_DESIGN_DOC);
+        }
+    }
+
+    /**
+     * @param reducedValue a number or a list of numbers reduced by the view, null if there were no rows
+     * @param index        the position of the count in a list
+     * @return the count, 0 if there were no rows
+     */
+    static int countAt(Object reducedValue, int index) {
+
+        if (reducedValue instanceof List<?> values && index < values.size()
+                && values.get(index) instanceof Number count) {
+            return count.intValue();
+        } else if (reducedValue instanceof Number count && index == 0) {
+            return count.intValue();
+        }
+        return 0;
+    }
+}
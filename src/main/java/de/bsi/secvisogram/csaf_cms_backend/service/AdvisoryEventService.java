@@ -0,0 +1,305 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles.Role.AUDITOR;
+import static de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryWorkflowUtil.canViewAdvisory;
+import static de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryWorkflowUtil.hasRole;
+
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafEventsConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles;
+import de.bsi.secvisogram.csaf_cms_backend.json.AdvisoryWrapper;
+import de.bsi.secvisogram.csaf_cms_backend.model.AdvisoryChangeType;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryChangeEventResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Pushes changes of advisories as Server-Sent Events to subscribed clients.
+ * Every subscriber only gets the changes of advisories it is allowed to see, the list entries in the events
+ * are enriched with the permissions of the subscriber like in {@link AdvisoryService#getAdvisoryInformations(String)}.
+ * <p>
+ * The events are created by the changes made on this replica, they are not read from the changes feed of the
+ * database. A subscriber connected to one replica does not get the changes made on other replicas.
+ * <p>
+ * Every subscriber has a bounded queue of pending events, which is sent by a thread of its own while the queue
+ * is not empty, so a slow client does not delay the events of the others. A subscriber whose queue is full is
+ * closed and has to reconnect.
+ */
+@Service
+public class AdvisoryEventService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdvisoryEventService.class);
+
+    @Autowired
+    private CsafConfiguration configuration;
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong eventCounter = new AtomicLong();
+    // events are created in a single thread to keep their order and to not block the writing request
+    private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+            new BasicThreadFactory.Builder().namingPattern("Advisory-Events-%d").build());
+    // the queues of the subscribers are sent in threads of their own, only while events are pending
+    private final ExecutorService senders = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), new BasicThreadFactory.Builder().namingPattern("Advisory-Events-Sender-%d")
+            .daemon(true).build());
+
+    @PostConstruct
+    void startHeartbeat() {
+        long interval = getEventsConfiguration().getHeartbeatInterval();
+        if (interval > 0) {
+            this.executor.scheduleAtFixedRate(this::sendHeartbeat, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        this.executor.shutdownNow();
+        this.senders.shutdownNow();
+        this.subscriptions.forEach(subscription -> subscription.emitter().complete());
+        this.subscriptions.clear();
+    }
+
+    /**
+     * Subscribe the logged-in user to the changes of all advisories visible to the user
+     *
+     * @return the emitter of the event stream
+     */
+    @Secured({CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUDITOR})
+    public SseEmitter subscribe() {
+
+        Authentication credentials = SecurityContextHolder.getContext().getAuthentication();
+        SseEmitter emitter = new SseEmitter(getEventsConfiguration().getTimeout());
+        Subscription subscription = new Subscription(emitter, credentials,
+                getEventsConfiguration().getMaxPendingEvents());
+        emitter.onCompletion(() -> this.subscriptions.remove(subscription));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(ex -> this.subscriptions.remove(subscription));
+        this.subscriptions.add(subscription);
+        LOG.debug("Subscribed {} to advisory events", credentials.getName());
+        return emitter;
+    }
+
+    /**
+     * Get the number of currently open subscriptions
+     *
+     * @return number of subscriptions
+     */
+    public int getSubscriptionCount() {
+        return this.subscriptions.size();
+    }
+
+    /**
+     * Publish the change of an advisory to all subscribers and as {@link AdvisoryChangedEvent} to the
+     * listeners in the application
+     *
+     * @param changeType the kind of change
+     * @param current    the advisory after the change, null if it was deleted
+     * @param previous   the advisory before the change, null if it was created
+     */
+    void publish(AdvisoryChangeType changeType, @Nullable AdvisoryInformationResponse current,
+                 @Nullable AdvisoryInformationResponse previous) {
+
+        this.applicationEventPublisher.publishEvent(new AdvisoryChangedEvent(changeType, current, previous));
+        if (this.subscriptions.isEmpty()) {
+            return;
+        }
+        long eventId = this.eventCounter.incrementAndGet();
+        this.executor.execute(() -> {
+            for (Subscription subscription : this.subscriptions) {
+                createEventFor(subscription.credentials(), changeType, current, previous)
+                        .ifPresent(event -> enqueue(subscription, eventId, event));
+            }
+        });
+    }
+
+    /**
+     * Publish a new advisory version to all subscribers with role auditor
+     *
+     * @param version the created advisory version
+     */
+    void publishVersionCreated(AdvisoryInformationResponse version) {
+
+        if (this.subscriptions.isEmpty()) {
+            return;
+        }
+        long eventId = this.eventCounter.incrementAndGet();
+        this.executor.execute(() -> {
+            for (Subscription subscription : this.subscriptions) {
+                if (hasRole(AUDITOR, subscription.credentials())) {
+                    enqueue(subscription, eventId, new AdvisoryChangeEventResponse(AdvisoryChangeType.Created,
+                            version.getAdvisoryId(), copyOf(version)));
+                }
+            }
+        });
+    }
+
+    /**
+     * Create the event of a change for a subscriber with the given credentials.
+     * A subscriber that could see the advisory before the change but can't see it afterwards
+     * gets a {@link AdvisoryChangeType#Deleted} event, so it removes the advisory from its list.
+     *
+     * @param credentials the credentials of the subscriber
+     * @param changeType  the kind of change
+     * @param current     the advisory after the change, null if it was deleted
+     * @param previous    the advisory before the change, null if it was created
+     * @return the event to send, empty if the subscriber is not allowed to see the change
+     */
+    Optional<AdvisoryChangeEventResponse> createEventFor(Authentication credentials, AdvisoryChangeType changeType,
+                                                         @Nullable AdvisoryInformationResponse current,
+                                                         @Nullable AdvisoryInformationResponse previous) {
+
+        if (current != null && canViewAdvisory(current, credentials)) {
+            AdvisoryInformationResponse advisory = copyOf(current);
+            AdvisoryPermissionMatrix.forCredentials(credentials, isAllowOwnDocumentsApproved()).enrich(advisory);
+            return Optional.of(new AdvisoryChangeEventResponse(changeType, current.getAdvisoryId(), advisory));
+        } else if (previous != null && canViewAdvisory(previous, credentials)) {
+            return Optional.of(new AdvisoryChangeEventResponse(AdvisoryChangeType.Deleted,
+                    previous.getAdvisoryId(), null));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Convert the given advisory to an advisory list entry without permission fields
+     *
+     * @param advisory   the advisory to convert
+     * @param advisoryId the id of the advisory
+     * @param revision   the current revision of the advisory
+     * @return the list entry
+     */
+    static AdvisoryInformationResponse toAdvisoryInformation(AdvisoryWrapper advisory, String advisoryId,
+                                                             String revision) {
+
+        AdvisoryInformationResponse response = new AdvisoryInformationResponse(advisoryId, advisory.getWorkflowState());
+        response.setOwner(advisory.getOwner());
+        response.setTitle(advisory.getDocumentTitle());
+        response.setDocumentTrackingId(advisory.getDocumentTrackingId());
+        response.setCurrentReleaseDate(advisory.getDocumentTrackingCurrentReleaseDate());
+        response.setRevision(revision);
+        return response;
+    }
+
+    private static AdvisoryInformationResponse copyOf(AdvisoryInformationResponse advisory) {
+
+        AdvisoryInformationResponse copy = new AdvisoryInformationResponse(advisory.getAdvisoryId(),
+                advisory.getWorkflowState());
+        copy.setOwner(advisory.getOwner());
+        copy.setTitle(advisory.getTitle());
+        copy.setDocumentTrackingId(advisory.getDocumentTrackingId());
+        copy.setCurrentReleaseDate(advisory.getCurrentReleaseDate());
+        copy.setRevision(advisory.getRevision());
+        return copy;
+    }
+
+    private void enqueue(Subscription subscription, long eventId, AdvisoryChangeEventResponse event) {
+
+        enqueue(subscription, SseEmitter.event()
+                .id(String.valueOf(eventId))
+                .name(event.getChangeType().name())
+                .data(event, MediaType.APPLICATION_JSON));
+    }
+
+    /**
+     * Add the event to the pending events of the subscriber, close the subscription if there are too many
+     */
+    void enqueue(Subscription subscription, SseEmitter.SseEventBuilder event) {
+
+        if (subscription.pending().offer(event)) {
+            startSending(subscription);
+        } else {
+            LOG.info("Subscriber {} does not read its advisory events, closing subscription",
+                    subscription.credentials().getName());
+            this.subscriptions.remove(subscription);
+            subscription.pending().clear();
+            // a send blocked by the client also blocks the completion, so it must not block the caller
+            this.senders.execute(() -> subscription.emitter().complete());
+        }
+    }
+
+    private void startSending(Subscription subscription) {
+
+        if (subscription.sending().compareAndSet(false, true)) {
+            this.senders.execute(() -> sendPending(subscription));
+        }
+    }
+
+    /**
+     * Send the pending events of the subscriber in the order they were created
+     */
+    void sendPending(Subscription subscription) {
+
+        try {
+            SseEmitter.SseEventBuilder event;
+            while ((event = subscription.pending().poll()) != null) {
+                subscription.emitter().send(event);
+            }
+        } catch (IOException | IllegalStateException ex) {
+            LOG.debug("Error sending advisory event, closing subscription", ex);
+            this.subscriptions.remove(subscription);
+            subscription.pending().clear();
+            subscription.emitter().completeWithError(ex);
+        } finally {
+            subscription.sending().set(false);
+        }
+        // an event enqueued after the last poll did not start a sender
+        if (!subscription.pending().isEmpty() && this.subscriptions.contains(subscription)) {
+            startSending(subscription);
+        }
+    }
+
+    private void sendHeartbeat() {
+
+        for (Subscription subscription : this.subscriptions) {
+            enqueue(subscription, SseEmitter.event().comment("heartbeat"));
+        }
+    }
+
+    private boolean isAllowOwnDocumentsApproved() {
+        return this.configuration.getWorkflow() != null
+                && this.configuration.getWorkflow().isAllowOwnDocumentsApproved();
+    }
+
+    private CsafEventsConfiguration getEventsConfiguration() {
+        return (this.configuration.getEvents() != null) ? this.configuration.getEvents() : new CsafEventsConfiguration();
+    }
+
+    /**
+     * A subscriber with its pending events
+     */
+    record Subscription(SseEmitter emitter, Authentication credentials, BlockingQueue<SseEmitter.SseEventBuilder> pending,
+                        AtomicBoolean sending) {
+
+        Subscription(SseEmitter emitter, Authentication credentials, int maxPendingEvents) {
+            this(emitter, credentials, new LinkedBlockingQueue<>(Math.max(1, maxPendingEvents)), new AtomicBoolean());
+        }
+    }
+}
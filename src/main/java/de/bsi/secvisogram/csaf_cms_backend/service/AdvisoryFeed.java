@@ -0,0 +1,114 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbField.TYPE_FIELD;
+
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.ChangedDocuments;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DatabaseException;
+import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
+import jakarta.annotation.PreDestroy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Reads the changes of the advisories from the changes feed of the database and passes them to all registered
+ * {@link AdvisoryFeedIndex indexes}, so the feed is read only once for all of them.
+ * <p>
+ * A change of an advisory in this replica triggers reading the feed in the background, and every query of an
+ * index catches up with the feed before it is evaluated, so changes of other replicas are found as well.
+ * The indexes are built from the feed at startup.
+ */
+@Service
+public class AdvisoryFeed {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdvisoryFeed.class);
+
+    static final int FEED_BATCH_SIZE = 500;
+    private static final Map<String, Object> ADVISORY_SELECTOR = Map.of(TYPE_FIELD.getDbName(), ObjectType.Advisory.name());
+
+    @Autowired
+    private CouchDbService couchDbService;
+
+    private final List<AdvisoryFeedIndex> indexes = new CopyOnWriteArrayList<>();
+    private final Object feedMonitor = new Object();
+    private String lastSeq = "0";
+
+    private final AtomicBoolean catchUpScheduled = new AtomicBoolean();
+    // the feed is read from a single thread, so a burst of changes results in few reads
+    private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+            new BasicThreadFactory.Builder().namingPattern("Advisory-Feed-%d").daemon(true).build());
+
+    @EventListener(ApplicationReadyEvent.class)
+    void buildAtStartup() {
+        scheduleCatchUp();
+    }
+
+    @EventListener
+    void onAdvisoryChanged(AdvisoryChangedEvent event) {
+        scheduleCatchUp();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Pass the changes of the feed to the given index. The feed is read again from the start on the next catch-up,
+     * so the new index gets all advisories. Applying a change again leaves the other indexes unchanged.
+     *
+     * @param index the index to register
+     */
+    void register(AdvisoryFeedIndex index) {
+
+        synchronized (this.feedMonitor) {
+            this.indexes.add(index);
+            this.lastSeq = "0";
+        }
+    }
+
+    /**
+     * Apply the changes of the advisories since the last read of the changes feed to all registered indexes
+     */
+    void catchUp() throws DatabaseException {
+
+        synchronized (this.feedMonitor) {
+            ChangedDocuments changes;
+            do {
+                String since = this.lastSeq;
+                changes = this.couchDbService.findChangedDocuments(since, ADVISORY_SELECTOR, FEED_BATCH_SIZE);
+                for (AdvisoryFeedIndex index : this.indexes) {
+                    index.apply(changes);
+                }
+                this.lastSeq = changes.getLastSeq();
+                if (since.equals(this.lastSeq)) {
+                    break;
+                }
+            } while (!changes.isComplete());
+        }
+    }
+
+    private void scheduleCatchUp() {
+
+        if (this.catchUpScheduled.compareAndSet(false, true)) {
+            this.executor.execute(() -> {
+                this.catchUpScheduled.set(false);
+                try {
+                    catchUp();
+                } catch (DatabaseException | RuntimeException ex) {
+                    LOG.warn("Could not update the indexes of the advisories", ex);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbField.ID_FIELD;
+
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.AdvisoryField;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.AdvisorySearchField;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.ChangedDocuments;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DatabaseException;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DbField;
+import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
+import jakarta.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import tools.jackson.databind.JsonNode;
+
+/**
+ * Base of the indexes over the current advisories that are kept in memory.
+ * <p>
+ * An index registers at the {@link AdvisoryFeed}, which reads the changes feed of the database once for all indexes.
+ * Every query catches up with the feed before it is evaluated, so changes of other replicas are found as well.
+ * Besides the content of the subclass the fields needed to check the visibility of the indexed advisories are kept.
+ */
+abstract class AdvisoryFeedIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdvisoryFeedIndex.class);
+
+    @Autowired
+    private AdvisoryFeed advisoryFeed;
+
+    /**
+     * guards the content of the index, the subclasses read it with the read lock
+     */
+    protected final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Visibility> visibilities = new HashMap<>();
+
+    @PostConstruct
+    void registerAtFeed() {
+        this.advisoryFeed.register(this);
+    }
+
+    /**
+     * @return the number of advisories in the index
+     */
+    public int size() {
+
+        this.lock.readLock().lock();
+        try {
+            return this.visibilities.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Catch up with the changes feed before a query. A failure is logged and the query is evaluated with the
+     * current content of the index.
+     */
+    protected void catchUpBeforeQuery() {
+
+        try {
+            this.advisoryFeed.catchUp();
+        } catch (DatabaseException | RuntimeException ex) {
+            LOG.warn("Could not read the changes of the advisories, querying the current index", ex);
+        }
+    }
+
+    /**
+     * Check whether an indexed advisory can be viewed with the given credentials, has to be called with the read lock
+     *
+     * @param advisoryId  the id of the advisory
+     * @param credentials the credentials for the check
+     * @return true - the advisory is indexed and can be viewed
+     */
+    protected boolean isVisible(String advisoryId, Authentication credentials) {
+
+        Visibility visibility = this.visibilities.get(advisoryId);
+        return visibility != null && AdvisoryWorkflowUtil.canViewAdvisory(visibility.owner(),
+                WorkflowState.valueOf(visibility.workflowState()), credentials, visibility.releaseDate());
+    }
+
+    /**
+     * @return the number of advisories in the index, has to be called with the read lock
+     */
+    protected int advisoryCount() {
+        return this.visibilities.size();
+    }
+
+    /**
+     * Add the content of an advisory to the index, called with the write lock
+     *
+     * @param advisoryId the id of the advisory
+     * @param advisory   the advisory document as stored in the database
+     */
+    protected abstract void addAdvisory(String advisoryId, JsonNode advisory);
+
+    /**
+     * Remove the content of an advisory from the index, called with the write lock
+     *
+     * @param advisoryId the id of the advisory, it may not be in the index
+     */
+    protected abstract void removeAdvisory(String advisoryId);
+
+    /**
+     * Apply a batch of changes of the changes feed to the index, called by the {@link AdvisoryFeed}
+     *
+     * @param changes the changed and deleted advisories
+     */
+    void apply(ChangedDocuments changes) {
+
+        this.lock.writeLock().lock();
+        try {
+            changes.getDeletedIds().forEach(this::remove);
+            for (JsonNode document : changes.getDocuments()) {
+                String advisoryId = ID_FIELD.stringVal(document);
+                remove(advisoryId);
+                addAdvisory(advisoryId, document);
+                this.visibilities.put(advisoryId, new Visibility(
+                        textAt(document, AdvisoryField.OWNER),
+                        textAt(document, AdvisoryField.WORKFLOW_STATE),
+                        textAt(document, AdvisorySearchField.DOCUMENT_TRACKING_CURRENT_RELEASE_DATE)));
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(String advisoryId) {
+
+        if (this.visibilities.remove(advisoryId) != null) {
+            removeAdvisory(advisoryId);
+        }
+    }
+
+    static String textAt(JsonNode document, DbField field) {
+
+        JsonNode node = document;
+        for (String name : field.getFieldPath()) {
+            node = node.path(name);
+        }
+        return node.asString(null);
+    }
+
+    /**
+     * The fields of an advisory needed to check its visibility
+     */
+    private record Visibility(String owner, String workflowState, String releaseDate) {
+    }
+}
@@ -0,0 +1,295 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDBFilterCreator.expr2CouchDBFilter;
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbField.ID_FIELD;
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbField.REVISION_FIELD;
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbField.TYPE_FIELD;
+import static de.bsi.secvisogram.csaf_cms_backend.model.filter.OperatorExpression.equal;
+import static de.bsi.secvisogram.csaf_cms_backend.model.filter.OperatorExpression.greaterOrEqual;
+
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafAuditTrailConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.AdvisoryAuditTrailField;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.AuditTrailField;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DbField;
+import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
+import de.bsi.secvisogram.csaf_cms_backend.exception.CsafExceptionKey;
+import de.bsi.secvisogram.csaf_cms_backend.json.AdvisoryAuditTrailDiffWrapper;
+import de.bsi.secvisogram.csaf_cms_backend.json.AdvisoryWrapper;
+import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
+import de.bsi.secvisogram.csaf_cms_backend.model.filter.AndExpression;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryHistoryResponse;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.node.ObjectNode;
+
+/**
+ * Reconstructs an advisory as it was after the change recorded in an audit trail entry.
+ * <p>
+ * The reconstruction starts at the nearest earlier entry holding a snapshot of the advisory (the creation or a
+ * checkpoint) or at the nearest earlier state in the cache, and replays the diffs of the following entries.
+ * The reconstructed states are cached by the id and revision of their entry, an entry merging further edits
+ * gets a new revision, so its state before the merge is not found anymore. Entries moved to the
+ * {@link AuditTrailArchive} are read from the archive.
+ */
+@Service
+public class AdvisoryHistoryService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdvisoryHistoryService.class);
+
+    @Autowired
+    private CouchDbService couchDbService;
+
+    @Autowired
+    private CsafConfiguration configuration;
+
+    @Autowired
+    private AuditTrailArchive auditTrailArchive;
+
+    private HistoryCache cache;
+
+    @PostConstruct
+    void createCache() {
+        this.cache = new HistoryCache(getAuditTrailConfiguration().getHistoryCacheSize());
+    }
+
+    /**
+     * Reconstruct the advisory at the given audit trail entry or at the last entry before the given timestamp
+     *
+     * @param advisoryId   the id of the advisory
+     * @param auditTrailId the id of the audit trail entry, null to use the timestamp
+     * @param at           the timestamp in ISO 8601 format, used if no audit trail entry is given
+     * @return the advisory after the change of the entry
+     * @throws CsafException if there is no matching audit trail entry or the timestamp is invalid
+     */
+    public AdvisoryHistoryResponse reconstruct(String advisoryId, @Nullable String auditTrailId, @Nullable String at)
+            throws IOException, CsafException {
+
+        Map<String, ObjectNode> archivedEntries = findArchivedEntries(advisoryId);
+        List<JsonNode> entries = findAuditTrailEntries(advisoryId, archivedEntries.values());
+        int target = (auditTrailId != null) ? indexOfId(entries, auditTrailId) : indexAt(entries, at);
+        if (target < 0) {
+            throw new CsafException("No audit trail entry found for advisory " + advisoryId,
+                    CsafExceptionKey.AuditTrailNotFound, HttpStatus.NOT_FOUND);
+        }
+
+        AdvisoryWrapper state = null;
+        int start = target;
+        while (start > 0 && !isCheckpoint(entries.get(start))) {
+            state = this.cache.get(cacheKeyOf(entries.get(start)));
+            if (state != null) {
+                break;
+            }
+            start--;
+        }
+        if (state == null) {
+            state = this.cache.get(cacheKeyOf(entries.get(start)));
+        }
+        int firstToReplay = (state != null) ? start + 1 : start;
+
+        Map<String, AdvisoryAuditTrailDiffWrapper> changes = readChanges(entries.subList(firstToReplay, target + 1),
+                archivedEntries);
+        if (state == null) {
+            // entries created before snapshots were introduced start with a diff to the empty advisory
+            state = AdvisoryWrapper.createInitialEmptyAdvisoryForUser(
+                    AuditTrailField.USER.stringVal(entries.get(firstToReplay)));
+        }
+        for (int i = firstToReplay; i <= target; i++) {
+            String entryId = idOf(entries.get(i));
+            AdvisoryAuditTrailDiffWrapper change = changes.get(entryId);
+            if (change == null) {
+                throw new CsafException("Audit trail entry " + entryId + " was removed",
+                        CsafExceptionKey.AuditTrailNotFound, HttpStatus.NOT_FOUND);
+            }
+            state = change.applyTo(state);
+            this.cache.put(cacheKeyOf(entries.get(i)), state);
+        }
+        LOG.debug("Reconstructed advisory {} at {} with {} changes", advisoryId, idOf(entries.get(target)),
+                target - firstToReplay + 1);
+
+        JsonNode targetEntry = entries.get(target);
+        return new AdvisoryHistoryResponse()
+                .setAdvisoryId(advisoryId)
+                .setAuditTrailId(idOf(targetEntry))
+                .setCreatedAt(AuditTrailField.CREATED_AT.stringVal(targetEntry))
+                .setUser(AuditTrailField.USER.stringVal(targetEntry))
+                .setChangeType(AuditTrailField.CHANGE_TYPE.stringVal(targetEntry))
+                .setDocVersion(targetEntry.path(AdvisoryAuditTrailField.DOC_VERSION.getDbName()).asString(null))
+                .setCsaf(state.getCsaf().deepCopy());
+    }
+
+    /**
+     * Read the archived document audit trail entries of the advisory by their id
+     */
+    private Map<String, ObjectNode> findArchivedEntries(String advisoryId) throws IOException {
+
+        Map<String, ObjectNode> archivedEntries = new HashMap<>();
+        for (ObjectNode entry : this.auditTrailArchive.findEntries(new AuditTrailQuery()
+                .setType(ObjectType.AuditTrailDocument).setAdvisoryId(advisoryId))) {
+            archivedEntries.put(idOf(entry), entry);
+        }
+        return archivedEntries;
+    }
+
+    /**
+     * Read the metadata of all document audit trail entries of the advisory in the database and merge them with
+     * the archived entries ordered by their creation
+     */
+    private List<JsonNode> findAuditTrailEntries(String advisoryId, Collection<ObjectNode> archivedEntries)
+            throws IOException {
+
+        Map<String, Object> selector = expr2CouchDBFilter(new AndExpression(
+                equal(ObjectType.AuditTrailDocument.name(), TYPE_FIELD.getDbName()),
+                equal(advisoryId, AdvisoryAuditTrailField.ADVISORY_ID.getDbName()),
+                // matches all entries, but lets the query use the audit trail index
+                greaterOrEqual("", AuditTrailField.CREATED_AT.getDbName())
+        ));
+        List<DbField> fields = List.of(ID_FIELD, REVISION_FIELD, AuditTrailField.CREATED_AT, AuditTrailField.USER,
+                AuditTrailField.CHANGE_TYPE, AdvisoryAuditTrailField.DOC_VERSION, AdvisoryAuditTrailField.CHECKPOINT,
+                AdvisoryAuditTrailField.COALESCED_UNTIL);
+        List<JsonNode> entries = new ArrayList<>(AdvisoryWorkflowUtil.findDocuments(this.couchDbService, selector, fields));
+        if (!archivedEntries.isEmpty()) {
+            // an entry is in the archive and the database if the archive job was interrupted
+            Set<String> idsInDatabase = entries.stream().map(AdvisoryHistoryService::idOf).collect(Collectors.toSet());
+            archivedEntries.stream().filter(entry -> !idsInDatabase.contains(idOf(entry))).forEach(entries::add);
+        }
+        entries.sort(Comparator.comparing(entry -> Instant.parse(AuditTrailField.CREATED_AT.stringVal(entry))));
+        return entries;
+    }
+
+    /**
+     * Read the diffs and snapshots of the given entries with one request, archived entries are taken from the archive
+     */
+    private Map<String, AdvisoryAuditTrailDiffWrapper> readChanges(List<JsonNode> entries,
+                                                                   Map<String, ObjectNode> archivedEntries)
+            throws IOException {
+
+        Map<String, AdvisoryAuditTrailDiffWrapper> changes = new HashMap<>();
+        List<String> ids = new ArrayList<>();
+        for (JsonNode entry : entries) {
+            ObjectNode archived = archivedEntries.get(idOf(entry));
+            if (archived != null) {
+                changes.put(idOf(entry), AdvisoryAuditTrailDiffWrapper.createFromCouchDb(archived));
+            } else {
+                ids.add(idOf(entry));
+            }
+        }
+        if (ids.isEmpty()) {
+            return changes;
+        }
+        Map<String, Object> selector = Map.of(ID_FIELD.getDbName(), Map.of("$in", ids));
+        List<DbField> fields = List.of(ID_FIELD, AuditTrailField.USER,
+                AdvisoryAuditTrailField.DIFF, AdvisoryAuditTrailField.DIFF_COMPRESSED,
+                AdvisoryAuditTrailField.SNAPSHOT, AdvisoryAuditTrailField.SNAPSHOT_COMPRESSED);
+        for (JsonNode change : AdvisoryWorkflowUtil.findDocuments(this.couchDbService, selector, fields)) {
+            changes.put(idOf(change), AdvisoryAuditTrailDiffWrapper.createFromCouchDb((ObjectNode) change));
+        }
+        return changes;
+    }
+
+    private static int indexOfId(List<JsonNode> entries, String auditTrailId) {
+
+        for (int i = 0; i < entries.size(); i++) {
+            if (auditTrailId.equals(idOf(entries.get(i)))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexAt(List<JsonNode> entries, @Nullable String at) throws CsafException {
+
+        if (at == null) {
+            return entries.size() - 1;
+        }
+        Instant timestamp;
+        try {
+            timestamp = Instant.parse(at);
+        } catch (DateTimeParseException ex) {
+            throw new CsafException("Invalid timestamp " + at, CsafExceptionKey.InvalidDateTimeFormat,
+                    HttpStatus.BAD_REQUEST);
+        }
+        int index = -1;
+        for (int i = 0; i < entries.size(); i++) {
+            if (!completedAt(entries.get(i)).isAfter(timestamp)) {
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * An entry that coalesces several edits contains the state after the last of them, the intermediate states
+     * are not recorded
+     */
+    private static Instant completedAt(JsonNode entry) {
+
+        JsonNode coalescedUntil = entry.get(AdvisoryAuditTrailField.COALESCED_UNTIL.getDbName());
+        return Instant.parse(coalescedUntil != null ? coalescedUntil.asString()
+                : AuditTrailField.CREATED_AT.stringVal(entry));
+    }
+
+    private static boolean isCheckpoint(JsonNode entry) {
+        return entry.path(AdvisoryAuditTrailField.CHECKPOINT.getDbName()).asBoolean(false);
+    }
+
+    private static String idOf(JsonNode entry) {
+        return ID_FIELD.stringVal(entry);
+    }
+
+    /**
+     * The id and revision of the entry, coalescing an edit into an entry changes its revision
+     */
+    private static String cacheKeyOf(JsonNode entry) {
+        return idOf(entry) + "/" + entry.path(REVISION_FIELD.getDbName()).asString("");
+    }
+
+    private CsafAuditTrailConfiguration getAuditTrailConfiguration() {
+        return (this.configuration.getAuditTrail() != null)
+                ? this.configuration.getAuditTrail() : new CsafAuditTrailConfiguration();
+    }
+
+    /**
+     * Least recently used reconstructed states by the id and revision of their audit trail entry
+     */
+    private static final class HistoryCache {
+
+        private final Map<String, AdvisoryWrapper> states;
+
+        HistoryCache(int maxSize) {
+            this.states = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, AdvisoryWrapper> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        synchronized AdvisoryWrapper get(String entryKey) {
+            return this.states.get(entryKey);
+        }
+
+        synchronized void put(String entryKey, AdvisoryWrapper state) {
+            this.states.put(entryKey, state);
+        }
+    }
+}
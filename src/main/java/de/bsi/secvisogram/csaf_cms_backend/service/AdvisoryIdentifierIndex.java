@@ -0,0 +1,157 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import de.bsi.secvisogram.csaf_cms_backend.model.AdvisoryIdentifierType;
+import jakarta.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.JsonNode;
+
+/**
+ * Index from the CVE and CWE ids of the vulnerabilities and the product ids and names of the product tree to the
+ * current advisories containing them, kept in memory.
+ * <p>
+ * Without it, finding the advisories of a CVE or product needs a ContainsIgnoreCase filter on the vulnerabilities
+ * or the product tree, which CouchDB answers by reading every document. The index is fed by the changes feed of the
+ * database, see {@link AdvisoryFeedIndex}.
+ */
+@Service
+public class AdvisoryIdentifierIndex extends AdvisoryFeedIndex {
+
+    private final Map<AdvisoryIdentifierType, Map<String, Set<String>>> advisoryIdsByIdentifier =
+            new EnumMap<>(AdvisoryIdentifierType.class);
+    private final Map<String, List<Identifier>> identifiersByAdvisoryId = new HashMap<>();
+
+    public AdvisoryIdentifierIndex() {
+        for (AdvisoryIdentifierType type : AdvisoryIdentifierType.values()) {
+            this.advisoryIdsByIdentifier.put(type, new HashMap<>());
+        }
+    }
+
+    /**
+     * Find the advisories visible with the given credentials containing the given identifier
+     *
+     * @param type        the type of the identifier
+     * @param value       the identifier
+     * @param credentials the credentials to check the visibility of the advisories with
+     * @return the ids of the matching advisories, sorted
+     */
+    public List<String> lookup(AdvisoryIdentifierType type, String value, Authentication credentials) {
+
+        catchUpBeforeQuery();
+        this.lock.readLock().lock();
+        try {
+            return this.advisoryIdsByIdentifier.get(type).getOrDefault(normalize(type, value), Set.of()).stream()
+                    .filter(advisoryId -> isVisible(advisoryId, credentials))
+                    .sorted()
+                    .toList();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected void addAdvisory(String advisoryId, JsonNode advisory) {
+
+        Set<Identifier> identifiers = new HashSet<>();
+        JsonNode csaf = advisory.path("csaf");
+        for (JsonNode vulnerability : csaf.path("vulnerabilities")) {
+            addIdentifier(identifiers, AdvisoryIdentifierType.Cve, vulnerability.path("cve"));
+            addIdentifier(identifiers, AdvisoryIdentifierType.Cwe, vulnerability.path("cwe").path("id"));
+            // CSAF 2.1 allows several weaknesses per vulnerability
+            for (JsonNode cwe : vulnerability.path("cwes")) {
+                addIdentifier(identifiers, AdvisoryIdentifierType.Cwe, cwe.path("id"));
+            }
+        }
+        forEachFullProductName(csaf.path("product_tree"), (product, versionBranch) -> {
+            addIdentifier(identifiers, AdvisoryIdentifierType.ProductId, product.path("product_id"));
+            addIdentifier(identifiers, AdvisoryIdentifierType.ProductName, product.path("name"));
+        });
+        for (Identifier identifier : identifiers) {
+            this.advisoryIdsByIdentifier.get(identifier.type())
+                    .computeIfAbsent(identifier.value(), key -> new HashSet<>()).add(advisoryId);
+        }
+        this.identifiersByAdvisoryId.put(advisoryId, new ArrayList<>(identifiers));
+    }
+
+    @Override
+    protected void removeAdvisory(String advisoryId) {
+
+        List<Identifier> identifiers = this.identifiersByAdvisoryId.remove(advisoryId);
+        if (identifiers != null) {
+            for (Identifier identifier : identifiers) {
+                Map<String, Set<String>> advisoryIds = this.advisoryIdsByIdentifier.get(identifier.type());
+                Set<String> advisoriesOfIdentifier = advisoryIds.get(identifier.value());
+                advisoriesOfIdentifier.remove(advisoryId);
+                if (advisoriesOfIdentifier.isEmpty()) {
+                    advisoryIds.remove(identifier.value());
+                }
+            }
+        }
+    }
+
+    /**
+     * Call the consumer for all full product names of the product tree: the full product names, the products of
+     * the branches at all levels and the full product names of the relationships. For the products of branches the
+     * nearest enclosing branch of the category {@code product_version} or {@code product_version_range} is passed
+     * as well, null otherwise.
+     *
+     * @param productTree the product tree of a csaf document
+     * @param consumer    the consumer of the full product name nodes and their version branch
+     */
+    static void forEachFullProductName(JsonNode productTree, BiConsumer<JsonNode, JsonNode> consumer) {
+
+        productTree.path("full_product_names").forEach(product -> consumer.accept(product, null));
+        forEachBranchProduct(productTree.path("branches"), null, consumer);
+        for (JsonNode relationship : productTree.path("relationships")) {
+            if (relationship.path("full_product_name").isObject()) {
+                consumer.accept(relationship.path("full_product_name"), null);
+            }
+        }
+    }
+
+    private static void forEachBranchProduct(JsonNode branches, @Nullable JsonNode versionBranch,
+                                             BiConsumer<JsonNode, JsonNode> consumer) {
+
+        for (JsonNode branch : branches) {
+            String category = branch.path("category").asString("");
+            JsonNode branchVersion = ("product_version".equals(category) || "product_version_range".equals(category))
+                    ? branch : versionBranch;
+            if (branch.path("product").isObject()) {
+                consumer.accept(branch.path("product"), branchVersion);
+            }
+            forEachBranchProduct(branch.path("branches"), branchVersion, consumer);
+        }
+    }
+
+    private static void addIdentifier(Set<Identifier> identifiers, AdvisoryIdentifierType type, JsonNode node) {
+
+        if (node.isString() && !node.asString().isBlank()) {
+            identifiers.add(new Identifier(type, normalize(type, node.asString())));
+        }
+    }
+
+    /**
+     * CVE and CWE ids are compared ignoring case, product names too, product ids have to match exactly
+     */
+    static String normalize(AdvisoryIdentifierType type, String value) {
+
+        String trimmed = value.trim();
+        return switch (type) {
+            case Cve, Cwe -> trimmed.toUpperCase(Locale.ROOT);
+            case ProductName -> trimmed.toLowerCase(Locale.ROOT);
+            case ProductId -> trimmed;
+        };
+    }
+
+    private record Identifier(AdvisoryIdentifierType type, String value) {
+    }
+}
@@ -0,0 +1,120 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles.Role;
+import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * Permissions of a user on advisories as lookup table.
+ * The rules in {@link AdvisoryWorkflowUtil} only depend on the roles of the user, the workflow state
+ * of the advisory and whether the user owns the advisory. So they are evaluated once for every workflow state
+ * and ownership and the resulting table is shared by all users with the same roles.
+ * Enriching an advisory is then a lookup instead of evaluating the rules again.
+ */
+public final class AdvisoryPermissionMatrix {
+
+    private static final Map<String, Role> ROLES_BY_NAME = Arrays.stream(Role.values())
+            .collect(Collectors.toMap(Role::getRoleName, Function.identity()));
+    private static final Map<Integer, Permissions[]> TABLES = new ConcurrentHashMap<>();
+
+    private final Authentication credentials;
+    private final boolean allowOwnDocumentsApproved;
+    private final Permissions[] table;
+
+    private AdvisoryPermissionMatrix(Authentication credentials, boolean allowOwnDocumentsApproved,
+                                     Permissions[] table) {
+        this.credentials = credentials;
+        this.allowOwnDocumentsApproved = allowOwnDocumentsApproved;
+        this.table = table;
+    }
+
+    /**
+     * Get the permission matrix for the given credentials
+     * @param credentials the credentials of the user
+     * @param allowOwnDocumentsApproved whether a user may approve their own advisory (Review -> Approved)
+     * @return the matrix
+     */
+    public static AdvisoryPermissionMatrix forCredentials(Authentication credentials, boolean allowOwnDocumentsApproved) {
+
+        int key = roleBits(credentials) << 1 | (allowOwnDocumentsApproved ? 1 : 0);
+        Permissions[] table = TABLES.computeIfAbsent(key,
+                unused -> compileTable(credentials, allowOwnDocumentsApproved));
+        return new AdvisoryPermissionMatrix(credentials, allowOwnDocumentsApproved, table);
+    }
+
+    /**
+     * Set the permission fields of the given advisory info
+     * @param response the advisory info to enrich
+     */
+    public void enrich(AdvisoryInformationResponse response) {
+
+        if (response.getWorkflowState() == null) {
+            AdvisoryWorkflowUtil.enrichAdvisory(response, this.credentials, this.allowOwnDocumentsApproved);
+            return;
+        }
+        Permissions permissions = this.table[index(response.getWorkflowState(),
+                Objects.equals(response.getOwner(), this.credentials.getName()))];
+        response.setDeletable(permissions.deletable());
+        response.setChangeable(permissions.changeable());
+        response.setAllowedStateChanges(permissions.allowedStateChanges());
+        response.setCanCreateVersion(permissions.canCreateVersion());
+    }
+
+    /**
+     * Bitset of all csaf roles of the given credentials, bit n is set for the role with ordinal n
+     */
+    static int roleBits(Authentication credentials) {
+
+        int bits = 0;
+        for (GrantedAuthority authority : credentials.getAuthorities()) {
+            Role role = ROLES_BY_NAME.get(authority.getAuthority());
+            if (role != null) {
+                bits |= 1 << role.ordinal();
+            }
+        }
+        return bits;
+    }
+
+    private static Permissions[] compileTable(Authentication credentials, boolean allowOwnDocumentsApproved) {
+
+        String ownUser = credentials.getName();
+        String otherUser = ownUser + "#other";
+        Permissions[] table = new Permissions[WorkflowState.values().length * 2];
+        for (WorkflowState state : WorkflowState.values()) {
+            table[index(state, true)] = evaluateRules(ownUser, state, credentials, allowOwnDocumentsApproved);
+            table[index(state, false)] = evaluateRules(otherUser, state, credentials, allowOwnDocumentsApproved);
+        }
+        return table;
+    }
+
+    private static Permissions evaluateRules(String owner, WorkflowState state, Authentication credentials,
+                                             boolean allowOwnDocumentsApproved) {
+
+        List<WorkflowState> allowedStates = Arrays.stream(WorkflowState.values())
+                .filter(newState -> AdvisoryWorkflowUtil.canChangeWorkflow(owner, state, newState, credentials,
+                        allowOwnDocumentsApproved))
+                .toList();
+        return new Permissions(
+                AdvisoryWorkflowUtil.canDeleteAdvisory(owner, state, credentials),
+                AdvisoryWorkflowUtil.canChangeAdvisory(owner, state, credentials),
+                AdvisoryWorkflowUtil.canCreateNewVersion(owner, state, credentials),
+                allowedStates);
+    }
+
+    private static int index(WorkflowState state, boolean own) {
+        return state.ordinal() * 2 + (own ? 1 : 0);
+    }
+
+    private record Permissions(boolean deletable, boolean changeable, boolean canCreateVersion,
+                               List<WorkflowState> allowedStateChanges) {
+    }
+}
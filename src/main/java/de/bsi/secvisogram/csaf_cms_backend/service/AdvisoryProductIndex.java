@@ -0,0 +1,255 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import de.bsi.secvisogram.csaf_cms_backend.model.ProductMatchType;
+import jakarta.annotation.Nullable;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.JsonNode;
+
+/**
+ * Index of the product identification helpers in the product trees of the current advisories, kept in memory, to
+ * find the advisories of the components listed in an SBOM.
+ * <p>
+ * The purls and CPEs of all full product names are indexed by their package, that is the purl without version,
+ * qualifiers and subpath, and the part, vendor and product of the CPE. A product without version in its identifier
+ * takes the version or version range from the enclosing {@code product_version} or {@code product_version_range}
+ * branch. The file hashes are indexed by their value. The index is fed by the changes feed of the database, see
+ * {@link AdvisoryFeedIndex}.
+ */
+@Service
+public class AdvisoryProductIndex extends AdvisoryFeedIndex {
+
+    public static final int MAX_IDENTIFIERS = 10000;
+
+    private static final String[] PRODUCT_STATUS_CATEGORIES = {"first_affected", "first_fixed", "fixed",
+        "known_affected", "known_not_affected", "last_affected", "recommended", "under_investigation"};
+
+    // package or hash key -> products with this key
+    private final Map<String, List<IndexedProduct>> productsByKey = new HashMap<>();
+    private final Map<String, Set<String>> keysByAdvisoryId = new HashMap<>();
+
+    /**
+     * Find the products of the advisories visible with the given credentials matching the given identifiers
+     *
+     * @param identifiers the purls, CPEs or file hashes to match, identifiers of other formats match nothing
+     * @param credentials the credentials to check the visibility of the advisories with
+     * @return the matches in the order of the identifiers, then of the advisory and product ids
+     */
+    public List<Match> match(List<String> identifiers, Authentication credentials) {
+
+        catchUpBeforeQuery();
+        List<Match> matches = new ArrayList<>();
+        this.lock.readLock().lock();
+        try {
+            for (String identifier : identifiers) {
+                Optional<ProductIdentifier> parsed = ProductIdentifier.parse(identifier);
+                if (parsed.isEmpty()) {
+                    continue;
+                }
+                List<Match> identifierMatches = new ArrayList<>();
+                for (IndexedProduct product : this.productsByKey.getOrDefault(parsed.get().key(), List.of())) {
+                    Optional<ProductMatchType> matchType = product.matches(parsed.get());
+                    if (matchType.isPresent() && isVisible(product.advisoryId(), credentials)) {
+                        identifierMatches.add(new Match(identifier, product.advisoryId(), product.productId(),
+                                matchType.get(), product.productStatus()));
+                    }
+                }
+                identifierMatches.stream()
+                        .sorted(Comparator.comparing(Match::advisoryId).thenComparing(Match::productId))
+                        .distinct()
+                        .forEach(matches::add);
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return matches;
+    }
+
+    @Override
+    protected void addAdvisory(String advisoryId, JsonNode advisory) {
+
+        JsonNode csaf = advisory.path("csaf");
+        Map<String, Set<String>> productStatus = productStatusById(csaf.path("vulnerabilities"));
+        Set<String> keys = new TreeSet<>();
+        AdvisoryIdentifierIndex.forEachFullProductName(csaf.path("product_tree"), (product, versionBranch) -> {
+            String productId = product.path("product_id").asString("");
+            Set<String> status = productStatus.getOrDefault(productId, Set.of());
+            JsonNode helper = product.path("product_identification_helper");
+            List<String> identifiers = new ArrayList<>();
+            addText(identifiers, helper.path("purl"));
+            // CSAF 2.1 allows several purls per product
+            helper.path("purls").forEach(purl -> addText(identifiers, purl));
+            addText(identifiers, helper.path("cpe"));
+            for (JsonNode hash : helper.path("hashes")) {
+                hash.path("file_hashes").forEach(fileHash -> addText(identifiers, fileHash.path("value")));
+            }
+            for (String identifier : identifiers) {
+                ProductIdentifier.parse(identifier).ifPresent(parsed -> {
+                    IndexedProduct indexed = IndexedProduct.of(advisoryId, productId, parsed, versionBranch, status);
+                    this.productsByKey.computeIfAbsent(parsed.key(), key -> new ArrayList<>()).add(indexed);
+                    keys.add(parsed.key());
+                });
+            }
+        });
+        this.keysByAdvisoryId.put(advisoryId, keys);
+    }
+
+    @Override
+    protected void removeAdvisory(String advisoryId) {
+
+        Set<String> keys = this.keysByAdvisoryId.remove(advisoryId);
+        if (keys != null) {
+            for (String key : keys) {
+                List<IndexedProduct> products = this.productsByKey.get(key);
+                products.removeIf(product -> product.advisoryId().equals(advisoryId));
+                if (products.isEmpty()) {
+                    this.productsByKey.remove(key);
+                }
+            }
+        }
+    }
+
+    private static void addText(List<String> texts, JsonNode node) {
+
+        if (node.isString() && !node.asString().isBlank()) {
+            texts.add(node.asString());
+        }
+    }
+
+    /**
+     * Collect the categories of the product status of all vulnerabilities by product id
+     */
+    private static Map<String, Set<String>> productStatusById(JsonNode vulnerabilities) {
+
+        Map<String, Set<String>> statusById = new HashMap<>();
+        for (JsonNode vulnerability : vulnerabilities) {
+            JsonNode productStatus = vulnerability.path("product_status");
+            for (String category : PRODUCT_STATUS_CATEGORIES) {
+                for (JsonNode productId : productStatus.path(category)) {
+                    statusById.computeIfAbsent(productId.asString(""), key -> new TreeSet<>()).add(category);
+                }
+            }
+        }
+        return statusById;
+    }
+
+    /**
+     * A product of an advisory matching an identifier
+     *
+     * @param identifier    the identifier as given in the query
+     * @param advisoryId    the id of the advisory
+     * @param productId     the product_id of the product in the product tree
+     * @param matchType     how the identifier matches the product
+     * @param productStatus the categories of the product status of the product in the vulnerabilities
+     */
+    public record Match(String identifier, String advisoryId, String productId, ProductMatchType matchType,
+                        Set<String> productStatus) {
+    }
+
+    /**
+     * A purl, CPE or file hash split into the key of the index and the version
+     *
+     * @param key     the package of a purl prefixed with {@code pkg:}, the part, vendor and product of a CPE
+     *                prefixed with {@code cpe:}, or the lower case value of a hash prefixed with {@code hash:}
+     * @param version the version of the purl or CPE, null for hashes and identifiers of all versions
+     * @param hash    true - the identifier is a file hash
+     */
+    record ProductIdentifier(String key, @Nullable String version, boolean hash) {
+
+        static Optional<ProductIdentifier> parse(String identifier) {
+
+            String trimmed = identifier.trim();
+            String lowerCase = trimmed.toLowerCase(Locale.ROOT);
+            if (lowerCase.startsWith("pkg:")) {
+                return parsePurl(trimmed.substring("pkg:".length()));
+            } else if (lowerCase.startsWith("cpe:2.3:")) {
+                return parseCpe(trimmed.substring("cpe:2.3:".length()).split("(?<!\\\\):"));
+            } else if (lowerCase.startsWith("cpe:/")) {
+                return parseCpe(trimmed.substring("cpe:/".length()).split(":"));
+            } else if (lowerCase.matches("[0-9a-f]{32,}")) {
+                return Optional.of(new ProductIdentifier("hash:" + lowerCase, null, true));
+            }
+            return Optional.empty();
+        }
+
+        private static Optional<ProductIdentifier> parsePurl(String purl) {
+
+            String withoutSubpath = purl.split("#", 2)[0];
+            String coordinates = withoutSubpath.split("\\?", 2)[0].replaceAll("^/+", "");
+            int versionStart = coordinates.indexOf('@', coordinates.lastIndexOf('/') + 1);
+            String packageName = versionStart < 0 ? coordinates : coordinates.substring(0, versionStart);
+            if (packageName.indexOf('/') <= 0) {
+                return Optional.empty();
+            }
+            String version = versionStart < 0 ? null : decode(coordinates.substring(versionStart + 1));
+            return Optional.of(new ProductIdentifier("pkg:" + decode(packageName).toLowerCase(Locale.ROOT),
+                    (version == null || version.isEmpty()) ? null : version, false));
+        }
+
+        private static Optional<ProductIdentifier> parseCpe(String[] components) {
+
+            if (components.length < 3) {
+                return Optional.empty();
+            }
+            String key = String.join(":", components[0], components[1], components[2]).toLowerCase(Locale.ROOT);
+            String version = components.length > 3 ? components[3].replace("\\", "") : "";
+            boolean anyVersion = version.isEmpty() || "*".equals(version) || "-".equals(version);
+            return Optional.of(new ProductIdentifier("cpe:" + key, anyVersion ? null : version, false));
+        }
+
+        private static String decode(String text) {
+            return URLDecoder.decode(text.replace("+", "%2B"), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * An indexed product with the version or the version range it covers, a range that can not be parsed is
+     * regarded as covering all versions
+     */
+    private record IndexedProduct(String advisoryId, String productId, @Nullable String version,
+                                  @Nullable VersionRange versionRange, boolean hash, Set<String> productStatus) {
+
+        static IndexedProduct of(String advisoryId, String productId, ProductIdentifier identifier,
+                                 @Nullable JsonNode versionBranch, Set<String> productStatus) {
+
+            String version = identifier.version();
+            VersionRange versionRange = null;
+            if (version == null && versionBranch != null) {
+                String branchName = versionBranch.path("name").asString("");
+                if ("product_version_range".equals(versionBranch.path("category").asString(""))) {
+                    versionRange = VersionRange.parse(branchName).orElse(null);
+                } else if (!branchName.isBlank()) {
+                    version = branchName;
+                }
+            }
+            return new IndexedProduct(advisoryId, productId, version, versionRange, identifier.hash(), productStatus);
+        }
+
+        Optional<ProductMatchType> matches(ProductIdentifier identifier) {
+
+            if (this.hash) {
+                return Optional.of(ProductMatchType.Hash);
+            } else if (identifier.version() == null) {
+                return Optional.of(ProductMatchType.Package);
+            } else if (this.version != null) {
+                return VersionRange.compareVersions(identifier.version(), this.version) == 0
+                        ? Optional.of(ProductMatchType.Version) : Optional.empty();
+            } else if (this.versionRange != null) {
+                return this.versionRange.contains(identifier.version())
+                        ? Optional.of(ProductMatchType.VersionRange) : Optional.empty();
+            }
+            return Optional.of(ProductMatchType.Package);
+        }
+    }
+}
@@ -45,7 +45,7 @@ public class AdvisorySearchUtil {
      * @param visibilityExpr  optional additional visibility filter; {@code null} means no extra
      *                        constraint (caller can see everything)
      * @return a ready-to-use Mango selector map
-     * @throws CsafException if the expression string cannot be parsed
+     * @throws CsafException if the expression string cannot be parsed or has invalid values
      */
     public static Map<String, Object> buildAdvisoryExpression(String expression, ObjectType objectType,
                                                               @Nullable Expression visibilityExpr)
@@ -93,7 +93,7 @@ public class AdvisorySearchUtil {
                 }
             }
             return resulSelector;
-        } catch (JacksonException ex) {
+        } catch (JacksonException | IllegalArgumentException ex) {
             LOG.debug("Invalid expression", ex);
             throw new CsafException("Invalid filter expression", CsafExceptionKey.InvalidFilterExpression,
                     HttpStatus.BAD_REQUEST);
@@ -1,19 +1,25 @@
 package de.bsi.secvisogram.csaf_cms_backend.service;
 
+import com.ibm.cloud.cloudant.v1.model.Document;
 import com.ibm.cloud.sdk.core.service.exception.BadRequestException;
+import com.ibm.cloud.sdk.core.service.exception.ConflictException;
 import com.ibm.cloud.sdk.core.service.exception.NotFoundException;
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafAuditTrailConfiguration;
 import de.bsi.secvisogram.csaf_cms_backend.config.CsafConfiguration;
 import de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles;
 import de.bsi.secvisogram.csaf_cms_backend.couchdb.*;
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafExceptionKey;
 import de.bsi.secvisogram.csaf_cms_backend.json.*;
+import de.bsi.secvisogram.csaf_cms_backend.model.AdvisoryChangeType;
+import de.bsi.secvisogram.csaf_cms_backend.model.AdvisoryIdentifierType;
 import de.bsi.secvisogram.csaf_cms_backend.model.ChangeType;
 import de.bsi.secvisogram.csaf_cms_backend.model.DocumentTrackingStatus;
 import de.bsi.secvisogram.csaf_cms_backend.model.ExportFormat;
 import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
 import de.bsi.secvisogram.csaf_cms_backend.model.filter.AndExpression;
 import de.bsi.secvisogram.csaf_cms_backend.model.filter.Expression;
+import de.bsi.secvisogram.csaf_cms_backend.model.filter.OrExpression;
 import de.bsi.secvisogram.csaf_cms_backend.mustache.JavascriptExporter;
 import de.bsi.secvisogram.csaf_cms_backend.rest.request.CreateAdvisoryRequest;
 import de.bsi.secvisogram.csaf_cms_backend.rest.request.CreateCommentRequest;
@@ -34,6 +40,7 @@ import tools.jackson.core.JacksonException;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.MappingIterator;
 import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -43,8 +50,12 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
@@ -57,8 +68,9 @@ import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbField.TYPE_FIEL
 import static de.bsi.secvisogram.csaf_cms_backend.exception.CsafExceptionKey.*;
 import static de.bsi.secvisogram.csaf_cms_backend.model.DocumentTrackingStatus.Final;
 import static de.bsi.secvisogram.csaf_cms_backend.model.DocumentTrackingStatus.Interim;
-import static de.bsi.secvisogram.csaf_cms_backend.model.filter.OperatorExpression.containsIgnoreCase;
 import static de.bsi.secvisogram.csaf_cms_backend.model.filter.OperatorExpression.equal;
+import static de.bsi.secvisogram.csaf_cms_backend.model.filter.OperatorExpression.greaterOrEqual;
+import static de.bsi.secvisogram.csaf_cms_backend.model.filter.OperatorExpression.lessOrEqual;
 import static de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryWorkflowUtil.*;
 import static java.util.Collections.emptyList;
 import static org.springframework.http.HttpStatus.*;
@@ -68,9 +80,54 @@ import static org.springframework.http.HttpStatus.*;
 public class AdvisoryService {
 
     private static final Logger LOG = LoggerFactory.getLogger(AdvisoryService.class);
+    private static final String DUE_FOR_PUBLICATION_DESIGN_DOC = "csaf-publication";
+    private static final String DUE_FOR_PUBLICATION_INDEX = "due-for-publication";
+    /** the largest offset of a timestamp in ISO 8601 format */
+    private static final long MAX_OFFSET_HOURS = 18;
+    private static final String NORMALIZED_SEARCH_DESIGN_DOC = "csaf-search";
+    private static final String NORMALIZED_SEARCH_INDEX_PREFIX = "advisories-by-";
+    private static final String COMMENTS_DESIGN_DOC = "csaf-comments";
+    private static final String COMMENTS_BY_ADVISORY_INDEX = "comments-by-advisory";
+    /**
+     * prefix of the bookmarks of pages of archived audit trail entries, followed by the month and the index of the
+     * first entry of the page in the month ({@code archive:2024-01:20})
+     */
+    private static final String ARCHIVE_BOOKMARK_PREFIX = "archive:";
+    static final String AUDIT_TRAIL_DESIGN_DOC = "csaf-audit-trail";
+    static final String AUDIT_TRAIL_BY_ADVISORY_INDEX = "audit-trail-by-advisory";
+    static final List<DbField> AUDIT_TRAIL_BY_ADVISORY_FIELDS = List.of(TYPE_FIELD, ADVISORY_ID, AuditTrailField.CREATED_AT);
+    static final String AUDIT_TRAIL_BY_TIME_INDEX = "audit-trail-by-time";
+    static final List<DbField> AUDIT_TRAIL_BY_TIME_FIELDS = List.of(TYPE_FIELD, AuditTrailField.CREATED_AT);
+    private static final List<ObjectType> ADVISORY_AUDIT_TRAIL_TYPES =
+            List.of(ObjectType.AuditTrailDocument, ObjectType.AuditTrailWorkflow);
+    /**
+     * maximum number of comments whose audit trails are read with one query
+     */
+    private static final int COMMENT_IDS_PER_QUERY = 200;
+
+    private final Set<String> checkedIndexes = ConcurrentHashMap.newKeySet();
+
     @Autowired
     private CouchDbService couchDbService;
 
+    @Autowired
+    private AdvisoryCounterService advisoryCounterService;
+
+    @Autowired
+    private AdvisoryHistoryService advisoryHistoryService;
+
+    @Autowired
+    private AuditTrailArchive auditTrailArchive;
+
+    @Autowired
+    private AdvisoryTextIndex advisoryTextIndex;
+
+    @Autowired
+    private AdvisoryIdentifierIndex advisoryIdentifierIndex;
+
+    @Autowired
+    private AdvisoryProductIndex advisoryProductIndex;
+
     @Autowired
     private JavascriptExporter javascriptExporter;
 
@@ -80,6 +137,9 @@ public class AdvisoryService {
     @Autowired
     private WeasyprintService weasyprintService;
 
+    @Autowired
+    private AdvisoryEventService advisoryEventService;
+
     @Value("${csaf.document.versioning}")
     private String versioningStrategy;
 
@@ -118,14 +178,30 @@ public class AdvisoryService {
     @Secured({CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUDITOR})
     public List<AdvisoryInformationResponse> getAdvisoryInformations(String expression) throws IOException, CsafException {
 
+        return getAdvisoryInformations(expression, false);
+    }
+
+    /**
+     * get information on all advisories
+     *
+     * @param expression the optional filter expression
+     * @param withCounts true to add the number of comments, answers and audit trail entries of each advisory
+     * @return a list of information objects
+     */
+    @Secured({CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUDITOR})
+    public List<AdvisoryInformationResponse> getAdvisoryInformations(String expression, boolean withCounts)
+            throws IOException, CsafException {
+
         Authentication credentials = getAuthentication();
 
         Expression visibilityExpr = AdvisoryWorkflowUtil.buildVisibilityExpression(credentials);
         // Visibility filtering is now pushed into the DB query via buildAdvisoryExpression(credentials).
         List<AdvisoryInformationResponse> allAdvisories = readAllAdvisories(expression, ObjectType.Advisory, visibilityExpr);
         // set calculated fields in response
+        AdvisoryPermissionMatrix permissions = AdvisoryPermissionMatrix.forCredentials(credentials,
+                configuration.getWorkflow().isAllowOwnDocumentsApproved());
         for (AdvisoryInformationResponse response : allAdvisories) {
-            enrichAdvisory(response, credentials);
+            permissions.enrich(response);
         }
         List<AdvisoryInformationResponse> allResponses = new ArrayList<>(allAdvisories);
 
@@ -136,13 +212,120 @@ public class AdvisoryService {
             }
             allResponses.addAll(allAdvisoryVersions);
         }
+        if (withCounts) {
+            this.advisoryCounterService.addCounts(allResponses, credentials);
+        }
         return allResponses;
     }
 
+    /**
+     * Search the texts of the advisories visible to the user with the full-text index
+     *
+     * @param query the terms to search for, see {@link AdvisoryTextIndex}
+     * @param limit the maximum number of advisories to return
+     * @return the matching advisories, best match first
+     * @throws CsafException if the query is empty
+     */
+    @Secured({CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUDITOR})
+    public List<AdvisoryInformationResponse> searchAdvisories(String query, int limit) throws IOException, CsafException {
+
+        if (query == null || query.isBlank()) {
+            throw new CsafException("The search query must not be empty", InvalidFilterExpression, BAD_REQUEST);
+        }
+        Authentication credentials = getAuthentication();
+        List<AdvisoryTextIndex.Hit> hits = this.advisoryTextIndex.search(query, credentials,
+                Math.max(1, Math.min(limit, AdvisoryTextIndex.MAX_LIMIT)));
+        return readIndexedAdvisories(hits.stream().map(AdvisoryTextIndex.Hit::advisoryId).toList(), credentials);
+    }
+
+    /**
+     * Find the advisories visible to the user containing the given CVE, CWE, product id or product name
+     *
+     * @param type  the type of the identifier
+     * @param value the identifier
+     * @return the matching advisories
+     * @throws CsafException if the identifier is empty
+     */
+    @Secured({CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUDITOR})
+    public List<AdvisoryInformationResponse> lookupAdvisories(AdvisoryIdentifierType type, String value)
+            throws IOException, CsafException {
+
+        if (value == null || value.isBlank()) {
+            throw new CsafException("The identifier must not be empty", InvalidFilterExpression, BAD_REQUEST);
+        }
+        Authentication credentials = getAuthentication();
+        return readIndexedAdvisories(this.advisoryIdentifierIndex.lookup(type, value, credentials), credentials);
+    }
+
+    /**
+     * Find the products of the advisories visible to the user matching the given purls, CPEs or file hashes
+     *
+     * @param identifiers the identifiers of the components, for example from an SBOM
+     * @return the matching products in the order of the identifiers
+     * @throws CsafException if no or too many identifiers are given
+     */
+    @Secured({CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUDITOR})
+    public List<AffectedProductResponse> matchProducts(List<String> identifiers) throws CsafException {
+
+        if (identifiers == null || identifiers.isEmpty() || identifiers.size() > AdvisoryProductIndex.MAX_IDENTIFIERS) {
+            throw new CsafException("Between 1 and " + AdvisoryProductIndex.MAX_IDENTIFIERS
+                    + " product identifiers have to be given", TooManyProductIdentifiers, BAD_REQUEST);
+        }
+        return this.advisoryProductIndex.match(identifiers, getAuthentication()).stream()
+                .map(match -> new AffectedProductResponse()
+                        .setIdentifier(match.identifier())
+                        .setAdvisoryId(match.advisoryId())
+                        .setProductId(match.productId())
+                        .setMatchType(match.matchType())
+                        .setProductStatus(List.copyOf(match.productStatus())))
+                .toList();
+    }
+
+    /**
+     * Read the list entries of the advisories found in an index. The index may lag behind the database, so the
+     * visibility is checked again.
+     *
+     * @param advisoryIds the ids of the advisories in the order to return
+     * @param credentials the credentials of the user
+     * @return the visible advisories in the given order
+     */
+    private List<AdvisoryInformationResponse> readIndexedAdvisories(List<String> advisoryIds,
+                                                                    Authentication credentials) throws IOException {
+
+        if (advisoryIds.isEmpty()) {
+            return emptyList();
+        }
+        Map<DbField, BiConsumer<AdvisoryInformationResponse, String>> infoFields = AdvisoryWorkflowUtil.advisoryReadFields();
+        Map<String, Object> selector = Map.of(
+                TYPE_FIELD.getDbName(), ObjectType.Advisory.name(),
+                ID_FIELD.getDbName(), Map.of("$in", advisoryIds));
+        Map<String, AdvisoryInformationResponse> advisoriesById = new HashMap<>();
+        for (JsonNode couchDbDoc : this.findDocuments(selector, new ArrayList<>(infoFields.keySet()))) {
+            AdvisoryInformationResponse advisory = AdvisoryWrapper.convertToAdvisoryInfo(couchDbDoc, infoFields);
+            advisoriesById.put(advisory.getAdvisoryId(), advisory);
+        }
+        AdvisoryPermissionMatrix permissions = AdvisoryPermissionMatrix.forCredentials(credentials,
+                configuration.getWorkflow().isAllowOwnDocumentsApproved());
+        List<AdvisoryInformationResponse> result = new ArrayList<>();
+        for (String advisoryId : advisoryIds) {
+            AdvisoryInformationResponse advisory = advisoriesById.get(advisoryId);
+            if (advisory != null && canViewAdvisory(advisory, credentials)) {
+                permissions.enrich(advisory);
+                result.add(advisory);
+            }
+        }
+        return result;
+    }
+
     private List<AdvisoryInformationResponse> readAllAdvisories(String expression, ObjectType objectType,
                                                                 Expression visibilityExpr)
             throws CsafException, IOException {
 
+        // indexes for the case-insensitive searches on the normalized shadow fields
+        for (NormalizedSearchField field : NormalizedSearchField.values()) {
+            ensureIndex(NORMALIZED_SEARCH_DESIGN_DOC, NORMALIZED_SEARCH_INDEX_PREFIX + field.getName(),
+                    List.of(TYPE_FIELD, field));
+        }
         Map<DbField, BiConsumer<AdvisoryInformationResponse, String>> infoFields = AdvisoryWorkflowUtil.advisoryReadFields();
         Map<String, Object> selector = AdvisorySearchUtil.buildAdvisoryExpression(expression, objectType, visibilityExpr);
         List<JsonNode> docList = this.findDocuments(selector, new ArrayList<>(infoFields.keySet()));
@@ -151,11 +334,92 @@ public class AdvisoryService {
                 .toList();
     }
 
-    private void enrichAdvisory(AdvisoryInformationResponse response, Authentication credentials) {
-        response.setDeletable(canDeleteAdvisory(response, credentials));
-        response.setChangeable(canChangeAdvisory(response, credentials));
-        response.setAllowedStateChanges(getAllowedStates(response, credentials));
-        response.setCanCreateVersion(canCreateNewVersion(response, credentials));
+    /**
+     * get the advisories in workflow state AutoPublish whose current release date is not in the future.
+     * Only the fields needed to publish the advisory are read, the query is served by an index on
+     * type, workflow state and current release date, so it doesn't scan all advisories.
+     *
+     * @return the advisories due for publication and the number of examined documents
+     */
+    @Secured({CsafRoles.ROLE_PUBLISHER})
+    public PublicationCandidates getAdvisoriesDueForPublication() throws IOException {
+
+        Instant now = Instant.now();
+        // the database compares the local date and time of the release dates as strings, a date with an offset
+        // of +18:00 is due 18 hours before its local time is reached, so the query reads all advisories up to
+        // this local time and the release dates are checked again with their offset
+        String releasedUntil = DateTimeFormatter.ISO_INSTANT.format(
+                now.plus(MAX_OFFSET_HOURS, ChronoUnit.HOURS).truncatedTo(ChronoUnit.SECONDS));
+        PublicationCandidates candidates = findAutoPublishAdvisories(releasedUntil);
+        List<AdvisoryInformationResponse> dueAdvisories = candidates.getAdvisories().stream()
+                .filter(advisory -> AdvisoryWorkflowUtil.parseTimestamp(advisory.getCurrentReleaseDate())
+                        .filter(releaseDate -> !releaseDate.isAfter(now))
+                        .isPresent())
+                .toList();
+        return new PublicationCandidates(dueAdvisories, candidates.getDocumentsExamined());
+    }
+
+    /**
+     * get all advisories in workflow state AutoPublish regardless of their current release date.
+     * Only the fields needed to publish the advisory are read.
+     *
+     * @return the advisories in workflow state AutoPublish and the number of examined documents
+     */
+    @Secured({CsafRoles.ROLE_PUBLISHER})
+    public PublicationCandidates getAutoPublishAdvisories() throws IOException {
+
+        return findAutoPublishAdvisories(null);
+    }
+
+    private PublicationCandidates findAutoPublishAdvisories(@Nullable String releasedUntil) throws IOException {
+
+        ensureIndex(DUE_FOR_PUBLICATION_DESIGN_DOC, DUE_FOR_PUBLICATION_INDEX,
+                List.of(TYPE_FIELD, AdvisoryField.WORKFLOW_STATE, AdvisorySearchField.DOCUMENT_TRACKING_CURRENT_RELEASE_DATE));
+        List<Expression> terms = new ArrayList<>();
+        terms.add(equal(ObjectType.Advisory.name(), TYPE_FIELD.getDbName()));
+        terms.add(equal(WorkflowState.AutoPublish.name(), AdvisoryField.WORKFLOW_STATE.getDbName()));
+        if (releasedUntil != null) {
+            terms.add(lessOrEqual(releasedUntil, AdvisorySearchField.DOCUMENT_TRACKING_CURRENT_RELEASE_DATE.getFieldPath()));
+        }
+        Map<String, Object> selector = expr2CouchDBFilter(new AndExpression(terms.toArray(new Expression[0])));
+
+        Map<DbField, BiConsumer<AdvisoryInformationResponse, String>> infoFields = Map.of(
+                ID_FIELD, AdvisoryInformationResponse::setAdvisoryId,
+                CouchDbField.REVISION_FIELD, AdvisoryInformationResponse::setRevision,
+                AdvisoryField.WORKFLOW_STATE, AdvisoryInformationResponse::setWorkflowState,
+                DOCUMENT_TRACKING_ID, AdvisoryInformationResponse::setDocumentTrackingId,
+                AdvisorySearchField.DOCUMENT_TRACKING_CURRENT_RELEASE_DATE, AdvisoryInformationResponse::setCurrentReleaseDate
+        );
+        InputStream resultStream = this.couchDbService.findDocumentsAsStream(selector, infoFields.keySet(),
+                DUE_FOR_PUBLICATION_DESIGN_DOC, DUE_FOR_PUBLICATION_INDEX);
+        JsonNode result = new JsonMapper().readValue(resultStream, JsonNode.class);
+        List<AdvisoryInformationResponse> advisories = new ArrayList<>();
+        result.get("docs").forEach(doc -> advisories.add(AdvisoryWrapper.convertToAdvisoryInfo(doc, infoFields)));
+        long documentsExamined = result.path("execution_stats").path("total_docs_examined").asLong(advisories.size());
+        return new PublicationCandidates(advisories, documentsExamined);
+    }
+
+    /**
+     * Create the index once per instance, it is not needed on later calls
+     *
+     * @param designDocument the design document of the index
+     * @param indexName      the name of the index
+     * @param fields         the fields to index in the given order
+     */
+    private void ensureIndex(String designDocument, String indexName, List<DbField> fields) {
+
+        if (!this.checkedIndexes.contains(indexName)) {
+            try {
+                boolean created = this.couchDbService.createIndex(designDocument, indexName, fields);
+                if (created) {
+                    LOG.info("Created index {}", indexName);
+                }
+                this.checkedIndexes.add(indexName);
+            } catch (RuntimeException ex) {
+                // the query still works without the index, try again on the next call
+                LOG.warn("Could not create index {}", indexName, ex);
+            }
+        }
     }
 
     private void enrichAdvisoryVersion(AdvisoryInformationResponse response) {
@@ -168,9 +432,7 @@ public class AdvisoryService {
     private List<WorkflowState> getAllowedStates(AdvisoryInformationResponse response, Authentication credentials) {
 
         final var allowOwnDocumentsApproved = configuration.getWorkflow().isAllowOwnDocumentsApproved();
-        return Arrays.stream(WorkflowState.values())
-                .filter(state -> AdvisoryWorkflowUtil.canChangeWorkflow(response, state, credentials, allowOwnDocumentsApproved))
-                .collect(Collectors.toList());
+        return AdvisoryWorkflowUtil.getAllowedStates(response, credentials, allowOwnDocumentsApproved);
     }
 
     /**
@@ -209,15 +471,17 @@ public class AdvisoryService {
         }
 
         UUID advisoryId = UUID.randomUUID();
-        AdvisoryWrapper emptyAdvisory = AdvisoryWrapper.createInitialEmptyAdvisoryForUser(credentials.getName());
         AdvisoryWrapper newAdvisoryNode = AdvisoryWrapper.createNewFromCsaf(newCsafJson, credentials.getName(),
                 this.versioningStrategy);
         newAdvisoryNode.setDocumentTrackingGeneratorEngineName(buildProperties.getName());
         newAdvisoryNode.setDocumentTrackingGeneratorEngineVersion(buildProperties.getVersion());
-        AuditTrailWrapper auditTrail = AdvisoryAuditTrailDiffWrapper.createNewFromAdvisories(emptyAdvisory, newAdvisoryNode)
+        AdvisoryAuditTrailDiffWrapper creationAuditTrail = AdvisoryAuditTrailDiffWrapper.createNewFromCreatedAdvisory(newAdvisoryNode);
+        AuditTrailWrapper auditTrail = creationAuditTrail
                 .setAdvisoryId(advisoryId.toString())
                 .setChangeType(ChangeType.Create)
                 .setUser(credentials.getName());
+        LOG.debug("Creation audit trail of {} stored with {} of {} bytes", advisoryId,
+                creationAuditTrail.getStoredSize(), creationAuditTrail.getUncompressedSize());
 
         newAdvisoryNode.removeAllRevisionHistoryElements();
         String timestampNow = getCurrentTimestamp();
@@ -230,6 +494,8 @@ public class AdvisoryService {
 
         String revision = couchDbService.writeDocument(advisoryId, newAdvisoryNode.advisoryAsString());
         this.couchDbService.writeDocument(UUID.randomUUID(), auditTrail.auditTrailAsString());
+        this.advisoryEventService.publish(AdvisoryChangeType.Created,
+                AdvisoryEventService.toAdvisoryInformation(newAdvisoryNode, advisoryId.toString(), revision), null);
 
         return new IdAndRevision(advisoryId.toString(), revision);
     }
@@ -276,7 +542,6 @@ public class AdvisoryService {
             throw new CsafException("Advisory is no valid CSAF document",
                     CsafExceptionKey.AdvisoryValidationError, HttpStatus.UNPROCESSABLE_ENTITY);
         }
-        AdvisoryWrapper emptyAdvisory = AdvisoryWrapper.createInitialEmptyAdvisoryForUser(userName);
         AdvisoryWrapper newAdvisoryNode = AdvisoryWrapper.importNewFromCsaf(nodeToImport, userName);
 
         String documentTrackingStatus = newAdvisoryNode.getDocumentTrackingStatus();
@@ -292,14 +557,20 @@ public class AdvisoryService {
             throw new CsafException("Trying to import a duplicate advisory (identical tracking ID)", DuplicateImport, UNPROCESSABLE_ENTITY);
         }
 
-        AuditTrailWrapper auditTrail = AdvisoryAuditTrailDiffWrapper.createNewFromAdvisories(emptyAdvisory, newAdvisoryNode)
+        AdvisoryAuditTrailDiffWrapper creationAuditTrail = AdvisoryAuditTrailDiffWrapper.createNewFromCreatedAdvisory(newAdvisoryNode);
+        AuditTrailWrapper auditTrail = creationAuditTrail
                 .setAdvisoryId(advisoryId.toString())
                 .setChangeType(ChangeType.Create)
                 .setUser(userName);
+        LOG.info("Imported advisory {}: creation audit trail stored with {} of {} bytes, {} bytes saved by compression", advisoryId,
+                creationAuditTrail.getStoredSize(), creationAuditTrail.getUncompressedSize(),
+                creationAuditTrail.getUncompressedSize() - creationAuditTrail.getStoredSize());
 
 
         String revision = couchDbService.writeDocument(advisoryId, newAdvisoryNode.advisoryAsString());
         this.couchDbService.writeDocument(UUID.randomUUID(), auditTrail.auditTrailAsString());
+        this.advisoryEventService.publish(AdvisoryChangeType.Created,
+                AdvisoryEventService.toAdvisoryInformation(newAdvisoryNode, advisoryId.toString(), revision), null);
 
         return new IdAndRevision(advisoryId.toString(), revision);
     }
@@ -363,6 +634,7 @@ public class AdvisoryService {
             AdvisoryWrapper advisory = AdvisoryWrapper.createFromCouchDb(advisoryStream);
             if (canViewAdvisory(advisory, getAuthentication())) {
 
+                restoreSubtrees(advisory);
                 Authentication credentials = getAuthentication();
                 boolean isVersion = advisory.getType() == ObjectType.AdvisoryVersion;
 
@@ -404,47 +676,89 @@ public class AdvisoryService {
         if (canDeleteAdvisory(advisory, getAuthentication())) {
 
             this.couchDbService.deleteDocument(advisoryId, revision);
-            deleteAllAuditTrailDocumentsFromDbFor(advisoryId, ADVISORY_ID.getDbName());
-            deleteAllCommentsFromDbForAdvisory(advisoryId);
+            // remove audit trails, comments and answers with one chunked bulk delete
+            List<IdAndRevision> dependentDocuments = new ArrayList<>();
+            if (!this.auditTrailArchive.isEnabled()) {
+                // otherwise the audit trail of the advisory is moved to the archive by the archive job
+                dependentDocuments.addAll(findAdvisoryAuditTrailDocumentsFor(advisoryId));
+            }
+            dependentDocuments.addAll(findCommentsWithAuditTrails(advisoryId));
+            dependentDocuments.addAll(findIdsAndRevisions(new AndExpression(
+                    equal(ObjectType.AdvisoryDraft.name(), TYPE_FIELD.getDbName()),
+                    equal(advisoryId, AdvisoryDraftField.ADVISORY_ID.getDbName()))));
+            this.couchDbService.bulkDeleteDocuments(dependentDocuments);
+            this.advisoryEventService.publish(AdvisoryChangeType.Deleted, null,
+                    AdvisoryEventService.toAdvisoryInformation(advisory, advisoryId, revision));
         } else {
             throw new AccessDeniedException("User has not the permission to delete the advisory");
         }
     }
 
-    private void deleteAllCommentsFromDbForAdvisory(String advisoryId) throws IOException, DatabaseException {
-        AndExpression searchExpr = new AndExpression(equal(ObjectType.Comment.name(), TYPE_FIELD.getDbName()),
-                equal(advisoryId, CommentField.ADVISORY_ID.getDbName()));
-
-        Collection<DbField> fields = Arrays.asList(CouchDbField.ID_FIELD, CouchDbField.REVISION_FIELD);
+    /**
+     * Find all comments and answers of the advisory together with their audit trails.
+     * The comments are read with one query, their audit trails with one query per
+     * {@link #COMMENT_IDS_PER_QUERY} comments.
+     *
+     * @param advisoryId the ID of the advisory
+     * @return ids and revisions of the found documents
+     */
+    private List<IdAndRevision> findCommentsWithAuditTrails(String advisoryId) throws IOException {
 
-        Map<String, Object> selector = expr2CouchDBFilter(searchExpr);
-        List<JsonNode> commentsToDelete = this.findDocuments(selector, fields);
+        List<IdAndRevision> comments = findIdsAndRevisions(new AndExpression(
+                equal(ObjectType.Comment.name(), TYPE_FIELD.getDbName()),
+                equal(advisoryId, CommentField.ADVISORY_ID.getDbName())));
+        List<Expression> commentIds = comments.stream()
+                .map(comment -> (Expression) equal(comment.getId(), CommentAuditTrailField.COMMENT_ID.getDbName()))
+                .toList();
 
-        Collection<IdAndRevision> bulkDeletes = new ArrayList<>(commentsToDelete.size());
-        for (JsonNode doc : commentsToDelete) {
-            String commentId = CouchDbField.ID_FIELD.stringVal(doc);
-            String commentRev = CouchDbField.REVISION_FIELD.stringVal(doc);
-            deleteComment(commentId, commentRev);
+        List<IdAndRevision> result = new ArrayList<>(comments);
+        for (int start = 0; start < commentIds.size(); start += COMMENT_IDS_PER_QUERY) {
+            List<Expression> chunk = commentIds.subList(start, Math.min(start + COMMENT_IDS_PER_QUERY, commentIds.size()));
+            result.addAll(findIdsAndRevisions(new AndExpression(
+                    equal(ObjectType.CommentAuditTrail.name(), TYPE_FIELD.getDbName()),
+                    new OrExpression(chunk.toArray(new Expression[0])))));
         }
-        this.couchDbService.bulkDeleteDocuments(bulkDeletes);
+        LOG.debug("Found {} comments with {} audit trail documents of advisory {}", comments.size(),
+                result.size() - comments.size(), advisoryId);
+        return result;
     }
 
-    private void deleteAllAuditTrailDocumentsFromDbFor(String itemId, String idKey) throws IOException, DatabaseException {
+    private List<IdAndRevision> findIdsAndRevisions(Expression searchExpr) throws IOException {
 
         Collection<DbField> fields = Arrays.asList(CouchDbField.ID_FIELD, CouchDbField.REVISION_FIELD);
+        return this.findDocuments(expr2CouchDBFilter(searchExpr), fields).stream()
+                .map(doc -> new IdAndRevision(CouchDbField.ID_FIELD.stringVal(doc), CouchDbField.REVISION_FIELD.stringVal(doc)))
+                .toList();
+    }
 
-        AndExpression searchExpr = new AndExpression(containsIgnoreCase("AuditTrail", TYPE_FIELD.getDbName()),
-                equal(itemId, idKey));
-        Map<String, Object> selector = expr2CouchDBFilter(searchExpr);
-        var auditTrailDocs = this.findDocuments(selector, fields);
+    private void deleteAllCommentAuditTrailDocumentsFromDbFor(String commentId) throws IOException, DatabaseException {
+
+        this.couchDbService.bulkDeleteDocuments(findIdsAndRevisions(new AndExpression(
+                equal(ObjectType.CommentAuditTrail.name(), TYPE_FIELD.getDbName()),
+                equal(commentId, CommentAuditTrailField.COMMENT_ID.getDbName()))));
+    }
 
-        Collection<IdAndRevision> bulkDeletes = new ArrayList<>(auditTrailDocs.size());
-        for (JsonNode doc : auditTrailDocs) {
-            bulkDeletes.add(new IdAndRevision(CouchDbField.ID_FIELD.stringVal(doc),
-                    CouchDbField.REVISION_FIELD.stringVal(doc)));
+    /**
+     * Find the document and workflow audit trail entries of the advisory with one equality query per type
+     * on the audit trail index
+     */
+    private List<IdAndRevision> findAdvisoryAuditTrailDocumentsFor(String advisoryId) throws IOException {
+
+        ensureAuditTrailIndexes();
+        List<IdAndRevision> result = new ArrayList<>();
+        for (ObjectType type : ADVISORY_AUDIT_TRAIL_TYPES) {
+            result.addAll(findIdsAndRevisions(new AndExpression(
+                    equal(type.name(), TYPE_FIELD.getDbName()),
+                    equal(advisoryId, ADVISORY_ID.getDbName()),
+                    greaterOrEqual("", AuditTrailField.CREATED_AT.getDbName()))));
         }
-        this.couchDbService.bulkDeleteDocuments(bulkDeletes);
+        return result;
+    }
+
+    private void ensureAuditTrailIndexes() {
 
+        ensureIndex(AUDIT_TRAIL_DESIGN_DOC, AUDIT_TRAIL_BY_ADVISORY_INDEX, AUDIT_TRAIL_BY_ADVISORY_FIELDS);
+        ensureIndex(AUDIT_TRAIL_DESIGN_DOC, AUDIT_TRAIL_BY_TIME_INDEX, AUDIT_TRAIL_BY_TIME_FIELDS);
     }
 
     /**
@@ -490,13 +804,39 @@ public class AdvisoryService {
                     newAdvisoryNode.editLastRevisionHistoryElement(changedCsafJson, timestampNow);
                 }
 
-                String result = this.couchDbService.updateDocument(newAdvisoryNode.advisoryAsString());
-
-                AuditTrailWrapper auditTrail = AdvisoryAuditTrailDiffWrapper.createNewFromAdvisories(oldAdvisoryNode, newAdvisoryNode)
-                        .setAdvisoryId(advisoryId)
-                        .setChangeType(ChangeType.Update)
-                        .setUser(credentials.getName());
-                this.couchDbService.writeDocument(UUID.randomUUID(), auditTrail.auditTrailAsString());
+                UnitOfWork unitOfWork = this.couchDbService.createUnitOfWork();
+                AdvisoryAuditTrailDiffWrapper openAuditTrail = findAuditTrailToCoalesce(oldAdvisoryNode, credentials.getName());
+                if (openAuditTrail != null) {
+                    newAdvisoryNode.setChangesSinceCheckpoint(oldAdvisoryNode.getChangesSinceCheckpoint());
+                    newAdvisoryNode.setOpenAuditTrailId(oldAdvisoryNode.getOpenAuditTrailId());
+                    String previousAuditTrail = openAuditTrail.auditTrailAsString();
+                    openAuditTrail.mergeUpdate(oldAdvisoryNode, newAdvisoryNode);
+                    unitOfWork.update(openAuditTrail.auditTrailAsString(), previousAuditTrail);
+                } else {
+                    int changesSinceCheckpoint = oldAdvisoryNode.getChangesSinceCheckpoint() + 1;
+                    int checkpointInterval = getAuditTrailConfiguration().getCheckpointInterval();
+                    boolean checkpoint = checkpointInterval > 0 && changesSinceCheckpoint >= checkpointInterval;
+                    newAdvisoryNode.setChangesSinceCheckpoint(checkpoint ? 0 : changesSinceCheckpoint);
+                    AdvisoryAuditTrailDiffWrapper diffAuditTrail = AdvisoryAuditTrailDiffWrapper.createNewFromAdvisories(oldAdvisoryNode, newAdvisoryNode);
+                    if (checkpoint) {
+                        diffAuditTrail.addCheckpoint(newAdvisoryNode);
+                    }
+                    AuditTrailWrapper auditTrail = diffAuditTrail
+                            .setAdvisoryId(advisoryId)
+                            .setChangeType(ChangeType.Update)
+                            .setUser(credentials.getName());
+                    UUID auditTrailId = UUID.randomUUID();
+                    newAdvisoryNode.setOpenAuditTrailId(getAuditTrailConfiguration().getCoalesceWindow() > 0
+                            ? auditTrailId.toString() : null);
+                    unitOfWork.create(auditTrailId, auditTrail.auditTrailAsString());
+                }
+                String result = unitOfWork
+                        .update(newAdvisoryNode.advisoryAsString(), oldAdvisoryNode.advisoryAsString())
+                        .commit()
+                        .get(advisoryId);
+                this.advisoryEventService.publish(AdvisoryChangeType.Updated,
+                        AdvisoryEventService.toAdvisoryInformation(newAdvisoryNode, advisoryId, result),
+                        AdvisoryEventService.toAdvisoryInformation(oldAdvisoryNode, advisoryId, revision));
                 return result;
             } else {
                 throw new CsafException("User has no permission to edit the advisory", NoPermissionForAdvisory, UNAUTHORIZED);
@@ -504,6 +844,318 @@ public class AdvisoryService {
         }
     }
 
+    /**
+     * Find the audit trail entry the update of the advisory can be merged into: the entry of the last update, if it
+     * was made by the same user and was created within the coalesce window
+     *
+     * @param advisory the advisory before the update
+     * @param user     the user updating the advisory
+     * @return the entry to merge the update into, null if a new entry has to be created
+     */
+    private AdvisoryAuditTrailDiffWrapper findAuditTrailToCoalesce(AdvisoryWrapper advisory, String user) throws IOException {
+
+        int coalesceWindow = getAuditTrailConfiguration().getCoalesceWindow();
+        String auditTrailId = advisory.getOpenAuditTrailId();
+        if (coalesceWindow <= 0 || auditTrailId == null) {
+            return null;
+        }
+        ObjectNode entry;
+        try (InputStream auditTrailStream = this.couchDbService.readDocumentAsStream(auditTrailId)) {
+            entry = (ObjectNode) new JsonMapper().readTree(auditTrailStream);
+        } catch (IdNotFoundException ex) {
+            // the entry was archived or deleted
+            return null;
+        }
+        AdvisoryAuditTrailDiffWrapper auditTrail = AdvisoryAuditTrailDiffWrapper.createFromCouchDb(entry);
+        boolean coalesce = ObjectType.AuditTrailDocument.name().equals(auditTrail.getType())
+                && auditTrail.getChangeType() == ChangeType.Update
+                && user.equals(auditTrail.getUser())
+                && advisory.getDocumentTrackingVersion().equals(auditTrail.getDocVersion())
+                && Instant.parse(auditTrail.getCreatedAt()).plusSeconds(coalesceWindow).isAfter(Instant.now());
+        return coalesce ? auditTrail : null;
+    }
+
+    /**
+     * Autosave the working copy of an advisory of the current user. The draft is stored as it is, without
+     * versioning, revision history and audit trail, so saving it is cheap. The permission to change the advisory is
+     * checked when the draft is started and again when it is committed.
+     *
+     * @param advisoryId      the ID of the advisory
+     * @param draftRevision   the revision of the draft for concurrent control, null to start a new draft
+     * @param changedCsafJson the changed advisory
+     * @return the new revision of the draft
+     * @throws IdNotFoundException if the draft was changed concurrently, or already exists when starting a new one
+     * @throws CsafException       if the advisory does not exist or the user has no permission to change it
+     */
+    @Secured({CsafRoles.ROLE_AUTHOR})
+    public String saveDraft(String advisoryId, @Nullable String draftRevision, CreateAdvisoryRequest changedCsafJson)
+            throws DatabaseException, CsafException {
+
+        LOG.debug("saveDraft");
+        Authentication credentials = getAuthentication();
+        if (draftRevision == null) {
+            AdvisoryInformationResponse advisoryInfo = getAdvisoryForId(advisoryId, this.couchDbService);
+            if (!canChangeAdvisory(advisoryInfo, credentials)) {
+                throw new CsafException("User has no permission to edit the advisory", NoPermissionForAdvisory, UNAUTHORIZED);
+            }
+        }
+        AdvisoryDraft draft = AdvisoryDraft.create(advisoryId, credentials.getName())
+                .setRev(draftRevision)
+                .setContent(changedCsafJson, Instant.now());
+        String draftString = new JsonMapper().writeValueAsString(draft);
+        try {
+            return (draftRevision == null)
+                    ? this.couchDbService.writeDocument(draft.getId(), draftString)
+                    : this.couchDbService.updateDocument(draftString);
+        } catch (ConflictException ex) {
+            throw new IdNotFoundException("There is already a draft of the advisory", ex);
+        }
+    }
+
+    /**
+     * @param advisoryId the ID of the advisory
+     * @return the draft of the advisory of the current user
+     * @throws CsafException if the user has no draft of the advisory
+     */
+    @Secured({CsafRoles.ROLE_AUTHOR})
+    public AdvisoryDraftResponse getDraft(String advisoryId) throws IOException, CsafException {
+
+        AdvisoryDraft draft = readDraft(advisoryId);
+        return new AdvisoryDraftResponse()
+                .setAdvisoryId(advisoryId)
+                .setRevision(draft.getRev())
+                .setSavedAt(draft.getSavedAt())
+                .setSummary(draft.getSummary())
+                .setLegacyVersion(draft.getLegacyVersion())
+                .setCsaf(draft.getCsaf());
+    }
+
+    /**
+     * Apply the draft of the current user to the advisory with one regular update and remove the draft.
+     *
+     * @param advisoryId the ID of the advisory
+     * @param revision   the revision of the advisory for concurrent control
+     * @param summary    the summary of the change in the revision history, null to use the summary of the draft
+     * @return the new revision of the advisory
+     * @throws CsafException if the user has no draft of the advisory or the update is rejected
+     */
+    @Secured({CsafRoles.ROLE_AUTHOR})
+    public String commitDraft(String advisoryId, String revision, @Nullable String summary)
+            throws IOException, DatabaseException, CsafException {
+
+        LOG.debug("commitDraft");
+        AdvisoryDraft draft = readDraft(advisoryId);
+        CreateAdvisoryRequest changedCsafJson = draft.toRequest();
+        if (summary != null) {
+            changedCsafJson.setSummary(summary);
+        }
+        String newRevision = updateAdvisory(advisoryId, revision, changedCsafJson);
+        try {
+            this.couchDbService.deleteDocument(draft.getId(), draft.getRev());
+        } catch (DatabaseException | ConflictException ex) {
+            // the draft was saved again during the commit, the newer changes are kept
+            LOG.info("Draft {} was changed during the commit and is kept", draft.getId());
+        }
+        return newRevision;
+    }
+
+    /**
+     * Remove the draft of the advisory of the current user without applying it
+     *
+     * @param advisoryId    the ID of the advisory
+     * @param draftRevision the revision of the draft for concurrent control
+     */
+    @Secured({CsafRoles.ROLE_AUTHOR})
+    public void discardDraft(String advisoryId, String draftRevision) throws DatabaseException {
+
+        this.couchDbService.deleteDocument(AdvisoryDraft.idOf(advisoryId, getAuthentication().getName()), draftRevision);
+    }
+
+    private AdvisoryDraft readDraft(String advisoryId) throws IOException, CsafException {
+
+        String draftId = AdvisoryDraft.idOf(advisoryId, getAuthentication().getName());
+        try (InputStream draftStream = this.couchDbService.readDocumentAsStream(draftId)) {
+            return new JsonMapper().readValue(draftStream, AdvisoryDraft.class);
+        } catch (IdNotFoundException ex) {
+            throw new CsafException("There is no draft of the advisory", DraftNotFound, NOT_FOUND);
+        }
+    }
+
+    /**
+     * Get the advisory as it was after the change recorded in an audit trail entry. Earlier states can contain
+     * content from before the publication, so like the audit trail they are only available to auditors.
+     *
+     * @param advisoryId   the ID of the advisory
+     * @param auditTrailId the ID of the audit trail entry, null to use the timestamp
+     * @param at           the timestamp in ISO 8601 format, null for the latest entry
+     * @return the reconstructed advisory
+     * @throws CsafException if the advisory or the audit trail entry does not exist
+     *                       or the user has no permission to view the advisory
+     */
+    @Secured({CsafRoles.ROLE_AUDITOR})
+    public AdvisoryHistoryResponse getAdvisoryHistory(String advisoryId, @Nullable String auditTrailId, @Nullable String at)
+            throws IOException, CsafException {
+
+        AdvisoryInformationResponse advisoryInfo = getAdvisoryForId(advisoryId, this.couchDbService);
+        if (!canViewAdvisory(advisoryInfo, getAuthentication())) {
+            throw new CsafException("The user has no permission to view this advisory",
+                    NoPermissionForAdvisory, UNAUTHORIZED);
+        }
+        return this.advisoryHistoryService.reconstruct(advisoryId, auditTrailId, at);
+    }
+
+    /**
+     * Get a page of audit trail entries matching the query, newest first. The query uses equality selectors on
+     * the index over type, advisory and creation time, or on the index over type and creation time if no
+     * advisory is given. The diffs of document changes are only read if requested. When the entries in the database
+     * are exhausted, the pages continue with the entries in the {@link AuditTrailArchive}. Archived entries that are
+     * still in the database, because the archiving was interrupted or is running, are skipped, they were already
+     * returned with the entries of the database.
+     *
+     * @param query the filters and the page to read
+     * @return the entries of the page and the bookmark of the next page
+     * @throws CsafException if a timestamp or the bookmark of the query is invalid
+     */
+    @Secured({CsafRoles.ROLE_AUDITOR})
+    public AuditTrailPageResponse getAuditTrail(AuditTrailQuery query) throws IOException, CsafException {
+
+        ensureAuditTrailIndexes();
+        boolean byAdvisory = query.getAdvisoryId() != null;
+        String typeName = query.getType().name();
+        List<Expression> terms = new ArrayList<>();
+        terms.add(equal(typeName, TYPE_FIELD.getDbName()));
+        if (byAdvisory) {
+            terms.add(equal(query.getAdvisoryId(), ADVISORY_ID.getDbName()));
+        }
+        terms.add(greaterOrEqual(query.getFrom() != null ? normalizeTimestamp(query.getFrom()) : "",
+                AuditTrailField.CREATED_AT.getDbName()));
+        if (query.getTo() != null) {
+            terms.add(lessOrEqual(normalizeTimestamp(query.getTo()), AuditTrailField.CREATED_AT.getDbName()));
+        }
+        if (query.getCommentId() != null) {
+            terms.add(equal(query.getCommentId(), CommentAuditTrailField.COMMENT_ID.getDbName()));
+        }
+        if (query.getUser() != null) {
+            terms.add(equal(query.getUser(), AuditTrailField.USER.getDbName()));
+        }
+        if (query.getChangeType() != null) {
+            terms.add(equal(query.getChangeType(), AuditTrailField.CHANGE_TYPE.getDbName()));
+        }
+
+        List<DbField> fields = new ArrayList<>(List.of(ID_FIELD, TYPE_FIELD, ADVISORY_ID,
+                CommentAuditTrailField.COMMENT_ID, AuditTrailField.CREATED_AT, AuditTrailField.USER,
+                AuditTrailField.CHANGE_TYPE, AdvisoryAuditTrailField.DOC_VERSION, AdvisoryAuditTrailField.OLD_DOC_VERSION,
+                AdvisoryAuditTrailField.COALESCED_UNTIL, AdvisoryAuditTrailField.CHANGE_COUNT,
+                AdvisoryAuditTrailField.OLD_WORKFLOW_STATE, AdvisoryAuditTrailField.NEW_WORKFLOW_STATE,
+                CommentAuditTrailField.COMMENT_TEXT));
+        boolean withDiff = query.isIncludeDiff() && query.getType() == ObjectType.AuditTrailDocument;
+        if (withDiff) {
+            fields.addAll(List.of(AdvisoryAuditTrailField.DIFF,
+                    AdvisoryAuditTrailField.DIFF_COMPRESSED, AdvisoryAuditTrailField.SNAPSHOT,
+                    AdvisoryAuditTrailField.SNAPSHOT_COMPRESSED));
+        }
+        List<Map<String, String>> sort = byAdvisory
+                ? List.of(Map.of(TYPE_FIELD.getDbName(), "desc"), Map.of(ADVISORY_ID.getDbName(), "desc"),
+                        Map.of(AuditTrailField.CREATED_AT.getDbName(), "desc"))
+                : List.of(Map.of(TYPE_FIELD.getDbName(), "desc"), Map.of(AuditTrailField.CREATED_AT.getDbName(), "desc"));
+
+        int limit = query.getLimit();
+        List<AuditTrailEntryResponse> entries = new ArrayList<>();
+        String nextBookmark = null;
+        AuditTrailArchive.ArchivePosition archivePosition = null;
+        if (query.getBookmark() != null && query.getBookmark().startsWith(ARCHIVE_BOOKMARK_PREFIX)) {
+            archivePosition = parseArchiveBookmark(query.getBookmark());
+        } else {
+            InputStream resultStream = this.couchDbService.findDocumentsPageAsStream(
+                    expr2CouchDBFilter(new AndExpression(terms.toArray(new Expression[0]))), fields,
+                    AUDIT_TRAIL_DESIGN_DOC, byAdvisory ? AUDIT_TRAIL_BY_ADVISORY_INDEX : AUDIT_TRAIL_BY_TIME_INDEX,
+                    sort, limit, query.getBookmark());
+            JsonNode result = new JsonMapper().readValue(resultStream, JsonNode.class);
+            for (JsonNode doc : result.path("docs")) {
+                entries.add(convertToAuditTrailEntry(doc, withDiff));
+            }
+            if (entries.size() == limit) {
+                return new AuditTrailPageResponse(entries, result.path("bookmark").asString(null));
+            }
+        }
+        // the archived entries follow the entries in the database
+        if (this.auditTrailArchive.isEnabled()) {
+            AuditTrailArchive.ArchivePage archived =
+                    this.auditTrailArchive.findEntries(query, archivePosition, limit - entries.size());
+            Set<String> inDatabase = findExistingIds(archived.entries().stream().map(ID_FIELD::stringVal).toList());
+            for (ObjectNode doc : archived.entries()) {
+                if (!inDatabase.contains(ID_FIELD.stringVal(doc))) {
+                    entries.add(convertToAuditTrailEntry(doc, withDiff));
+                }
+            }
+            AuditTrailArchive.ArchivePosition next = archived.next();
+            nextBookmark = (next != null) ? ARCHIVE_BOOKMARK_PREFIX + next.month() + ':' + next.index() : null;
+        }
+        return new AuditTrailPageResponse(entries, nextBookmark);
+    }
+
+    private static AuditTrailArchive.ArchivePosition parseArchiveBookmark(String bookmark) throws CsafException {
+
+        String[] monthAndIndex = bookmark.substring(ARCHIVE_BOOKMARK_PREFIX.length()).split(":");
+        try {
+            if (monthAndIndex.length == 2) {
+                return new AuditTrailArchive.ArchivePosition(YearMonth.parse(monthAndIndex[0]).toString(),
+                        Math.max(0, Integer.parseInt(monthAndIndex[1])));
+            }
+        } catch (DateTimeParseException | NumberFormatException ex) {
+            // handled below
+        }
+        throw new CsafException("Invalid bookmark " + bookmark, InvalidFilterExpression, BAD_REQUEST);
+    }
+
+    /**
+     * @return the ids of the given documents that exist in the database
+     */
+    private Set<String> findExistingIds(List<String> ids) {
+
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        return this.couchDbService.findDocuments(Map.of(ID_FIELD.getDbName(), Map.of("$in", ids)), List.of(ID_FIELD))
+                .stream().map(Document::getId).collect(Collectors.toSet());
+    }
+
+    private static AuditTrailEntryResponse convertToAuditTrailEntry(JsonNode doc, boolean withDiff) {
+
+        AuditTrailEntryResponse entry = new AuditTrailEntryResponse()
+                .setAuditTrailId(ID_FIELD.stringVal(doc))
+                .setType(TYPE_FIELD.stringVal(doc))
+                .setAdvisoryId(doc.path(ADVISORY_ID.getDbName()).asString(null))
+                .setCommentId(doc.path(CommentAuditTrailField.COMMENT_ID.getDbName()).asString(null))
+                .setCreatedAt(doc.path(AuditTrailField.CREATED_AT.getDbName()).asString(null))
+                .setUser(doc.path(AuditTrailField.USER.getDbName()).asString(null))
+                .setChangeType(doc.path(AuditTrailField.CHANGE_TYPE.getDbName()).asString(null))
+                .setDocVersion(doc.path(AdvisoryAuditTrailField.DOC_VERSION.getDbName()).asString(null))
+                .setOldDocVersion(doc.path(AdvisoryAuditTrailField.OLD_DOC_VERSION.getDbName()).asString(null))
+                .setCoalescedUntil(doc.path(AdvisoryAuditTrailField.COALESCED_UNTIL.getDbName()).asString(null))
+                .setChangeCount(doc.has(AdvisoryAuditTrailField.CHANGE_COUNT.getDbName())
+                        ? doc.get(AdvisoryAuditTrailField.CHANGE_COUNT.getDbName()).asInt() : null)
+                .setOldState(doc.path(AdvisoryAuditTrailField.OLD_WORKFLOW_STATE.getDbName()).asString(null))
+                .setNewState(doc.path(AdvisoryAuditTrailField.NEW_WORKFLOW_STATE.getDbName()).asString(null))
+                .setCommentText(doc.path(CommentAuditTrailField.COMMENT_TEXT.getDbName()).asString(null));
+        if (withDiff) {
+            entry.setDiff(AdvisoryAuditTrailDiffWrapper.createFromCouchDb((ObjectNode) doc).getDiffPatch());
+        }
+        return entry;
+    }
+
+    /**
+     * Convert the timestamp to the format of the creation timestamps of the audit trail entries
+     */
+    private static String normalizeTimestamp(String timestamp) throws CsafException {
+
+        try {
+            return DateTimeFormatter.ISO_INSTANT.format(Instant.parse(timestamp));
+        } catch (DateTimeParseException ex) {
+            throw new CsafException("Invalid timestamp " + timestamp, InvalidDateTimeFormat, BAD_REQUEST);
+        }
+    }
+
     /**
      * Export the Advisory with the given advisoryId in the given format. The export will be written to a
      * temporary file and the path to the file will be returned.
@@ -523,7 +1175,7 @@ public class AdvisoryService {
         // read the advisory form the database
         try {
             final InputStream existingAdvisoryStream = this.couchDbService.readDocumentAsStream(advisoryId);
-            final AdvisoryWrapper advisoryNode = AdvisoryWrapper.createFromCouchDb(existingAdvisoryStream);
+            final AdvisoryWrapper advisoryNode = restoreSubtrees(AdvisoryWrapper.createFromCouchDb(existingAdvisoryStream));
             final JsonNode csaf = advisoryNode.getCsaf();
             RemoveIdHelper.removeCommentIds(csaf);
             final String csafDocument = csaf.toString();
@@ -596,6 +1248,29 @@ public class AdvisoryService {
         }
     }
     
+    /**
+     * Export the Advisory with the given advisoryId as CSAF JSON in memory, without writing a temporary file.
+     * Used to stream the advisory directly into the upload to the CSAF provider.
+     *
+     * @param advisoryId the id of the advisory that should be exported
+     * @return the CSAF document as UTF-8 encoded JSON
+     * @throws CsafException if the advisory with the given id does not exist
+     * @throws IOException   on any error reading the advisory
+     */
+    @Secured({CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUDITOR})
+    public byte[] exportAdvisoryAsJson(@Nonnull final String advisoryId) throws IOException, CsafException {
+
+        try (InputStream existingAdvisoryStream = this.couchDbService.readDocumentAsStream(advisoryId)) {
+            final AdvisoryWrapper advisoryNode = restoreSubtrees(AdvisoryWrapper.createFromCouchDb(existingAdvisoryStream));
+            final JsonNode csaf = advisoryNode.getCsaf();
+            RemoveIdHelper.removeCommentIds(csaf);
+            return new JsonMapper().writeValueAsBytes(csaf);
+        } catch (IdNotFoundException e) {
+            throw new CsafException("Can not find advisory with ID " + advisoryId,
+                    CsafExceptionKey.AdvisoryNotFound, HttpStatus.NOT_FOUND);
+        }
+    }
+
     /**
      * Changes the workflow state of the advisory to the given new WorkflowState
      *
@@ -615,12 +1290,15 @@ public class AdvisoryService {
             throw new DatabaseException("Invalid advisory ID!");
         }
         AdvisoryWrapper existingAdvisoryNode = AdvisoryWrapper.createFromCouchDb(existingAdvisoryStream);
+        String previousAdvisory = existingAdvisoryNode.advisoryAsString();
 
         final var allowOwnDocumentsApproved = configuration.getWorkflow().isAllowOwnDocumentsApproved();
         if (canChangeWorkflow(existingAdvisoryNode, newWorkflowState, credentials, allowOwnDocumentsApproved)) {
 
             WorkflowState previousWorkflowState = existingAdvisoryNode.getWorkflowState();
             String previousVersion = existingAdvisoryNode.getDocumentTrackingVersion();
+            AdvisoryInformationResponse previousInfo =
+                    AdvisoryEventService.toAdvisoryInformation(existingAdvisoryNode, advisoryId, revision);
 
             String workflowStateChangeMsg = "Status changed from " + previousWorkflowState + " to " + newWorkflowState;
 
@@ -699,15 +1377,23 @@ public class AdvisoryService {
                 }
             }
 
+            // updates after a workflow change get a new audit trail entry
+            existingAdvisoryNode.setOpenAuditTrailId(null);
             AuditTrailWrapper auditTrail = AdvisoryAuditTrailWorkflowWrapper.createNewFrom(newWorkflowState, previousWorkflowState)
                     .setOldDocVersion(previousVersion)
                     .setDocVersion(existingAdvisoryNode.getDocumentTrackingVersion())
                     .setAdvisoryId(advisoryId)
                     .setUser(credentials.getName());
-            this.couchDbService.writeDocument(UUID.randomUUID(), auditTrail.auditTrailAsString());
 
             existingAdvisoryNode.setRevision(revision);
-            return this.couchDbService.updateDocument(existingAdvisoryNode.advisoryAsString());
+            String result = this.couchDbService.createUnitOfWork()
+                    .create(UUID.randomUUID(), auditTrail.auditTrailAsString())
+                    .update(existingAdvisoryNode.advisoryAsString(), previousAdvisory)
+                    .commit()
+                    .get(advisoryId);
+            this.advisoryEventService.publish(AdvisoryChangeType.WorkflowStateChanged,
+                    AdvisoryEventService.toAdvisoryInformation(existingAdvisoryNode, advisoryId, result), previousInfo);
+            return result;
         } else {
             throw new CsafException("User has not the permission to change the workflow state of the advisory",
                     NoPermissionForAdvisory, UNAUTHORIZED);
@@ -795,6 +1481,9 @@ public class AdvisoryService {
 
         if (canCreateNewVersion(existingAdvisoryNode, credentials)) {
 
+            String previousAdvisory = existingAdvisoryNode.advisoryAsString();
+            AdvisoryInformationResponse previousInfo =
+                    AdvisoryEventService.toAdvisoryInformation(existingAdvisoryNode, advisoryId, revision);
             // make copy of current state
             AdvisoryWrapper advisoryVersionBackup = AdvisoryWrapper.createVersionFrom(existingAdvisoryNode);
             // Set existing version to Draft
@@ -808,15 +1497,32 @@ public class AdvisoryService {
             existingAdvisoryNode.addRevisionHistoryElement("New Version", "", timestampNow);
             existingAdvisoryNode.setRevision(revision);
 
+            // updates after a workflow change get a new audit trail entry
+            existingAdvisoryNode.setOpenAuditTrailId(null);
             AuditTrailWrapper auditTrail = AdvisoryAuditTrailWorkflowWrapper.createNewFrom(WorkflowState.Draft, existingAdvisoryNode.getWorkflowState())
                     .setDocVersion(existingAdvisoryNode.getDocumentTrackingVersion())
                     .setOldDocVersion(existingAdvisoryNode.getDocumentTrackingVersion())
                     .setAdvisoryId(advisoryId)
                     .setUser(credentials.getName());
-            this.couchDbService.writeDocument(UUID.randomUUID(), auditTrail.auditTrailAsString());
-            this.deleteAllCommentsFromDbForAdvisory(existingAdvisoryNode.getAdvisoryId());
-            this.couchDbService.writeDocument(UUID.randomUUID(), advisoryVersionBackup.advisoryAsString());
-            return this.couchDbService.updateDocument(existingAdvisoryNode.advisoryAsString());
+            UUID versionId = UUID.randomUUID();
+            UnitOfWork unitOfWork = this.couchDbService.createUnitOfWork()
+                    .create(UUID.randomUUID(), auditTrail.auditTrailAsString());
+            if (this.configuration.getVersioning().isSharedSubtrees()) {
+                addSubtreeBlobs(unitOfWork, advisoryVersionBackup);
+            }
+            // the comments are deleted only after the other writes succeeded
+            Map<String, String> revisions = unitOfWork
+                    .create(versionId, advisoryVersionBackup.advisoryAsString())
+                    .update(existingAdvisoryNode.advisoryAsString(), previousAdvisory)
+                    .delete(findCommentsWithAuditTrails(existingAdvisoryNode.getAdvisoryId()))
+                    .commit();
+            String versionRevision = revisions.get(versionId.toString());
+            String result = revisions.get(advisoryId);
+            this.advisoryEventService.publishVersionCreated(
+                    AdvisoryEventService.toAdvisoryInformation(advisoryVersionBackup, versionId.toString(), versionRevision));
+            this.advisoryEventService.publish(AdvisoryChangeType.WorkflowStateChanged,
+                    AdvisoryEventService.toAdvisoryInformation(existingAdvisoryNode, advisoryId, result), previousInfo);
+            return result;
         } else {
             throw new CsafException("User has not the permission to create a new Version in this state",
                     NoPermissionForAdvisory, UNAUTHORIZED);
@@ -824,6 +1530,52 @@ public class AdvisoryService {
         }
     }
 
+    /**
+     * Move the product tree and the vulnerabilities of the version into blobs shared between the versions
+     * and add the blobs not yet stored to the unit of work
+     *
+     * @param unitOfWork the unit of work creating the version
+     * @param version    the version to split
+     */
+    private void addSubtreeBlobs(UnitOfWork unitOfWork, AdvisoryWrapper version) throws IOException {
+
+        Map<String, JsonNode> blobsById = version.moveSubtreesToBlobs();
+        if (blobsById.isEmpty()) {
+            return;
+        }
+        Map<String, Object> selector = Map.of(ID_FIELD.getDbName(), Map.of("$in", new ArrayList<>(blobsById.keySet())));
+        for (JsonNode existingBlob : findDocuments(selector, List.of(ID_FIELD))) {
+            blobsById.remove(existingBlob.get(ID_FIELD.getDbName()).asString());
+        }
+        JsonMapper jsonMapper = new JsonMapper();
+        for (Map.Entry<String, JsonNode> blob : blobsById.entrySet()) {
+            ObjectNode blobNode = jsonMapper.createObjectNode();
+            blobNode.put(TYPE_FIELD.getDbName(), ObjectType.AdvisoryBlob.name());
+            blobNode.set(AdvisoryField.BLOB_CONTENT.getDbName(), blob.getValue());
+            unitOfWork.createShared(blob.getKey(), blobNode.toString());
+        }
+    }
+
+    /**
+     * Put the subtrees of an advisory version stored in shared blobs back into its csaf
+     *
+     * @param advisory the advisory read from the database
+     * @return the advisory with the complete csaf
+     */
+    private AdvisoryWrapper restoreSubtrees(AdvisoryWrapper advisory) throws IOException {
+
+        Set<String> blobIds = advisory.getSubtreeBlobIds();
+        if (!blobIds.isEmpty()) {
+            Map<String, Object> selector = Map.of(ID_FIELD.getDbName(), Map.of("$in", new ArrayList<>(blobIds)));
+            Map<String, JsonNode> blobsById = new HashMap<>();
+            for (JsonNode blob : findDocuments(selector, List.of(ID_FIELD, AdvisoryField.BLOB_CONTENT))) {
+                blobsById.put(blob.get(ID_FIELD.getDbName()).asString(), blob.get(AdvisoryField.BLOB_CONTENT.getDbName()));
+            }
+            advisory.restoreSubtreesFromBlobs(blobsById);
+        }
+        return advisory;
+    }
+
     /**
      * Adds a comment to the advisory
      *
@@ -845,12 +1597,15 @@ public class AdvisoryService {
 
             CommentWrapper newComment = CommentWrapper.createNew(advisoryId, comment);
             newComment.setOwner(credentials.getName());
-            String commentRevision = this.couchDbService.writeDocument(commentId, newComment.commentAsString());
 
             AuditTrailWrapper auditTrail = CommentAuditTrailWrapper.createNew(newComment)
                     .setCommentId(commentId.toString())
                     .setUser(credentials.getName());
-            this.couchDbService.writeDocument(UUID.randomUUID(), auditTrail.auditTrailAsString());
+            String commentRevision = this.couchDbService.createUnitOfWork()
+                    .create(commentId, newComment.commentAsString())
+                    .create(UUID.randomUUID(), auditTrail.auditTrailAsString())
+                    .commit()
+                    .get(commentId.toString());
             return new IdAndRevision(commentId.toString(), commentRevision);
         } else {
             throw new AccessDeniedException("User has not the permission to add a comment to the advisory");
@@ -930,6 +1685,71 @@ public class AdvisoryService {
         }
     }
 
+    /**
+     * Retrieves all comments of an advisory with their answers in one query
+     *
+     * @param advisoryId the ID of the advisory to get the comments of
+     * @return the comment threads and the number of comments per CSAF node
+     * @throws IOException when there are errors in JSON handling
+     */
+    @Secured({CsafRoles.ROLE_AUTHOR, CsafRoles.ROLE_REVIEWER, CsafRoles.ROLE_AUDITOR})
+    public CommentThreadsResponse getCommentThreads(String advisoryId) throws IOException, CsafException {
+
+        Authentication credentials = getAuthentication();
+        AdvisoryInformationResponse advisoryInfo = getAdvisoryForId(advisoryId, this.couchDbService);
+        if (!AdvisoryWorkflowUtil.canViewComment(advisoryInfo, credentials)) {
+            throw new AccessDeniedException("User has not the permission to view comments of the advisory");
+        }
+
+        List<DbField> indexFields = List.of(TYPE_FIELD, CommentField.ADVISORY_ID);
+        ensureIndex(COMMENTS_DESIGN_DOC, COMMENTS_BY_ADVISORY_INDEX, indexFields);
+        List<DbField> fields = List.of(
+                CouchDbField.ID_FIELD,
+                CouchDbField.REVISION_FIELD,
+                CommentField.ADVISORY_ID,
+                CommentField.CSAF_NODE_ID,
+                CommentField.OWNER,
+                CommentField.ANSWER_TO
+        );
+        AndExpression searchExpr = new AndExpression(
+                equal(ObjectType.Comment.name(), TYPE_FIELD.getDbName()),
+                equal(advisoryId, CommentField.ADVISORY_ID.getDbName())
+        );
+        Map<String, Object> selector = expr2CouchDBFilter(searchExpr);
+        JsonNode result;
+        try (InputStream resultStream = this.couchDbService.findDocumentsAsStream(selector, fields,
+                COMMENTS_DESIGN_DOC, COMMENTS_BY_ADVISORY_INDEX)) {
+            result = new JsonMapper().readValue(resultStream, JsonNode.class);
+        }
+
+        Map<String, CommentThreadResponse> threadsById = new LinkedHashMap<>();
+        List<JsonNode> answers = new ArrayList<>();
+        for (JsonNode doc : result.get("docs")) {
+            if (doc.hasNonNull(CommentField.ANSWER_TO.getDbName())) {
+                answers.add(doc);
+            } else {
+                CommentInformationResponse comment = CommentWrapper.convertToCommentInfo(doc);
+                threadsById.put(comment.getCommentId(), new CommentThreadResponse(comment));
+            }
+        }
+        for (JsonNode answerDoc : answers) {
+            AnswerInformationResponse answer = CommentWrapper.convertToAnswerInfo(answerDoc);
+            CommentThreadResponse thread = threadsById.get(answer.getAnswerTo());
+            if (thread != null) {
+                thread.getAnswers().add(answer);
+            }
+        }
+
+        Map<String, Integer> countByCsafNodeId = new TreeMap<>();
+        for (CommentThreadResponse thread : threadsById.values()) {
+            String csafNodeId = thread.getComment().getCsafNodeId();
+            if (csafNodeId != null) {
+                countByCsafNodeId.merge(csafNodeId, 1 + thread.getAnswers().size(), Integer::sum);
+            }
+        }
+        return new CommentThreadsResponse(new ArrayList<>(threadsById.values()), countByCsafNodeId);
+    }
+
     /**
      * Deletes a comment without its answers from the database
      *
@@ -941,7 +1761,7 @@ public class AdvisoryService {
     void deleteComment(String commentId, String commentRevision) throws DatabaseException, IOException {
 
         couchDbService.deleteDocument(commentId, commentRevision);
-        deleteAllAuditTrailDocumentsFromDbFor(commentId, CommentAuditTrailField.COMMENT_ID.getDbName());
+        deleteAllCommentAuditTrailDocumentsFromDbFor(commentId);
     }
 
     /**
@@ -961,6 +1781,7 @@ public class AdvisoryService {
             throw new DatabaseException("Invalid comment ID!");
         }
         CommentWrapper comment = CommentWrapper.createFromCouchDb(existingCommentStream);
+        String previousComment = comment.commentAsString();
         final String commentOwner = comment.getOwner();
         if (commentOwner == null || !commentOwner.equals(credentials.getName())) {
             throw new AccessDeniedException("User has not the permission to change the comment");
@@ -975,9 +1796,11 @@ public class AdvisoryService {
                 .setChangeType(ChangeType.Update)
                 .setUser("Mustermann");
 
-        String newRevision = this.couchDbService.updateDocument(comment.commentAsString());
-        this.couchDbService.writeDocument(UUID.randomUUID(), auditTrail.auditTrailAsString());
-        return newRevision;
+        return this.couchDbService.createUnitOfWork()
+                .update(comment.commentAsString(), previousComment)
+                .create(UUID.randomUUID(), auditTrail.auditTrailAsString())
+                .commit()
+                .get(commentId);
     }
 
     /**
@@ -1000,13 +1823,16 @@ public class AdvisoryService {
 
             CommentWrapper newAnswer = CommentWrapper.createNewAnswerFromJson(advisoryId, commentId, commentText);
             newAnswer.setOwner(credentials.getName());
-            String commentRevision = this.couchDbService.writeDocument(answerId, newAnswer.commentAsString());
 
             AuditTrailWrapper auditTrail = CommentAuditTrailWrapper.createNew(newAnswer)
                     .setCommentId(answerId.toString())
                     .setChangeType(ChangeType.Create)
                     .setUser(credentials.getName());
-            this.couchDbService.writeDocument(UUID.randomUUID(), auditTrail.auditTrailAsString());
+            String commentRevision = this.couchDbService.createUnitOfWork()
+                    .create(answerId, newAnswer.commentAsString())
+                    .create(UUID.randomUUID(), auditTrail.auditTrailAsString())
+                    .commit()
+                    .get(answerId.toString());
 
             return new IdAndRevision(answerId.toString(), commentRevision);
         } else {
@@ -1053,7 +1879,7 @@ public class AdvisoryService {
      */
     void deleteAnswer(String answerId, String answerRevision) throws DatabaseException, IOException {
         couchDbService.deleteDocument(answerId, answerRevision);
-        deleteAllAuditTrailDocumentsFromDbFor(answerId, CommentAuditTrailField.COMMENT_ID.getDbName());
+        deleteAllCommentAuditTrailDocumentsFromDbFor(answerId);
     }
 
     /**
@@ -1061,6 +1887,11 @@ public class AdvisoryService {
      *
      * @return the credentials
      */
+    private CsafAuditTrailConfiguration getAuditTrailConfiguration() {
+        return (this.configuration.getAuditTrail() != null)
+                ? this.configuration.getAuditTrail() : new CsafAuditTrailConfiguration();
+    }
+
     private Authentication getAuthentication() {
         return SecurityContextHolder.getContext().getAuthentication();
     }
@@ -0,0 +1,272 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.AdvisorySearchField;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.JsonNode;
+
+/**
+ * Full-text index over the csaf of the current advisories, kept in memory.
+ * <p>
+ * A ContainsIgnoreCase filter is converted to a {@code $regex} selector, which CouchDB can not serve from an index,
+ * so it reads every document. This index holds the positions of all words in the texts of the advisories instead.
+ * It is fed by the changes feed of the database, see {@link AdvisoryFeedIndex}.
+ * <p>
+ * All terms of a query have to match. A term ending with {@code *} matches the words starting with it. A term in
+ * double quotes, or a term consisting of several words like {@code CVE-2024-1234}, matches the words in this order.
+ * Hits are ranked by the frequency of the terms in the advisory weighted by their rarity in all advisories, terms
+ * in the title of the advisory count double.
+ */
+@Service
+public class AdvisoryTextIndex extends AdvisoryFeedIndex {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+    private static final double TITLE_BOOST = 2.0;
+    private static final Pattern QUERY_TERM = Pattern.compile("\"([^\"]*)\"|(\\S+)");
+
+    // word -> advisory id -> positions of the word in the texts of the advisory
+    private final NavigableMap<String, Map<String, int[]>> postings = new TreeMap<>();
+    private final Map<String, IndexedAdvisory> advisories = new HashMap<>();
+
+    /**
+     * Search the advisories visible with the given credentials
+     *
+     * @param query       the terms to search for
+     * @param credentials the credentials to check the visibility of the advisories with
+     * @param limit       the maximum number of hits
+     * @return the matching advisories, best first
+     */
+    public List<Hit> search(String query, Authentication credentials, int limit) {
+
+        catchUpBeforeQuery();
+        List<Clause> clauses = parse(query);
+        if (clauses.isEmpty()) {
+            return List.of();
+        }
+        this.lock.readLock().lock();
+        try {
+            Map<String, Double> scores = null;
+            for (Clause clause : clauses) {
+                Map<String, Integer> frequencies = clause.frequencies(this.postings);
+                if (frequencies.isEmpty()) {
+                    return List.of();
+                }
+                double idf = Math.log(1.0 + (double) advisoryCount() / frequencies.size());
+                Map<String, Double> clauseScores = new HashMap<>();
+                for (Map.Entry<String, Integer> frequency : frequencies.entrySet()) {
+                    if (scores == null || scores.containsKey(frequency.getKey())) {
+                        IndexedAdvisory advisory = this.advisories.get(frequency.getKey());
+                        double boost = clause.matchesAll(advisory.titleWords()) ? TITLE_BOOST : 1.0;
+                        double previous = (scores == null) ? 0.0 : scores.get(frequency.getKey());
+                        clauseScores.put(frequency.getKey(),
+                                previous + (1.0 + Math.log(frequency.getValue())) * idf * boost);
+                    }
+                }
+                scores = clauseScores;
+            }
+            return scores.entrySet().stream()
+                    .filter(score -> isVisible(score.getKey(), credentials))
+                    .map(score -> new Hit(score.getKey(), score.getValue()))
+                    .sorted(Comparator.comparingDouble(Hit::score).reversed().thenComparing(Hit::advisoryId))
+                    .limit(limit)
+                    .toList();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected void addAdvisory(String advisoryId, JsonNode advisory) {
+
+        Map<String, List<Integer>> positions = new HashMap<>();
+        collectWords(advisory.path("csaf"), positions, new int[] {0});
+        for (Map.Entry<String, List<Integer>> word : positions.entrySet()) {
+            int[] wordPositions = word.getValue().stream().mapToInt(Integer::intValue).toArray();
+            this.postings.computeIfAbsent(word.getKey(), key -> new HashMap<>()).put(advisoryId, wordPositions);
+        }
+        this.advisories.put(advisoryId, new IndexedAdvisory(
+                new HashSet<>(tokenize(textAt(advisory, AdvisorySearchField.DOCUMENT_TITLE))),
+                positions.keySet()));
+    }
+
+    @Override
+    protected void removeAdvisory(String advisoryId) {
+
+        IndexedAdvisory advisory = this.advisories.remove(advisoryId);
+        if (advisory != null) {
+            for (String word : advisory.words()) {
+                Map<String, int[]> wordPostings = this.postings.get(word);
+                wordPostings.remove(advisoryId);
+                if (wordPostings.isEmpty()) {
+                    this.postings.remove(word);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the words of all texts below the given node. Field names starting with $ hold the node ids of the
+     * editor and are skipped. Texts are separated by a gap in the positions, so phrases do not span two texts.
+     */
+    private static void collectWords(JsonNode node, Map<String, List<Integer>> positions, int[] position) {
+
+        if (node.isString()) {
+            for (String word : tokenize(node.asString())) {
+                positions.computeIfAbsent(word, key -> new ArrayList<>()).add(position[0]++);
+            }
+            position[0]++;
+        } else if (node.isArray()) {
+            node.forEach(element -> collectWords(element, positions, position));
+        } else if (node.isObject()) {
+            for (Map.Entry<String, JsonNode> field : node.properties()) {
+                if (!field.getKey().startsWith("$")) {
+                    collectWords(field.getValue(), positions, position);
+                }
+            }
+        }
+    }
+
+    /**
+     * Split a text into lower case words, everything but letters and digits separates words
+     */
+    static List<String> tokenize(String text) {
+
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    static List<Clause> parse(String query) {
+
+        List<Clause> clauses = new ArrayList<>();
+        Matcher matcher = QUERY_TERM.matcher(query);
+        while (matcher.find()) {
+            boolean quoted = matcher.group(1) != null;
+            String term = quoted ? matcher.group(1) : matcher.group(2);
+            List<String> words = tokenize(term);
+            if (!words.isEmpty()) {
+                clauses.add(new Clause(words, !quoted && term.endsWith("*")));
+            }
+        }
+        return clauses;
+    }
+
+    /**
+     * A matching advisory
+     *
+     * @param advisoryId the id of the advisory
+     * @param score      the relevance of the advisory for the query
+     */
+    public record Hit(String advisoryId, double score) {
+    }
+
+    /**
+     * The words of an advisory
+     */
+    private record IndexedAdvisory(Set<String> titleWords, Set<String> words) {
+    }
+
+    /**
+     * Words of a query that have to occur in this order, the last word may be a prefix
+     */
+    record Clause(List<String> words, boolean prefix) {
+
+        /**
+         * @return the number of occurrences of the clause by the id of the advisories containing it
+         */
+        Map<String, Integer> frequencies(NavigableMap<String, Map<String, int[]>> postings) {
+
+            List<Map<String, int[]>> positions = new ArrayList<>();
+            for (int i = 0; i < this.words.size(); i++) {
+                boolean isPrefix = this.prefix && i == this.words.size() - 1;
+                Map<String, int[]> wordPositions = isPrefix
+                        ? prefixPositions(postings, this.words.get(i))
+                        : postings.getOrDefault(this.words.get(i), Map.of());
+                if (wordPositions.isEmpty()) {
+                    return Map.of();
+                }
+                positions.add(wordPositions);
+            }
+            Map<String, Integer> frequencies = new HashMap<>();
+            for (Map.Entry<String, int[]> first : positions.get(0).entrySet()) {
+                int count = 0;
+                for (int start : first.getValue()) {
+                    if (followedByOtherWords(positions, first.getKey(), start)) {
+                        count++;
+                    }
+                }
+                if (count > 0) {
+                    frequencies.put(first.getKey(), count);
+                }
+            }
+            return frequencies;
+        }
+
+        boolean matchesAll(Set<String> titleWords) {
+
+            for (int i = 0; i < this.words.size(); i++) {
+                String word = this.words.get(i);
+                boolean matches = (this.prefix && i == this.words.size() - 1)
+                        ? titleWords.stream().anyMatch(titleWord -> titleWord.startsWith(word))
+                        : titleWords.contains(word);
+                if (!matches) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean followedByOtherWords(List<Map<String, int[]>> positions, String advisoryId, int start) {
+
+            for (int i = 1; i < positions.size(); i++) {
+                int[] wordPositions = positions.get(i).get(advisoryId);
+                if (wordPositions == null || Arrays.binarySearch(wordPositions, start + i) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static Map<String, int[]> prefixPositions(NavigableMap<String, Map<String, int[]>> postings,
+                                                          String prefix) {
+
+            Map<String, int[]> merged = new HashMap<>();
+            for (Map<String, int[]> wordPostings : postings.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values()) {
+                wordPostings.forEach((advisoryId, wordPositions) -> merged.merge(advisoryId, wordPositions,
+                        (existing, added) -> {
+                            int[] union = Arrays.copyOf(existing, existing.length + added.length);
+                            System.arraycopy(added, 0, union, existing.length, added.length);
+                            Arrays.sort(union);
+                            return union;
+                        }));
+            }
+            return merged;
+        }
+    }
+}
@@ -22,9 +22,13 @@ import de.bsi.secvisogram.csaf_cms_backend.model.filter.OrExpression;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.DateTimeException;
 import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
 import java.util.*;
 import java.util.function.BiConsumer;
 import org.apache.commons.text.similarity.LevenshteinDetailedDistance;
@@ -145,6 +149,18 @@ public class AdvisoryWorkflowUtil {
                 advisory.getDocumentTrackingCurrentReleaseDate());
     }
 
+    /**
+     * Check whether the given advisory info can be viewed with the given credentials
+     * @param response the advisory info to check
+     * @param credentials the credentials for the check
+     * @return true - info can be viewed
+     */
+    public static boolean canViewAdvisory(AdvisoryInformationResponse response, Authentication credentials) {
+
+        return canViewAdvisory(response.getOwner(), response.getWorkflowState(), credentials,
+                response.getCurrentReleaseDate());
+    }
+
     /**
      * Check whether an advisory with the given user and state can be viewed with the given credentials
      * @param userToCheck the advisory user to check
@@ -209,6 +225,36 @@ public class AdvisoryWorkflowUtil {
                 credentials, allowOwnDocumentsApproved);
     }
 
+    /**
+     * Set the permission fields of the given advisory info for the given credentials
+     * @param response the advisory info to enrich
+     * @param credentials the credentials for the check
+     * @param allowOwnDocumentsApproved whether a user may approve their own advisory (Review -> Approved)
+     */
+    public static void enrichAdvisory(AdvisoryInformationResponse response, Authentication credentials,
+                                      boolean allowOwnDocumentsApproved) {
+
+        response.setDeletable(canDeleteAdvisory(response, credentials));
+        response.setChangeable(canChangeAdvisory(response, credentials));
+        response.setAllowedStateChanges(getAllowedStates(response, credentials, allowOwnDocumentsApproved));
+        response.setCanCreateVersion(canCreateNewVersion(response, credentials));
+    }
+
+    /**
+     * Get all workflow states the given advisory info can be changed into with the given credentials
+     * @param response the advisory info to check
+     * @param credentials the credentials for the check
+     * @param allowOwnDocumentsApproved whether a user may approve their own advisory (Review -> Approved)
+     * @return the allowed target states
+     */
+    public static List<WorkflowState> getAllowedStates(AdvisoryInformationResponse response, Authentication credentials,
+                                                       boolean allowOwnDocumentsApproved) {
+
+        return Arrays.stream(WorkflowState.values())
+                .filter(state -> canChangeWorkflow(response, state, credentials, allowOwnDocumentsApproved))
+                .toList();
+    }
+
     /**
      * Check whether the workflow state of an advisory with the given user and state can be changed.
      *
@@ -370,6 +416,27 @@ public class AdvisoryWorkflowUtil {
         return userToCheck.equals(credentials.getName());
     }
 
+    /**
+     * Parse a timestamp in ISO 8601 format. Unlike {@link #timestampIsBefore} the offset is taken
+     * into account, "2024-01-01T09:00:00-05:00" results in 14:00 UTC. A timestamp without offset is taken as UTC.
+     *
+     * @param timestamp the timestamp to parse
+     * @return the timestamp, empty if it is not set or not valid
+     */
+    public static Optional<Instant> parseTimestamp(String timestamp) {
+
+        if (timestamp == null || timestamp.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            TemporalAccessor parsed = DateTimeFormatter.ISO_DATE_TIME.parse(timestamp);
+            ZoneOffset offset = parsed.query(TemporalQueries.offset());
+            return Optional.of(LocalDateTime.from(parsed).toInstant(offset != null ? offset : ZoneOffset.UTC));
+        } catch (DateTimeException ex) {
+            return Optional.empty();
+        }
+    }
+
     static boolean isPublished(WorkflowState advisoryState, String releaseDate) {
         String now = DateTimeFormatter.ISO_INSTANT.format(Instant.now());
         return isInState(advisoryState, WorkflowState.Published)
@@ -0,0 +1,593 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbField.ID_FIELD;
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbField.REVISION_FIELD;
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbField.TYPE_FIELD;
+
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafAuditTrailConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.AdvisoryAuditTrailField;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.AuditTrailField;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CommentAuditTrailField;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DatabaseException;
+import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.ObjectNode;
+
+/**
+ * Archive of audit trail entries moved out of the database.
+ * <p>
+ * The entries are stored by the month of their creation in append-only files of newline delimited JSON
+ * ({@code audit-trail-2024-01.ndjson.gz}). Every archive run appends one gzip member per month, which
+ * {@link GZIPInputStream} reads as one stream. The entries are written to the archive before they are deleted from
+ * the database, so an interrupted run archives some entries twice. The reader removes these duplicates.
+ * <p>
+ * The index file {@value #INDEX_FILE} holds one line per appended member with the month, the time range, the
+ * ids of the advisories and comments of its entries and the length of the month file after the member, so a lookup
+ * only reads the months that contain matching entries. The index line is written after the member is synced, so
+ * the file is only read up to the length in its last index line. A member torn by a crash is cut off before the
+ * next member is appended, the entries were not deleted from the database and are archived again.
+ */
+@Service
+public class AuditTrailArchive {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AuditTrailArchive.class);
+    private static final Comparator<ObjectNode> NEWEST_FIRST = Comparator
+            .comparing((ObjectNode entry) -> Instant.parse(AuditTrailField.CREATED_AT.stringVal(entry)))
+            .thenComparing(ID_FIELD::stringVal).reversed();
+
+    static final String INDEX_FILE = "audit-trail-index.ndjson";
+    private static final String ARCHIVE_FILE_PREFIX = "audit-trail-";
+    private static final String ARCHIVE_FILE_SUFFIX = ".ndjson.gz";
+    private static final List<ObjectType> AUDIT_TRAIL_TYPES =
+            List.of(ObjectType.AuditTrailDocument, ObjectType.AuditTrailWorkflow, ObjectType.CommentAuditTrail);
+
+    @Autowired
+    private CouchDbService couchDbService;
+
+    @Autowired
+    private CsafConfiguration configuration;
+
+    private final JsonMapper jsonMapper = new JsonMapper();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private List<IndexEntry> index = List.of();
+    private long indexFileSize = -1;
+    private long indexLength;
+
+    /**
+     * @return true if an archive directory is configured
+     */
+    public boolean isEnabled() {
+        return getAuditTrailConfiguration().isArchiveEnabled();
+    }
+
+    /**
+     * Move all audit trail entries created before the given time to the archive
+     *
+     * @param cutoff the creation time of the oldest entry to keep in the database
+     * @return the number of archived entries
+     */
+    public int archiveEntriesCreatedBefore(Instant cutoff) throws IOException, DatabaseException {
+
+        ensureIndexes();
+        int batchSize = getAuditTrailConfiguration().getArchiveBatchSize();
+        int archived = 0;
+        for (ObjectType type : AUDIT_TRAIL_TYPES) {
+            Map<String, Object> selector = Map.of(
+                    TYPE_FIELD.getDbName(), type.name(),
+                    AuditTrailField.CREATED_AT.getDbName(), Map.of("$lt", cutoff.toString()));
+            archived += archiveAll(selector, AdvisoryService.AUDIT_TRAIL_BY_TIME_INDEX, batchSize);
+        }
+        return archived;
+    }
+
+    /**
+     * Move the audit trail entries of the given advisories to the archive. Ids of other documents are ignored.
+     *
+     * @param advisoryIds the ids of the advisories
+     * @return the number of archived entries
+     */
+    public int archiveEntriesOf(Collection<String> advisoryIds) throws IOException, DatabaseException {
+
+        if (advisoryIds.isEmpty()) {
+            return 0;
+        }
+        ensureIndexes();
+        int batchSize = getAuditTrailConfiguration().getArchiveBatchSize();
+        List<String> ids = List.copyOf(advisoryIds);
+        int archived = 0;
+        for (int start = 0; start < ids.size(); start += batchSize) {
+            List<String> chunk = ids.subList(start, Math.min(start + batchSize, ids.size()));
+            for (ObjectType type : AUDIT_TRAIL_TYPES) {
+                Map<String, Object> selector = Map.of(
+                        TYPE_FIELD.getDbName(), type.name(),
+                        AdvisoryAuditTrailField.ADVISORY_ID.getDbName(), Map.of("$in", chunk),
+                        AuditTrailField.CREATED_AT.getDbName(), Map.of("$gte", ""));
+                archived += archiveAll(selector, AdvisoryService.AUDIT_TRAIL_BY_ADVISORY_INDEX, batchSize);
+            }
+        }
+        return archived;
+    }
+
+    /**
+     * Find the archived entries matching the query, newest first. The limit and bookmark of the query are ignored.
+     *
+     * @param query the filters, the timestamps have to be valid
+     * @return the complete archived entries
+     */
+    public List<ObjectNode> findEntries(AuditTrailQuery query) throws IOException {
+
+        if (!isEnabled()) {
+            return List.of();
+        }
+        List<ObjectNode> entries = new ArrayList<>();
+        this.lock.readLock().lock();
+        try {
+            List<IndexEntry> currentIndex = readIndex();
+            Map<String, Long> monthLengths = monthLengths(currentIndex);
+            for (String month : monthsContaining(currentIndex, query)) {
+                entries.addAll(readMatchingEntries(month, monthLengths.getOrDefault(month, -1L), query));
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        entries.sort(NEWEST_FIRST);
+        return entries;
+    }
+
+    /**
+     * Find a page of the archived entries matching the query, newest first. Only the months up to the end of the
+     * page are read, the months are read from the newest to the oldest.
+     *
+     * @param query the filters, the timestamps have to be valid. The limit and bookmark of the query are ignored.
+     * @param start the position of the first entry of the page, null to start with the newest entry
+     * @param limit the maximum number of entries of the page
+     * @return the entries of the page and the position of the next page
+     */
+    public ArchivePage findEntries(AuditTrailQuery query, @Nullable ArchivePosition start, int limit)
+            throws IOException {
+
+        if (!isEnabled()) {
+            return new ArchivePage(List.of(), null);
+        }
+        List<ObjectNode> entries = new ArrayList<>();
+        this.lock.readLock().lock();
+        try {
+            List<IndexEntry> currentIndex = readIndex();
+            Map<String, Long> monthLengths = monthLengths(currentIndex);
+            NavigableSet<String> months = monthsContaining(currentIndex, query).descendingSet();
+            if (start != null) {
+                months = months.tailSet(start.month(), true);
+            }
+            for (String month : months) {
+                List<ObjectNode> monthEntries =
+                        readMatchingEntries(month, monthLengths.getOrDefault(month, -1L), query);
+                int offset = (start != null && month.equals(start.month()))
+                        ? Math.min(start.index(), monthEntries.size()) : 0;
+                int end = Math.min(offset + limit - entries.size(), monthEntries.size());
+                entries.addAll(monthEntries.subList(offset, end));
+                if (entries.size() >= limit) {
+                    // the months are descending, the next month is the older one
+                    String olderMonth = months.higher(month);
+                    ArchivePosition next = (end < monthEntries.size()) ? new ArchivePosition(month, end)
+                            : (olderMonth != null) ? new ArchivePosition(olderMonth, 0) : null;
+                    return new ArchivePage(entries, next);
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return new ArchivePage(entries, null);
+    }
+
+    /**
+     * @return the months of the index that may contain entries matching the query, in ascending order
+     */
+    private static TreeSet<String> monthsContaining(List<IndexEntry> index, AuditTrailQuery query) {
+
+        Instant from = (query.getFrom() != null) ? Instant.parse(query.getFrom()) : null;
+        Instant to = (query.getTo() != null) ? Instant.parse(query.getTo()) : null;
+        TreeSet<String> months = new TreeSet<>();
+        for (IndexEntry indexEntry : index) {
+            if (indexEntry.mayContain(query, from, to)) {
+                months.add(indexEntry.month());
+            }
+        }
+        return months;
+    }
+
+    /**
+     * Read the entries of a month matching the query, newest first and without the entries archived twice.
+     * Has to be called with the read lock.
+     */
+    private List<ObjectNode> readMatchingEntries(String month, long length, AuditTrailQuery query)
+            throws IOException {
+
+        Instant from = (query.getFrom() != null) ? Instant.parse(query.getFrom()) : null;
+        Instant to = (query.getTo() != null) ? Instant.parse(query.getTo()) : null;
+        Map<String, ObjectNode> entriesById = new LinkedHashMap<>();
+        for (ObjectNode entry : readMonth(month, length)) {
+            if (matches(entry, query, from, to)) {
+                entriesById.putIfAbsent(ID_FIELD.stringVal(entry), entry);
+            }
+        }
+        List<ObjectNode> entries = new ArrayList<>(entriesById.values());
+        entries.sort(NEWEST_FIRST);
+        return entries;
+    }
+
+    /**
+     * Archive and delete the entries matching the selector batch by batch. The archived entries are deleted,
+     * so every query reads the next batch.
+     */
+    private int archiveAll(Map<String, Object> selector, String indexName, int batchSize)
+            throws IOException, DatabaseException {
+
+        int archived = 0;
+        List<ObjectNode> batch;
+        do {
+            InputStream resultStream = this.couchDbService.findDocumentsPageAsStream(selector, null,
+                    AdvisoryService.AUDIT_TRAIL_DESIGN_DOC, indexName, null, batchSize, null);
+            batch = new ArrayList<>();
+            for (JsonNode doc : this.jsonMapper.readValue(resultStream, JsonNode.class).path("docs")) {
+                batch.add((ObjectNode) doc);
+            }
+            if (!batch.isEmpty()) {
+                append(batch);
+                this.couchDbService.bulkDeleteDocuments(batch.stream()
+                        .map(doc -> new IdAndRevision(ID_FIELD.stringVal(doc), REVISION_FIELD.stringVal(doc)))
+                        .toList());
+                archived += batch.size();
+            }
+        } while (batch.size() >= batchSize);
+        return archived;
+    }
+
+    /**
+     * Append the entries to the files of their month and record them in the index
+     */
+    private void append(List<ObjectNode> entries) throws IOException {
+
+        Map<String, List<ObjectNode>> entriesByMonth = new TreeMap<>();
+        for (ObjectNode entry : entries) {
+            entriesByMonth.computeIfAbsent(monthOf(entry), month -> new ArrayList<>()).add(entry);
+        }
+        this.lock.writeLock().lock();
+        try {
+            Path directory = getArchiveDirectory();
+            Files.createDirectories(directory);
+            Map<String, Long> monthLengths = monthLengths(readIndex());
+            StringBuilder indexLines = new StringBuilder();
+            for (Map.Entry<String, List<ObjectNode>> monthEntries : entriesByMonth.entrySet()) {
+                String month = monthEntries.getKey();
+                long length = appendMember(directory.resolve(ARCHIVE_FILE_PREFIX + month + ARCHIVE_FILE_SUFFIX),
+                        monthEntries.getValue(), monthLengths.getOrDefault(month, 0L));
+                indexLines.append(createIndexLine(month, monthEntries.getValue(), length)).append('\n');
+            }
+            appendAndSync(directory.resolve(INDEX_FILE), indexLines.toString().getBytes(StandardCharsets.UTF_8),
+                    this.indexLength);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        LOG.debug("Archived {} audit trail entries in {} months", entries.size(), entriesByMonth.size());
+    }
+
+    /**
+     * Append a gzip member with the entries to the file of the month
+     *
+     * @param validLength the length of the file in the index, a longer file ends with a torn member that is cut off,
+     *                    -1 if the index does not contain the length
+     * @return the length of the file with the new member
+     */
+    private long appendMember(Path file, List<ObjectNode> entries, long validLength) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            truncateTo(channel, validLength, file);
+            GZIPOutputStream gzip = new GZIPOutputStream(Channels.newOutputStream(channel));
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8));
+            for (ObjectNode entry : entries) {
+                ObjectNode archived = entry.deepCopy();
+                archived.remove(REVISION_FIELD.getDbName());
+                writer.write(archived.toString());
+                writer.write('\n');
+            }
+            // finishes the gzip member without closing the channel before it is synced
+            writer.flush();
+            gzip.finish();
+            channel.force(true);
+            return channel.size();
+        }
+    }
+
+    private static void appendAndSync(Path file, byte[] content, long validLength) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            truncateTo(channel, validLength, file);
+            Channels.newOutputStream(channel).write(content);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Cut off the data a crashed run wrote after the valid length and position the channel at the end
+     */
+    private static void truncateTo(FileChannel channel, long validLength, Path file) throws IOException {
+
+        if (validLength >= 0 && channel.size() > validLength) {
+            LOG.warn("Cutting off {} bytes of an interrupted write at the end of {}", channel.size() - validLength,
+                    file);
+            channel.truncate(validLength);
+        }
+        channel.position(channel.size());
+    }
+
+    private String createIndexLine(String month, List<ObjectNode> entries, long length) {
+
+        Set<String> advisoryIds = new TreeSet<>();
+        Set<String> commentIds = new TreeSet<>();
+        Instant from = null;
+        Instant to = null;
+        for (ObjectNode entry : entries) {
+            String advisoryId = entry.path(AdvisoryAuditTrailField.ADVISORY_ID.getDbName()).asString(null);
+            if (advisoryId != null) {
+                advisoryIds.add(advisoryId);
+            }
+            String commentId = entry.path(CommentAuditTrailField.COMMENT_ID.getDbName()).asString(null);
+            if (commentId != null) {
+                commentIds.add(commentId);
+            }
+            Instant createdAt = Instant.parse(AuditTrailField.CREATED_AT.stringVal(entry));
+            from = (from == null || createdAt.isBefore(from)) ? createdAt : from;
+            to = (to == null || createdAt.isAfter(to)) ? createdAt : to;
+        }
+        ObjectNode line = this.jsonMapper.createObjectNode();
+        line.put("month", month);
+        line.put("from", String.valueOf(from));
+        line.put("to", String.valueOf(to));
+        line.put("count", entries.size());
+        line.put("length", length);
+        ArrayNode advisoryIdsNode = line.putArray("advisoryIds");
+        advisoryIds.forEach(advisoryIdsNode::add);
+        ArrayNode commentIdsNode = line.putArray("commentIds");
+        commentIds.forEach(commentIdsNode::add);
+        return line.toString();
+    }
+
+    /**
+     * Read the index, it is only parsed again if the file has grown since the last read. A last line without a
+     * line break is torn or still being written and is ignored.
+     * Has to be called with the read lock.
+     */
+    private synchronized List<IndexEntry> readIndex() throws IOException {
+
+        Path indexFile = getArchiveDirectory().resolve(INDEX_FILE);
+        long size = Files.exists(indexFile) ? Files.size(indexFile) : 0;
+        if (size != this.indexFileSize) {
+            List<IndexEntry> entries = new ArrayList<>();
+            int length = 0;
+            if (size > 0) {
+                byte[] content = Files.readAllBytes(indexFile);
+                for (int lineEnd = 0; lineEnd < content.length; lineEnd++) {
+                    if (content[lineEnd] == '\n') {
+                        String line = new String(content, length, lineEnd - length, StandardCharsets.UTF_8);
+                        if (!line.isBlank()) {
+                            entries.add(IndexEntry.fromJson(this.jsonMapper.readTree(line)));
+                        }
+                        length = lineEnd + 1;
+                    }
+                }
+            }
+            this.index = List.copyOf(entries);
+            this.indexFileSize = size;
+            this.indexLength = length;
+        }
+        return this.index;
+    }
+
+    /**
+     * @return the length of the month files after the last member in the index, -1 if the index was written
+     * without the length
+     */
+    private static Map<String, Long> monthLengths(List<IndexEntry> index) {
+
+        Map<String, Long> lengths = new HashMap<>();
+        for (IndexEntry indexEntry : index) {
+            lengths.put(indexEntry.month(), indexEntry.length());
+        }
+        return lengths;
+    }
+
+    /**
+     * Read the entries of a month
+     *
+     * @param length the length of the file in the index, the file is read completely if it is negative
+     */
+    private List<ObjectNode> readMonth(String month, long length) throws IOException {
+
+        Path file = getArchiveDirectory().resolve(ARCHIVE_FILE_PREFIX + month + ARCHIVE_FILE_SUFFIX);
+        List<ObjectNode> entries = new ArrayList<>();
+        if (!Files.exists(file)) {
+            LOG.warn("Archive file {} of the index does not exist", file);
+            return entries;
+        }
+        InputStream fileStream = Files.newInputStream(file);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream((length >= 0) ? new LimitedInputStream(fileStream, length) : fileStream),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    entries.add((ObjectNode) this.jsonMapper.readTree(line));
+                }
+            }
+        } catch (EOFException ex) {
+            // another replica is appending a member, its entries are read on the next lookup
+            LOG.debug("Archive file {} ends with an incomplete member", file);
+        }
+        return entries;
+    }
+
+    private static boolean matches(ObjectNode entry, AuditTrailQuery query, Instant from, Instant to) {
+
+        Instant createdAt = Instant.parse(AuditTrailField.CREATED_AT.stringVal(entry));
+        return query.getType().name().equals(entry.path(TYPE_FIELD.getDbName()).asString(null))
+                && matches(entry, AdvisoryAuditTrailField.ADVISORY_ID.getDbName(), query.getAdvisoryId())
+                && matches(entry, CommentAuditTrailField.COMMENT_ID.getDbName(), query.getCommentId())
+                && matches(entry, AuditTrailField.USER.getDbName(), query.getUser())
+                && matches(entry, AuditTrailField.CHANGE_TYPE.getDbName(), query.getChangeType())
+                && (from == null || !createdAt.isBefore(from))
+                && (to == null || !createdAt.isAfter(to));
+    }
+
+    private static boolean matches(ObjectNode entry, String field, String value) {
+        return value == null || value.equals(entry.path(field).asString(null));
+    }
+
+    private static String monthOf(ObjectNode entry) {
+        return YearMonth.from(Instant.parse(AuditTrailField.CREATED_AT.stringVal(entry)).atZone(ZoneOffset.UTC))
+                .toString();
+    }
+
+    private void ensureIndexes() {
+        this.couchDbService.createIndex(AdvisoryService.AUDIT_TRAIL_DESIGN_DOC,
+                AdvisoryService.AUDIT_TRAIL_BY_ADVISORY_INDEX, AdvisoryService.AUDIT_TRAIL_BY_ADVISORY_FIELDS);
+        this.couchDbService.createIndex(AdvisoryService.AUDIT_TRAIL_DESIGN_DOC,
+                AdvisoryService.AUDIT_TRAIL_BY_TIME_INDEX, AdvisoryService.AUDIT_TRAIL_BY_TIME_FIELDS);
+    }
+
+    private Path getArchiveDirectory() {
+        return Path.of(getAuditTrailConfiguration().getArchiveDirectory());
+    }
+
+    private CsafAuditTrailConfiguration getAuditTrailConfiguration() {
+        return (this.configuration.getAuditTrail() != null)
+                ? this.configuration.getAuditTrail() : new CsafAuditTrailConfiguration();
+    }
+
+    /**
+     * A line of the index: the month, time range and ids of the entries of an appended member and the length of
+     * the month file after it
+     */
+    private record IndexEntry(String month, Instant from, Instant to, Set<String> advisoryIds, Set<String> commentIds,
+                              long length) {
+
+        static IndexEntry fromJson(JsonNode line) {
+            Set<String> advisoryIds = new TreeSet<>();
+            line.path("advisoryIds").forEach(id -> advisoryIds.add(id.asString()));
+            Set<String> commentIds = new TreeSet<>();
+            line.path("commentIds").forEach(id -> commentIds.add(id.asString()));
+            return new IndexEntry(line.path("month").asString(), Instant.parse(line.path("from").asString()),
+                    Instant.parse(line.path("to").asString()), advisoryIds, commentIds,
+                    line.path("length").asLong(-1));
+        }
+
+        boolean mayContain(AuditTrailQuery query, Instant queryFrom, Instant queryTo) {
+            return (query.getAdvisoryId() == null || this.advisoryIds.contains(query.getAdvisoryId()))
+                    && (query.getCommentId() == null || this.commentIds.contains(query.getCommentId()))
+                    && (queryFrom == null || !this.to.isBefore(queryFrom))
+                    && (queryTo == null || !this.from.isAfter(queryTo));
+        }
+    }
+
+    /**
+     * Stream of the first bytes of a file, the gzip members written after the index line are not read
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (this.remaining <= 0) {
+                return -1;
+            }
+            int result = super.read();
+            if (result >= 0) {
+                this.remaining--;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (this.remaining <= 0) {
+                return -1;
+            }
+            int result = super.read(buffer, offset, (int) Math.min(length, this.remaining));
+            if (result > 0) {
+                this.remaining -= result;
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = super.skip(Math.min(count, this.remaining));
+            this.remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), this.remaining);
+        }
+    }
+
+    /**
+     * Position of an entry in the archive: the month and the index of the entry in the matching entries of the
+     * month, newest first
+     */
+    public record ArchivePosition(String month, int index) {
+    }
+
+    /**
+     * A page of archived entries and the position of the first entry of the next page, null on the last page
+     */
+    public record ArchivePage(List<ObjectNode> entries, @Nullable ArchivePosition next) {
+    }
+}
@@ -0,0 +1,137 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
+import javax.annotation.Nullable;
+
+/**
+ * Filter and page of a search for audit trail entries. All filters are optional, entries have to match all
+ * given filters.
+ */
+public class AuditTrailQuery {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    private ObjectType type;
+    private String advisoryId;
+    private String commentId;
+    private String user;
+    private String changeType;
+    private String from;
+    private String to;
+    private int limit = DEFAULT_LIMIT;
+    private String bookmark;
+    private boolean includeDiff;
+
+    /**
+     * @return the type of the entries, if not set the entries of comments if a comment is given,
+     *     otherwise the entries of document changes
+     */
+    public ObjectType getType() {
+        if (type != null) {
+            return type;
+        }
+        return (commentId != null) ? ObjectType.CommentAuditTrail : ObjectType.AuditTrailDocument;
+    }
+
+    public AuditTrailQuery setType(@Nullable ObjectType type) {
+        this.type = type;
+        return this;
+    }
+
+    public String getAdvisoryId() {
+        return advisoryId;
+    }
+
+    public AuditTrailQuery setAdvisoryId(@Nullable String advisoryId) {
+        this.advisoryId = advisoryId;
+        return this;
+    }
+
+    public String getCommentId() {
+        return commentId;
+    }
+
+    public AuditTrailQuery setCommentId(@Nullable String commentId) {
+        this.commentId = commentId;
+        return this;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public AuditTrailQuery setUser(@Nullable String user) {
+        this.user = user;
+        return this;
+    }
+
+    public String getChangeType() {
+        return changeType;
+    }
+
+    public AuditTrailQuery setChangeType(@Nullable String changeType) {
+        this.changeType = changeType;
+        return this;
+    }
+
+    /**
+     * @return the earliest creation timestamp in ISO 8601 format, inclusive
+     */
+    public String getFrom() {
+        return from;
+    }
+
+    public AuditTrailQuery setFrom(@Nullable String from) {
+        this.from = from;
+        return this;
+    }
+
+    /**
+     * @return the latest creation timestamp in ISO 8601 format, inclusive
+     */
+    public String getTo() {
+        return to;
+    }
+
+    public AuditTrailQuery setTo(@Nullable String to) {
+        this.to = to;
+        return this;
+    }
+
+    /**
+     * @return the maximum number of entries of the page, limited to {@link #MAX_LIMIT}
+     */
+    public int getLimit() {
+        return Math.min(Math.max(limit, 1), MAX_LIMIT);
+    }
+
+    public AuditTrailQuery setLimit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * @return the bookmark of the previous page, null for the first page
+     */
+    public String getBookmark() {
+        return bookmark;
+    }
+
+    public AuditTrailQuery setBookmark(@Nullable String bookmark) {
+        this.bookmark = bookmark;
+        return this;
+    }
+
+    /**
+     * @return true if the diffs of document changes should be returned
+     */
+    public boolean isIncludeDiff() {
+        return includeDiff;
+    }
+
+    public AuditTrailQuery setIncludeDiff(boolean includeDiff) {
+        this.includeDiff = includeDiff;
+        return this;
+    }
+}
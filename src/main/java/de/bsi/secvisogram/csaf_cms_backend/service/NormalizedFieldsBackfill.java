@@ -0,0 +1,151 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbField.TYPE_FIELD;
+
+import com.ibm.cloud.cloudant.v1.model.DocumentResult;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.AdvisoryField;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.ChangedDocuments;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DatabaseException;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.IdNotFoundException;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.NormalizedSearchField;
+import de.bsi.secvisogram.csaf_cms_backend.json.AdvisoryWrapper;
+import de.bsi.secvisogram.csaf_cms_backend.json.FeedCheckpoint;
+import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
+import de.bsi.secvisogram.csaf_cms_backend.task.TaskLeaseService;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
+
+/**
+ * Adds the {@link NormalizedSearchField normalized shadow fields} to the advisories and advisory versions written
+ * before the fields were introduced. The documents without the fields are read from the changes feed in the
+ * background at startup. A document changed in the meantime is skipped, its new revision has the fields already.
+ * Only one replica runs the backfill at a time, and the position reached in the changes feed is kept in a
+ * {@link FeedCheckpoint}, so later starts only read the changes made since then.
+ */
+@Service
+public class NormalizedFieldsBackfill {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NormalizedFieldsBackfill.class);
+
+    private static final Map<String, Object> WITHOUT_NORMALIZED_FIELDS_SELECTOR = Map.of(
+            TYPE_FIELD.getDbName(), Map.of("$in", List.of(ObjectType.Advisory.name(), ObjectType.AdvisoryVersion.name())),
+            AdvisoryField.NORMALIZED.getDbName(), Map.of("$exists", false));
+
+    /**
+     * name of the {@link TaskLeaseService lease} and of the {@link FeedCheckpoint checkpoint} of the backfill
+     */
+    static final String TASK_NAME = "normalized-fields-backfill";
+    // the lease is renewed while the backfill is running, the time to live only matters if the replica dies
+    private static final Duration LEASE_TTL = Duration.ofMinutes(1);
+
+    @Autowired
+    private CouchDbService couchDbService;
+
+    @Autowired
+    private TaskLeaseService taskLeaseService;
+
+    private final ObjectMapper jacksonMapper = new JsonMapper();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            new BasicThreadFactory.Builder().namingPattern("Normalized-Fields-Backfill-%d").daemon(true).build());
+
+    @EventListener(ApplicationReadyEvent.class)
+    void startAtStartup() {
+        this.executor.execute(() -> {
+            Optional<TaskLeaseService.Lease> lease = this.taskLeaseService.tryAcquire(TASK_NAME, LEASE_TTL);
+            if (lease.isEmpty()) {
+                LOG.debug("Normalized search fields are added by another replica");
+                return;
+            }
+            try (TaskLeaseService.Lease heldLease = lease.get()) {
+                int updated = backfill();
+                if (updated > 0) {
+                    LOG.info("Added the normalized search fields to {} documents", updated);
+                }
+            } catch (DatabaseException | IOException | RuntimeException ex) {
+                // the documents get the fields on their next change, the backfill is retried on the next start
+                LOG.warn("Could not add the normalized search fields to the existing documents", ex);
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Add the normalized shadow fields to all advisories and advisory versions without them, that were changed
+     * since the checkpoint. The checkpoint is advanced after the documents of each batch are written.
+     *
+     * @return the number of updated documents
+     * @throws DatabaseException if the changes could not be read or the documents could not be written
+     * @throws IOException if the checkpoint could not be read
+     */
+    int backfill() throws DatabaseException, IOException {
+
+        FeedCheckpoint checkpoint = readCheckpoint();
+        int updated = 0;
+        ChangedDocuments changes;
+        do {
+            changes = this.couchDbService.findChangedDocuments(checkpoint.getSeq(), WITHOUT_NORMALIZED_FIELDS_SELECTOR,
+                    AdvisoryFeed.FEED_BATCH_SIZE);
+            List<ObjectNode> documents = changes.getDocuments().stream()
+                    .filter(ObjectNode.class::isInstance)
+                    .map(ObjectNode.class::cast)
+                    .toList();
+            if (!documents.isEmpty()) {
+                documents.forEach(AdvisoryWrapper::updateNormalizedFields);
+                for (DocumentResult result : this.couchDbService.bulkWriteDocuments(documents)) {
+                    if (Boolean.TRUE.equals(result.isOk())) {
+                        updated++;
+                    } else if (!"conflict".equals(result.getError())) {
+                        LOG.warn("Could not add the normalized search fields to {}: {}", result.getId(), result.getError());
+                    }
+                }
+            }
+            if (!changes.getLastSeq().equals(checkpoint.getSeq())) {
+                checkpoint.advance(changes.getLastSeq());
+                writeCheckpoint(checkpoint);
+            }
+        } while (!changes.isComplete());
+        return updated;
+    }
+
+    private FeedCheckpoint readCheckpoint() throws IOException {
+
+        FeedCheckpoint newCheckpoint = FeedCheckpoint.create(TASK_NAME);
+        try (InputStream checkpointStream = this.couchDbService.readDocumentAsStream(newCheckpoint.getId())) {
+            return this.jacksonMapper.readValue(checkpointStream, FeedCheckpoint.class);
+        } catch (IdNotFoundException ex) {
+            return newCheckpoint;
+        }
+    }
+
+    private void writeCheckpoint(FeedCheckpoint checkpoint) throws DatabaseException {
+
+        String json = this.jacksonMapper.writeValueAsString(checkpoint);
+        // the lease ensures that no other replica writes the checkpoint in the meantime
+        String revision = (checkpoint.getRev() == null)
+                ? this.couchDbService.writeDocument(checkpoint.getId(), json)
+                : this.couchDbService.updateDocument(json);
+        checkpoint.setRev(revision);
+    }
+}
@@ -0,0 +1,27 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
+import java.util.List;
+
+/**
+ * Advisories in workflow state AutoPublish whose release date is due,
+ * together with the number of documents the database examined to find them
+ */
+public class PublicationCandidates {
+
+    private final List<AdvisoryInformationResponse> advisories;
+    private final long documentsExamined;
+
+    public PublicationCandidates(List<AdvisoryInformationResponse> advisories, long documentsExamined) {
+        this.advisories = List.copyOf(advisories);
+        this.documentsExamined = documentsExamined;
+    }
+
+    public List<AdvisoryInformationResponse> getAdvisories() {
+        return advisories;
+    }
+
+    public long getDocumentsExamined() {
+        return documentsExamined;
+    }
+}
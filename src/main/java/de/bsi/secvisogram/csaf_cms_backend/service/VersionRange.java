@@ -0,0 +1,210 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * A version range in the vers syntax ({@code vers:<scheme>/<constraint>|<constraint>...}), as recommended by CSAF
+ * for the names of {@code product_version_range} branches.
+ * <p>
+ * Versions are compared by their numeric and alphabetic segments, numeric segments by their value, which gives the
+ * expected order for the usual dotted versions of all schemes. Scheme specific orders, like the pre-releases of
+ * semver, are not regarded.
+ */
+final class VersionRange {
+
+    private static final String VERS_PREFIX = "vers:";
+    private static final Comparator<String> VERSION_ORDER = VersionRange::compareVersions;
+
+    private final boolean all;
+    private final List<Constraint> constraints;
+
+    private VersionRange(boolean all, List<Constraint> constraints) {
+        this.all = all;
+        this.constraints = constraints;
+    }
+
+    /**
+     * Parse a range in the vers syntax
+     *
+     * @param text the range
+     * @return the range, empty if the text is no valid vers range
+     */
+    static Optional<VersionRange> parse(String text) {
+
+        String range = text.trim();
+        if (!range.toLowerCase(Locale.ROOT).startsWith(VERS_PREFIX) || range.indexOf('/') < 0) {
+            return Optional.empty();
+        }
+        String constraintsText = range.substring(range.indexOf('/') + 1).replace(" ", "");
+        if ("*".equals(constraintsText)) {
+            return Optional.of(new VersionRange(true, List.of()));
+        }
+        List<Constraint> constraints = new ArrayList<>();
+        for (String constraintText : constraintsText.split("\\|")) {
+            Optional<Constraint> constraint = Constraint.parse(constraintText);
+            if (constraint.isEmpty()) {
+                return Optional.empty();
+            }
+            constraints.add(constraint.get());
+        }
+        constraints.sort(Comparator.comparing(Constraint::version, VERSION_ORDER));
+        return Optional.of(new VersionRange(false, constraints));
+    }
+
+    /**
+     * Check whether the version is in the range, following the containment algorithm of the vers specification
+     *
+     * @param version the version to check
+     * @return true - the version is in the range
+     */
+    boolean contains(String version) {
+
+        if (this.all) {
+            return true;
+        }
+        List<Constraint> ranges = new ArrayList<>();
+        for (Constraint constraint : this.constraints) {
+            int comparison = compareVersions(version, constraint.version());
+            if (constraint.operator() == Operator.EQUAL && comparison == 0) {
+                return true;
+            } else if (constraint.operator() == Operator.NOT_EQUAL && comparison == 0) {
+                return false;
+            } else if (constraint.operator() != Operator.EQUAL && constraint.operator() != Operator.NOT_EQUAL) {
+                ranges.add(constraint);
+            }
+        }
+        if (ranges.isEmpty()) {
+            // only != constraints not matching the version
+            return this.constraints.stream().allMatch(constraint -> constraint.operator() == Operator.NOT_EQUAL);
+        }
+        Constraint first = ranges.get(0);
+        if (first.isUpperBound() && first.isSatisfiedBy(version)) {
+            return true;
+        }
+        Constraint last = ranges.get(ranges.size() - 1);
+        if (last.isLowerBound() && last.isSatisfiedBy(version)) {
+            return true;
+        }
+        for (int i = 0; i < ranges.size() - 1; i++) {
+            Constraint current = ranges.get(i);
+            Constraint next = ranges.get(i + 1);
+            if (current.isLowerBound() && next.isUpperBound()
+                    && current.isSatisfiedBy(version) && next.isSatisfiedBy(version)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compare two versions segment by segment. Segments are runs of digits or of other characters than the
+     * separators {@code . - _ + ~}. Numeric segments are compared by their value, alphabetic segments sort before
+     * numeric ones and missing segments count as 0, so {@code 1.0-rc1} is lower than {@code 1.0}.
+     *
+     * @return a negative number, zero, or a positive number as the first version is lower, equal or higher
+     */
+    static int compareVersions(String version1, String version2) {
+
+        List<String> segments1 = segments(version1);
+        List<String> segments2 = segments(version2);
+        for (int i = 0; i < Math.max(segments1.size(), segments2.size()); i++) {
+            String segment1 = i < segments1.size() ? segments1.get(i) : "0";
+            String segment2 = i < segments2.size() ? segments2.get(i) : "0";
+            int comparison = compareSegments(segment1, segment2);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return 0;
+    }
+
+    private static int compareSegments(String segment1, String segment2) {
+
+        boolean numeric1 = Character.isDigit(segment1.charAt(0));
+        boolean numeric2 = Character.isDigit(segment2.charAt(0));
+        if (numeric1 && numeric2) {
+            String digits1 = segment1.replaceFirst("^0+(?=.)", "");
+            String digits2 = segment2.replaceFirst("^0+(?=.)", "");
+            return digits1.length() != digits2.length()
+                    ? Integer.compare(digits1.length(), digits2.length())
+                    : digits1.compareTo(digits2);
+        } else if (numeric1 != numeric2) {
+            return numeric1 ? 1 : -1;
+        }
+        return segment1.compareToIgnoreCase(segment2);
+    }
+
+    private static List<String> segments(String version) {
+
+        List<String> segments = new ArrayList<>();
+        StringBuilder segment = new StringBuilder();
+        for (char character : version.trim().toCharArray()) {
+            boolean separator = ".-_+~".indexOf(character) >= 0;
+            boolean changesKind = segment.length() > 0
+                    && Character.isDigit(character) != Character.isDigit(segment.charAt(0));
+            if (separator || changesKind) {
+                if (segment.length() > 0) {
+                    segments.add(segment.toString());
+                    segment.setLength(0);
+                }
+            }
+            if (!separator) {
+                segment.append(character);
+            }
+        }
+        if (segment.length() > 0) {
+            segments.add(segment.toString());
+        }
+        return segments;
+    }
+
+    private enum Operator {
+        EQUAL(""), NOT_EQUAL("!="), LESS_OR_EQUAL("<="), GREATER_OR_EQUAL(">="), LESS("<"), GREATER(">");
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    private record Constraint(Operator operator, String version) {
+
+        static Optional<Constraint> parse(String text) {
+
+            for (Operator operator : Operator.values()) {
+                if (operator != Operator.EQUAL && text.startsWith(operator.symbol)) {
+                    String version = text.substring(operator.symbol.length());
+                    return version.isEmpty() ? Optional.empty() : Optional.of(new Constraint(operator, version));
+                }
+            }
+            String version = text.startsWith("=") ? text.substring(1) : text;
+            return version.isEmpty() ? Optional.empty() : Optional.of(new Constraint(Operator.EQUAL, version));
+        }
+
+        boolean isLowerBound() {
+            return this.operator == Operator.GREATER || this.operator == Operator.GREATER_OR_EQUAL;
+        }
+
+        boolean isUpperBound() {
+            return this.operator == Operator.LESS || this.operator == Operator.LESS_OR_EQUAL;
+        }
+
+        boolean isSatisfiedBy(String version) {
+
+            int comparison = compareVersions(version, this.version);
+            return switch (this.operator) {
+                case LESS -> comparison < 0;
+                case LESS_OR_EQUAL -> comparison <= 0;
+                case GREATER -> comparison > 0;
+                case GREATER_OR_EQUAL -> comparison >= 0;
+                case EQUAL -> comparison == 0;
+                case NOT_EQUAL -> comparison != 0;
+            };
+        }
+    }
+}
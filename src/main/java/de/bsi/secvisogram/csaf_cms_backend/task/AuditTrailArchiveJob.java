@@ -0,0 +1,168 @@
+package de.bsi.secvisogram.csaf_cms_backend.task;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jakarta.annotation.PreDestroy;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.jspecify.annotations.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafAuditTrailConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DatabaseException;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DeletedDocuments;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.IdNotFoundException;
+import de.bsi.secvisogram.csaf_cms_backend.json.FeedCheckpoint;
+import de.bsi.secvisogram.csaf_cms_backend.service.AuditTrailArchive;
+
+/**
+ * Moves audit trail entries out of the database into the {@link AuditTrailArchive}, so they no longer inflate the
+ * indexes used by every query. Entries older than the retention period are archived, and the entries of advisories
+ * deleted since the previous run, which are found in the changes feed of the database. The job should run before
+ * the {@link MaintenanceJob}, which purges the deleted advisories from the changes feed.
+ */
+@Component
+public class AuditTrailArchiveJob implements Runnable {
+  private static final Logger LOG = LoggerFactory.getLogger(AuditTrailArchiveJob.class);
+
+  /**
+   * name of the {@link TaskLeaseService lease} that ensures only one replica writes the archive
+   */
+  static final String LEASE_NAME = "audit-trail-archive";
+
+  @Autowired
+  private AuditTrailArchive auditTrailArchive;
+
+  @Autowired
+  private CouchDbService couchDbService;
+
+  @Autowired
+  private CsafConfiguration configuration;
+
+  @Autowired
+  private TaskLeaseService taskLeaseService;
+
+  private final AtomicBoolean running = new AtomicBoolean();
+  private @Nullable ExecutorService executor;
+  private final ObjectMapper jacksonMapper = new JsonMapper();
+
+  /**
+   * Start the archiving in the background, so a long run does not block other scheduled tasks
+   */
+  public void start() {
+    if (this.running.compareAndSet(false, true)) {
+      getExecutor().execute(() -> {
+        try {
+          run();
+        } finally {
+          this.running.set(false);
+        }
+      });
+    } else {
+      LOG.info("Audit trail archiving is still running");
+    }
+  }
+
+  @Override
+  public void run() {
+    Optional<TaskLeaseService.Lease> lease = this.taskLeaseService.tryAcquire(LEASE_NAME,
+        Duration.ofMillis(this.configuration.getAuditTrail().getArchiveLeaseTtl()));
+    if (lease.isEmpty()) {
+      LOG.info("Audit trail archiving skipped, another replica is archiving");
+      return;
+    }
+    try (TaskLeaseService.Lease heldLease = lease.get()) {
+      archive();
+    } catch (DatabaseException | IOException | RuntimeException ex) {
+      LOG.error("There was a problem when archiving the audit trail", ex);
+    }
+  }
+
+  /**
+   * Archive the entries older than the retention period and the entries of deleted advisories
+   * @return number of archived entries
+   */
+  int archive() throws DatabaseException, IOException {
+    CsafAuditTrailConfiguration auditTrail = this.configuration.getAuditTrail();
+    Instant started = Instant.now();
+    int expired = 0;
+    if (auditTrail.getRetentionDays() > 0) {
+      expired = this.auditTrailArchive.archiveEntriesCreatedBefore(
+          started.minus(Duration.ofDays(auditTrail.getRetentionDays())));
+    }
+    int ofDeleted = archiveEntriesOfDeletedAdvisories(auditTrail.getArchiveBatchSize());
+    LOG.info("Archived {} expired audit trail entries and {} entries of deleted advisories in {}", expired, ofDeleted,
+        Duration.between(started, Instant.now()));
+    return expired + ofDeleted;
+  }
+
+  /**
+   * Archive the entries of all documents deleted since the previous run. The ids of other deleted documents than
+   * advisories match no entries, so the deleted documents do not have to be read. The position in the feed is kept
+   * in a {@link FeedCheckpoint} document, which is only advanced after the entries of the batch are written to the
+   * archive, so a crash archives the entries of the batch again instead of losing them.
+   */
+  private int archiveEntriesOfDeletedAdvisories(int batchSize) throws DatabaseException, IOException {
+    FeedCheckpoint checkpoint = readCheckpoint();
+    int archived = 0;
+    DeletedDocuments deletedDocuments;
+    do {
+      deletedDocuments = this.couchDbService.findDeletedDocuments(checkpoint.getSeq(), batchSize);
+      archived += this.auditTrailArchive.archiveEntriesOf(deletedDocuments.getRevisionsById().keySet());
+      if (!deletedDocuments.getLastSeq().equals(checkpoint.getSeq())) {
+        checkpoint.advance(deletedDocuments.getLastSeq());
+        writeCheckpoint(checkpoint);
+      }
+    } while (!deletedDocuments.isComplete());
+    return archived;
+  }
+
+  @PreDestroy
+  synchronized void shutdown() {
+    if (this.executor != null) {
+      this.executor.shutdownNow();
+      this.executor = null;
+    }
+  }
+
+  private FeedCheckpoint readCheckpoint() throws IOException {
+    FeedCheckpoint newCheckpoint = FeedCheckpoint.create(LEASE_NAME);
+    try (InputStream checkpointStream = this.couchDbService.readDocumentAsStream(newCheckpoint.getId())) {
+      return this.jacksonMapper.readValue(checkpointStream, FeedCheckpoint.class);
+    } catch (IdNotFoundException ex) {
+      return newCheckpoint;
+    }
+  }
+
+  private void writeCheckpoint(FeedCheckpoint checkpoint) throws DatabaseException {
+    String json = this.jacksonMapper.writeValueAsString(checkpoint);
+    // the lease ensures that no other replica writes the checkpoint in the meantime
+    String revision = (checkpoint.getRev() == null)
+        ? this.couchDbService.writeDocument(checkpoint.getId(), json)
+        : this.couchDbService.updateDocument(json);
+    checkpoint.setRev(revision);
+  }
+
+  private synchronized ExecutorService getExecutor() {
+    if (this.executor == null) {
+      this.executor = Executors.newSingleThreadExecutor(
+          new BasicThreadFactory.Builder().namingPattern("Audit-Trail-Archive-%d").daemon(true).build());
+    }
+    return this.executor;
+  }
+}
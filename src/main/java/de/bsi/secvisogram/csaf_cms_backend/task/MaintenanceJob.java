@@ -0,0 +1,236 @@
+package de.bsi.secvisogram.csaf_cms_backend.task;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jakarta.annotation.PreDestroy;
+
+import com.ibm.cloud.cloudant.v1.model.ContentInformationSizes;
+import com.ibm.cloud.cloudant.v1.model.DatabaseInformation;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafMaintenanceConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DatabaseException;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DeletedDocuments;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.IdNotFoundException;
+import de.bsi.secvisogram.csaf_cms_backend.json.PurgeCheckpoint;
+
+/**
+ * Keeps the database small and the queries fast. The backend deletes many documents (audit trails, comments,
+ * publish outbox entries), whose tombstones and old revisions stay in the database file. In the configured
+ * maintenance window the job purges the tombstones of documents deleted before the previous window, removes
+ * unused view indexes and compacts the database if its fragmentation exceeds the threshold.
+ */
+@Component
+public class MaintenanceJob implements Runnable {
+  private static final Logger LOG = LoggerFactory.getLogger(MaintenanceJob.class);
+
+  /**
+   * name of the {@link TaskLeaseService lease} that ensures only one replica maintains the database
+   */
+  static final String LEASE_NAME = "maintenance";
+  private static final long COMPACTION_POLL_INTERVAL = 5000;
+
+  @Autowired
+  private CouchDbService couchDbService;
+
+  @Autowired
+  private CsafConfiguration configuration;
+
+  @Autowired
+  private TaskLeaseService taskLeaseService;
+
+  private final AtomicBoolean running = new AtomicBoolean();
+  private @Nullable ExecutorService executor;
+  private final ObjectMapper jacksonMapper = new JsonMapper();
+  private volatile @Nullable MaintenanceRunStatistics lastRunStatistics;
+
+  /**
+   * Start the maintenance in the background, so waiting for the compaction does not block other scheduled tasks
+   */
+  public void start() {
+    if (this.running.compareAndSet(false, true)) {
+      getExecutor().execute(() -> {
+        try {
+          run();
+        } finally {
+          this.running.set(false);
+        }
+      });
+    } else {
+      LOG.info("Database maintenance is still running");
+    }
+  }
+
+  @Override
+  public void run() {
+    Optional<TaskLeaseService.Lease> lease = this.taskLeaseService.tryAcquire(LEASE_NAME,
+        Duration.ofMillis(this.configuration.getMaintenance().getLeaseTtl()));
+    if (lease.isEmpty()) {
+      LOG.info("Database maintenance skipped, another replica is maintaining the database");
+      return;
+    }
+    try (TaskLeaseService.Lease heldLease = lease.get()) {
+      maintain();
+    } catch (DatabaseException | IOException | RuntimeException ex) {
+      LOG.error("There was a problem when maintaining the database", ex);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      LOG.warn("Database maintenance interrupted");
+    }
+  }
+
+  /**
+   * Purge old tombstones, clean up the views and compact the database if necessary
+   */
+  void maintain() throws DatabaseException, IOException, InterruptedException {
+    LOG.info("Database maintenance started");
+    Instant started = Instant.now();
+    CsafMaintenanceConfiguration maintenance = this.configuration.getMaintenance();
+    DatabaseInformation before = this.couchDbService.getDatabaseInformation();
+
+    int purged = maintenance.isPurgeTombstones()
+        ? purgeTombstones(before.getUpdateSeq(), maintenance.getPurgeBatchSize()) : 0;
+    this.couchDbService.cleanupViews();
+
+    DatabaseInformation current = (purged > 0) ? this.couchDbService.getDatabaseInformation() : before;
+    boolean compacted = false;
+    if (needsCompaction(current, maintenance)) {
+      this.couchDbService.compactDatabase();
+      compacted = true;
+      waitForCompaction(Duration.ofMillis(maintenance.getCompactionTimeout()));
+    }
+
+    DatabaseInformation after = this.couchDbService.getDatabaseInformation();
+    this.lastRunStatistics = new MaintenanceRunStatistics(started, Duration.between(started, Instant.now()),
+        fileSize(before), activeSize(before), fileSize(after), activeSize(after), purged, compacted);
+    LOG.info("Database maintenance finished: {}", this.lastRunStatistics);
+  }
+
+  /**
+   * @return the metrics of the last completed run, null if the job has not completed yet
+   */
+  public @Nullable MaintenanceRunStatistics getLastRunStatistics() {
+    return this.lastRunStatistics;
+  }
+
+  @PreDestroy
+  synchronized void shutdown() {
+    if (this.executor != null) {
+      this.executor.shutdownNow();
+      this.executor = null;
+    }
+  }
+
+  /**
+   * Purge the documents deleted before the previous run, so clients and replicas had a maintenance
+   * interval to see the deletion. The sequences of the changes feed can not be compared on a clustered database,
+   * so the documents deleted after the previous run are read from the feed first and excluded from the purge.
+   * The position in the feed is kept in a {@link PurgeCheckpoint} document.
+   * @param currentSeq the current update sequence of the database
+   * @param batchSize number of changes to read per request
+   * @return number of purged documents
+   */
+  private int purgeTombstones(String currentSeq, int batchSize) throws DatabaseException, IOException {
+    PurgeCheckpoint checkpoint = readCheckpoint();
+    String until = checkpoint.getPurgeUntilSeq();
+    int purged = 0;
+    if (until != null) {
+      Set<String> deletedRecently = new HashSet<>();
+      String seq = until;
+      DeletedDocuments deletedDocuments;
+      do {
+        deletedDocuments = this.couchDbService.findDeletedDocuments(seq, batchSize);
+        deletedRecently.addAll(deletedDocuments.getRevisionsById().keySet());
+        seq = deletedDocuments.getLastSeq();
+      } while (!deletedDocuments.isComplete());
+
+      seq = checkpoint.getPurgedSeq();
+      do {
+        deletedDocuments = this.couchDbService.findDeletedDocuments(seq, batchSize);
+        Map<String, List<String>> toPurge = new LinkedHashMap<>(deletedDocuments.getRevisionsById());
+        toPurge.keySet().removeAll(deletedRecently);
+        purged += this.couchDbService.purgeDocuments(toPurge);
+        seq = deletedDocuments.getLastSeq();
+      } while (!deletedDocuments.isComplete());
+    }
+    checkpoint.advance((until != null) ? until : checkpoint.getPurgedSeq(), currentSeq);
+    writeCheckpoint(checkpoint);
+    return purged;
+  }
+
+  private PurgeCheckpoint readCheckpoint() throws IOException {
+    PurgeCheckpoint newCheckpoint = PurgeCheckpoint.create(LEASE_NAME);
+    try (InputStream checkpointStream = this.couchDbService.readDocumentAsStream(newCheckpoint.getId())) {
+      return this.jacksonMapper.readValue(checkpointStream, PurgeCheckpoint.class);
+    } catch (IdNotFoundException ex) {
+      return newCheckpoint;
+    }
+  }
+
+  private void writeCheckpoint(PurgeCheckpoint checkpoint) throws DatabaseException {
+    String json = this.jacksonMapper.writeValueAsString(checkpoint);
+    // the lease ensures that no other replica writes the checkpoint in the meantime
+    String revision = (checkpoint.getRev() == null)
+        ? this.couchDbService.writeDocument(checkpoint.getId(), json)
+        : this.couchDbService.updateDocument(json);
+    checkpoint.setRev(revision);
+  }
+
+  private void waitForCompaction(Duration timeout) throws InterruptedException {
+    Instant deadline = Instant.now().plus(timeout);
+    while (Boolean.TRUE.equals(this.couchDbService.getDatabaseInformation().isCompactRunning())) {
+      if (Instant.now().isAfter(deadline)) {
+        LOG.warn("Compaction of the database still running after {}", timeout);
+        return;
+      }
+      Thread.sleep(COMPACTION_POLL_INTERVAL);
+    }
+  }
+
+  private static boolean needsCompaction(DatabaseInformation information, CsafMaintenanceConfiguration maintenance) {
+    long fileSize = fileSize(information);
+    return !Boolean.TRUE.equals(information.isCompactRunning())
+        && fileSize >= maintenance.getMinFileSize()
+        && MaintenanceRunStatistics.fragmentation(fileSize, activeSize(information))
+            >= maintenance.getFragmentationThreshold();
+  }
+
+  private static long fileSize(DatabaseInformation information) {
+    ContentInformationSizes sizes = information.getSizes();
+    return (sizes != null && sizes.getFile() != null) ? sizes.getFile() : 0;
+  }
+
+  private static long activeSize(DatabaseInformation information) {
+    ContentInformationSizes sizes = information.getSizes();
+    return (sizes != null && sizes.getActive() != null) ? sizes.getActive() : 0;
+  }
+
+  private synchronized ExecutorService getExecutor() {
+    if (this.executor == null) {
+      this.executor = Executors.newSingleThreadExecutor(
+          new BasicThreadFactory.Builder().namingPattern("Database-Maintenance-%d").daemon(true).build());
+    }
+    return this.executor;
+  }
+}
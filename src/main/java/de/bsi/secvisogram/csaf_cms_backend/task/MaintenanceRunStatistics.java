@@ -0,0 +1,92 @@
+package de.bsi.secvisogram.csaf_cms_backend.task;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Metrics of a single run of the {@link MaintenanceJob}, the sizes are given in bytes
+ */
+public class MaintenanceRunStatistics {
+  private final Instant started;
+  private final Duration duration;
+  private final long fileSizeBefore;
+  private final long activeSizeBefore;
+  private final long fileSizeAfter;
+  private final long activeSizeAfter;
+  private final int purgedDocuments;
+  private final boolean compacted;
+
+  public MaintenanceRunStatistics(Instant started, Duration duration, long fileSizeBefore, long activeSizeBefore,
+      long fileSizeAfter, long activeSizeAfter, int purgedDocuments, boolean compacted) {
+    this.started = started;
+    this.duration = duration;
+    this.fileSizeBefore = fileSizeBefore;
+    this.activeSizeBefore = activeSizeBefore;
+    this.fileSizeAfter = fileSizeAfter;
+    this.activeSizeAfter = activeSizeAfter;
+    this.purgedDocuments = purgedDocuments;
+    this.compacted = compacted;
+  }
+
+  /**
+   * @param fileSize size of the database file
+   * @param activeSize size of the live data in the file
+   * @return share of the file not used by live data
+   */
+  static double fragmentation(long fileSize, long activeSize) {
+    return (fileSize <= 0) ? 0 : Math.max(0, fileSize - activeSize) / (double) fileSize;
+  }
+
+  public Instant getStarted() {
+    return started;
+  }
+
+  public Duration getDuration() {
+    return duration;
+  }
+
+  public long getFileSizeBefore() {
+    return fileSizeBefore;
+  }
+
+  public long getActiveSizeBefore() {
+    return activeSizeBefore;
+  }
+
+  public long getFileSizeAfter() {
+    return fileSizeAfter;
+  }
+
+  public long getActiveSizeAfter() {
+    return activeSizeAfter;
+  }
+
+  public double getFragmentationBefore() {
+    return fragmentation(fileSizeBefore, activeSizeBefore);
+  }
+
+  public double getFragmentationAfter() {
+    return fragmentation(fileSizeAfter, activeSizeAfter);
+  }
+
+  /**
+   * @return number of deleted documents removed permanently
+   */
+  public int getPurgedDocuments() {
+    return purgedDocuments;
+  }
+
+  /**
+   * @return true if the database was compacted
+   */
+  public boolean isCompacted() {
+    return compacted;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("duration=%dms, file=%d->%d bytes, active=%d->%d bytes, fragmentation=%.2f->%.2f, "
+            + "purged=%d, compacted=%s", duration.toMillis(), fileSizeBefore, fileSizeAfter, activeSizeBefore,
+        activeSizeAfter, getFragmentationBefore(), getFragmentationAfter(), purgedDocuments, compacted);
+  }
+}
@@ -1,7 +1,7 @@
 package de.bsi.secvisogram.csaf_cms_backend.task;
 
 import java.util.Collection;
-import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
@@ -22,7 +22,9 @@ import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafAuditTrailConfiguration;
 import de.bsi.secvisogram.csaf_cms_backend.config.CsafConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafMaintenanceConfiguration;
 
 @Configuration
 @EnableScheduling
@@ -31,17 +33,36 @@ public class PublishConfig implements SchedulingConfigurer {
 
   @Autowired
   private CsafConfiguration configuration;
+  @Autowired
+  private MaintenanceJob maintenanceJob;
+  @Autowired
+  private AuditTrailArchiveJob auditTrailArchiveJob;
   private static final Logger LOG = LoggerFactory.getLogger(PublishConfig.class);
+  /**
+   * threads of the scheduler, so a long publish run does not delay the release timers and the other cron tasks
+   */
+  static final int SCHEDULER_POOL_SIZE = 4;
     
 	@Override
 	public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {	
 		if (this.configuration.getAutoPublish() != null) {
 			if (this.configuration.getAutoPublish().isEnabled()) {
 				taskRegistrar.setScheduler(taskExecutor());
-				taskRegistrar.addCronTask(task(), this.configuration.getAutoPublish().getCron());
-				LOG.info("Autopublish activated. Task created with " + this.configuration.getAutoPublish().getCron());
+				// the advisories are published at their release date by the scheduler, the cron task is the safety sweep
+				taskRegistrar.addCronTask(publishScheduler()::sweep, this.configuration.getAutoPublish().getCron());
+				LOG.info("Autopublish activated. Sweep task created with " + this.configuration.getAutoPublish().getCron());
 			}
 		}
+		CsafMaintenanceConfiguration maintenance = this.configuration.getMaintenance();
+		if (maintenance != null && maintenance.isEnabled()) {
+			taskRegistrar.addCronTask(this.maintenanceJob::start, maintenance.getCron());
+			LOG.info("Database maintenance activated. Maintenance task created with " + maintenance.getCron());
+		}
+		CsafAuditTrailConfiguration auditTrail = this.configuration.getAuditTrail();
+		if (auditTrail != null && auditTrail.isArchiveEnabled()) {
+			taskRegistrar.addCronTask(this.auditTrailArchiveJob::start, auditTrail.getArchiveCron());
+			LOG.info("Audit trail archive activated. Archive task created with " + auditTrail.getArchiveCron());
+		}
 	}
 	
     private SecurityContext createSchedulerSecurityContext() {
@@ -58,13 +79,18 @@ public class PublishConfig implements SchedulingConfigurer {
     }
 
     @Bean
-    Runnable task() {
+    PublishJob task() {
 		return new PublishJob();
 	}
+
+    @Bean
+    PublishScheduler publishScheduler() {
+		return new PublishScheduler(task(), taskExecutor());
+	}
     
 	@Bean
-	Executor taskExecutor() {
-		ScheduledThreadPoolExecutor delegateExecutor = new ScheduledThreadPoolExecutor(1, new BasicThreadFactory.Builder().namingPattern("Publish-Job-%d").build());
+	ScheduledExecutorService taskExecutor() {
+		ScheduledThreadPoolExecutor delegateExecutor = new ScheduledThreadPoolExecutor(SCHEDULER_POOL_SIZE, new BasicThreadFactory.Builder().namingPattern("Publish-Job-%d").build());
 		SecurityContext schedulerContext = createSchedulerSecurityContext();
         return new DelegatingSecurityContextScheduledExecutorService(delegateExecutor, schedulerContext);
 	}
@@ -3,165 +3,374 @@ package de.bsi.secvisogram.csaf_cms_backend.task;
 import java.io.IOException;
 import java.net.http.HttpClient;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
+import java.time.Duration;
 import java.time.Instant;
-import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
+import jakarta.annotation.PreDestroy;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.jspecify.annotations.NonNull;
 import org.jspecify.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Component;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestClientResponseException;
 
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafAutoPublishConfiguration;
 import de.bsi.secvisogram.csaf_cms_backend.config.CsafConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafPublishTargetConfiguration;
 import de.bsi.secvisogram.csaf_cms_backend.couchdb.DatabaseException;
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
-import de.bsi.secvisogram.csaf_cms_backend.json.AdvisoryWrapper;
+import de.bsi.secvisogram.csaf_cms_backend.json.PublishOutboxEntry;
 import de.bsi.secvisogram.csaf_cms_backend.model.DocumentTrackingStatus;
-import de.bsi.secvisogram.csaf_cms_backend.model.ExportFormat;
 import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
 import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryService;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryWorkflowUtil;
+import de.bsi.secvisogram.csaf_cms_backend.service.PublicationCandidates;
 
 @Component
 public class PublishJob implements Runnable {
   private static final Logger LOG = LoggerFactory.getLogger(PublishJob.class);
 
+  /**
+   * name of the {@link TaskLeaseService lease} that ensures only one replica publishes at a time
+   */
+  static final String LEASE_NAME = "publish";
+
   @Autowired
   private AdvisoryService advisoryService;
 
   @Autowired
   private CsafConfiguration configuration;
 
+  @Autowired
+  private PublishOutbox outbox;
+
+  @Autowired
+  private TaskLeaseService taskLeaseService;
+
   private RestClient restClient;
+  private RestClient insecureRestClient;
+  private ExecutorService workers;
+  private final Map<String, PublishRateLimiter> rateLimiters = new ConcurrentHashMap<>();
+  private final Map<String, AuthenticationCode> authenticationCodes = new ConcurrentHashMap<>();
+
+  private volatile @Nullable PublishRunStatistics lastRunStatistics;
+  private volatile @Nullable Instant nextRetry;
 
   @Override
   public void run() {
-    try {
-      this.publishJob();
+    Optional<TaskLeaseService.Lease> lease = this.taskLeaseService.tryAcquire(LEASE_NAME,
+        Duration.ofMillis(this.configuration.getAutoPublish().getLeaseTtl()));
+    if (lease.isEmpty()) {
+      // try again when the run of the other replica has finished or its lease has expired
+      this.nextRetry = Instant.now().plusMillis(this.configuration.getAutoPublish().getLeaseTtl());
+      LOG.info("AutoPublisher skipped, another replica is publishing");
+      return;
+    }
+    try (TaskLeaseService.Lease heldLease = lease.get()) {
+      this.publishJob(heldLease);
     } catch (CsafException | IOException | DatabaseException e) {
       LOG.error("There was a problem when publishing advisories", e);
     }
   }
 
+  /**
+   * Upload all due advisories to all targets and set them to Published once every target has them.
+   * The uploads are tracked in the {@link PublishOutbox}, failed uploads are retried with exponential backoff
+   * by later runs until the maximum number of attempts is reached.
+   */
   public void publishJob() throws CsafException, IOException, DatabaseException {
+    publishJob(null);
+  }
+
+  /**
+   * Publish all due advisories while holding the given lease. Before the uploads and before every change of
+   * a workflow state the lease is renewed, the job stops as soon as another replica has taken it over.
+   * @param lease the lease of the job, null to run without lease
+   */
+  void publishJob(TaskLeaseService.@Nullable Lease lease) throws CsafException, IOException, DatabaseException {
     LOG.info("AutoPublisher started");
-    List<AdvisoryInformationResponse> advisoryList = this.advisoryService.getAdvisoryInformations("");
-    for (AdvisoryInformationResponse advisory : advisoryList) {
-      if (advisory.getWorkflowState() == WorkflowState.AutoPublish) {
-        if (AdvisoryWrapper.timestampIsBefore(advisory.getCurrentReleaseDate(),
-            DateTimeFormatter.ISO_INSTANT.format(Instant.now()))) {
-          Path temporaryAdvisoryFilePath = this.advisoryService.exportAdvisory(advisory.getAdvisoryId(), ExportFormat.JSON);
-          String trackingId = advisory.getDocumentTrackingId().toLowerCase();
-
-          try {
-            MultiValueMap<String, Object> body = buildMultipartBody(temporaryAdvisoryFilePath, trackingId);
-            getRestClient().post()
-                .uri(this.configuration.getAutoPublish().getUrl())
-                .contentType(MediaType.MULTIPART_FORM_DATA)
-                .header("X-Csaf-Provider-Auth", getAuthenticationCode())
-                .body(body)
-                .retrieve()
-                .onStatus(HttpStatusCode::isError, (req, res) -> {
-                  String responseBody = new String(res.getBody().readAllBytes(), StandardCharsets.UTF_8);
-                  throw new PublisherException("HTTP " + res.getStatusCode() + ": " + responseBody);
-                })
-                .toBodilessEntity();
-          } catch (PublisherException pe) {
-            LOG.error(pe.getMessage());
-            // Skip workflow state change.
-            continue;
-          } catch (RestClientResponseException re) {
-            LOG.error("HTTP error when publishing advisory {}: {} - {}",
-                advisory.getAdvisoryId(), re.getStatusCode(), re.getResponseBodyAsString());
-            continue;
-          } finally {
-            Files.deleteIfExists(temporaryAdvisoryFilePath);
-          }
+    Instant started = Instant.now();
+    CsafAutoPublishConfiguration autoPublish = this.configuration.getAutoPublish();
+    PublicationCandidates candidates = this.advisoryService.getAdvisoriesDueForPublication();
+    // only the advisories due at the start of the job, the release dates are compared with their offset
+    Map<String, AdvisoryInformationResponse> dueAdvisories = candidates.getAdvisories().stream()
+        .filter(advisory -> AdvisoryWorkflowUtil.parseTimestamp(advisory.getCurrentReleaseDate())
+            .filter(releaseDate -> !releaseDate.isAfter(started))
+            .isPresent())
+        .collect(Collectors.toMap(AdvisoryInformationResponse::getAdvisoryId, Function.identity(),
+            (first, second) -> first, LinkedHashMap::new));
+    Map<String, CsafPublishTargetConfiguration> targets = autoPublish.getEffectiveTargets().stream()
+        .collect(Collectors.toMap(CsafPublishTargetConfiguration::getName, Function.identity(),
+            (first, second) -> first, LinkedHashMap::new));
 
-          this.advisoryService.changeAdvisoryWorkflowState(advisory.getAdvisoryId(), advisory.getRevision(),
-              WorkflowState.Published, advisory.getCurrentReleaseDate(), DocumentTrackingStatus.Final);
+    if (!isLeaseValid(lease)) {
+      return;
+    }
+    List<PublishOutboxEntry> entries = this.outbox.prepare(dueAdvisories.values(), targets.keySet());
+    List<Callable<Boolean>> uploads = entries.stream()
+        .filter(entry -> entry.isReady(started))
+        .<Callable<Boolean>>map(entry -> () -> (lease == null || lease.isHeld())
+            && upload(entry, dueAdvisories.get(entry.getAdvisoryId()), targets.get(entry.getTarget())))
+        .toList();
+    int failed = 0;
+    try {
+      for (Future<Boolean> result : getWorkers().invokeAll(uploads)) {
+        if (!isSuccessful(result)) {
+          failed++;
         }
       }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      LOG.warn("AutoPublisher interrupted");
+      return;
     }
+
+    int published = 0;
+    Map<String, List<PublishOutboxEntry>> entriesByAdvisory = entries.stream()
+        .collect(Collectors.groupingBy(PublishOutboxEntry::getAdvisoryId));
+    for (AdvisoryInformationResponse advisory : dueAdvisories.values()) {
+      List<PublishOutboxEntry> advisoryEntries = entriesByAdvisory.getOrDefault(advisory.getAdvisoryId(), List.of());
+      if (advisoryEntries.stream().allMatch(entry -> entry.getState() == PublishOutboxEntry.State.Uploaded)) {
+        if (!isLeaseValid(lease)) {
+          return;
+        }
+        this.advisoryService.changeAdvisoryWorkflowState(advisory.getAdvisoryId(), advisory.getRevision(),
+            WorkflowState.Published, advisory.getCurrentReleaseDate(), DocumentTrackingStatus.Final);
+        this.outbox.remove(advisoryEntries);
+        published++;
+      }
+    }
+    this.nextRetry = entries.stream()
+        .filter(entry -> entry.getState() == PublishOutboxEntry.State.Pending)
+        .map(entry -> Instant.parse(entry.getNextAttemptAt()))
+        .min(Comparator.naturalOrder())
+        .orElse(null);
+    this.lastRunStatistics = new PublishRunStatistics(started, Duration.between(started, Instant.now()),
+        candidates.getDocumentsExamined(), dueAdvisories.size(), published, failed);
+    LOG.info("AutoPublisher finished: {}", this.lastRunStatistics);
   }
 
-  private MultiValueMap<String, Object> buildMultipartBody(Path path, String trackingId) {
+  /**
+   * @return the metrics of the last completed run, null if the job has not completed yet
+   */
+  public @Nullable PublishRunStatistics getLastRunStatistics() {
+    return this.lastRunStatistics;
+  }
+
+  /**
+   * @return the earliest time a failed upload of the last run is retried, empty if there is nothing to retry
+   */
+  public Optional<Instant> getNextRetry() {
+    return Optional.ofNullable(this.nextRetry);
+  }
+
+  @PreDestroy
+  synchronized void shutdown() {
+    if (this.workers != null) {
+      this.workers.shutdownNow();
+      this.workers = null;
+    }
+  }
+
+  private boolean upload(PublishOutboxEntry entry, AdvisoryInformationResponse advisory,
+      CsafPublishTargetConfiguration target) {
+    boolean successful = false;
+    try {
+      this.rateLimiters.computeIfAbsent(target.getName(), name -> new PublishRateLimiter(target.getRateLimit()))
+          .acquire();
+      uploadToTarget(advisory, target);
+      entry.recordSuccess();
+      successful = true;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (PublisherException | RestClientException | CsafException | IOException ex) {
+      LOG.error("Error when publishing advisory {} to {}: {}", advisory.getAdvisoryId(), target.getName(),
+          ex.getMessage());
+      CsafAutoPublishConfiguration autoPublish = this.configuration.getAutoPublish();
+      entry.recordFailure(ex.getMessage(), autoPublish.getMaxAttempts(), autoPublish.getInitialBackoff(),
+          autoPublish.getMaxBackoff());
+      if (entry.getState() == PublishOutboxEntry.State.Failed) {
+        LOG.error("Giving up publishing advisory {} to {} after {} attempts", advisory.getAdvisoryId(),
+            target.getName(), entry.getAttempts());
+      }
+    }
+    try {
+      this.outbox.save(entry);
+    } catch (DatabaseException | RuntimeException ex) {
+      LOG.error("Could not save the publish state of advisory {}", advisory.getAdvisoryId(), ex);
+    }
+    return successful;
+  }
+
+  private void uploadToTarget(AdvisoryInformationResponse advisory, CsafPublishTargetConfiguration target)
+      throws CsafException, IOException {
+    // the advisory is serialized in memory and written directly into the multipart body
+    byte[] csaf = this.advisoryService.exportAdvisoryAsJson(advisory.getAdvisoryId());
+    String trackingId = advisory.getDocumentTrackingId().toLowerCase();
+    try {
+      MultiValueMap<String, Object> body = buildMultipartBody(csaf, trackingId);
+      getRestClient(target.isEnableInsecureTLS()).post()
+          .uri(target.getUrl())
+          .contentType(MediaType.MULTIPART_FORM_DATA)
+          .header("X-Csaf-Provider-Auth", getAuthenticationCode(target))
+          .body(body)
+          .retrieve()
+          .onStatus(HttpStatusCode::isError, (req, res) -> {
+            String responseBody = new String(res.getBody().readAllBytes(), StandardCharsets.UTF_8);
+            throw new PublisherException("HTTP " + res.getStatusCode() + ": " + responseBody);
+          })
+          .toBodilessEntity();
+    } catch (RestClientResponseException re) {
+      throw new PublisherException("HTTP " + re.getStatusCode() + ": " + re.getResponseBodyAsString());
+    }
+  }
+
+  private static boolean isLeaseValid(TaskLeaseService.@Nullable Lease lease) {
+    if (lease != null && !lease.renew()) {
+      LOG.warn("AutoPublisher stopped, the lease was taken over by another replica");
+      return false;
+    }
+    return true;
+  }
+
+  private static boolean isSuccessful(Future<Boolean> result) {
+    try {
+      return Boolean.TRUE.equals(result.get());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (ExecutionException ex) {
+      LOG.error("Unexpected error when publishing advisory", ex.getCause());
+      return false;
+    }
+  }
+
+  private synchronized ExecutorService getWorkers() {
+    if (this.workers == null) {
+      int threads = Math.max(1, this.configuration.getAutoPublish().getWorkerThreads());
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<>(), new BasicThreadFactory.Builder().namingPattern("Publish-Worker-%d").build());
+      pool.allowCoreThreadTimeOut(true);
+      // the uploads run with the security context of the job
+      this.workers = new DelegatingSecurityContextExecutorService(pool);
+    }
+    return this.workers;
+  }
+
+  private MultiValueMap<String, Object> buildMultipartBody(byte[] csaf, String trackingId) {
     MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
     // The gocsaf provider requires the csaf part to have Content-Type: application/json.
     // Wrap the file resource in an HttpEntity to set the per-part content type explicitly.
     HttpHeaders partHeaders = new HttpHeaders();
     partHeaders.setContentType(MediaType.APPLICATION_JSON);
-    body.add("csaf", new HttpEntity<>(new NamedFileResource(path, trackingId + ".json"), partHeaders));
+    body.add("csaf", new HttpEntity<>(new NamedByteArrayResource(csaf, trackingId + ".json"), partHeaders));
     body.add("tlp", "csaf");
     return body;
   }
 
-  private RestClient getRestClient() {
+  private synchronized RestClient getRestClient(boolean enableInsecureTLS) {
+    if (enableInsecureTLS) {
+      if (this.insecureRestClient == null) {
+        this.insecureRestClient = createRestClient(true);
+      }
+      return this.insecureRestClient;
+    }
     if (this.restClient == null) {
-      HttpClient.Builder httpClientBuilder = HttpClient.newBuilder();
-      if (this.configuration.getAutoPublish().isEnableInsecureTLS()) {
-        try {
-          SSLContext sslContext = SSLContext.getInstance("TLS");
-          sslContext.init(null, new TrustManager[]{
-            new X509TrustManager() {
-              public X509Certificate[] getAcceptedIssuers() {
-                return new X509Certificate[0];
-              }
-              public void checkClientTrusted(X509Certificate[] certs, String authType) { }
-              public void checkServerTrusted(X509Certificate[] certs, String authType) { }
+      this.restClient = createRestClient(false);
+    }
+    return this.restClient;
+  }
+
+  private static RestClient createRestClient(boolean enableInsecureTLS) {
+    HttpClient.Builder httpClientBuilder = HttpClient.newBuilder();
+    if (enableInsecureTLS) {
+      try {
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, new TrustManager[]{
+          new X509TrustManager() {
+            public X509Certificate[] getAcceptedIssuers() {
+              return new X509Certificate[0];
             }
-          }, null);
-          httpClientBuilder.sslContext(sslContext);
-        } catch (NoSuchAlgorithmException | KeyManagementException e) {
-          throw new IllegalStateException("Failed to create insecure SSL context", e);
-        }
+            public void checkClientTrusted(X509Certificate[] certs, String authType) { }
+            public void checkServerTrusted(X509Certificate[] certs, String authType) { }
+          }
+        }, null);
+        httpClientBuilder.sslContext(sslContext);
+      } catch (NoSuchAlgorithmException | KeyManagementException e) {
+        throw new IllegalStateException("Failed to create insecure SSL context", e);
       }
-      this.restClient = RestClient.builder()
-          .requestFactory(new JdkClientHttpRequestFactory(httpClientBuilder.build()))
-          .build();
     }
-    return this.restClient;
+    return RestClient.builder()
+        .requestFactory(new JdkClientHttpRequestFactory(httpClientBuilder.build()))
+        .build();
   }
 
-  private String getAuthenticationCode() {
+  private String getAuthenticationCode(CsafPublishTargetConfiguration target) {
     // headerValue must be the BCrypt hash for the gocsaf/csaf provider
-    // Therefore we send a fresh BCrypt hash of the configured password in the X-Csaf-Provider-Auth header.
-    BCryptPasswordEncoder encoder = new BCryptPasswordEncoder();
-    return encoder.encode(this.configuration.getAutoPublish().getPassword());
+    // Therefore we send a BCrypt hash of the configured password in the X-Csaf-Provider-Auth header.
+    // Hashing is deliberately slow, so the hash is reused for all uploads to the target until it is rotated.
+    Instant now = Instant.now();
+    long rotation = this.configuration.getAutoPublish().getAuthenticationRotation();
+    return this.authenticationCodes.compute(target.getName(), (name, cached) ->
+        (cached != null && cached.password().equals(target.getPassword())
+            && cached.created().plusMillis(rotation).isAfter(now))
+            ? cached
+            : new AuthenticationCode(target.getPassword(), new BCryptPasswordEncoder().encode(target.getPassword()), now)
+    ).code();
+  }
+
+  private record AuthenticationCode(String password, String code, Instant created) {
   }
 
   /**
-   * A {@link FileSystemResource} that overrides the filename used in the
+   * A {@link ByteArrayResource} that provides the filename used in the
    * multipart {@code Content-Disposition} header, so the provider receives the
-   * correct {@code <trackingId>.json} filename regardless of the temp-file name.
+   * correct {@code <trackingId>.json} filename.
    */
-  private static class NamedFileResource extends FileSystemResource {
+  private static class NamedByteArrayResource extends ByteArrayResource {
     private final String filename;
 
-    NamedFileResource(Path path, String filename) {
-      super(path);
+    NamedByteArrayResource(byte[] content, String filename) {
+      super(content);
       this.filename = filename;
     }
 
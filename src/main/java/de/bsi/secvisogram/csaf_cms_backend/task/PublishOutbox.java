@@ -0,0 +1,134 @@
+package de.bsi.secvisogram.csaf_cms_backend.task;
+
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDBFilterCreator.expr2CouchDBFilter;
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbField.TYPE_FIELD;
+import static de.bsi.secvisogram.csaf_cms_backend.model.filter.OperatorExpression.equal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbField;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DatabaseException;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DbField;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.PublishOutboxField;
+import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
+import de.bsi.secvisogram.csaf_cms_backend.json.PublishOutboxEntry;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryWorkflowUtil;
+import de.bsi.secvisogram.csaf_cms_backend.service.IdAndRevision;
+
+/**
+ * Stores the uploads of the {@link PublishJob} as {@link PublishOutboxEntry} documents in the CouchDB
+ */
+@Component
+public class PublishOutbox {
+
+  @Autowired
+  private CouchDbService couchDbService;
+
+  private final ObjectMapper jacksonMapper = new JsonMapper();
+
+  /**
+   * Get the outbox entries for the given advisories and targets. Missing entries are created, entries
+   * of an older revision of the advisory are reset and entries of advisories no longer due are removed.
+   * @param dueAdvisories the advisories due for publication
+   * @param targets the names of the providers to upload to
+   * @return the entries of the due advisories
+   * @throws IOException error reading the outbox
+   * @throws DatabaseException error writing the outbox
+   */
+  public List<PublishOutboxEntry> prepare(Collection<AdvisoryInformationResponse> dueAdvisories,
+      Collection<String> targets) throws IOException, DatabaseException {
+
+    Map<String, PublishOutboxEntry> existingEntries = new HashMap<>();
+    List<PublishOutboxEntry> staleEntries = new ArrayList<>();
+    Set<String> dueIds = dueAdvisories.stream()
+        .map(AdvisoryInformationResponse::getAdvisoryId)
+        .collect(Collectors.toSet());
+    for (PublishOutboxEntry entry : findAll()) {
+      if (dueIds.contains(entry.getAdvisoryId()) && targets.contains(entry.getTarget())) {
+        existingEntries.put(entry.getId(), entry);
+      } else {
+        staleEntries.add(entry);
+      }
+    }
+    remove(staleEntries);
+
+    List<PublishOutboxEntry> entries = new ArrayList<>();
+    for (AdvisoryInformationResponse advisory : dueAdvisories) {
+      for (String target : targets) {
+        PublishOutboxEntry newEntry = PublishOutboxEntry.create(advisory.getAdvisoryId(), advisory.getRevision(), target);
+        PublishOutboxEntry entry = existingEntries.get(newEntry.getId());
+        if (entry == null) {
+          entry = newEntry;
+          save(entry);
+        } else if (!entry.getAdvisoryRevision().equals(advisory.getRevision())) {
+          entry.reset(advisory.getRevision());
+          save(entry);
+        }
+        entries.add(entry);
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Read all entries of the outbox
+   * @return the entries
+   * @throws IOException error reading the outbox
+   */
+  public List<PublishOutboxEntry> findAll() throws IOException {
+
+    Map<String, Object> selector = expr2CouchDBFilter(equal(ObjectType.PublishOutbox.name(), TYPE_FIELD.getDbName()));
+    List<DbField> fields = Stream.concat(Stream.of(CouchDbField.values()), Stream.of(PublishOutboxField.values()))
+        .map(DbField.class::cast)
+        .toList();
+    List<PublishOutboxEntry> entries = new ArrayList<>();
+    for (JsonNode doc : AdvisoryWorkflowUtil.findDocuments(this.couchDbService, selector, fields)) {
+      entries.add(this.jacksonMapper.treeToValue(doc, PublishOutboxEntry.class));
+    }
+    return entries;
+  }
+
+  /**
+   * Write the given entry and update its revision
+   * @param entry the entry to write
+   * @throws DatabaseException error writing the entry
+   */
+  public void save(PublishOutboxEntry entry) throws DatabaseException {
+
+    String json = this.jacksonMapper.writeValueAsString(entry);
+    String revision = (entry.getRev() == null)
+        ? this.couchDbService.writeDocument(entry.getId(), json)
+        : this.couchDbService.updateDocument(json);
+    entry.setRev(revision);
+  }
+
+  /**
+   * Remove the given entries from the outbox
+   * @param entries the entries to remove
+   * @throws DatabaseException error removing the entries
+   */
+  public void remove(Collection<PublishOutboxEntry> entries) throws DatabaseException {
+
+    if (!entries.isEmpty()) {
+      this.couchDbService.bulkDeleteDocuments(entries.stream()
+          .map(entry -> new IdAndRevision(entry.getId(), entry.getRev()))
+          .toList());
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package de.bsi.secvisogram.csaf_cms_backend.task;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the uploads to a provider to a number of uploads per second by spacing them evenly
+ */
+public class PublishRateLimiter {
+  private final long intervalNanos;
+  private long nextFreeSlot = System.nanoTime();
+
+  /**
+   * @param permitsPerSecond maximum number of uploads per second, 0 or less for no limit
+   */
+  public PublishRateLimiter(double permitsPerSecond) {
+    this.intervalNanos = (permitsPerSecond > 0) ? (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0;
+  }
+
+  /**
+   * Wait until the next upload is allowed
+   * @throws InterruptedException if the thread was interrupted while waiting
+   */
+  public void acquire() throws InterruptedException {
+    if (this.intervalNanos == 0) {
+      return;
+    }
+    long slot;
+    synchronized (this) {
+      long now = System.nanoTime();
+      slot = Math.max(now, this.nextFreeSlot);
+      this.nextFreeSlot = slot + this.intervalNanos;
+    }
+    long waitNanos = slot - System.nanoTime();
+    if (waitNanos > 0) {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package de.bsi.secvisogram.csaf_cms_backend.task;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Metrics of a single run of the {@link PublishJob}
+ */
+public class PublishRunStatistics {
+  private final Instant started;
+  private final Duration duration;
+  private final long documentsExamined;
+  private final int dueAdvisories;
+  private final int publishedAdvisories;
+  private final int failedAdvisories;
+
+  public PublishRunStatistics(Instant started, Duration duration, long documentsExamined, int dueAdvisories,
+      int publishedAdvisories, int failedAdvisories) {
+    this.started = started;
+    this.duration = duration;
+    this.documentsExamined = documentsExamined;
+    this.dueAdvisories = dueAdvisories;
+    this.publishedAdvisories = publishedAdvisories;
+    this.failedAdvisories = failedAdvisories;
+  }
+
+  public Instant getStarted() {
+    return started;
+  }
+
+  public Duration getDuration() {
+    return duration;
+  }
+
+  /**
+   * @return number of documents the database examined to find the due advisories
+   */
+  public long getDocumentsExamined() {
+    return documentsExamined;
+  }
+
+  public int getDueAdvisories() {
+    return dueAdvisories;
+  }
+
+  public int getPublishedAdvisories() {
+    return publishedAdvisories;
+  }
+
+  public int getFailedAdvisories() {
+    return failedAdvisories;
+  }
+
+  @Override
+  public String toString() {
+    return "duration=" + duration.toMillis() + "ms, documentsExamined=" + documentsExamined
+        + ", due=" + dueAdvisories + ", published=" + publishedAdvisories + ", failed=" + failedAdvisories;
+  }
+}
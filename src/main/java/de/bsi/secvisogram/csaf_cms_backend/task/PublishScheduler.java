@@ -0,0 +1,203 @@
+package de.bsi.secvisogram.csaf_cms_backend.task;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryChangedEvent;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryService;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryWorkflowUtil;
+
+/**
+ * Runs the {@link PublishJob} exactly at the current release date of the advisories in workflow state AutoPublish.
+ * The release dates are kept as timers in memory. They are loaded at startup, re-planned whenever an advisory
+ * enters or leaves the AutoPublish state and reloaded by the sweep, which runs with the configured cron expression
+ * and also publishes advisories whose timer was missed. Failed uploads are retried at the time
+ * given by the backoff of the {@link PublishOutbox}. Every replica plans the timers, but the job only runs on
+ * the replica holding the lease of the {@link TaskLeaseService}; the others try again when the lease expires.
+ */
+public class PublishScheduler {
+  private static final Logger LOG = LoggerFactory.getLogger(PublishScheduler.class);
+
+  @Autowired
+  private AdvisoryService advisoryService;
+
+  @Autowired
+  private CsafConfiguration configuration;
+
+  private final PublishJob publishJob;
+  private final ScheduledExecutorService executor;
+  private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+  private final Object jobLock = new Object();
+  private @Nullable ScheduledFuture<?> retryTimer;
+
+  /**
+   * @param publishJob the job that publishes all due advisories
+   * @param executor the executor to run the job in, it has to provide the security context of the publisher
+   */
+  public PublishScheduler(PublishJob publishJob, ScheduledExecutorService executor) {
+    this.publishJob = publishJob;
+    this.executor = executor;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  void onApplicationReady() {
+    if (isEnabled()) {
+      this.executor.execute(this::sweep);
+    }
+  }
+
+  /**
+   * Re-plan the timer of the changed advisory
+   * @param event the change of the advisory
+   */
+  @EventListener
+  void onAdvisoryChanged(AdvisoryChangedEvent event) {
+    if (!isEnabled()) {
+      return;
+    }
+    AdvisoryInformationResponse current = event.getCurrent();
+    AdvisoryInformationResponse advisory = (current != null) ? current : event.getPrevious();
+    if (advisory == null) {
+      return;
+    }
+    Instant releaseDate = (current != null && current.getWorkflowState() == WorkflowState.AutoPublish)
+        ? parseReleaseDate(current.getCurrentReleaseDate()) : null;
+    if (releaseDate != null) {
+      schedule(advisory.getAdvisoryId(), releaseDate);
+    } else {
+      cancel(advisory.getAdvisoryId());
+    }
+  }
+
+  /**
+   * Publish all due advisories and reload the timers of the advisories with a release date in the future
+   */
+  public void sweep() {
+    runPublishJob();
+    try {
+      reloadTimers();
+    } catch (IOException | RuntimeException ex) {
+      LOG.error("Could not load the release dates of the advisories to publish", ex);
+    }
+  }
+
+  /**
+   * @return number of advisories with a planned release
+   */
+  public int getPlannedReleaseCount() {
+    return this.timers.size();
+  }
+
+  void reloadTimers() throws IOException {
+    Instant now = Instant.now();
+    Set<String> autoPublishIds = new HashSet<>();
+    for (AdvisoryInformationResponse advisory : this.advisoryService.getAutoPublishAdvisories().getAdvisories()) {
+      autoPublishIds.add(advisory.getAdvisoryId());
+      Instant releaseDate = parseReleaseDate(advisory.getCurrentReleaseDate());
+      // advisories due before now were handled by the job run of the sweep
+      if (releaseDate != null && releaseDate.isAfter(now)) {
+        Timer timer = this.timers.get(advisory.getAdvisoryId());
+        if (timer == null || !timer.releaseDate().equals(releaseDate)) {
+          schedule(advisory.getAdvisoryId(), releaseDate);
+        }
+      }
+    }
+    this.timers.keySet().stream()
+        .filter(advisoryId -> !autoPublishIds.contains(advisoryId))
+        .toList()
+        .forEach(this::cancel);
+    LOG.debug("{} advisories planned for publication", this.timers.size());
+  }
+
+  private void schedule(String advisoryId, Instant releaseDate) {
+    long delay = Math.max(0, Duration.between(Instant.now(), releaseDate).toNanos());
+    this.timers.compute(advisoryId, (id, previousTimer) -> {
+      if (previousTimer != null) {
+        previousTimer.future().cancel(false);
+      }
+      ScheduledFuture<?> future = this.executor.schedule(() -> release(advisoryId, releaseDate),
+          delay, TimeUnit.NANOSECONDS);
+      return new Timer(releaseDate, future);
+    });
+    LOG.debug("Planned publication of advisory {} at {}", advisoryId, releaseDate);
+  }
+
+  private void cancel(String advisoryId) {
+    Timer timer = this.timers.remove(advisoryId);
+    if (timer != null) {
+      timer.future().cancel(false);
+      LOG.debug("Cancelled publication of advisory {}", advisoryId);
+    }
+  }
+
+  private void release(String advisoryId, Instant releaseDate) {
+    this.timers.computeIfPresent(advisoryId,
+        (id, timer) -> timer.releaseDate().equals(releaseDate) ? null : timer);
+    LOG.info("Release date {} of advisory {} reached", releaseDate, advisoryId);
+    // the job publishes all due advisories, timers with the same release date find nothing left to do
+    runPublishJob();
+  }
+
+  /**
+   * Run the job and plan the retry of its failed uploads. The executor has several threads, a timer firing
+   * during a run waits for it, the lease does not prevent a second run on the same replica.
+   */
+  private void runPublishJob() {
+    synchronized (this.jobLock) {
+      this.publishJob.run();
+    }
+    this.publishJob.getNextRetry().ifPresent(this::scheduleRetry);
+  }
+
+  private synchronized void scheduleRetry(Instant retryAt) {
+    if (this.retryTimer != null) {
+      this.retryTimer.cancel(false);
+    }
+    long delay = Math.max(0, Duration.between(Instant.now(), retryAt).toNanos());
+    this.retryTimer = this.executor.schedule(this::runPublishJob, delay, TimeUnit.NANOSECONDS);
+    LOG.debug("Planned retry of failed uploads at {}", retryAt);
+  }
+
+  private boolean isEnabled() {
+    return this.configuration.getAutoPublish() != null && this.configuration.getAutoPublish().isEnabled();
+  }
+
+  /**
+   * Parse the current release date with its offset, so the timer fires at the same instant the job considers
+   * the advisory due.
+   * @param releaseDate the date to parse
+   * @return the release date, null if it is not set or not valid
+   */
+  static @Nullable Instant parseReleaseDate(@Nullable String releaseDate) {
+    if (releaseDate == null || releaseDate.isBlank()) {
+      return null;
+    }
+    Optional<Instant> parsed = AdvisoryWorkflowUtil.parseTimestamp(releaseDate);
+    if (parsed.isEmpty()) {
+      LOG.warn("Invalid release date {}", releaseDate);
+    }
+    return parsed.orElse(null);
+  }
+
+  private record Timer(Instant releaseDate, ScheduledFuture<?> future) {
+  }
+}
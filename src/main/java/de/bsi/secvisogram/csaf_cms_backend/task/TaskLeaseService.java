@@ -0,0 +1,209 @@
+package de.bsi.secvisogram.csaf_cms_backend.task;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.annotation.PreDestroy;
+
+import com.ibm.cloud.cloudant.v1.model.DocumentResult;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
+
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DatabaseException;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.IdNotFoundException;
+import de.bsi.secvisogram.csaf_cms_backend.json.TaskLease;
+
+/**
+ * Ensures that a scheduled task runs on only one replica at a time.
+ * The task acquires a {@link TaskLease} document before it runs. The lease is renewed in the background while
+ * the task is running and expires after the time to live of the task if the replica dies. All writes of the lease
+ * are fenced by the revision of the document: a replica that lost the lease to another one can no longer renew it.
+ * Losing the race for a lease is expected with several replicas, so the conflicts are not logged as errors.
+ */
+@Component
+public class TaskLeaseService {
+  private static final Logger LOG = LoggerFactory.getLogger(TaskLeaseService.class);
+
+  @Autowired
+  private CouchDbService couchDbService;
+
+  private final String owner = UUID.randomUUID().toString();
+  private final ObjectMapper jacksonMapper = new JsonMapper();
+  private @Nullable ScheduledExecutorService renewer;
+
+  /**
+   * Try to acquire the lease of the given task
+   * @param task the name of the task
+   * @param ttl the time the lease is held without renewal, has to be larger than the clock difference
+   *     between the replicas
+   * @return the lease, empty if another replica holds it
+   */
+  public Optional<Lease> tryAcquire(String task, Duration ttl) {
+
+    Instant now = Instant.now();
+    TaskLease document;
+    try {
+      document = readLease(task);
+    } catch (DatabaseException | IOException | JacksonException ex) {
+      LOG.error("Could not read the lease of task {}", task, ex);
+      return Optional.empty();
+    }
+    if (!document.isExpired(now) && !this.owner.equals(document.getOwner())) {
+      LOG.debug("Lease of task {} is held by {} until {}", task, document.getOwner(), document.getExpiresAt());
+      return Optional.empty();
+    }
+    document.assign(this.owner, now.plus(ttl));
+    if (!write(document)) {
+      LOG.debug("Lease of task {} was acquired by another replica", task);
+      return Optional.empty();
+    }
+    Lease lease = new Lease(document, ttl, now.plus(ttl));
+    long period = Math.max(1, ttl.toMillis() / 3);
+    lease.renewal = getRenewer().scheduleAtFixedRate(lease::renew, period, period, TimeUnit.MILLISECONDS);
+    LOG.debug("Acquired lease of task {} as {}", task, this.owner);
+    return Optional.of(lease);
+  }
+
+  @PreDestroy
+  synchronized void shutdown() {
+    if (this.renewer != null) {
+      this.renewer.shutdownNow();
+      this.renewer = null;
+    }
+  }
+
+  private TaskLease readLease(String task) throws DatabaseException, IOException {
+
+    TaskLease newLease = TaskLease.create(task);
+    try (InputStream leaseStream = this.couchDbService.readDocumentAsStream(newLease.getId())) {
+      return this.jacksonMapper.readValue(leaseStream, TaskLease.class);
+    } catch (IdNotFoundException ex) {
+      return newLease;
+    }
+  }
+
+  /**
+   * Write the lease with the revision read before
+   * @param document the lease to write
+   * @return false if the lease was changed by another replica in the meantime
+   */
+  private boolean write(TaskLease document) {
+
+    try {
+      // the bulk request returns a conflict as result instead of logging it as error
+      ObjectNode json = this.jacksonMapper.valueToTree(document);
+      DocumentResult result = this.couchDbService.bulkWriteDocuments(List.of(json)).get(0);
+      if (Boolean.TRUE.equals(result.isOk())) {
+        document.setRev(result.getRev());
+        return true;
+      }
+      if ("conflict".equals(result.getError())) {
+        LOG.debug("Lease of task {} was changed by another replica", document.getTask());
+      } else {
+        LOG.error("Could not write the lease of task {}: {}", document.getTask(), result.getError());
+      }
+      return false;
+    } catch (DatabaseException | RuntimeException ex) {
+      LOG.error("Could not write the lease of task {}", document.getTask(), ex);
+      return false;
+    }
+  }
+
+  private synchronized ScheduledExecutorService getRenewer() {
+    if (this.renewer == null) {
+      this.renewer = new ScheduledThreadPoolExecutor(1,
+          new BasicThreadFactory.Builder().namingPattern("Task-Lease-%d").daemon(true).build());
+    }
+    return this.renewer;
+  }
+
+  /**
+   * A lease held by this replica, close it when the task has finished
+   */
+  public class Lease implements AutoCloseable {
+
+    private final TaskLease document;
+    private final Duration ttl;
+    private volatile Instant expiresAt;
+    private volatile boolean lost;
+    private volatile @Nullable ScheduledFuture<?> renewal;
+
+    Lease(TaskLease document, Duration ttl, Instant expiresAt) {
+      this.document = document;
+      this.ttl = ttl;
+      this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Extend the lease. Call it before changes that must not be done by two replicas,
+     * it fails if another replica has taken over the lease.
+     * @return true if the lease is still held by this replica
+     */
+    public synchronized boolean renew() {
+      if (this.lost) {
+        return false;
+      }
+      Instant now = Instant.now();
+      if (!now.isBefore(this.expiresAt)) {
+        // another replica may already have taken the expired lease
+        markLost();
+        return false;
+      }
+      this.document.assign(owner, now.plus(this.ttl));
+      if (!write(this.document)) {
+        markLost();
+        return false;
+      }
+      this.expiresAt = now.plus(this.ttl);
+      return true;
+    }
+
+    /**
+     * @return true if the lease has neither expired nor been lost, without checking the database
+     */
+    public boolean isHeld() {
+      return !this.lost && Instant.now().isBefore(this.expiresAt);
+    }
+
+    /**
+     * Stop the renewal and release the lease, so other replicas can run the task immediately
+     */
+    @Override
+    public synchronized void close() {
+      if (this.renewal != null) {
+        this.renewal.cancel(false);
+      }
+      if (!this.lost) {
+        this.document.assign(owner, Instant.EPOCH);
+        write(this.document);
+        this.lost = true;
+      }
+    }
+
+    private void markLost() {
+      this.lost = true;
+      if (this.renewal != null) {
+        this.renewal.cancel(false);
+      }
+      LOG.warn("Lost the lease of task {}", this.document.getTask());
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDBFilterCreator.expr2CouchDBFilter;
+import static de.bsi.secvisogram.csaf_cms_backend.model.filter.OperatorExpression.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import de.bsi.secvisogram.csaf_cms_backend.model.filter.OperatorExpression;
+import de.bsi.secvisogram.csaf_cms_backend.model.filter.TypeOfOperator;
+import de.bsi.secvisogram.csaf_cms_backend.model.filter.TypeOfValue;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class CouchDBFilterCreatorTest {
+
+    @Test
+    public void expr2CouchDBFilter_startsWithIsRange() {
+
+        Map<String, Object> filter = expr2CouchDBFilter(startsWith("CSAF-1", "csaf", "document", "tracking", "id"));
+
+        assertThat(filter, equalTo(Map.of("csaf", Map.of("document", Map.of("tracking", Map.of("id",
+                Map.of("$gte", "CSAF-1", "$lt", "CSAF-1\ufff0", "$regex", "^\\QCSAF-1\\E")))))));
+    }
+
+    @Test
+    public void expr2CouchDBFilter_ignoreCaseUsesNormalizedField() {
+
+        Map<String, Object> equalFilter = expr2CouchDBFilter(equalIgnoreCase("Résumé", "csaf", "document", "title"));
+        assertThat(equalFilter, equalTo(Map.of("normalized", Map.of("title", Map.of("$eq", "resume")))));
+
+        Map<String, Object> prefixFilter = expr2CouchDBFilter(
+                startsWithIgnoreCase("CSAF-1", "csaf", "document", "tracking", "id"));
+        assertThat(prefixFilter, equalTo(Map.of("normalized", Map.of("trackingId",
+                Map.of("$gte", "csaf-1", "$lt", "csaf-1\ufff0", "$regex", "^\\Qcsaf-1\\E")))));
+    }
+
+    @Test
+    public void expr2CouchDBFilter_ignoreCaseWithoutNormalizedField() {
+
+        Map<String, Object> equalFilter = expr2CouchDBFilter(equalIgnoreCase("Vendor", "csaf", "document", "lang"));
+        assertThat(equalFilter, equalTo(Map.of("csaf", Map.of("document", Map.of("lang",
+                Map.of("$regex", "(?i)^\\QVendor\\E$"))))));
+
+        Map<String, Object> prefixFilter = expr2CouchDBFilter(startsWithIgnoreCase("Vendor", "csaf", "document", "lang"));
+        assertThat(prefixFilter, equalTo(Map.of("csaf", Map.of("document", Map.of("lang",
+                Map.of("$regex", "(?i)^\\QVendor\\E"))))));
+    }
+
+    @Test
+    public void expr2CouchDBFilter_inAndExistsInArrays() {
+
+        String[][] arrayFields = {{"csaf", "vulnerabilities"}};
+
+        Map<String, Object> inFilter = expr2CouchDBFilter(in(List.of("CVE-2024-1", "CVE-2024-2"),
+                "csaf", "vulnerabilities", "cve"), arrayFields);
+        assertThat(inFilter, equalTo(Map.of("csaf", Map.of("vulnerabilities", Map.of("$elemMatch",
+                Map.of("cve", Map.of("$in", List.of("CVE-2024-1", "CVE-2024-2"))))))));
+
+        Map<String, Object> existsFilter = expr2CouchDBFilter(exists(false, "csaf", "vulnerabilities"));
+        assertThat(existsFilter, equalTo(Map.of("csaf", Map.of("vulnerabilities", Map.of("$exists", false)))));
+    }
+
+    @Test
+    public void expr2CouchDBFilter_betweenConvertsValues() {
+
+        OperatorExpression between = new OperatorExpression(new String[] {"count"}, TypeOfOperator.Between,
+                List.of("1", "2.5"), TypeOfValue.Decimal);
+
+        assertThat(expr2CouchDBFilter(between), equalTo(Map.of("count", Map.of("$gte", 1.0, "$lte", 2.5))));
+    }
+
+    @Test
+    public void expr2CouchDBFilter_invalidValues() {
+
+        OperatorExpression between = new OperatorExpression(new String[] {"count"}, TypeOfOperator.Between,
+                List.of("1"), TypeOfValue.Decimal);
+        OperatorExpression in = new OperatorExpression(new String[] {"count"}, TypeOfOperator.In,
+                List.of(), TypeOfValue.Text);
+
+        assertThrows(IllegalArgumentException.class, () -> expr2CouchDBFilter(between));
+        assertThrows(IllegalArgumentException.class, () -> expr2CouchDBFilter(in));
+    }
+}
@@ -8,6 +8,8 @@ import de.bsi.secvisogram.csaf_cms_backend.fixture.TestModelRoot;
 import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
 import de.bsi.secvisogram.csaf_cms_backend.model.filter.AndExpression;
 import de.bsi.secvisogram.csaf_cms_backend.model.filter.OperatorExpression;
+import de.bsi.secvisogram.csaf_cms_backend.model.filter.TypeOfOperator;
+import de.bsi.secvisogram.csaf_cms_backend.model.filter.TypeOfValue;
 import de.bsi.secvisogram.csaf_cms_backend.service.IdAndRevision;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.junit.jupiter.api.Assertions;
@@ -180,6 +182,103 @@ public class CouchDbServiceTest {
         Assertions.assertEquals(countBefore, this.couchDbService.getDocumentCount());
     }
 
+    @Test
+    public void purgeDocumentsTest_moreThanOneRequest() throws IOException, DatabaseException {
+
+        List<IdAndRevision> documents = new ArrayList<>();
+        for (int i = 0; i <= CouchDbService.MAX_PURGE_IDS_PER_REQUEST; i++) {
+            final UUID uuid = UUID.randomUUID();
+            documents.add(new IdAndRevision(uuid.toString(), insertTestDocument(uuid)));
+        }
+        this.couchDbService.bulkDeleteDocuments(documents);
+
+        Map<String, List<String>> deleted = new HashMap<>();
+        DeletedDocuments page = this.couchDbService.findDeletedDocuments("0", 1000);
+        deleted.putAll(page.getRevisionsById());
+        while (!page.isComplete()) {
+            page = this.couchDbService.findDeletedDocuments(page.getLastSeq(), 1000);
+            deleted.putAll(page.getRevisionsById());
+        }
+
+        assertThat(deleted.size(), equalTo(CouchDbService.MAX_PURGE_IDS_PER_REQUEST + 1));
+        assertThat(this.couchDbService.purgeDocuments(deleted), equalTo(CouchDbService.MAX_PURGE_IDS_PER_REQUEST + 1));
+    }
+
+    @Test
+    @SuppressFBWarnings(value = "PRMC_POSSIBLY_REDUNDANT_METHOD_CALLS", justification = "document should not change")
+    public void bulkDeleteDocumentsTest_moreThanOneChunk() throws IOException, DatabaseException {
+
+        long countBefore = this.couchDbService.getDocumentCount();
+
+        List<IdAndRevision> documents = new ArrayList<>();
+        for (int i = 0; i <= CouchDbService.BULK_DOCS_CHUNK_SIZE; i++) {
+            final UUID uuid = UUID.randomUUID();
+            documents.add(new IdAndRevision(uuid.toString(), insertTestDocument(uuid)));
+        }
+
+        Assertions.assertEquals(countBefore + CouchDbService.BULK_DOCS_CHUNK_SIZE + 1, this.couchDbService.getDocumentCount());
+        this.couchDbService.bulkDeleteDocuments(documents);
+
+        Assertions.assertEquals(countBefore, this.couchDbService.getDocumentCount());
+    }
+
+    @Test
+    @SuppressFBWarnings(value = "PRMC_POSSIBLY_REDUNDANT_METHOD_CALLS", justification = "document count should change")
+    public void unitOfWorkTest_commit() throws IOException, DatabaseException {
+
+        long countBefore = this.couchDbService.getDocumentCount();
+        UUID toUpdate = UUID.randomUUID();
+        String revision = this.couchDbService.writeDocument(toUpdate, "{\"testKey\": \"TestValue\"}");
+        UUID toDelete = UUID.randomUUID();
+        String deleteRevision = insertTestDocument(toDelete);
+        UUID toCreate = UUID.randomUUID();
+
+        Map<String, String> revisions = this.couchDbService.createUnitOfWork()
+                .create(toCreate, "{\"testKey\": \"NewValue\"}")
+                .update("{\"_id\": \"%s\", \"_rev\": \"%s\", \"testKey\": \"ChangeValue\"}"
+                        .formatted(toUpdate, revision), null)
+                .delete(List.of(new IdAndRevision(toDelete.toString(), deleteRevision)))
+                .commit();
+
+        Assertions.assertEquals(Set.of(toCreate.toString(), toUpdate.toString()), revisions.keySet());
+        Assertions.assertEquals(countBefore + 2, this.couchDbService.getDocumentCount());
+        try (InputStream updated = this.couchDbService.readDocumentAsStream(toUpdate.toString())) {
+            JsonNode updatedNode = new JsonMapper().readTree(updated);
+            Assertions.assertEquals("ChangeValue", updatedNode.get("testKey").asString());
+            Assertions.assertEquals(revisions.get(toUpdate.toString()), updatedNode.get("_rev").asString());
+        }
+    }
+
+    @Test
+    @SuppressFBWarnings(value = "PRMC_POSSIBLY_REDUNDANT_METHOD_CALLS", justification = "document count should not change")
+    public void unitOfWorkTest_conflictCompensatesOtherWrites() throws IOException, DatabaseException {
+
+        UUID toRestore = UUID.randomUUID();
+        String initialDoc = "{\"_id\": \"%s\", \"testKey\": \"TestValue\"}".formatted(toRestore);
+        String restoreRevision = this.couchDbService.writeDocument(toRestore, initialDoc);
+        UUID conflicting = UUID.randomUUID();
+        String staleRevision = this.couchDbService.writeDocument(conflicting, "{\"testKey\": \"TestValue\"}");
+        this.couchDbService.updateDocument("{\"_id\": \"%s\", \"_rev\": \"%s\", \"testKey\": \"Concurrent\"}"
+                .formatted(conflicting, staleRevision));
+        UUID toDelete = UUID.randomUUID();
+        String deleteRevision = insertTestDocument(toDelete);
+        long countBefore = this.couchDbService.getDocumentCount();
+
+        assertThrows(IdNotFoundException.class, () -> this.couchDbService.createUnitOfWork()
+                .create(UUID.randomUUID(), "{\"testKey\": \"NewValue\"}")
+                .update("{\"_id\": \"%s\", \"_rev\": \"%s\", \"testKey\": \"ChangeValue\"}"
+                        .formatted(toRestore, restoreRevision), initialDoc)
+                .update("{\"_id\": \"%s\", \"_rev\": \"%s\", \"testKey\": \"ChangeValue\"}"
+                        .formatted(conflicting, staleRevision), null)
+                .delete(List.of(new IdAndRevision(toDelete.toString(), deleteRevision)))
+                .commit());
+
+        Assertions.assertEquals(countBefore, this.couchDbService.getDocumentCount());
+        try (InputStream restored = this.couchDbService.readDocumentAsStream(toRestore.toString())) {
+            Assertions.assertEquals("TestValue", new JsonMapper().readTree(restored).get("testKey").asString());
+        }
+    }
+
     @Test
     @SuppressFBWarnings(value = "PRMC_POSSIBLY_REDUNDANT_METHOD_CALLS", justification = "document should not change")
     public void bulkDeleteDocumentsTest_invalidRevision() throws IOException {
@@ -301,6 +400,31 @@ public class CouchDbServiceTest {
         assertThat(mapAttribute(foundDocs, FIRST_STRING), containsInAnyOrder("AAA"));
     }
 
+    @Test
+    public void findDocumentsTest_operatorsInStartsWithAndBetween() throws IOException {
+
+        this.writeToDb(new TestModelRoot().setFirstString("AAA").setDecimalValue(1.5));
+        this.writeToDb(new TestModelRoot().setFirstString("ABB").setDecimalValue(2.5));
+        this.writeToDb(new TestModelRoot().setFirstString("BBB").setDecimalValue(3.5));
+
+        OperatorExpression inExpr = in(List.of("AAA", "BBB", "CCC"), FIRST_STRING);
+        List<Document> foundDocs = this.couchDbService.findDocuments(expr2CouchDBFilter(inExpr), ROOT_PRIMITIVE_FIELDS);
+        assertThat(mapAttribute(foundDocs, FIRST_STRING), containsInAnyOrder("AAA", "BBB"));
+
+        OperatorExpression startsWithExpr = startsWith("A", FIRST_STRING);
+        foundDocs = this.couchDbService.findDocuments(expr2CouchDBFilter(startsWithExpr), ROOT_PRIMITIVE_FIELDS);
+        assertThat(mapAttribute(foundDocs, FIRST_STRING), containsInAnyOrder("AAA", "ABB"));
+
+        OperatorExpression betweenExpr = between("ABB", "BBB", FIRST_STRING);
+        foundDocs = this.couchDbService.findDocuments(expr2CouchDBFilter(betweenExpr), ROOT_PRIMITIVE_FIELDS);
+        assertThat(mapAttribute(foundDocs, FIRST_STRING), containsInAnyOrder("ABB", "BBB"));
+
+        OperatorExpression decimalBetweenExpr = new OperatorExpression(new String[] {DECIMAL_VALUE},
+                TypeOfOperator.Between, List.of("2", "4"), TypeOfValue.Decimal);
+        foundDocs = this.couchDbService.findDocuments(expr2CouchDBFilter(decimalBetweenExpr), ROOT_PRIMITIVE_FIELDS);
+        assertThat(mapAttribute(foundDocs, FIRST_STRING), containsInAnyOrder("ABB", "BBB"));
+    }
+
      @Test
     public void findDocumentsTest_numericValue() throws IOException {
 
@@ -7,10 +7,15 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.AdvisoryAuditTrailField;
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.IOException;
 import org.junit.jupiter.api.Test;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.ObjectNode;
 
 public class AdvisoryAuditTrailDiffWrapperTest {
 
@@ -45,6 +50,78 @@ public class AdvisoryAuditTrailDiffWrapperTest {
         assertThat(wrapper.getOldDocVersion(), is(""));
     }
 
+    @Test
+    @SuppressFBWarnings(value = "CE_CLASS_ENVY", justification = "Only for Test")
+    public void createNewFromCreatedAdvisoryTest() throws IOException, CsafException {
+
+        var emptyWrapper = AdvisoryWrapper.createInitialEmptyAdvisoryForUser("John");
+        var newWrapper = AdvisoryWrapper.createNewFromCsaf(csafToRequest(csafJsonCategoryTitleId("Category1", "NewTitle", "ID01")), "John", Semantic.name());
 
+        AdvisoryAuditTrailDiffWrapper wrapper = AdvisoryAuditTrailDiffWrapper.createNewFromCreatedAdvisory(newWrapper);
+        wrapper.setUser("John");
+        assertThat(wrapper.getSnapshot().at("/csaf/document/title").asString(), equalTo("NewTitle"));
+        assertThat(wrapper.getStoredSize(), equalTo(wrapper.getUncompressedSize()));
+        assertThat(wrapper.applyTo(emptyWrapper).getDocumentTitle(), equalTo("NewTitle"));
+        // the snapshot is expanded to the diff against the empty advisory
+        assertThat(wrapper.getDiffPatch(), equalTo(emptyWrapper.calculateDiffTo(newWrapper)));
+        assertThat(wrapper.getType(), equalTo(ObjectType.AuditTrailDocument.name()));
+        assertThat(wrapper.getDocVersion(), equalTo("0.0.1"));
+        assertThat(wrapper.getOldDocVersion(), is(""));
+    }
+
+    @Test
+    @SuppressFBWarnings(value = "CE_CLASS_ENVY", justification = "Only for Test")
+    public void createNewFromAdvisoriesTest_compressedDiff() throws IOException, CsafException {
+
+        var oldWrapper = AdvisoryWrapper.createNewFromCsaf(csafToRequest(csafJsonCategoryTitleId("Category1", "OldTitle", "Id1")), "John", Semantic.name());
+        String longTitle = "Title".repeat(AdvisoryAuditTrailDiffWrapper.COMPRESSION_THRESHOLD / 4);
+        var newWrapper = AdvisoryWrapper.createNewFromCsaf(csafToRequest(csafJsonCategoryTitleId("Category1", longTitle, "Id1")), "John", Semantic.name());
+
+        AdvisoryAuditTrailDiffWrapper wrapper = AdvisoryAuditTrailDiffWrapper.createNewFromAdvisories(oldWrapper, newWrapper);
+        assertThat(wrapper.getStoredSize() < wrapper.getUncompressedSize(), is(true));
 
+        ObjectNode stored = (ObjectNode) new JsonMapper().readTree(wrapper.auditTrailAsString());
+        assertThat(stored.has(AdvisoryAuditTrailField.DIFF.getDbName()), is(false));
+        AdvisoryAuditTrailDiffWrapper readWrapper = AdvisoryAuditTrailDiffWrapper.createFromCouchDb(stored);
+        assertThat(readWrapper.getDiffPatch().at("/0/value").asString(), equalTo(longTitle));
+        assertThat(readWrapper.applyTo(oldWrapper).getDocumentTitle(), equalTo(longTitle));
+    }
+
+    @Test
+    @SuppressFBWarnings(value = "CE_CLASS_ENVY", justification = "Only for Test")
+    public void mergeUpdateTest() throws IOException, CsafException {
+
+        var firstWrapper = AdvisoryWrapper.createNewFromCsaf(csafToRequest(csafJsonCategoryTitleId("Category1", "Title1", "Id1")), "John", Semantic.name());
+        var secondWrapper = AdvisoryWrapper.createNewFromCsaf(csafToRequest(csafJsonCategoryTitleId("Category1", "Title2", "Id1")), "John", Semantic.name());
+        var thirdWrapper = AdvisoryWrapper.createNewFromCsaf(csafToRequest(csafJsonCategoryTitleId("Category2", "Title3", "Id1")), "John", Semantic.name());
+
+        AdvisoryAuditTrailDiffWrapper wrapper = AdvisoryAuditTrailDiffWrapper.createNewFromAdvisories(firstWrapper, secondWrapper);
+        assertThat(wrapper.getChangeCount(), equalTo(1));
+        wrapper.mergeUpdate(secondWrapper, thirdWrapper);
+
+        assertThat(wrapper.getChangeCount(), equalTo(2));
+        assertThat(wrapper.getAuditTrailNode().has(AdvisoryAuditTrailField.COALESCED_UNTIL.getDbName()), is(true));
+        // the replacement of the title by the first update is overwritten
+        assertThat(wrapper.getDiffPatch().size(), equalTo(2));
+        AdvisoryWrapper merged = wrapper.applyTo(firstWrapper);
+        assertThat(merged.getDocumentTitle(), equalTo("Title3"));
+        assertThat(merged.getAdvisoryNode().at("/csaf/document/category").asString(), equalTo("Category2"));
+    }
+
+    @Test
+    public void combinePatchesTest_keepsReplacementsOfMovedValues() throws IOException {
+
+        JsonMapper mapper = new JsonMapper();
+        JsonNode first = mapper.readTree("""
+                [{"op":"replace","path":"/a/0","value":"x"},{"op":"replace","path":"/b","value":1}]""");
+        JsonNode second = mapper.readTree("""
+                [{"op":"move","from":"/a/0","path":"/c"},{"op":"replace","path":"/b","value":2}]""");
+
+        ArrayNode combined = AdvisoryAuditTrailDiffWrapper.combinePatches(first, second);
+
+        assertThat(combined.size(), equalTo(3));
+        assertThat(combined.at("/0/path").asString(), equalTo("/a/0"));
+        assertThat(combined.at("/1/op").asString(), equalTo("move"));
+        assertThat(combined.at("/2/value").asInt(), equalTo(2));
+    }
 }
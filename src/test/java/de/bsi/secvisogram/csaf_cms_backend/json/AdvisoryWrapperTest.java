@@ -14,6 +14,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.json.JsonMapper;
 import tools.jackson.databind.node.ArrayNode;
@@ -32,6 +33,7 @@ import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -665,4 +667,67 @@ public class AdvisoryWrapperTest {
         assertEquals("self", advisory.at("/csaf/document/references/1/category").asString());
         assertEquals("tempExamle-TEMP-0000123", advisory.getTempTrackingIdInFromMeta());
     }
-}
\ No newline at end of file
+
+    @Test
+    @SuppressFBWarnings(value = "CE_CLASS_ENVY", justification = "Only for Test")
+    public void moveSubtreesToBlobsTest() throws IOException, CsafException {
+
+        var csafJson = """
+                { "document": {
+                      "category": "CSAF_BASE"
+                  },
+                  "product_tree": { "branches": [ { "name": "Product" } ] },
+                  "vulnerabilities": [ { "title": "first" }, { "title": "second" }, { "title": "first" } ]
+                }""";
+
+        AdvisoryWrapper advisory = AdvisoryWrapper.createNewFromCsaf(csafToRequest(csafJson), "Mustermann", Semantic.name());
+        String completeCsaf = advisory.getCsaf().toString();
+
+        var blobsById = advisory.moveSubtreesToBlobs();
+        // the identical vulnerabilities are stored in the same blob
+        assertEquals(3, blobsById.size());
+        assertEquals(3, advisory.getSubtreeBlobIds().size());
+        assertTrue(advisory.at("/csaf/product_tree").isMissingNode());
+        assertTrue(advisory.at("/csaf/vulnerabilities").isMissingNode());
+        assertEquals(advisory.at("/subtreeBlobs/vulnerabilities/0").asString(),
+                advisory.at("/subtreeBlobs/vulnerabilities/2").asString());
+        assertThat(advisory.at("/subtreeBlobs/product_tree").asString(), startsWith(AdvisoryWrapper.BLOB_ID_PREFIX));
+
+        advisory.restoreSubtreesFromBlobs(blobsById);
+        assertEquals(completeCsaf, advisory.getCsaf().toString());
+        assertTrue(advisory.getSubtreeBlobIds().isEmpty());
+    }
+
+    @Test
+    @SuppressFBWarnings(value = "CE_CLASS_ENVY", justification = "Only for Test")
+    public void advisoryAsStringTest_normalizedFields() throws IOException, CsafException {
+
+        AdvisoryWrapper advisory = AdvisoryWrapper.createNewFromCsaf(csafToRequest(csafJsonTitle("Überprüfung der CSAF-Daten")),
+                "Mustermann", Semantic.name());
+        AdvisoryWrapper oldAdvisory = AdvisoryWrapper.createCopy(advisory);
+
+        JsonNode written = new JsonMapper().readTree(advisory.advisoryAsString());
+        assertThat(written.at("/normalized/title").asString(), equalTo("uberprufung der csaf-daten"));
+        assertTrue(written.at("/normalized/publisherName").isMissingNode());
+        assertThat(written.at("/csaf/document/title").asString(), equalTo("Überprüfung der CSAF-Daten"));
+        // the shadow fields are not part of the audit trail
+        assertTrue(oldAdvisory.calculateDiffTo(advisory).isEmpty());
+        assertTrue(advisory.getAdvisoryNode().at("/normalized").isMissingNode());
+    }
+
+    @Test
+    @SuppressFBWarnings(value = "CE_CLASS_ENVY", justification = "Only for Test")
+    public void restoreSubtreesFromBlobsTest_missingBlob() throws IOException, CsafException {
+
+        var csafJson = """
+                { "document": {
+                      "category": "CSAF_BASE"
+                  },
+                  "vulnerabilities": [ { "title": "first" } ]
+                }""";
+
+        AdvisoryWrapper advisory = AdvisoryWrapper.createNewFromCsaf(csafToRequest(csafJson), "Mustermann", Semantic.name());
+        advisory.moveSubtreesToBlobs();
+        assertThrows(IllegalStateException.class, () -> advisory.restoreSubtreesFromBlobs(Map.of()));
+    }
+}
@@ -0,0 +1,58 @@
+package de.bsi.secvisogram.csaf_cms_backend.json;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+public class PublishOutboxEntryTest {
+
+    @Test
+    public void createTest() {
+
+        PublishOutboxEntry entry = PublishOutboxEntry.create("adv-1", "rev-1", "default");
+        assertThat(entry.getId(), equalTo("PUBLISH_OUTBOX_adv-1_default"));
+        assertThat(entry.getType(), equalTo(ObjectType.PublishOutbox.name()));
+        assertThat(entry.getState(), equalTo(PublishOutboxEntry.State.Pending));
+        assertThat(entry.isReady(Instant.now()), is(true));
+    }
+
+    @Test
+    public void recordFailureTest_exponentialBackoff() {
+
+        PublishOutboxEntry entry = PublishOutboxEntry.create("adv-1", "rev-1", "default");
+        Instant before = Instant.now();
+        entry.recordFailure("first", 5, 1000, 3000);
+        assertThat(entry.getAttempts(), equalTo(1));
+        assertThat(entry.getLastError(), equalTo("first"));
+        assertThat(entry.isReady(before.plusMillis(500)), is(false));
+        assertThat(entry.isReady(Instant.now().plusMillis(1000)), is(true));
+
+        entry.recordFailure("second", 5, 1000, 3000);
+        assertThat(entry.isReady(Instant.now().plusMillis(1500)), is(false));
+
+        entry.recordFailure("third", 5, 1000, 3000);
+        // the backoff is limited by the maximum
+        Duration backoff = Duration.between(before, Instant.parse(entry.getNextAttemptAt()));
+        assertThat(backoff.toMillis() < 4000, is(true));
+        assertThat(entry.getState(), equalTo(PublishOutboxEntry.State.Pending));
+    }
+
+    @Test
+    public void recordFailureTest_maxAttempts() {
+
+        PublishOutboxEntry entry = PublishOutboxEntry.create("adv-1", "rev-1", "default");
+        entry.recordFailure("first", 2, 1000, 3000);
+        entry.recordFailure("second", 2, 1000, 3000);
+        assertThat(entry.getState(), equalTo(PublishOutboxEntry.State.Failed));
+        assertThat(entry.isReady(Instant.now().plusSeconds(3600)), is(false));
+
+        entry.reset("rev-2");
+        assertThat(entry.getState(), equalTo(PublishOutboxEntry.State.Pending));
+        assertThat(entry.getAttempts(), equalTo(0));
+        assertThat(entry.getAdvisoryRevision(), equalTo("rev-2"));
+    }
+}
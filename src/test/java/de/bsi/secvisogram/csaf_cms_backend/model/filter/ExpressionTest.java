@@ -1,6 +1,7 @@
 package de.bsi.secvisogram.csaf_cms_backend.model.filter;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.equalToCompressingWhiteSpace;
 import static org.hamcrest.Matchers.instanceOf;
@@ -85,6 +86,28 @@ public class ExpressionTest {
         assertThat(operatorExpr.getSelector(), arrayContaining("document", "version"));
     }
 
+    @Test
+    public void json2Expression_values() throws JacksonException {
+
+        String expressionString = """
+                {
+                  "type" : "Operator",
+                  "selector" : [ "csaf", "document", "tracking", "current_release_date" ],
+                  "operatorType" : "Between",
+                  "values" : [ "2024-01-01", "2024-12-31" ],
+                  "valueType" : "Text"
+                }
+            """;
+
+        Expression expression = AdvisorySearchUtil.json2Expression(expressionString);
+
+        assertThat(expression, instanceOf(OperatorExpression.class));
+        OperatorExpression operatorExpr = (OperatorExpression) expression;
+        assertThat(operatorExpr.getOperatorType(), equalTo(TypeOfOperator.Between));
+        assertThat(operatorExpr.getValues(), contains("2024-01-01", "2024-12-31"));
+        assertThat(AdvisorySearchUtil.expression2Json(operatorExpr), equalToCompressingWhiteSpace(expressionString));
+    }
+
     @Test
     public void json2Expression_wrongAndExpression() throws JacksonException {
 
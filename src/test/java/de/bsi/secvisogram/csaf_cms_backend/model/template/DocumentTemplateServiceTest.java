@@ -3,17 +3,23 @@ package de.bsi.secvisogram.csaf_cms_backend.model.template;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 
 import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.node.ObjectNode;
 import de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.util.ReflectionTestUtils;
 
 @SpringBootTest(properties = "csaf.document.templates.file=./src/test/resources/de/bsi/secvisogram/csaf_cms_backend/couchdb/model/template/allTemplates.json")
 @SuppressFBWarnings(value = "CLI_CONSTANT_LIST_INDEX", justification = "for test it is ok")
@@ -51,4 +57,43 @@ class DocumentTemplateServiceTest {
         var template3 = this.templateService.getTemplate("T3");
         assertThat(template3.isPresent(), is(false));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getTemplate_reloadsChangedFiles(@TempDir Path templateDir) throws IOException {
+
+        Path templatesFile = templateDir.resolve("allTemplates.json");
+        Files.writeString(templatesFile, """
+                [{ "id": "T1", "description": "Test Template 1", "file": "template1.json" }]""");
+        Path templateFile = templateDir.resolve("template1.json");
+        Files.writeString(templateFile, """
+                { "document": { "title": "Title 1" } }""");
+
+        DocumentTemplateService service = new DocumentTemplateService();
+        ReflectionTestUtils.setField(service, "templatesFile", templatesFile.toString());
+        service.startWatching();
+        try {
+            DocumentTemplateService.TemplateContent content = service.getTemplateContent("T1").get();
+            JsonNode template = content.template();
+            assertThat(template.at("/document/title").asString(), equalTo("Title 1"));
+            String etag = content.etag();
+            // the cached template is not affected by changes of the returned node
+            ((ObjectNode) template.get("document")).put("title", "Changed");
+            assertThat(service.getTemplate("T1").get().at("/document/title").asString(), equalTo("Title 1"));
+
+            Files.writeString(templateFile, """
+                    { "document": { "title": "Title 2" } }""");
+            Files.writeString(templatesFile, """
+                    [{ "id": "T1", "description": "Changed Template 1", "file": "template1.json" }]""");
+
+            // the watcher calls the reload when it gets the events of the file system
+            service.reloadTemplates();
+
+            assertThat(service.getAllTemplates()[0].getDescription(), equalTo("Changed Template 1"));
+            DocumentTemplateService.TemplateContent changed = service.getTemplateContent("T1").get();
+            assertThat(changed.template().at("/document/title").asString(), equalTo("Title 2"));
+            assertThat(changed.etag(), not(equalTo(etag)));
+        } finally {
+            service.stopWatching();
+        }
+    }
+}
@@ -8,11 +8,15 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -26,17 +30,28 @@ import de.bsi.secvisogram.csaf_cms_backend.couchdb.IdNotFoundException;
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafExceptionKey;
 import de.bsi.secvisogram.csaf_cms_backend.fixture.CsafDocumentJsonCreator;
+import de.bsi.secvisogram.csaf_cms_backend.model.AdvisoryIdentifierType;
 import de.bsi.secvisogram.csaf_cms_backend.model.DocumentTrackingStatus;
 import de.bsi.secvisogram.csaf_cms_backend.model.ExportFormat;
+import de.bsi.secvisogram.csaf_cms_backend.model.ProductMatchType;
 import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
 import de.bsi.secvisogram.csaf_cms_backend.model.template.DocumentTemplateDescription;
 import de.bsi.secvisogram.csaf_cms_backend.model.template.DocumentTemplateService;
 import de.bsi.secvisogram.csaf_cms_backend.rest.request.CreateCommentRequest;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryHistoryResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AffectedProductResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.AnswerInformationResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AuditTrailEntryResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AuditTrailPageResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.CommentInformationResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.CommentThreadResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.CommentThreadsResponse;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryEventService;
 import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryService;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryTextIndex;
+import de.bsi.secvisogram.csaf_cms_backend.service.AuditTrailQuery;
 import de.bsi.secvisogram.csaf_cms_backend.service.IdAndRevision;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.BufferedWriter;
@@ -46,10 +61,12 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
 import org.springframework.http.HttpStatus;
@@ -58,6 +75,7 @@ import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import tools.jackson.core.JacksonException;
 
 @WebMvcTest(AdvisoryController.class)
@@ -73,6 +91,9 @@ public class AdvisoryControllerTest {
     @MockitoBean
     private DocumentTemplateService templateService;
 
+    @MockitoBean
+    private AdvisoryEventService advisoryEventService;
+
     @Autowired
     AdvisoryController advisoryController;
 
@@ -129,6 +150,81 @@ public class AdvisoryControllerTest {
 
     }
 
+    @Test
+    @WithMockUser()
+    void searchCsafDocumentsTest() throws Exception {
+
+        AdvisoryInformationResponse info = new AdvisoryInformationResponse(advisoryId, WorkflowState.Draft);
+        when(advisoryService.searchAdvisories("openssl exec*", 10)).thenReturn(List.of(info));
+
+        this.mockMvc.perform(get(advisoryRoute + "/search").param("q", "openssl exec*").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(String.format("[{\"advisoryId\": \"%s\"}]", advisoryId)));
+    }
+
+    @Test
+    @WithMockUser()
+    void searchCsafDocumentsTest_emptyQuery() throws Exception {
+
+        when(advisoryService.searchAdvisories(" ", AdvisoryTextIndex.DEFAULT_LIMIT)).thenThrow(
+                new CsafException("Empty search query", CsafExceptionKey.InvalidFilterExpression, HttpStatus.BAD_REQUEST));
+
+        this.mockMvc.perform(get(advisoryRoute + "/search").param("q", " "))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser()
+    void lookupCsafDocumentsTest() throws Exception {
+
+        AdvisoryInformationResponse info = new AdvisoryInformationResponse(advisoryId, WorkflowState.Draft);
+        when(advisoryService.lookupAdvisories(AdvisoryIdentifierType.Cve, "CVE-2024-1234")).thenReturn(List.of(info));
+
+        this.mockMvc.perform(get(advisoryRoute + "/lookup").param("type", "Cve").param("value", "CVE-2024-1234"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(String.format("[{\"advisoryId\": \"%s\"}]", advisoryId)));
+    }
+
+    @Test
+    @WithMockUser()
+    void lookupCsafDocumentsTest_invalidType() throws Exception {
+
+        this.mockMvc.perform(get(advisoryRoute + "/lookup").param("type", "Purl").param("value", "pkg:npm/example"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser()
+    void matchProductsTest() throws Exception {
+
+        AffectedProductResponse product = new AffectedProductResponse()
+                .setIdentifier("pkg:npm/example@1.2.3")
+                .setAdvisoryId(advisoryId)
+                .setProductId("CSAFPID-0001")
+                .setMatchType(ProductMatchType.VersionRange)
+                .setProductStatus(List.of("known_affected"));
+        when(advisoryService.matchProducts(List.of("pkg:npm/example@1.2.3", "pkg:npm/other@1.0")))
+                .thenReturn(List.of(product));
+
+        this.mockMvc.perform(post(advisoryRoute + "/products/match").with(csrf())
+                        .content("{\"identifiers\": [\"pkg:npm/example@1.2.3\", \"pkg:npm/other@1.0\"]}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().json(String.format("[{\"advisoryId\": \"%s\", \"productId\": \"CSAFPID-0001\","
+                        + " \"matchType\": \"VersionRange\", \"productStatus\": [\"known_affected\"]}]", advisoryId)));
+    }
+
+    @Test
+    @WithMockUser()
+    void subscribeAdvisoryEventsTest() throws Exception {
+
+        when(advisoryEventService.subscribe()).thenReturn(new SseEmitter());
+
+        this.mockMvc.perform(get(advisoryRoute + "/events").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+    }
+
     @Test
     @WithMockUser()
     void listCsafDocumentsTest_oneItem() throws Exception {
@@ -144,6 +240,23 @@ public class AdvisoryControllerTest {
 
     }
 
+    @Test
+    @WithMockUser()
+    void listCsafDocumentsTest_withCounts() throws Exception {
+
+        AdvisoryInformationResponse info = new AdvisoryInformationResponse(advisoryId, WorkflowState.Draft)
+                .setCommentCount(2)
+                .setAnswerCount(1)
+                .setAuditTrailCount(4);
+        when(advisoryService.getAdvisoryInformations(null, true)).thenReturn(List.of(info));
+
+        this.mockMvc.perform(get(advisoryRoute).param("withCounts", "true"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(String.format(
+                        "[{\"advisoryId\": \"%s\", \"commentCount\": 2, \"answerCount\": 1, \"auditTrailCount\": 4}]",
+                        advisoryId)));
+    }
+
     @Test
     @WithMockUser()
     void listCsafDocumentsTest_csafException() throws Exception {
@@ -396,6 +509,61 @@ public class AdvisoryControllerTest {
                 .andExpect(content().json(String.format("{\"revision\": \"%s\"}", newRevision)));
     }
 
+    @Test
+    @WithMockUser()
+    void saveDraftTest() throws Exception {
+
+        String draftRevision = "1-efaa5db9409b2d4300535c70aaf5ff62";
+        when(advisoryService.saveDraft(eq(advisoryId), isNull(), any())).thenReturn(draftRevision);
+
+        ObjectWriter writer = new JsonMapper().writerWithDefaultPrettyPrinter();
+        this.mockMvc.perform(put(advisoryRoute + "/" + advisoryId + "/draft").with(csrf())
+                        .content(writer.writeValueAsString(csafToRequest(fullAdvisoryJsonString)))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().json(String.format("{\"revision\": \"%s\"}", draftRevision)));
+    }
+
+    @Test
+    @WithMockUser()
+    void saveDraftTest_concurrentChange() throws Exception {
+
+        doThrow(IdNotFoundException.class).when(advisoryService).saveDraft(eq(advisoryId), eq(revision), any());
+
+        ObjectWriter writer = new JsonMapper().writerWithDefaultPrettyPrinter();
+        this.mockMvc.perform(put(advisoryRoute + "/" + advisoryId + "/draft").with(csrf())
+                        .content(writer.writeValueAsString(csafToRequest(fullAdvisoryJsonString)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .param("revision", revision))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser()
+    void readDraftTest_notExisting() throws Exception {
+
+        CsafException csafExcp = new CsafException("No draft", CsafExceptionKey.DraftNotFound, HttpStatus.NOT_FOUND);
+        when(advisoryService.getDraft(advisoryId)).thenThrow(csafExcp);
+
+        this.mockMvc.perform(get(advisoryRoute + "/" + advisoryId + "/draft"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value(csafExcp.getMessage()));
+    }
+
+    @Test
+    @WithMockUser()
+    void commitDraftTest() throws Exception {
+
+        String newRevision = "2-efaa5db9409b2d4300535c70aaf5ff62";
+        when(advisoryService.commitDraft(advisoryId, revision, "Summary")).thenReturn(newRevision);
+
+        this.mockMvc.perform(post(advisoryRoute + "/" + advisoryId + "/draft/commit").with(csrf())
+                        .param("revision", revision)
+                        .param("summary", "Summary"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(String.format("{\"revision\": \"%s\"}", newRevision)));
+    }
+
     @Test
     @WithMockUser()
     void deleteCsafDocumentTest_notExisting() throws Exception {
@@ -478,8 +646,8 @@ public class AdvisoryControllerTest {
     @WithMockUser()
     void listAllTemplatesTest() throws Exception {
 
-        when(this.templateService.getAllTemplates())
-                .thenReturn(new DocumentTemplateDescription[] {new DocumentTemplateDescription("T1", "Template1", "File1")});
+        when(this.templateService.getTemplateIndex()).thenReturn(new DocumentTemplateService.TemplateIndex(
+                new DocumentTemplateDescription[] {new DocumentTemplateDescription("T1", "Template1", "File1")}, "etag1"));
 
         this.mockMvc.perform(get(advisoryRoute + "/templates"))
                 .andExpect(status().isOk())
@@ -490,11 +658,26 @@ public class AdvisoryControllerTest {
                         ));
     }
 
+    @Test
+    @WithMockUser()
+    void listAllTemplatesTest_notModified() throws Exception {
+
+        when(this.templateService.getTemplateIndex()).thenReturn(new DocumentTemplateService.TemplateIndex(
+                new DocumentTemplateDescription[] {new DocumentTemplateDescription("T1", "Template1", "File1")}, "etag1"));
+
+        this.mockMvc.perform(get(advisoryRoute + "/templates"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"etag1\""));
+
+        this.mockMvc.perform(get(advisoryRoute + "/templates").header("If-None-Match", "\"etag1\""))
+                .andExpect(status().isNotModified());
+    }
+
     @Test
     @WithMockUser()
     void listAllTemplatesTest_internalServerError() throws Exception {
 
-        when(this.templateService.getAllTemplates()).thenThrow(new IOException());
+        when(this.templateService.getTemplateIndex()).thenThrow(new IOException());
 
         this.mockMvc.perform(get(advisoryRoute + "/templates"))
                 .andExpect(status().isOk());
@@ -505,7 +688,8 @@ public class AdvisoryControllerTest {
     void readTemplateTest() throws Exception {
 
         final String templateId = "T1";
-        when(this.templateService.getTemplate(templateId)).thenReturn(Optional.of(jacksonMapper.readTree(csafJsonString)));
+        when(this.templateService.getTemplateContent(templateId)).thenReturn(Optional.of(
+                new DocumentTemplateService.TemplateContent(jacksonMapper.readTree(csafJsonString), "etag1")));
 
         this.mockMvc.perform(get(advisoryRoute + "/templates/" + templateId))
                 .andExpect(status().isOk())
@@ -513,12 +697,27 @@ public class AdvisoryControllerTest {
                         .json(csafJsonString));
     }
 
+    @Test
+    @WithMockUser()
+    void readTemplateTest_notModified() throws Exception {
+
+        final String templateId = "T1";
+        when(this.templateService.getTemplateContent(templateId)).thenReturn(Optional.of(
+                new DocumentTemplateService.TemplateContent(jacksonMapper.readTree(csafJsonString), "etag1")));
+
+        this.mockMvc.perform(get(advisoryRoute + "/templates/" + templateId).header("If-None-Match", "\"etag1\""))
+                .andExpect(status().isNotModified());
+        this.mockMvc.perform(get(advisoryRoute + "/templates/" + templateId).header("If-None-Match", "\"etag2\""))
+                .andExpect(status().isOk())
+                .andExpect(content().json(csafJsonString));
+    }
+
     @Test
     @WithMockUser()
     void readTemplateTest_internalServerError() throws Exception {
 
         final String templateId = "T1";
-        when(this.templateService.getTemplate(templateId)).thenThrow(new IOException("Server Error Test"));
+        when(this.templateService.getTemplateContent(templateId)).thenThrow(new IOException("Server Error Test"));
 
         this.mockMvc.perform(get(advisoryRoute + "/templates/" + templateId))
                 .andExpect(status().isInternalServerError());
@@ -865,6 +1064,142 @@ public class AdvisoryControllerTest {
                 .andExpect(jsonPath("$.message").value(csafExcp.getMessage()));
     }
 
+    @Test
+    @WithMockUser()
+    void listCommentThreadsTest_oneThread() throws Exception {
+
+        CommentInformationResponse comment = new CommentInformationResponse()
+                .setCommentId(commentId)
+                .setAdvisoryId(advisoryId)
+                .setCsafNodeId("nodeId123")
+                .setOwner("Musterfrau");
+        CommentThreadResponse thread = new CommentThreadResponse(comment);
+        thread.getAnswers().add(new AnswerInformationResponse(answerId, commentId, "Mustermann"));
+        when(advisoryService.getCommentThreads(advisoryId))
+                .thenReturn(new CommentThreadsResponse(List.of(thread), Map.of("nodeId123", 2)));
+
+        String expected = String.format(
+                """
+                        {
+                            "threads": [{
+                                "comment": {"commentId": "%s", "csafNodeId": "nodeId123", "owner": "Musterfrau"},
+                                "answers": [{"answerId": "%s", "answerTo": "%s", "owner": "Mustermann"}]
+                            }],
+                            "countByCsafNodeId": {"nodeId123": 2}
+                        }
+                        """, commentId, answerId, commentId
+        );
+
+        this.mockMvc.perform(get(commentRoute + "/threads"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(expected));
+    }
+
+    @Test
+    @WithMockUser()
+    void listCommentThreadsTest_unauthorized() throws Exception {
+
+        when(advisoryService.getCommentThreads(advisoryId)).thenThrow(AccessDeniedException.class);
+
+        this.mockMvc.perform(get(commentRoute + "/threads"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @WithMockUser()
+    void readAdvisoryHistoryTest() throws Exception {
+
+        String auditTrailId = UUID.randomUUID().toString();
+        AdvisoryHistoryResponse history = new AdvisoryHistoryResponse()
+                .setAdvisoryId(advisoryId)
+                .setAuditTrailId(auditTrailId)
+                .setChangeType("Update")
+                .setDocVersion("0.0.2")
+                .setCsaf(new JsonMapper().readTree(csafJsonString));
+        when(advisoryService.getAdvisoryHistory(advisoryId, auditTrailId, null)).thenReturn(history);
+
+        String expected = String.format(
+                """
+                        {"advisoryId": "%s", "auditTrailId": "%s", "changeType": "Update", "docVersion": "0.0.2",
+                         "csaf": %s}
+                        """, advisoryId, auditTrailId, csafJsonString
+        );
+
+        this.mockMvc.perform(get(advisoryRoute + "/" + advisoryId + "/history").param("auditTrailId", auditTrailId))
+                .andExpect(status().isOk())
+                .andExpect(content().json(expected));
+    }
+
+    @Test
+    @WithMockUser()
+    void readAdvisoryHistoryTest_notFound() throws Exception {
+
+        when(advisoryService.getAdvisoryHistory(advisoryId, null, "2000-01-01T00:00:00Z"))
+                .thenThrow(new CsafException("No audit trail entry found", CsafExceptionKey.AuditTrailNotFound,
+                        HttpStatus.NOT_FOUND));
+
+        this.mockMvc.perform(get(advisoryRoute + "/" + advisoryId + "/history").param("at", "2000-01-01T00:00:00Z"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser()
+    void listAuditTrailTest() throws Exception {
+
+        String auditTrailId = UUID.randomUUID().toString();
+        AuditTrailEntryResponse entry = new AuditTrailEntryResponse()
+                .setAuditTrailId(auditTrailId)
+                .setType("AuditTrailDocument")
+                .setAdvisoryId(advisoryId)
+                .setUser("Mustermann")
+                .setChangeType("Update")
+                .setDocVersion("0.0.2");
+        when(advisoryService.getAuditTrail(any())).thenReturn(new AuditTrailPageResponse(List.of(entry), "next"));
+
+        String expected = String.format(
+                """
+                        {"entries": [{"auditTrailId": "%s", "type": "AuditTrailDocument", "advisoryId": "%s",
+                         "user": "Mustermann", "changeType": "Update", "docVersion": "0.0.2"}],
+                         "bookmark": "next"}
+                        """, auditTrailId, advisoryId
+        );
+
+        this.mockMvc.perform(get(advisoryRoute + "/auditTrails").param("advisoryId", advisoryId)
+                        .param("user", "Mustermann").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(expected))
+                .andExpect(jsonPath("$.entries[0].diff").doesNotExist());
+
+        ArgumentCaptor<AuditTrailQuery> query = ArgumentCaptor.forClass(AuditTrailQuery.class);
+        verify(advisoryService).getAuditTrail(query.capture());
+        assertThat(query.getValue().getAdvisoryId(), equalTo(advisoryId));
+        assertThat(query.getValue().getUser(), equalTo("Mustermann"));
+        assertThat(query.getValue().getLimit(), equalTo(10));
+        assertFalse(query.getValue().isIncludeDiff());
+    }
+
+    @Test
+    @WithMockUser()
+    void listAuditTrailTest_invalidTimestamp() throws Exception {
+
+        when(advisoryService.getAuditTrail(any()))
+                .thenThrow(new CsafException("Invalid timestamp yesterday", CsafExceptionKey.InvalidDateTimeFormat,
+                        HttpStatus.BAD_REQUEST));
+
+        this.mockMvc.perform(get(advisoryRoute + "/auditTrails").param("from", "yesterday"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser()
+    void listAuditTrailTest_notAuditor() throws Exception {
+
+        when(advisoryService.getAuditTrail(any())).thenThrow(new AccessDeniedException("Access denied"));
+
+        this.mockMvc.perform(get(advisoryRoute + "/auditTrails"))
+                .andExpect(status().isUnauthorized());
+    }
+
     @Test
     @WithMockUser()
     void createCommentTest_invalidJson() throws Exception {
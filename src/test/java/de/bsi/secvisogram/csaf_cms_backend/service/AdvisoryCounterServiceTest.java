@@ -0,0 +1,95 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles.Role.AUDITOR;
+import static de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles.Role.AUTHOR;
+import static de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles.Role.REGISTERED;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles.Role;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class AdvisoryCounterServiceTest {
+
+    private AdvisoryCounterService counterService;
+
+    @BeforeEach
+    void setUp() {
+
+        CouchDbService couchDbService = mock(CouchDbService.class);
+        when(couchDbService.readReducedView(eq(AdvisoryCounterService.COUNTERS_DESIGN_DOC),
+                eq(AdvisoryCounterService.COMMENTS_VIEW), anyCollection()))
+                .thenReturn(Map.of("advisory-1", List.of(3, 5), "advisory-2", List.of(1, 0)));
+        when(couchDbService.readReducedView(eq(AdvisoryCounterService.COUNTERS_DESIGN_DOC),
+                eq(AdvisoryCounterService.AUDIT_TRAIL_VIEW), anyCollection()))
+                .thenReturn(Map.of("advisory-1", 12, "advisory-2", 4));
+        this.counterService = new AdvisoryCounterService();
+        ReflectionTestUtils.setField(this.counterService, "couchDbService", couchDbService);
+    }
+
+    @Test
+    void addCounts_auditorGetsAllCounts() {
+
+        AdvisoryInformationResponse advisory = advisory("advisory-1", "Jane");
+        this.counterService.addCounts(List.of(advisory), createAuthentication("John", AUDITOR));
+
+        assertThat(advisory.getCommentCount(), equalTo(3));
+        assertThat(advisory.getAnswerCount(), equalTo(5));
+        assertThat(advisory.getAuditTrailCount(), equalTo(12));
+    }
+
+    @Test
+    void addCounts_authorGetsCommentCountsOfOwnAdvisory() {
+
+        AdvisoryInformationResponse own = advisory("advisory-1", "John");
+        AdvisoryInformationResponse notOwn = advisory("advisory-2", "Jane");
+        this.counterService.addCounts(List.of(own, notOwn), createAuthentication("John", AUTHOR));
+
+        assertThat(own.getCommentCount(), equalTo(3));
+        assertThat(own.getAnswerCount(), equalTo(5));
+        assertThat(own.getAuditTrailCount(), nullValue());
+        assertThat(notOwn.getCommentCount(), nullValue());
+        assertThat(notOwn.getAnswerCount(), nullValue());
+        assertThat(notOwn.getAuditTrailCount(), nullValue());
+    }
+
+    @Test
+    void addCounts_registeredGetsNoCounts() {
+
+        AdvisoryInformationResponse advisory = advisory("advisory-1", "John");
+        this.counterService.addCounts(List.of(advisory), createAuthentication("John", REGISTERED));
+
+        assertThat(advisory.getCommentCount(), nullValue());
+        assertThat(advisory.getAnswerCount(), nullValue());
+        assertThat(advisory.getAuditTrailCount(), nullValue());
+    }
+
+    private static AdvisoryInformationResponse advisory(String advisoryId, String owner) {
+
+        return new AdvisoryInformationResponse(advisoryId, WorkflowState.Draft).setOwner(owner);
+    }
+
+    private static Authentication createAuthentication(String userName, Role role) {
+
+        var authority = new SimpleGrantedAuthority(role.getRoleName());
+        var principal = new User(userName, "", singletonList(authority));
+        return new TestingAuthenticationToken(principal, null, role.getRoleName());
+    }
+}
@@ -0,0 +1,156 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles.Role.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafWorkflowConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.model.AdvisoryChangeType;
+import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryChangeEventResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public class AdvisoryEventServiceTest {
+
+    private static final String ADVISORY_ID = "advisory-1";
+
+    private AdvisoryEventService eventService;
+
+    @BeforeEach
+    void setUp() {
+        this.eventService = new AdvisoryEventService();
+        CsafConfiguration configuration = new CsafConfiguration()
+                .setWorkflow(new CsafWorkflowConfiguration());
+        ReflectionTestUtils.setField(this.eventService, "configuration", configuration);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.eventService.shutdown();
+    }
+
+    @Test
+    void createEventFor_ownDraftIsSentToAuthorWithPermissions() {
+
+        Authentication author = new TestingAuthenticationToken("John", null, AUTHOR.getRoleName());
+        AdvisoryInformationResponse current = createInfo(WorkflowState.Draft, "John");
+
+        Optional<AdvisoryChangeEventResponse> event = this.eventService.createEventFor(author,
+                AdvisoryChangeType.Created, current, null);
+
+        assertThat(event.isPresent(), is(true));
+        assertThat(event.get().getChangeType(), equalTo(AdvisoryChangeType.Created));
+        assertThat(event.get().getAdvisory().isChangeable(), is(true));
+        assertThat(event.get().getAdvisory().isDeletable(), is(true));
+        assertThat(event.get().getAdvisory().getAllowedStateChanges(), contains(WorkflowState.Review));
+        // the shared advisory info must not be changed by the enrichment for a single subscriber
+        assertThat(current.isChangeable(), is(false));
+    }
+
+    @Test
+    void createEventFor_foreignDraftIsNotSentToAuthor() {
+
+        Authentication author = new TestingAuthenticationToken("Jack", null, AUTHOR.getRoleName());
+
+        Optional<AdvisoryChangeEventResponse> event = this.eventService.createEventFor(author,
+                AdvisoryChangeType.Created, createInfo(WorkflowState.Draft, "John"), null);
+
+        assertThat(event.isPresent(), is(false));
+    }
+
+    @Test
+    void createEventFor_advisoryNoLongerVisibleIsSentAsDeleted() {
+
+        Authentication reviewer = new TestingAuthenticationToken("Jack", null, REVIEWER.getRoleName());
+
+        Optional<AdvisoryChangeEventResponse> event = this.eventService.createEventFor(reviewer,
+                AdvisoryChangeType.WorkflowStateChanged, createInfo(WorkflowState.Approved, "John"),
+                createInfo(WorkflowState.Review, "John"));
+
+        assertThat(event.isPresent(), is(true));
+        assertThat(event.get().getChangeType(), equalTo(AdvisoryChangeType.Deleted));
+        assertThat(event.get().getAdvisoryId(), equalTo(ADVISORY_ID));
+        assertThat(event.get().getAdvisory(), is(nullValue()));
+    }
+
+    @Test
+    void createEventFor_deletedAdvisoryIsSentToAuditor() {
+
+        Authentication auditor = new TestingAuthenticationToken("Jack", null, AUDITOR.getRoleName());
+
+        Optional<AdvisoryChangeEventResponse> event = this.eventService.createEventFor(auditor,
+                AdvisoryChangeType.Deleted, null, createInfo(WorkflowState.Draft, "John"));
+
+        assertThat(event.isPresent(), is(true));
+        assertThat(event.get().getChangeType(), equalTo(AdvisoryChangeType.Deleted));
+    }
+
+    @Test
+    void enqueue_slowSubscriberIsClosedWhenTooManyEventsArePending() {
+
+        SseEmitter emitter = mock(SseEmitter.class);
+        AdvisoryEventService.Subscription subscription = addSubscription(emitter, 2);
+        // a send to the client is still running
+        subscription.sending().set(true);
+
+        this.eventService.enqueue(subscription, SseEmitter.event().comment("1"));
+        this.eventService.enqueue(subscription, SseEmitter.event().comment("2"));
+        assertThat(this.eventService.getSubscriptionCount(), equalTo(1));
+
+        this.eventService.enqueue(subscription, SseEmitter.event().comment("3"));
+        assertThat(this.eventService.getSubscriptionCount(), equalTo(0));
+        assertThat(subscription.pending().isEmpty(), is(true));
+        verify(emitter, timeout(1000)).complete();
+    }
+
+    @Test
+    void sendPending_subscriptionIsClosedWhenSendFails() throws IOException {
+
+        SseEmitter emitter = mock(SseEmitter.class);
+        IOException brokenPipe = new IOException("Broken pipe");
+        doThrow(brokenPipe).when(emitter).send(any(SseEmitter.SseEventBuilder.class));
+        AdvisoryEventService.Subscription subscription = addSubscription(emitter, 10);
+
+        this.eventService.enqueue(subscription, SseEmitter.event().comment("1"));
+
+        verify(emitter, timeout(1000)).completeWithError(brokenPipe);
+        assertThat(this.eventService.getSubscriptionCount(), equalTo(0));
+    }
+
+    @SuppressWarnings("unchecked")
+    private AdvisoryEventService.Subscription addSubscription(SseEmitter emitter, int maxPendingEvents) {
+
+        Authentication auditor = new TestingAuthenticationToken("Jack", null, AUDITOR.getRoleName());
+        var subscription = new AdvisoryEventService.Subscription(emitter, auditor, maxPendingEvents);
+        ((List<AdvisoryEventService.Subscription>) ReflectionTestUtils.getField(this.eventService, "subscriptions"))
+                .add(subscription);
+        return subscription;
+    }
+
+    private AdvisoryInformationResponse createInfo(WorkflowState state, String owner) {
+
+        AdvisoryInformationResponse info = new AdvisoryInformationResponse(ADVISORY_ID, state);
+        info.setOwner(owner);
+        info.setRevision("1-rev");
+        return info;
+    }
+}
@@ -0,0 +1,108 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.ChangedDocuments;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DatabaseException;
+import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
+
+public class AdvisoryFeedTest {
+
+    private CouchDbService couchDbService;
+    private AdvisoryFeed advisoryFeed;
+
+    @BeforeEach
+    void setUp() throws DatabaseException {
+        this.couchDbService = mock(CouchDbService.class);
+        this.advisoryFeed = new AdvisoryFeed();
+        ReflectionTestUtils.setField(this.advisoryFeed, "couchDbService", this.couchDbService);
+        when(this.couchDbService.findChangedDocuments(eq("0"), anyMap(), anyInt()))
+                .thenReturn(new ChangedDocuments(List.of(advisory("advisory-1"), advisory("advisory-2")),
+                        Set.of(), "2-a", false));
+        when(this.couchDbService.findChangedDocuments(eq("2-a"), anyMap(), anyInt()))
+                .thenReturn(new ChangedDocuments(List.<JsonNode>of(), Set.of("advisory-1"), "3-a", true));
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.advisoryFeed.shutdown();
+    }
+
+    @Test
+    void catchUp_readsFeedOnceForAllIndexes() throws DatabaseException {
+
+        RecordingIndex first = register(new RecordingIndex());
+        RecordingIndex second = register(new RecordingIndex());
+
+        this.advisoryFeed.catchUp();
+
+        verify(this.couchDbService, times(1)).findChangedDocuments(eq("0"), anyMap(), anyInt());
+        verify(this.couchDbService, times(1)).findChangedDocuments(eq("2-a"), anyMap(), anyInt());
+        assertThat(first.advisoryIds, contains("advisory-2"));
+        assertThat(second.advisoryIds, contains("advisory-2"));
+    }
+
+    @Test
+    void register_readsFeedAgainForNewIndex() throws DatabaseException {
+
+        RecordingIndex first = register(new RecordingIndex());
+        this.advisoryFeed.catchUp();
+        RecordingIndex second = register(new RecordingIndex());
+        assertThat(second.advisoryIds, empty());
+
+        this.advisoryFeed.catchUp();
+
+        assertThat(first.advisoryIds, contains("advisory-2"));
+        assertThat(second.advisoryIds, contains("advisory-2"));
+    }
+
+    private RecordingIndex register(RecordingIndex index) {
+
+        ReflectionTestUtils.setField(index, "advisoryFeed", this.advisoryFeed);
+        index.registerAtFeed();
+        return index;
+    }
+
+    private static JsonNode advisory(String id) {
+
+        ObjectNode advisory = new JsonMapper().createObjectNode();
+        advisory.put("_id", id);
+        advisory.put("type", ObjectType.Advisory.name());
+        return advisory;
+    }
+
+    private static class RecordingIndex extends AdvisoryFeedIndex {
+
+        private final List<String> advisoryIds = new ArrayList<>();
+
+        @Override
+        protected void addAdvisory(String advisoryId, JsonNode advisory) {
+            this.advisoryIds.add(advisoryId);
+        }
+
+        @Override
+        protected void removeAdvisory(String advisoryId) {
+            this.advisoryIds.remove(advisoryId);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static de.bsi.secvisogram.csaf_cms_backend.fixture.CsafDocumentJsonCreator.csafJsonTitle;
+import static de.bsi.secvisogram.csaf_cms_backend.fixture.CsafDocumentJsonCreator.csafToRequest;
+import static de.bsi.secvisogram.csaf_cms_backend.json.VersioningType.Semantic;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.AdvisoryAuditTrailField;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.AuditTrailField;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
+import de.bsi.secvisogram.csaf_cms_backend.json.AdvisoryAuditTrailDiffWrapper;
+import de.bsi.secvisogram.csaf_cms_backend.json.AdvisoryWrapper;
+import de.bsi.secvisogram.csaf_cms_backend.json.AuditTrailWrapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.ObjectNode;
+
+public class AdvisoryHistoryServiceTest {
+
+    private static final String ADVISORY_ID = "advisory-1";
+
+    private final JsonMapper jsonMapper = new JsonMapper();
+    private final List<ObjectNode> entries = new ArrayList<>();
+    private AdvisoryHistoryService historyService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+
+        CouchDbService couchDbService = mock(CouchDbService.class);
+        when(couchDbService.findDocumentsAsStream(anyMap(), anyCollection())).thenAnswer(invocation -> {
+            ObjectNode result = this.jsonMapper.createObjectNode();
+            ArrayNode docs = result.putArray("docs");
+            this.entries.forEach(docs::add);
+            return new ByteArrayInputStream(result.toString().getBytes(StandardCharsets.UTF_8));
+        });
+        AuditTrailArchive auditTrailArchive = mock(AuditTrailArchive.class);
+        when(auditTrailArchive.findEntries(any())).thenReturn(List.of());
+
+        this.historyService = new AdvisoryHistoryService();
+        ReflectionTestUtils.setField(this.historyService, "couchDbService", couchDbService);
+        ReflectionTestUtils.setField(this.historyService, "configuration", mock(CsafConfiguration.class));
+        ReflectionTestUtils.setField(this.historyService, "auditTrailArchive", auditTrailArchive);
+        this.historyService.createCache();
+    }
+
+    @Test
+    void reconstruct_returnsStateAfterCoalescedEdit() throws IOException, CsafException {
+
+        AdvisoryWrapper created = AdvisoryWrapper.createNewFromCsaf(csafToRequest(csafJsonTitle("Title1")),
+                "Mustermann", Semantic.name());
+        AdvisoryWrapper firstEdit = AdvisoryWrapper.updateFromExisting(created, csafToRequest(csafJsonTitle("Title2")));
+        this.entries.add(entry(AdvisoryAuditTrailDiffWrapper.createNewFromCreatedAdvisory(created),
+                "audit-1", "1-a", "2026-01-01T10:00:00Z"));
+        AdvisoryAuditTrailDiffWrapper edit = AdvisoryAuditTrailDiffWrapper.createNewFromAdvisories(created, firstEdit);
+        this.entries.add(entry(edit, "audit-2", "1-a", "2026-01-01T10:01:00Z"));
+
+        assertThat(this.historyService.reconstruct(ADVISORY_ID, null, null).getCsaf().at("/document/title").asString(),
+                equalTo("Title2"));
+
+        AdvisoryWrapper secondEdit = AdvisoryWrapper.updateFromExisting(firstEdit, csafToRequest(csafJsonTitle("Title3")));
+        edit.mergeUpdate(firstEdit, secondEdit);
+        this.entries.set(1, entry(edit, "audit-2", "2-b", "2026-01-01T10:01:00Z"));
+
+        assertThat(this.historyService.reconstruct(ADVISORY_ID, null, null).getCsaf().at("/document/title").asString(),
+                equalTo("Title3"));
+        assertThat(this.historyService.reconstruct(ADVISORY_ID, "audit-2", null).getCsaf().at("/document/title").asString(),
+                equalTo("Title3"));
+    }
+
+    private ObjectNode entry(AuditTrailWrapper wrapper, String id, String revision, String createdAt) {
+
+        ObjectNode entry = this.jsonMapper.readValue(wrapper.auditTrailAsString(), ObjectNode.class);
+        entry.put("_id", id);
+        entry.put("_rev", revision);
+        entry.put(AdvisoryAuditTrailField.ADVISORY_ID.getDbName(), ADVISORY_ID);
+        entry.put(AuditTrailField.USER.getDbName(), "Mustermann");
+        entry.put(AuditTrailField.CREATED_AT.getDbName(), createdAt);
+        return entry;
+    }
+}
@@ -0,0 +1,124 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles.Role.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.ChangedDocuments;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DatabaseException;
+import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
+import de.bsi.secvisogram.csaf_cms_backend.model.AdvisoryIdentifierType;
+import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
+
+public class AdvisoryIdentifierIndexTest {
+
+    private static final Authentication EDITOR_USER = new TestingAuthenticationToken("Jane", null, EDITOR.getRoleName());
+
+    private CouchDbService couchDbService;
+    private AdvisoryIdentifierIndex index;
+
+    @BeforeEach
+    void setUp() throws DatabaseException {
+        this.couchDbService = mock(CouchDbService.class);
+        AdvisoryFeed advisoryFeed = new AdvisoryFeed();
+        ReflectionTestUtils.setField(advisoryFeed, "couchDbService", this.couchDbService);
+        this.index = new AdvisoryIdentifierIndex();
+        ReflectionTestUtils.setField(this.index, "advisoryFeed", advisoryFeed);
+        this.index.registerAtFeed();
+        returnChanges("0", List.of(
+                advisory("advisory-1", "John", "CVE-2024-1234", "CWE-79", "CSAFPID-0001", "Example Browser 1.0"),
+                advisory("advisory-2", "Jack", "CVE-2024-1234", "CWE-89", "CSAFPID-0002", "Example Server 2.0")),
+                Set.of(), "2-a");
+    }
+
+    @Test
+    void lookup_findsVulnerabilityIds() {
+
+        assertThat(this.index.lookup(AdvisoryIdentifierType.Cve, "cve-2024-1234 ", EDITOR_USER),
+                contains("advisory-1", "advisory-2"));
+        assertThat(this.index.lookup(AdvisoryIdentifierType.Cwe, "CWE-89", EDITOR_USER), contains("advisory-2"));
+        assertThat(this.index.lookup(AdvisoryIdentifierType.Cve, "CVE-2024-4321", EDITOR_USER), empty());
+    }
+
+    @Test
+    void lookup_findsProductsOfAllPartsOfTheProductTree() {
+
+        assertThat(this.index.lookup(AdvisoryIdentifierType.ProductId, "CSAFPID-0001", EDITOR_USER),
+                contains("advisory-1"));
+        assertThat(this.index.lookup(AdvisoryIdentifierType.ProductId, "csafpid-0001", EDITOR_USER), empty());
+        assertThat(this.index.lookup(AdvisoryIdentifierType.ProductName, "example server 2.0", EDITOR_USER),
+                contains("advisory-2"));
+        assertThat(this.index.lookup(AdvisoryIdentifierType.ProductId, "CSAFPID-0002-BRANCH", EDITOR_USER),
+                contains("advisory-2"));
+        assertThat(this.index.lookup(AdvisoryIdentifierType.ProductId, "CSAFPID-0001-RELATIONSHIP", EDITOR_USER),
+                contains("advisory-1"));
+    }
+
+    @Test
+    void lookup_returnsOnlyVisibleAdvisories() {
+
+        Authentication author = new TestingAuthenticationToken("Jack", null, AUTHOR.getRoleName());
+
+        assertThat(this.index.lookup(AdvisoryIdentifierType.Cve, "CVE-2024-1234", author), contains("advisory-2"));
+    }
+
+    @Test
+    void lookup_appliesChangesOfTheFeed() throws DatabaseException {
+
+        assertThat(this.index.lookup(AdvisoryIdentifierType.Cwe, "CWE-79", EDITOR_USER), contains("advisory-1"));
+        returnChanges("2-a", List.of(
+                advisory("advisory-2", "Jack", "CVE-2024-5678", "CWE-79", "CSAFPID-0002", "Example Server 2.0")),
+                Set.of("advisory-1"), "4-a");
+
+        assertThat(this.index.lookup(AdvisoryIdentifierType.Cwe, "CWE-79", EDITOR_USER), contains("advisory-2"));
+        assertThat(this.index.lookup(AdvisoryIdentifierType.Cve, "CVE-2024-1234", EDITOR_USER), empty());
+    }
+
+    private void returnChanges(String since, List<JsonNode> documents, Set<String> deletedIds, String lastSeq)
+            throws DatabaseException {
+
+        when(this.couchDbService.findChangedDocuments(eq(since), anyMap(), anyInt()))
+                .thenReturn(new ChangedDocuments(documents, deletedIds, lastSeq, true));
+        when(this.couchDbService.findChangedDocuments(eq(lastSeq), anyMap(), anyInt()))
+                .thenReturn(new ChangedDocuments(List.of(), Set.of(), lastSeq, true));
+    }
+
+    private static JsonNode advisory(String id, String owner, String cve, String cwe, String productId,
+                                     String productName) {
+
+        ObjectNode advisory = new JsonMapper().createObjectNode();
+        advisory.put("_id", id);
+        advisory.put("type", ObjectType.Advisory.name());
+        advisory.put("owner", owner);
+        advisory.put("workflowState", WorkflowState.Draft.name());
+        ObjectNode csaf = advisory.putObject("csaf");
+        ObjectNode vulnerability = csaf.putArray("vulnerabilities").addObject();
+        vulnerability.put("cve", cve);
+        vulnerability.putObject("cwe").put("id", cwe).put("name", "Weakness");
+        ObjectNode productTree = csaf.putObject("product_tree");
+        productTree.putArray("full_product_names").addObject().put("product_id", productId).put("name", productName);
+        productTree.putArray("branches").addObject().put("category", "vendor").put("name", "Example")
+                .putArray("branches").addObject().put("category", "product_version").put("name", "2.0")
+                .putObject("product").put("product_id", productId + "-BRANCH").put("name", productName);
+        productTree.putArray("relationships").addObject().put("category", "installed_on")
+                .putObject("full_product_name").put("product_id", productId + "-RELATIONSHIP").put("name", productName);
+        return advisory;
+    }
+}
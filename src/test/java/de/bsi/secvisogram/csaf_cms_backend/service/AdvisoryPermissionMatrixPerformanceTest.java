@@ -0,0 +1,70 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles.Role.AUTHOR;
+import static de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles.Role.EDITOR;
+import static de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles.Role.PUBLISHER;
+import static de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles.Role.REGISTERED;
+import static de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles.Role.REVIEWER;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
+import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+/**
+ * Timing of the {@link AdvisoryPermissionMatrix}, excluded from the build because the result depends on the
+ * machine. Run it with the maven profile {@code performance}.
+ */
+@Tag("performance")
+public class AdvisoryPermissionMatrixPerformanceTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdvisoryPermissionMatrixPerformanceTest.class);
+
+    /**
+     * Compare enriching 10000 advisories by evaluating the rules with the lookup in the matrix
+     */
+    @Test
+    public void enrichBenchmark_10000Advisories() {
+
+        Authentication credentials = new TestingAuthenticationToken("John", null,
+                REGISTERED.getRoleName(), AUTHOR.getRoleName(), EDITOR.getRoleName(), PUBLISHER.getRoleName(),
+                REVIEWER.getRoleName());
+        List<AdvisoryInformationResponse> advisories = new ArrayList<>();
+        WorkflowState[] states = WorkflowState.values();
+        for (int i = 0; i < 10_000; i++) {
+            AdvisoryInformationResponse info = new AdvisoryInformationResponse("advisory-" + i, states[i % states.length]);
+            info.setOwner((i % 3 == 0) ? "John" : "Jack" + i);
+            advisories.add(info);
+        }
+
+        long rulesNanos = Long.MAX_VALUE;
+        long matrixNanos = Long.MAX_VALUE;
+        // repeat to warm up the JIT, take the best run
+        for (int run = 0; run < 10; run++) {
+            long start = System.nanoTime();
+            for (AdvisoryInformationResponse advisory : advisories) {
+                AdvisoryWorkflowUtil.enrichAdvisory(advisory, credentials, false);
+            }
+            rulesNanos = Math.min(rulesNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            AdvisoryPermissionMatrix matrix = AdvisoryPermissionMatrix.forCredentials(credentials, false);
+            for (AdvisoryInformationResponse advisory : advisories) {
+                matrix.enrich(advisory);
+            }
+            matrixNanos = Math.min(matrixNanos, System.nanoTime() - start);
+        }
+        LOG.info("Enrich 10000 advisories: rules {} µs, permission matrix {} µs",
+                rulesNanos / 1000, matrixNanos / 1000);
+
+        assertThat(matrixNanos, lessThan(rulesNanos));
+    }
+}
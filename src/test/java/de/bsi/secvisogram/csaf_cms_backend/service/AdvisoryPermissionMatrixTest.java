@@ -0,0 +1,71 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles.Role.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles.Role;
+import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+public class AdvisoryPermissionMatrixTest {
+
+    @Test
+    public void enrich_isEqualToRulesForAllRoleCombinations() {
+
+        Role[] roles = Role.values();
+        for (int roleBits = 0; roleBits < 1 << roles.length; roleBits++) {
+            List<String> roleNames = new ArrayList<>();
+            for (Role role : roles) {
+                if ((roleBits & 1 << role.ordinal()) != 0) {
+                    roleNames.add(role.getRoleName());
+                }
+            }
+            Authentication credentials = new TestingAuthenticationToken("John", null,
+                    roleNames.toArray(new String[0]));
+            for (boolean allowOwnDocumentsApproved : new boolean[] {false, true}) {
+                AdvisoryPermissionMatrix matrix = AdvisoryPermissionMatrix.forCredentials(credentials,
+                        allowOwnDocumentsApproved);
+                for (WorkflowState state : WorkflowState.values()) {
+                    for (String owner : new String[] {"John", "Jack"}) {
+                        AdvisoryInformationResponse expected = createInfo(state, owner);
+                        AdvisoryWorkflowUtil.enrichAdvisory(expected, credentials, allowOwnDocumentsApproved);
+                        AdvisoryInformationResponse actual = createInfo(state, owner);
+                        matrix.enrich(actual);
+                        assertEnrichedEqual(actual, expected);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void roleBits_ignoresUnknownAuthorities() {
+
+        Authentication credentials = new TestingAuthenticationToken("John", null,
+                AUTHOR.getRoleName(), "ROLE_unknown", PUBLISHER.getRoleName());
+        assertThat(AdvisoryPermissionMatrix.roleBits(credentials),
+                equalTo(1 << AUTHOR.ordinal() | 1 << PUBLISHER.ordinal()));
+    }
+
+    private static AdvisoryInformationResponse createInfo(WorkflowState state, String owner) {
+
+        AdvisoryInformationResponse info = new AdvisoryInformationResponse("advisory-1", state);
+        info.setOwner(owner);
+        return info;
+    }
+
+    private static void assertEnrichedEqual(AdvisoryInformationResponse actual, AdvisoryInformationResponse expected) {
+
+        assertThat(actual.isDeletable(), is(expected.isDeletable()));
+        assertThat(actual.isChangeable(), is(expected.isChangeable()));
+        assertThat(actual.isCanCreateVersion(), is(expected.isCanCreateVersion()));
+        assertThat(actual.getAllowedStateChanges(), equalTo(expected.getAllowedStateChanges()));
+    }
+}
@@ -0,0 +1,141 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles.Role.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.ChangedDocuments;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DatabaseException;
+import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
+import de.bsi.secvisogram.csaf_cms_backend.model.ProductMatchType;
+import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.ObjectNode;
+
+public class AdvisoryProductIndexTest {
+
+    private static final Authentication EDITOR_USER = new TestingAuthenticationToken("Jane", null, EDITOR.getRoleName());
+    private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    private CouchDbService couchDbService;
+    private AdvisoryProductIndex index;
+
+    @BeforeEach
+    void setUp() throws DatabaseException {
+        this.couchDbService = mock(CouchDbService.class);
+        AdvisoryFeed advisoryFeed = new AdvisoryFeed();
+        ReflectionTestUtils.setField(advisoryFeed, "couchDbService", this.couchDbService);
+        this.index = new AdvisoryProductIndex();
+        ReflectionTestUtils.setField(this.index, "advisoryFeed", advisoryFeed);
+        this.index.registerAtFeed();
+        when(this.couchDbService.findChangedDocuments(eq("0"), anyMap(), anyInt()))
+                .thenReturn(new ChangedDocuments(List.of(advisory("advisory-1", "John")), Set.of(), "1-a", true));
+        when(this.couchDbService.findChangedDocuments(eq("1-a"), anyMap(), anyInt()))
+                .thenReturn(new ChangedDocuments(List.of(), Set.of(), "1-a", true));
+    }
+
+    @Test
+    void match_comparesVersionsOfPurls() {
+
+        List<AdvisoryProductIndex.Match> matches = this.index.match(List.of(
+                "pkg:npm/example@1.2.3", "pkg:npm/example@1.9.0", "pkg:npm/EXAMPLE@1.4.0?arch=x64#lib", "pkg:npm/other@1.2.3"),
+                EDITOR_USER);
+
+        assertThat(matches.stream().map(AdvisoryProductIndex.Match::identifier).toList(),
+                contains("pkg:npm/example@1.2.3", "pkg:npm/EXAMPLE@1.4.0?arch=x64#lib"));
+        assertThat(matches.get(0).productId(), equalTo("CSAFPID-RANGE"));
+        assertThat(matches.get(0).matchType(), equalTo(ProductMatchType.VersionRange));
+        assertThat(matches.get(0).productStatus(), contains("known_affected"));
+    }
+
+    @Test
+    void match_usesVersionsOfBranchesAndCpes() {
+
+        List<AdvisoryProductIndex.Match> matches = this.index.match(List.of(
+                "cpe:2.3:a:example:server:2.0:*:*:*:*:*:*:*", "cpe:/a:example:server:2.1", "cpe:/a:example:server"),
+                EDITOR_USER);
+
+        assertThat(matches.stream().map(AdvisoryProductIndex.Match::matchType).toList(),
+                contains(ProductMatchType.Version, ProductMatchType.Package));
+        assertThat(matches.get(0).productId(), equalTo("CSAFPID-SERVER"));
+        assertThat(matches.get(0).productStatus(), contains("fixed"));
+    }
+
+    @Test
+    void match_findsFileHashes() {
+
+        List<AdvisoryProductIndex.Match> matches = this.index.match(List.of(HASH.toUpperCase()), EDITOR_USER);
+
+        assertThat(matches.stream().map(AdvisoryProductIndex.Match::productId).toList(), contains("CSAFPID-SERVER"));
+        assertThat(matches.get(0).matchType(), equalTo(ProductMatchType.Hash));
+    }
+
+    @Test
+    void match_returnsOnlyVisibleAdvisories() {
+
+        Authentication author = new TestingAuthenticationToken("Jack", null, AUTHOR.getRoleName());
+
+        assertThat(this.index.match(List.of("pkg:npm/example@1.2.3"), author), empty());
+    }
+
+    @Test
+    void parse_splitsIdentifiersIntoPackageAndVersion() {
+
+        AdvisoryProductIndex.ProductIdentifier purl =
+                AdvisoryProductIndex.ProductIdentifier.parse("pkg:maven/org.example/Lib@1.0%2Bbuild?type=jar").orElseThrow();
+        assertThat(purl.key(), equalTo("pkg:maven/org.example/lib"));
+        assertThat(purl.version(), equalTo("1.0+build"));
+        AdvisoryProductIndex.ProductIdentifier cpe =
+                AdvisoryProductIndex.ProductIdentifier.parse("cpe:2.3:o:example:os:-:*:*:*:*:*:*:*").orElseThrow();
+        assertThat(cpe.key(), equalTo("cpe:o:example:os"));
+        assertThat(cpe.version(), nullValue());
+        assertThat(AdvisoryProductIndex.ProductIdentifier.parse("example 1.0").isPresent(), equalTo(false));
+    }
+
+    private static JsonNode advisory(String id, String owner) {
+
+        ObjectNode advisory = new JsonMapper().createObjectNode();
+        advisory.put("_id", id);
+        advisory.put("type", ObjectType.Advisory.name());
+        advisory.put("owner", owner);
+        advisory.put("workflowState", WorkflowState.Draft.name());
+        ObjectNode csaf = advisory.putObject("csaf");
+        ObjectNode productStatus = csaf.putArray("vulnerabilities").addObject().putObject("product_status");
+        productStatus.putArray("known_affected").add("CSAFPID-RANGE");
+        productStatus.putArray("fixed").add("CSAFPID-SERVER");
+        ArrayNode vendorBranches = csaf.putObject("product_tree").putArray("branches").addObject()
+                .put("category", "vendor").put("name", "Example").putArray("branches");
+        ObjectNode rangeBranch = vendorBranches.addObject().put("category", "product_name").put("name", "Example Lib")
+                .putArray("branches").addObject()
+                .put("category", "product_version_range").put("name", "vers:npm/>=1.0.0|<1.5.0");
+        rangeBranch.putObject("product").put("product_id", "CSAFPID-RANGE").put("name", "Example Lib < 1.5.0")
+                .putObject("product_identification_helper").put("purl", "pkg:npm/example");
+        ObjectNode serverBranch = vendorBranches.addObject().put("category", "product_name").put("name", "Example Server")
+                .putArray("branches").addObject()
+                .put("category", "product_version").put("name", "2.0");
+        ObjectNode helper = serverBranch.putObject("product").put("product_id", "CSAFPID-SERVER")
+                .put("name", "Example Server 2.0")
+                .putObject("product_identification_helper").put("cpe", "cpe:2.3:a:example:server:*:*:*:*:*:*:*:*");
+        helper.putArray("hashes").addObject().put("filename", "server.bin")
+                .putArray("file_hashes").addObject().put("algorithm", "sha256").put("value", HASH);
+        return advisory;
+    }
+}
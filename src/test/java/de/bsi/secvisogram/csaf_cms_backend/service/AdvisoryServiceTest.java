@@ -1,9 +1,13 @@
 package de.bsi.secvisogram.csaf_cms_backend.service;
 
 import de.bsi.secvisogram.csaf_cms_backend.CouchDBExtension;
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafAuditTrailConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafConfiguration;
 import de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles;
 import de.bsi.secvisogram.csaf_cms_backend.couchdb.*;
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
+import de.bsi.secvisogram.csaf_cms_backend.exception.CsafExceptionKey;
+import de.bsi.secvisogram.csaf_cms_backend.json.AdvisoryAuditTrailDiffWrapper;
 import de.bsi.secvisogram.csaf_cms_backend.json.AdvisoryWrapper;
 import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
 import de.bsi.secvisogram.csaf_cms_backend.json.TrackingIdCounter;
@@ -34,6 +38,7 @@ import org.springframework.security.web.authentication.switchuser.SwitchUserGran
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.test.util.ReflectionTestUtils;
 import tools.jackson.core.JacksonException;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
@@ -44,12 +49,16 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static de.bsi.secvisogram.csaf_cms_backend.couchdb.AdvisoryAuditTrailField.*;
 import static de.bsi.secvisogram.csaf_cms_backend.couchdb.AuditTrailField.CHANGE_TYPE;
@@ -159,6 +168,29 @@ public class AdvisoryServiceTest {
         assertEquals(0, ids.size());
     }
 
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUTHOR})
+    public void getAdvisoryInformationsTest_withCounts() throws IOException, DatabaseException, CsafException {
+        IdAndRevision idRev1 = this.advisoryService.addAdvisory(csafToRequest(csafJson));
+        IdAndRevision idRev2 = this.advisoryService.addAdvisory(csafToRequest(csafJson));
+        IdAndRevision idRevComment1 = this.advisoryService.addComment(idRev1.getId(),
+                new CreateCommentRequest("comment 1", UUID.randomUUID().toString()));
+        this.advisoryService.addComment(idRev1.getId(),
+                new CreateCommentRequest("comment 2", UUID.randomUUID().toString()));
+        this.advisoryService.addAnswer(idRev1.getId(), idRevComment1.getId(), answerText);
+
+        Map<String, AdvisoryInformationResponse> infos = this.advisoryService.getAdvisoryInformations(null, true)
+                .stream().collect(Collectors.toMap(AdvisoryInformationResponse::getAdvisoryId, info -> info));
+
+        assertEquals(2, infos.get(idRev1.getId()).getCommentCount());
+        assertEquals(1, infos.get(idRev1.getId()).getAnswerCount());
+        assertEquals(1, infos.get(idRev1.getId()).getAuditTrailCount());
+        assertEquals(0, infos.get(idRev2.getId()).getCommentCount());
+        assertEquals(0, infos.get(idRev2.getId()).getAnswerCount());
+        assertEquals(1, infos.get(idRev2.getId()).getAuditTrailCount());
+        assertNull(this.advisoryService.getAdvisoryInformations(null).get(0).getCommentCount());
+    }
+
     @Test
     @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUTHOR})
     @SuppressFBWarnings(value = "PRMC_POSSIBLY_REDUNDANT_METHOD_CALLS", justification = "Ok for test")
@@ -240,6 +272,19 @@ public class AdvisoryServiceTest {
         assertThrows(CsafException.class, () -> advisoryService.exportAdvisory("wrong Id", ExportFormat.JSON));
     }
 
+    @Test
+    @WithMockUser(username = "editor", authorities = {CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUTHOR})
+    public void exportAdvisoryAsJsonTest() throws IOException, CsafException {
+
+        IdAndRevision idRev = advisoryService.addAdvisory(csafToRequest(csafJson));
+        byte[] jsonExport = advisoryService.exportAdvisoryAsJson(idRev.getId());
+        Path fileExport = advisoryService.exportAdvisory(idRev.getId(), ExportFormat.JSON);
+        // the in-memory export has the same content as the file export
+        assertEquals(Files.readString(fileExport), new String(jsonExport, StandardCharsets.UTF_8));
+        Files.delete(fileExport);
+        assertThrows(CsafException.class, () -> advisoryService.exportAdvisoryAsJson("wrong Id"));
+    }
+
     @Test
     public void getAdvisoryTest_notPresent() {
         UUID noAdvisoryId = UUID.randomUUID();
@@ -335,6 +380,24 @@ public class AdvisoryServiceTest {
         assertEquals(1, advisoryService.getDocumentCount(), "the comment and answer and their audit trails should also be deleted");
     }
 
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR})
+    public void deleteAdvisoryTest_keepsCommentsOfOtherAdvisories() throws IOException, DatabaseException, CsafException {
+        IdAndRevision idRevAdvisory = advisoryService.addAdvisory(csafToRequest(csafJson));
+        IdAndRevision idRevOther = advisoryService.addAdvisory(csafToRequest(csafJson));
+        for (int i = 0; i < 3; i++) {
+            IdAndRevision idRevComment = advisoryService.addComment(idRevAdvisory.getId(),
+                    new CreateCommentRequest("comment " + i, UUID.randomUUID().toString()));
+            advisoryService.addAnswer(idRevAdvisory.getId(), idRevComment.getId(), answerText);
+        }
+        advisoryService.addComment(idRevOther.getId(), new CreateCommentRequest("other", UUID.randomUUID().toString()));
+
+        assertEquals(19, advisoryService.getDocumentCount(), "1 counter, 2 advisories, 7 comments and answers each with an audit trail");
+        this.advisoryService.deleteAdvisory(idRevAdvisory.getId(), idRevAdvisory.getRevision());
+        assertEquals(5, advisoryService.getDocumentCount(), "the other advisory and its comment should be kept");
+        assertEquals(1, advisoryService.getComments(idRevOther.getId()).size());
+    }
+
 
     @Test
     @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR})
@@ -388,8 +451,10 @@ public class AdvisoryServiceTest {
         assertThat(CHANGE_TYPE.stringVal(auditTrails.get(1)), equalTo(ChangeType.Update.name()));
         // recreate Advisory from diffs
         AdvisoryWrapper rootWrapper = AdvisoryWrapper.createNewFromCsaf(csafToRequest(AdvisoryWrapper.emptyCsafDocument), "", Semantic.name());
-        JsonNode patch0 = auditTrails.get(0).get(DIFF.getDbName());
-        AdvisoryWrapper node1 = rootWrapper.applyJsonPatch(patch0);
+        // the creation is stored as snapshot instead of a diff
+        assertThat(auditTrails.get(0).get(DIFF.getDbName()), is(nullValue()));
+        assertThat(auditTrails.get(0).get(SNAPSHOT.getDbName()), is(notNullValue()));
+        AdvisoryWrapper node1 = AdvisoryAuditTrailDiffWrapper.createFromCouchDb((ObjectNode) auditTrails.get(0)).applyTo(rootWrapper);
         assertThat(node1.at(AdvisorySearchField.DOCUMENT_TITLE).asString(), equalTo("Title1"));
         AdvisoryWrapper node2 = node1.applyJsonPatch(auditTrails.get(1).get(DIFF.getDbName()));
         assertThat(node2.at(AdvisorySearchField.DOCUMENT_TITLE).asString(), equalTo("Title2"));
@@ -399,10 +464,226 @@ public class AdvisoryServiceTest {
         assertThat(node4.at(AdvisorySearchField.DOCUMENT_TITLE).asString(), equalTo("Title4"));
     }
 
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR, CsafRoles.ROLE_AUDITOR})
+    public void updateAdvisoryTest_coalesced() throws IOException, DatabaseException, CsafException {
+
+        CsafConfiguration configuration = (CsafConfiguration) ReflectionTestUtils.getField(advisoryService, "configuration");
+        configuration.setAuditTrail(new CsafAuditTrailConfiguration().setCoalesceWindow(300));
+        try {
+            var idRev = advisoryService.addAdvisory(csafToRequest(csafDocumentJson("Category1", "Title1")));
+            var revision = advisoryService.updateAdvisory(idRev.getId(), idRev.getRevision(), csafToRequest(csafDocumentJson("Category2", "Title2")));
+            revision = advisoryService.updateAdvisory(idRev.getId(), revision, csafToRequest(csafDocumentJson("Category3", "Title3")));
+            advisoryService.updateAdvisory(idRev.getId(), revision, csafToRequest(csafDocumentJson("Category4", "Title4")));
+
+            // the creation and one entry for the three updates
+            List<JsonNode> auditTrails = readAllAuditTrailDocumentsFromDb();
+            assertEquals(2, auditTrails.size());
+            auditTrails.sort(comparing(CREATED_AT::stringVal));
+            AdvisoryAuditTrailDiffWrapper updates = AdvisoryAuditTrailDiffWrapper.createFromCouchDb((ObjectNode) auditTrails.get(1));
+            assertThat(updates.getChangeCount(), equalTo(3));
+            AdvisoryWrapper rootWrapper = AdvisoryWrapper.createNewFromCsaf(csafToRequest(AdvisoryWrapper.emptyCsafDocument), "", Semantic.name());
+            AdvisoryWrapper created = AdvisoryAuditTrailDiffWrapper.createFromCouchDb((ObjectNode) auditTrails.get(0)).applyTo(rootWrapper);
+            assertThat(updates.applyTo(created).at(AdvisorySearchField.DOCUMENT_TITLE).asString(), equalTo("Title4"));
+
+            AdvisoryHistoryResponse latest = advisoryService.getAdvisoryHistory(idRev.getId(), null, null);
+            assertEquals("Title4", latest.getCsaf().at("/document/title").asString());
+        } finally {
+            configuration.setAuditTrail(null);
+        }
+    }
+
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR})
+    public void saveDraftTest() throws IOException, DatabaseException, CsafException {
+
+        var idRev = advisoryService.addAdvisory(csafToRequest(csafDocumentJson("Category1", "Title1")));
+        String draftRevision = advisoryService.saveDraft(idRev.getId(), null, csafToRequest(csafDocumentJson("Category2", "Title2")));
+        draftRevision = advisoryService.saveDraft(idRev.getId(), draftRevision, csafToRequest(csafDocumentJson("Category3", "Title3")));
+
+        // the autosaves neither change the advisory nor create audit trail entries
+        assertEquals(1, readAllAuditTrailDocumentsFromDb().size());
+        assertEquals("Title1", advisoryService.getAdvisory(idRev.getId()).getCsaf().at("/document/title").asString());
+        AdvisoryDraftResponse draft = advisoryService.getDraft(idRev.getId());
+        assertEquals(draftRevision, draft.getRevision());
+        assertEquals("Title3", draft.getCsaf().at("/document/title").asString());
+
+        String finalDraftRevision = draftRevision;
+        assertThrows(IdNotFoundException.class, () -> advisoryService.saveDraft(idRev.getId(), null,
+                csafToRequest(csafDocumentJson("Category4", "Title4"))));
+        assertThrows(DatabaseException.class, () -> advisoryService.saveDraft(idRev.getId(), "1-invalid",
+                csafToRequest(csafDocumentJson("Category4", "Title4"))));
+
+        advisoryService.commitDraft(idRev.getId(), idRev.getRevision(), "Autosaved changes");
+
+        assertEquals(2, readAllAuditTrailDocumentsFromDb().size());
+        AdvisoryResponse committed = advisoryService.getAdvisory(idRev.getId());
+        assertEquals("Title3", committed.getCsaf().at("/document/title").asString());
+        JsonNode revisionHistory = committed.getCsaf().at("/document/tracking/revision_history");
+        assertEquals("Autosaved changes", revisionHistory.get(revisionHistory.size() - 1).at("/summary").asString());
+        CsafException noDraft = assertThrows(CsafException.class, () -> advisoryService.getDraft(idRev.getId()));
+        assertEquals(CsafExceptionKey.DraftNotFound, noDraft.getExceptionKey());
+        assertThrows(DatabaseException.class, () -> advisoryService.discardDraft(idRev.getId(), finalDraftRevision));
+    }
+
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR})
+    public void saveDraftTest_accessDenied() throws IOException, CsafException {
+
+        var idRev = advisoryService.addAdvisory(csafToRequest(csafDocumentJson("Category1", "Title1")));
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        SwitchUserGrantedAuthority registeredAuthority = new SwitchUserGrantedAuthority(CsafRoles.ROLE_AUTHOR, auth);
+        SecurityContextHolder.getContext().setAuthentication(
+                new TestingAuthenticationToken("author2", null, Collections.singletonList(registeredAuthority)));
+
+        CsafException exception = assertThrows(CsafException.class, () -> advisoryService.saveDraft(idRev.getId(), null,
+                csafToRequest(csafDocumentJson("Category2", "Title2"))));
+        assertEquals(CsafExceptionKey.NoPermissionForAdvisory, exception.getExceptionKey());
+    }
+
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR})
+    public void getAdvisoryHistoryTest_accessDenied() throws IOException, CsafException {
+
+        var idRev = advisoryService.addAdvisory(csafToRequest(csafDocumentJson("Category1", "Title1")));
+        // the owner may view the advisory, but not its history
+        assertThrows(AccessDeniedException.class, () -> advisoryService.getAdvisoryHistory(idRev.getId(), null, null));
+    }
+
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR, CsafRoles.ROLE_AUDITOR})
+    public void getAdvisoryHistoryTest() throws IOException, DatabaseException, CsafException {
+
+        CsafConfiguration configuration = (CsafConfiguration) ReflectionTestUtils.getField(advisoryService, "configuration");
+        configuration.setAuditTrail(new CsafAuditTrailConfiguration().setCheckpointInterval(2));
+        try {
+            var idRev = advisoryService.addAdvisory(csafToRequest(csafDocumentJson("Category1", "Title1")));
+            var revision = advisoryService.updateAdvisory(idRev.getId(), idRev.getRevision(), csafToRequest(csafDocumentJson("Category2", "Title2")));
+            revision = advisoryService.updateAdvisory(idRev.getId(), revision, csafToRequest(csafDocumentJson("Category3", "Title3")));
+            advisoryService.updateAdvisory(idRev.getId(), revision, csafToRequest(csafDocumentJson("Category4", "Title4")));
+
+            List<JsonNode> auditTrails = advisoryService.findDocuments(
+                    expr2CouchDBFilter(equal(ObjectType.AuditTrailDocument.name(), TYPE_FIELD.getDbName())),
+                    List.of(CouchDbField.ID_FIELD, CREATED_AT, CHECKPOINT));
+            auditTrails.sort(comparing(CREATED_AT::stringVal));
+            // the creation and every second update hold a snapshot
+            assertThat(auditTrails.stream().map(entry -> entry.path(CHECKPOINT.getDbName()).asBoolean(false)).toList(),
+                    contains(true, false, true, false));
+
+            for (int i = 0; i < auditTrails.size(); i++) {
+                String auditTrailId = CouchDbField.ID_FIELD.stringVal(auditTrails.get(i));
+                AdvisoryHistoryResponse history = advisoryService.getAdvisoryHistory(idRev.getId(), auditTrailId, null);
+                assertEquals(auditTrailId, history.getAuditTrailId());
+                assertEquals("Title" + (i + 1), history.getCsaf().at("/document/title").asString());
+            }
+
+            AdvisoryHistoryResponse latest = advisoryService.getAdvisoryHistory(idRev.getId(), null, null);
+            assertEquals("Title4", latest.getCsaf().at("/document/title").asString());
+            AdvisoryHistoryResponse atCreation = advisoryService.getAdvisoryHistory(idRev.getId(), null,
+                    CREATED_AT.stringVal(auditTrails.get(0)));
+            assertEquals("Title1", atCreation.getCsaf().at("/document/title").asString());
+
+            CsafException beforeCreation = assertThrows(CsafException.class,
+                    () -> advisoryService.getAdvisoryHistory(idRev.getId(), null, "2000-01-01T00:00:00Z"));
+            assertEquals(CsafExceptionKey.AuditTrailNotFound, beforeCreation.getExceptionKey());
+            CsafException invalidTimestamp = assertThrows(CsafException.class,
+                    () -> advisoryService.getAdvisoryHistory(idRev.getId(), null, "yesterday"));
+            assertEquals(CsafExceptionKey.InvalidDateTimeFormat, invalidTimestamp.getExceptionKey());
+        } finally {
+            configuration.setAuditTrail(null);
+        }
+    }
+
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR, CsafRoles.ROLE_AUDITOR})
+    public void getAuditTrailTest() throws IOException, DatabaseException, CsafException {
+
+        var idRev = advisoryService.addAdvisory(csafToRequest(csafDocumentJson("Category1", "Title1")));
+        var revision = advisoryService.updateAdvisory(idRev.getId(), idRev.getRevision(), csafToRequest(csafDocumentJson("Category2", "Title2")));
+        advisoryService.updateAdvisory(idRev.getId(), revision, csafToRequest(csafDocumentJson("Category3", "Title3")));
+        advisoryService.addAdvisory(csafToRequest(csafDocumentJson("Category4", "Title4")));
+
+        AuditTrailPageResponse firstPage = advisoryService.getAuditTrail(new AuditTrailQuery()
+                .setAdvisoryId(idRev.getId()).setLimit(2));
+        assertThat(firstPage.getEntries().size(), equalTo(2));
+        assertThat(firstPage.getEntries().get(0).getChangeType(), equalTo(ChangeType.Update.name()));
+        assertThat(firstPage.getEntries().get(0).getDiff(), nullValue());
+        assertThat(firstPage.getBookmark(), notNullValue());
+        AuditTrailPageResponse secondPage = advisoryService.getAuditTrail(new AuditTrailQuery()
+                .setAdvisoryId(idRev.getId()).setLimit(2).setBookmark(firstPage.getBookmark()));
+        assertThat(secondPage.getEntries().size(), equalTo(1));
+        assertThat(secondPage.getEntries().get(0).getChangeType(), equalTo(ChangeType.Create.name()));
+        assertThat(secondPage.getBookmark(), nullValue());
+
+        AuditTrailPageResponse created = advisoryService.getAuditTrail(new AuditTrailQuery()
+                .setChangeType(ChangeType.Create.name()).setUser("author1").setIncludeDiff(true));
+        assertThat(created.getEntries().size(), equalTo(2));
+        assertThat(created.getEntries().get(0).getDiff(), notNullValue());
+
+        String createdAt = created.getEntries().get(1).getCreatedAt();
+        AuditTrailPageResponse untilFirstCreation = advisoryService.getAuditTrail(new AuditTrailQuery()
+                .setChangeType(ChangeType.Create.name()).setTo(createdAt));
+        assertThat(untilFirstCreation.getEntries().size(), equalTo(1));
+
+        CsafException invalidTimestamp = assertThrows(CsafException.class,
+                () -> advisoryService.getAuditTrail(new AuditTrailQuery().setFrom("yesterday")));
+        assertEquals(CsafExceptionKey.InvalidDateTimeFormat, invalidTimestamp.getExceptionKey());
+    }
+
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR, CsafRoles.ROLE_AUDITOR})
+    public void getAuditTrailTest_continuesWithArchive() throws IOException, CsafException {
+
+        var idRev = advisoryService.addAdvisory(csafToRequest(csafDocumentJson("Category1", "Title1")));
+        AuditTrailQuery query = new AuditTrailQuery().setAdvisoryId(idRev.getId()).setLimit(3);
+        String inDatabaseId = advisoryService.getAuditTrail(query).getEntries().get(0).getAuditTrailId();
+
+        AuditTrailArchive archive = (AuditTrailArchive) ReflectionTestUtils.getField(advisoryService, "auditTrailArchive");
+        AuditTrailArchive archiveMock = Mockito.mock(AuditTrailArchive.class);
+        ReflectionTestUtils.setField(advisoryService, "auditTrailArchive", archiveMock);
+        try {
+            when(archiveMock.isEnabled()).thenReturn(true);
+            // an interrupted archiving left the entry in the database
+            when(archiveMock.findEntries(any(AuditTrailQuery.class), Mockito.isNull(), Mockito.eq(2)))
+                    .thenReturn(new AuditTrailArchive.ArchivePage(List.of(archivedEntry(inDatabaseId, idRev.getId()),
+                            archivedEntry("archived-1", idRev.getId())),
+                            new AuditTrailArchive.ArchivePosition("2024-01", 1)));
+            AuditTrailPageResponse firstPage = advisoryService.getAuditTrail(query);
+            assertThat(firstPage.getEntries().stream().map(AuditTrailEntryResponse::getAuditTrailId).toList(),
+                    contains(inDatabaseId, "archived-1"));
+            assertThat(firstPage.getBookmark(), equalTo("archive:2024-01:1"));
+
+            when(archiveMock.findEntries(any(AuditTrailQuery.class),
+                    Mockito.eq(new AuditTrailArchive.ArchivePosition("2024-01", 1)), Mockito.eq(3)))
+                    .thenReturn(new AuditTrailArchive.ArchivePage(List.of(archivedEntry("archived-2", idRev.getId())),
+                            null));
+            AuditTrailPageResponse secondPage = advisoryService.getAuditTrail(query.setBookmark(firstPage.getBookmark()));
+            assertThat(secondPage.getEntries().stream().map(AuditTrailEntryResponse::getAuditTrailId).toList(),
+                    contains("archived-2"));
+            assertThat(secondPage.getBookmark(), nullValue());
+
+            assertThrows(CsafException.class, () -> advisoryService.getAuditTrail(query.setBookmark("archive:20")));
+        } finally {
+            ReflectionTestUtils.setField(advisoryService, "auditTrailArchive", archive);
+        }
+    }
+
+    private static ObjectNode archivedEntry(String id, String advisoryId) {
+
+        ObjectNode entry = new JsonMapper().createObjectNode();
+        entry.put("_id", id);
+        entry.put("type", ObjectType.AuditTrailDocument.name());
+        entry.put("advisoryId", advisoryId);
+        entry.put("createdAt", "2024-01-10T10:00:00Z");
+        entry.put("user", "Mustermann");
+        entry.put("changeType", ChangeType.Update.name());
+        return entry;
+    }
+
     private List<JsonNode> readAllAuditTrailDocumentsFromDb() throws IOException {
 
         Collection<DbField> fields = Arrays.asList(CouchDbField.ID_FIELD, ADVISORY_ID, CREATED_AT,
-                CHANGE_TYPE, DIFF, DOC_VERSION);
+                CHANGE_TYPE, DIFF, DIFF_COMPRESSED, SNAPSHOT, SNAPSHOT_COMPRESSED, DOC_VERSION, CHANGE_COUNT);
         Map<String, Object> selector = expr2CouchDBFilter(equal(ObjectType.AuditTrailDocument.name(), TYPE_FIELD.getDbName()));
         return advisoryService.findDocuments(selector, fields);
     }
@@ -705,6 +986,71 @@ public class AdvisoryServiceTest {
         }
     }
 
+    @Test
+    @WithMockUser(username = "editor1", authorities = {CsafRoles.ROLE_AUTHOR, CsafRoles.ROLE_EDITOR, CsafRoles.ROLE_REVIEWER, CsafRoles.ROLE_PUBLISHER})
+    public void getAdvisoriesDueForPublicationTest() throws IOException, DatabaseException, CsafException {
+
+        try (final MockedStatic<ValidatorServiceClient> validatorMock = Mockito.mockStatic(ValidatorServiceClient.class)) {
+
+            validatorMock.when(() -> ValidatorServiceClient.isAdvisoryValid(any(), any())).thenReturn(Boolean.TRUE);
+
+            IdAndRevision dueIdRev = advisoryService.addAdvisory(csafToRequest(csafJson));
+            String revision = advisoryService.changeAdvisoryWorkflowState(dueIdRev.getId(), dueIdRev.getRevision(), WorkflowState.Review, null, null);
+            revision = advisoryService.changeAdvisoryWorkflowState(dueIdRev.getId(), revision, WorkflowState.Approved, null, null);
+            revision = advisoryService.changeAdvisoryWorkflowState(dueIdRev.getId(), revision, WorkflowState.RfPublication, null, null);
+            String publishTime = DateTimeFormatter.ISO_INSTANT.format(Instant.now().minus(1, ChronoUnit.MINUTES));
+            advisoryService.changeAdvisoryWorkflowState(dueIdRev.getId(), revision, WorkflowState.AutoPublish, publishTime, null);
+
+            IdAndRevision draftIdRev = advisoryService.addAdvisory(csafToRequest(csafJson));
+
+            PublicationCandidates candidates = advisoryService.getAdvisoriesDueForPublication();
+
+            List<String> dueIds = candidates.getAdvisories().stream().map(AdvisoryInformationResponse::getAdvisoryId).toList();
+            assertThat(dueIds, hasItem(dueIdRev.getId()));
+            assertThat(dueIds, not(hasItem(draftIdRev.getId())));
+            AdvisoryInformationResponse due = candidates.getAdvisories().stream()
+                    .filter(advisory -> advisory.getAdvisoryId().equals(dueIdRev.getId()))
+                    .findFirst().orElseThrow();
+            assertThat(due.getWorkflowState(), equalTo(WorkflowState.AutoPublish));
+            assertThat(due.getRevision(), notNullValue());
+            assertThat(due.getCurrentReleaseDate(), notNullValue());
+        }
+    }
+
+    @Test
+    @WithMockUser(username = "editor1", authorities = {CsafRoles.ROLE_AUTHOR, CsafRoles.ROLE_EDITOR, CsafRoles.ROLE_REVIEWER, CsafRoles.ROLE_PUBLISHER})
+    public void getAdvisoriesDueForPublicationTest_releaseDateWithOffset() throws IOException, DatabaseException, CsafException {
+
+        try (final MockedStatic<ValidatorServiceClient> validatorMock = Mockito.mockStatic(ValidatorServiceClient.class)) {
+
+            validatorMock.when(() -> ValidatorServiceClient.isAdvisoryValid(any(), any())).thenReturn(Boolean.TRUE);
+
+            // the local time is before now, but the release date is in the future
+            String notDue = DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(
+                    OffsetDateTime.now(ZoneOffset.ofHours(-5)).plusMinutes(1).truncatedTo(ChronoUnit.SECONDS));
+            // the local time is after now, but the release date is in the past
+            String due = DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(
+                    OffsetDateTime.now(ZoneOffset.ofHours(5)).minusMinutes(1).truncatedTo(ChronoUnit.SECONDS));
+            String notDueId = createAutoPublishAdvisory(notDue);
+            String dueId = createAutoPublishAdvisory(due);
+
+            List<String> dueIds = advisoryService.getAdvisoriesDueForPublication().getAdvisories().stream()
+                    .map(AdvisoryInformationResponse::getAdvisoryId).toList();
+            assertThat(dueIds, hasItem(dueId));
+            assertThat(dueIds, not(hasItem(notDueId)));
+        }
+    }
+
+    private String createAutoPublishAdvisory(String releaseDate) throws IOException, DatabaseException, CsafException {
+
+        IdAndRevision idRev = advisoryService.addAdvisory(csafToRequest(csafJson));
+        String revision = advisoryService.changeAdvisoryWorkflowState(idRev.getId(), idRev.getRevision(), WorkflowState.Review, null, null);
+        revision = advisoryService.changeAdvisoryWorkflowState(idRev.getId(), revision, WorkflowState.Approved, null, null);
+        revision = advisoryService.changeAdvisoryWorkflowState(idRev.getId(), revision, WorkflowState.RfPublication, null, null);
+        advisoryService.changeAdvisoryWorkflowState(idRev.getId(), revision, WorkflowState.AutoPublish, releaseDate, null);
+        return idRev.getId();
+    }
+
     @Test
     @WithMockUser(username = "editor1", authorities = {CsafRoles.ROLE_AUTHOR, CsafRoles.ROLE_EDITOR, CsafRoles.ROLE_REVIEWER, CsafRoles.ROLE_PUBLISHER})
     @SuppressFBWarnings(value = "RCN_REDUNDANT_NULLCHECK_WOULD_HAVE_BEEN_A_NPE",
@@ -763,6 +1109,58 @@ public class AdvisoryServiceTest {
         }
     }
 
+    @Test
+    @WithMockUser(username = "editor1", authorities = {CsafRoles.ROLE_AUTHOR, CsafRoles.ROLE_EDITOR, CsafRoles.ROLE_REVIEWER, CsafRoles.ROLE_PUBLISHER})
+    @SuppressFBWarnings(value = "RCN_REDUNDANT_NULLCHECK_WOULD_HAVE_BEEN_A_NPE",
+            justification = "Bug in SpotBugs: https://github.com/spotbugs/spotbugs/issues/1338")
+    public void createNewCsafDocumentVersionTest_sharedSubtrees() throws IOException, DatabaseException, CsafException {
+
+        var csafWithSubtrees = """
+                {
+                    "document": {
+                        "category": "CSAF_BASE",
+                        "distribution": {
+                            "tlp": {
+                                "label": "WHITE"
+                            }
+                        },
+                        "id": "a-1"
+                    },
+                    "product_tree": { "branches": [ { "name": "Product" } ] },
+                    "vulnerabilities": [ { "title": "first" }, { "title": "second" } ]
+                }""";
+
+        CsafConfiguration configuration = (CsafConfiguration) ReflectionTestUtils.getField(advisoryService, "configuration");
+        configuration.getVersioning().setSharedSubtrees(true);
+        try (final MockedStatic<ValidatorServiceClient> validatorMock = Mockito.mockStatic(ValidatorServiceClient.class)) {
+
+            validatorMock.when(() -> ValidatorServiceClient.isAdvisoryValid(any(), any())).thenReturn(Boolean.TRUE);
+
+            IdAndRevision idRev = advisoryService.addAdvisory(csafToRequest(csafWithSubtrees));
+            String revision = idRev.getRevision();
+            for (int i = 0; i < 2; i++) {
+                revision = advisoryService.changeAdvisoryWorkflowState(idRev.getId(), revision, WorkflowState.Review, null, null);
+                revision = advisoryService.changeAdvisoryWorkflowState(idRev.getId(), revision, WorkflowState.Approved, null, null);
+                revision = advisoryService.changeAdvisoryWorkflowState(idRev.getId(), revision, WorkflowState.RfPublication, null, null);
+                revision = advisoryService.changeAdvisoryWorkflowState(idRev.getId(), revision, WorkflowState.Published, null, null);
+                revision = advisoryService.createNewCsafDocumentVersion(idRev.getId(), revision);
+            }
+
+            Map<String, Object> blobSelector = expr2CouchDBFilter(equal(ObjectType.AdvisoryBlob.name(), TYPE_FIELD.getDbName()));
+            assertEquals(3, advisoryService.findDocuments(blobSelector, List.of(CouchDbField.ID_FIELD)).size(),
+                    "the unchanged subtrees of both versions should be stored only once");
+
+            Map<String, Object> versionSelector = expr2CouchDBFilter(equal(ObjectType.AdvisoryVersion.name(), TYPE_FIELD.getDbName()));
+            List<JsonNode> versions = advisoryService.findDocuments(versionSelector, List.of(CouchDbField.ID_FIELD));
+            assertEquals(2, versions.size());
+            AdvisoryResponse version = advisoryService.getAdvisory(versions.get(0).get(CouchDbField.ID_FIELD.getDbName()).asString());
+            assertEquals("Product", version.getCsaf().at("/product_tree/branches/0/name").asString());
+            assertEquals("second", version.getCsaf().at("/vulnerabilities/1/title").asString());
+        } finally {
+            configuration.getVersioning().setSharedSubtrees(false);
+        }
+    }
+
     @Test
     @WithMockUser(username = "editor1", authorities = {CsafRoles.ROLE_AUTHOR, CsafRoles.ROLE_EDITOR, CsafRoles.ROLE_REVIEWER, CsafRoles.ROLE_PUBLISHER})
     @SuppressFBWarnings(value = "RCN_REDUNDANT_NULLCHECK_WOULD_HAVE_BEEN_A_NPE",
@@ -1095,6 +1493,31 @@ public class AdvisoryServiceTest {
         Assertions.assertEquals(idRevAnswer.getId(), answers.get(0).getAnswerId());
     }
 
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR})
+    public void getCommentThreadsTest() throws IOException, DatabaseException, CsafException {
+
+        IdAndRevision idRevAdvisory = advisoryService.addAdvisory(csafToRequest(csafJson));
+        String nodeId = UUID.randomUUID().toString();
+        IdAndRevision idRevComment1 = advisoryService.addComment(idRevAdvisory.getId(),
+                new CreateCommentRequest("comment 1", nodeId));
+        IdAndRevision idRevComment2 = advisoryService.addComment(idRevAdvisory.getId(),
+                new CreateCommentRequest("comment 2", nodeId));
+        IdAndRevision idRevAnswer = advisoryService.addAnswer(idRevAdvisory.getId(), idRevComment1.getId(), answerText);
+        IdAndRevision idRevOtherAdvisory = advisoryService.addAdvisory(csafToRequest(csafJson));
+        advisoryService.addComment(idRevOtherAdvisory.getId(), new CreateCommentRequest("other", nodeId));
+
+        CommentThreadsResponse threads = advisoryService.getCommentThreads(idRevAdvisory.getId());
+
+        Assertions.assertEquals(2, threads.getThreads().size());
+        Map<String, CommentThreadResponse> threadsById = threads.getThreads().stream()
+                .collect(Collectors.toMap(thread -> thread.getComment().getCommentId(), thread -> thread));
+        Assertions.assertEquals(List.of(idRevAnswer.getId()), threadsById.get(idRevComment1.getId()).getAnswers()
+                .stream().map(AnswerInformationResponse::getAnswerId).toList());
+        Assertions.assertTrue(threadsById.get(idRevComment2.getId()).getAnswers().isEmpty());
+        Assertions.assertEquals(Map.of(nodeId, 3), threads.getCountByCsafNodeId());
+    }
+
     @Test
     @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR})
     public void getAnswersTest_accessDeniedException() throws IOException, DatabaseException, CsafException {
@@ -0,0 +1,138 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles.Role.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.ChangedDocuments;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DatabaseException;
+import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
+import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
+
+public class AdvisoryTextIndexTest {
+
+    private static final Authentication EDITOR_USER = new TestingAuthenticationToken("Jane", null, EDITOR.getRoleName());
+
+    private CouchDbService couchDbService;
+    private AdvisoryTextIndex index;
+
+    @BeforeEach
+    void setUp() throws DatabaseException {
+        this.couchDbService = mock(CouchDbService.class);
+        AdvisoryFeed advisoryFeed = new AdvisoryFeed();
+        ReflectionTestUtils.setField(advisoryFeed, "couchDbService", this.couchDbService);
+        this.index = new AdvisoryTextIndex();
+        ReflectionTestUtils.setField(this.index, "advisoryFeed", advisoryFeed);
+        this.index.registerAtFeed();
+        returnChanges("0", List.of(
+                advisory("advisory-1", "John", WorkflowState.Draft, "OpenSSL buffer overflow",
+                        "A buffer overflow in OpenSSL allows remote code execution."),
+                advisory("advisory-2", "John", WorkflowState.Draft, "Kernel update",
+                        "The kernel update fixes a buffer overflow and CVE-2024-1234."),
+                advisory("advisory-3", "Jack", WorkflowState.Review, "Browser update",
+                        "Remote attackers may execute code.")), Set.of(), "3-a");
+    }
+
+    @Test
+    void search_ranksTitleMatchesFirst() {
+
+        assertThat(idsOf(this.index.search("buffer overflow", EDITOR_USER, 10)), contains("advisory-1", "advisory-2"));
+        assertThat(this.index.size(), equalTo(3));
+    }
+
+    @Test
+    void search_requiresAllTerms() {
+
+        assertThat(idsOf(this.index.search("overflow kernel", EDITOR_USER, 10)), contains("advisory-2"));
+        assertThat(this.index.search("overflow browser", EDITOR_USER, 10), empty());
+    }
+
+    @Test
+    void search_matchesPrefixes() {
+
+        assertThat(idsOf(this.index.search("exec*", EDITOR_USER, 10)), contains("advisory-1", "advisory-3"));
+        assertThat(this.index.search("exec", EDITOR_USER, 10), empty());
+    }
+
+    @Test
+    void search_matchesPhrases() {
+
+        assertThat(idsOf(this.index.search("\"remote code\"", EDITOR_USER, 10)), contains("advisory-1"));
+        assertThat(idsOf(this.index.search("CVE-2024-1234", EDITOR_USER, 10)), contains("advisory-2"));
+        assertThat(this.index.search("CVE-2024-4321", EDITOR_USER, 10), empty());
+    }
+
+    @Test
+    void search_returnsOnlyVisibleAdvisories() {
+
+        Authentication author = new TestingAuthenticationToken("Jack", null, AUTHOR.getRoleName());
+
+        assertThat(idsOf(this.index.search("remote", author, 10)), contains("advisory-3"));
+    }
+
+    @Test
+    void search_appliesChangesOfTheFeed() throws DatabaseException {
+
+        assertThat(this.index.search("kernel", EDITOR_USER, 10).get(0).score(), greaterThan(0.0));
+        returnChanges("3-a", List.of(advisory("advisory-2", "John", WorkflowState.Draft, "Kernel update",
+                "Fixes a use after free.")), Set.of("advisory-1"), "5-a");
+
+        assertThat(this.index.search("overflow", EDITOR_USER, 10), empty());
+        assertThat(idsOf(this.index.search("free", EDITOR_USER, 10)), contains("advisory-2"));
+        assertThat(this.index.size(), equalTo(2));
+    }
+
+    @Test
+    void parse_splitsQueryIntoClauses() {
+
+        assertThat(AdvisoryTextIndex.parse("\"Remote Code\" exec* CVE-2024-1234 ;"), contains(
+                new AdvisoryTextIndex.Clause(List.of("remote", "code"), false),
+                new AdvisoryTextIndex.Clause(List.of("exec"), true),
+                new AdvisoryTextIndex.Clause(List.of("cve", "2024", "1234"), false)));
+    }
+
+    private void returnChanges(String since, List<JsonNode> documents, Set<String> deletedIds, String lastSeq)
+            throws DatabaseException {
+
+        when(this.couchDbService.findChangedDocuments(eq(since), anyMap(), anyInt()))
+                .thenReturn(new ChangedDocuments(documents, deletedIds, lastSeq, true));
+        when(this.couchDbService.findChangedDocuments(eq(lastSeq), anyMap(), anyInt()))
+                .thenReturn(new ChangedDocuments(List.of(), Set.of(), lastSeq, true));
+    }
+
+    private static JsonNode advisory(String id, String owner, WorkflowState state, String title, String details) {
+
+        ObjectNode advisory = new JsonMapper().createObjectNode();
+        advisory.put("_id", id);
+        advisory.put("type", ObjectType.Advisory.name());
+        advisory.put("owner", owner);
+        advisory.put("workflowState", state.name());
+        ObjectNode document = advisory.putObject("csaf").putObject("document");
+        document.put("title", title);
+        document.putArray("notes").addObject().put("$nodeId", "node-1").put("text", details);
+        return advisory;
+    }
+
+    private static List<String> idsOf(List<AdvisoryTextIndex.Hit> hits) {
+        return hits.stream().map(AdvisoryTextIndex.Hit::advisoryId).toList();
+    }
+}
@@ -5,6 +5,7 @@ import static de.bsi.secvisogram.csaf_cms_backend.fixture.CsafDocumentJsonCreato
 import static de.bsi.secvisogram.csaf_cms_backend.json.VersioningType.Semantic;
 import static de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState.*;
 import static de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryWorkflowUtil.isSpellingMistake;
+import static de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryWorkflowUtil.parseTimestamp;
 import static de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryWorkflowUtil.timestampIsBefore;
 import static java.lang.Boolean.FALSE;
 import static java.lang.Boolean.TRUE;
@@ -22,6 +23,7 @@ import java.io.IOException;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
+import java.util.Optional;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -895,6 +897,18 @@ public class AdvisoryWorkflowUtilTest {
 
     }
 
+    @Test
+    public void parseTimestampTest() {
+
+        assertThat(parseTimestamp("2024-01-01T10:00:00.000Z"), is(Optional.of(Instant.parse("2024-01-01T10:00:00Z"))));
+        assertThat(parseTimestamp("2024-01-01T09:00:00-05:00"), is(Optional.of(Instant.parse("2024-01-01T14:00:00Z"))));
+        assertThat(parseTimestamp("2024-01-01T10:00:00+02:00"), is(Optional.of(Instant.parse("2024-01-01T08:00:00Z"))));
+        assertThat(parseTimestamp("2024-01-01T10:00:00"), is(Optional.of(Instant.parse("2024-01-01T10:00:00Z"))));
+        assertThat(parseTimestamp(""), is(Optional.empty()));
+        assertThat(parseTimestamp(null), is(Optional.empty()));
+        assertThat(parseTimestamp("not a date"), is(Optional.empty()));
+    }
+
     @ParameterizedTest()
     @MethodSource("timestampArgs")
     public void timestampIsBeforeTest(String timestamp1, String timestamp2, Boolean expectedResult) {
@@ -0,0 +1,213 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafAuditTrailConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.ObjectNode;
+
+public class AuditTrailArchiveTest {
+
+    private static final String ADVISORY_1 = "advisory-1";
+    private static final String ADVISORY_2 = "advisory-2";
+
+    @TempDir
+    Path archiveDirectory;
+
+    private CouchDbService couchDbService;
+    private CsafConfiguration configuration;
+    private AuditTrailArchive archive;
+
+    @BeforeEach
+    void setUp() {
+        this.couchDbService = mock(CouchDbService.class);
+        this.configuration = new CsafConfiguration()
+                .setAuditTrail(new CsafAuditTrailConfiguration().setArchiveDirectory(this.archiveDirectory.toString()));
+        this.archive = new AuditTrailArchive();
+        ReflectionTestUtils.setField(this.archive, "couchDbService", this.couchDbService);
+        ReflectionTestUtils.setField(this.archive, "configuration", this.configuration);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void archiveEntriesCreatedBefore_writesMonthFilesAndDeletesEntries() throws Exception {
+
+        returnDocumentEntries(List.of(
+                entry("entry-1", ADVISORY_1, "2024-01-10T10:00:00Z", "Create"),
+                entry("entry-2", ADVISORY_1, "2024-02-10T10:00:00Z", "Update"),
+                entry("entry-3", ADVISORY_2, "2024-02-11T10:00:00Z", "Update")));
+
+        int archived = this.archive.archiveEntriesCreatedBefore(Instant.parse("2025-01-01T00:00:00Z"));
+
+        assertThat(archived, equalTo(3));
+        assertThat(Files.exists(this.archiveDirectory.resolve("audit-trail-2024-01.ndjson.gz")), is(true));
+        assertThat(Files.exists(this.archiveDirectory.resolve("audit-trail-2024-02.ndjson.gz")), is(true));
+        assertThat(Files.readAllLines(this.archiveDirectory.resolve(AuditTrailArchive.INDEX_FILE)).size(), equalTo(2));
+        ArgumentCaptor<Collection<IdAndRevision>> deleted = ArgumentCaptor.forClass(Collection.class);
+        verify(this.couchDbService).bulkDeleteDocuments(deleted.capture());
+        assertThat(deleted.getValue().stream().map(IdAndRevision::getId).toList(),
+                contains("entry-1", "entry-2", "entry-3"));
+
+        List<ObjectNode> entries = this.archive.findEntries(new AuditTrailQuery().setAdvisoryId(ADVISORY_1));
+        assertThat(entries.stream().map(entry -> entry.get("_id").asString()).toList(), contains("entry-2", "entry-1"));
+        assertThat(entries.get(0).has("_rev"), is(false));
+        assertThat(entries.get(0).get("diff").isArray(), is(true));
+    }
+
+    @Test
+    void findEntries_removesEntriesArchivedTwice() throws Exception {
+
+        returnDocumentEntries(List.of(entry("entry-1", ADVISORY_1, "2024-01-10T10:00:00Z", "Create")));
+
+        this.archive.archiveEntriesCreatedBefore(Instant.parse("2025-01-01T00:00:00Z"));
+        // an interrupted run archives the entries again
+        this.archive.archiveEntriesCreatedBefore(Instant.parse("2025-01-01T00:00:00Z"));
+
+        assertThat(this.archive.findEntries(new AuditTrailQuery()).size(), equalTo(1));
+    }
+
+    @Test
+    void archiveEntriesCreatedBefore_cutsOffTornMemberBeforeAppending() throws Exception {
+
+        returnDocumentEntries(List.of(entry("entry-1", ADVISORY_1, "2024-01-10T10:00:00Z", "Create")));
+        this.archive.archiveEntriesCreatedBefore(Instant.parse("2025-01-01T00:00:00Z"));
+        // a crash while appending a member leaves a part of it at the end of the file
+        Path monthFile = this.archiveDirectory.resolve("audit-trail-2024-01.ndjson.gz");
+        byte[] member = gzip("{\"_id\":\"entry-lost\"}\n");
+        Files.write(monthFile, Arrays.copyOf(member, member.length / 2), StandardOpenOption.APPEND);
+
+        assertThat(idsOf(this.archive.findEntries(new AuditTrailQuery())), contains("entry-1"));
+
+        returnDocumentEntries(List.of(entry("entry-2", ADVISORY_1, "2024-01-11T10:00:00Z", "Update")));
+        this.archive.archiveEntriesCreatedBefore(Instant.parse("2025-01-01T00:00:00Z"));
+
+        assertThat(idsOf(this.archive.findEntries(new AuditTrailQuery())), contains("entry-2", "entry-1"));
+    }
+
+    @Test
+    void findEntries_readsPagesFromNewestToOldestMonth() throws Exception {
+
+        returnDocumentEntries(List.of(
+                entry("entry-1", ADVISORY_1, "2024-01-10T10:00:00Z", "Create"),
+                entry("entry-2", ADVISORY_1, "2024-02-10T10:00:00Z", "Update"),
+                entry("entry-3", ADVISORY_1, "2024-02-11T10:00:00Z", "Update"),
+                entry("entry-4", ADVISORY_1, "2024-03-01T10:00:00Z", "Update")));
+        this.archive.archiveEntriesCreatedBefore(Instant.parse("2025-01-01T00:00:00Z"));
+        AuditTrailQuery query = new AuditTrailQuery().setAdvisoryId(ADVISORY_1);
+
+        AuditTrailArchive.ArchivePage firstPage = this.archive.findEntries(query, null, 2);
+        assertThat(idsOf(firstPage.entries()), contains("entry-4", "entry-3"));
+        assertThat(firstPage.next(), equalTo(new AuditTrailArchive.ArchivePosition("2024-02", 1)));
+        AuditTrailArchive.ArchivePage secondPage = this.archive.findEntries(query, firstPage.next(), 2);
+        assertThat(idsOf(secondPage.entries()), contains("entry-2", "entry-1"));
+        assertThat(secondPage.next(), nullValue());
+        AuditTrailArchive.ArchivePage monthEnd = this.archive.findEntries(query, null, 3);
+        assertThat(monthEnd.next(), equalTo(new AuditTrailArchive.ArchivePosition("2024-01", 0)));
+    }
+
+    @Test
+    void findEntries_filtersByTimeUserAndChangeType() throws Exception {
+
+        returnDocumentEntries(List.of(
+                entry("entry-1", ADVISORY_1, "2024-01-10T10:00:00Z", "Create"),
+                entry("entry-2", ADVISORY_1, "2024-02-10T10:00:00Z", "Update"),
+                entry("entry-3", ADVISORY_2, "2024-02-11T10:00:00Z", "Update")));
+        this.archive.archiveEntriesCreatedBefore(Instant.parse("2025-01-01T00:00:00Z"));
+
+        assertThat(idsOf(this.archive.findEntries(new AuditTrailQuery().setFrom("2024-02-01T00:00:00Z"))),
+                contains("entry-3", "entry-2"));
+        assertThat(idsOf(this.archive.findEntries(new AuditTrailQuery().setTo("2024-02-10T10:00:00Z"))),
+                contains("entry-2", "entry-1"));
+        assertThat(idsOf(this.archive.findEntries(new AuditTrailQuery().setChangeType("Create"))),
+                contains("entry-1"));
+        assertThat(this.archive.findEntries(new AuditTrailQuery().setUser("someone else")), empty());
+        assertThat(this.archive.findEntries(new AuditTrailQuery().setType(ObjectType.AuditTrailWorkflow)), empty());
+    }
+
+    @Test
+    void findEntries_isEmptyWithoutArchiveDirectory() throws Exception {
+
+        this.configuration.setAuditTrail(new CsafAuditTrailConfiguration());
+
+        assertThat(this.archive.isEnabled(), is(false));
+        assertThat(this.archive.findEntries(new AuditTrailQuery()), empty());
+    }
+
+    /**
+     * Return the given entries for the query of the document audit trail and no entries for the other types
+     */
+    private void returnDocumentEntries(List<ObjectNode> entries) {
+
+        when(this.couchDbService.findDocumentsPageAsStream(anyMap(), isNull(), anyString(), anyString(), isNull(),
+                anyInt(), isNull())).thenAnswer(invocation -> {
+                    Map<String, Object> selector = invocation.getArgument(0);
+                    ObjectNode result = new JsonMapper().createObjectNode();
+                    ArrayNode docs = result.putArray("docs");
+                    if (ObjectType.AuditTrailDocument.name().equals(selector.get("type"))) {
+                        entries.forEach(docs::add);
+                    }
+                    return new ByteArrayInputStream(result.toString().getBytes(StandardCharsets.UTF_8));
+                });
+    }
+
+    private static ObjectNode entry(String id, String advisoryId, String createdAt, String changeType) {
+
+        ObjectNode entry = new JsonMapper().createObjectNode();
+        entry.put("_id", id);
+        entry.put("_rev", "1-" + id);
+        entry.put("type", ObjectType.AuditTrailDocument.name());
+        entry.put("advisoryId", advisoryId);
+        entry.put("createdAt", createdAt);
+        entry.put("user", "Mustermann");
+        entry.put("changeType", changeType);
+        entry.putArray("diff").addObject().put("op", "replace").put("path", "/csaf/document/title").put("value", id);
+        return entry;
+    }
+
+    private static byte[] gzip(String content) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<String> idsOf(List<ObjectNode> entries) {
+        return entries.stream().map(entry -> entry.get("_id").asString()).toList();
+    }
+}
@@ -0,0 +1,135 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.ibm.cloud.cloudant.v1.model.DocumentResult;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.ChangedDocuments;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.IdNotFoundException;
+import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
+
+public class NormalizedFieldsBackfillTest {
+
+    private CouchDbService couchDbService;
+    private NormalizedFieldsBackfill backfill;
+    private AtomicReference<String> checkpoint;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        this.couchDbService = mock(CouchDbService.class);
+        this.backfill = new NormalizedFieldsBackfill();
+        ReflectionTestUtils.setField(this.backfill, "couchDbService", this.couchDbService);
+        this.checkpoint = storeCheckpointInMock();
+    }
+
+    @Test
+    void backfill_addsNormalizedFieldsToAllPages() throws Exception {
+
+        ObjectNode first = advisory("advisory-1", "Überprüfung");
+        ObjectNode second = advisory("advisory-2", "Second Advisory");
+        when(this.couchDbService.findChangedDocuments(eq("0"), anyMap(), anyInt()))
+                .thenReturn(new ChangedDocuments(List.of(first), Set.of(), "1-a", false));
+        when(this.couchDbService.findChangedDocuments(eq("1-a"), anyMap(), anyInt()))
+                .thenReturn(new ChangedDocuments(List.of(second), Set.of("deleted-1"), "2-a", true));
+        DocumentResult written = mock(DocumentResult.class);
+        when(written.isOk()).thenReturn(Boolean.TRUE);
+        DocumentResult conflict = mock(DocumentResult.class);
+        when(conflict.getError()).thenReturn("conflict");
+        when(this.couchDbService.bulkWriteDocuments(anyList())).thenReturn(List.of(written), List.of(conflict));
+
+        assertThat(this.backfill.backfill(), equalTo(1));
+        verify(this.couchDbService).bulkWriteDocuments(List.of(first));
+        verify(this.couchDbService).bulkWriteDocuments(List.of(second));
+        assertThat(first.at("/normalized/title").asString(), equalTo("uberprufung"));
+        assertThat(second.at("/normalized/title").asString(), equalTo("second advisory"));
+        assertThat(second.at("/normalized/trackingId").asString(), equalTo("csaf-2"));
+        assertThat(new JsonMapper().readTree(this.checkpoint.get()).get("seq").asString(), equalTo("2-a"));
+    }
+
+    @Test
+    void backfill_continuesAtCheckpoint() throws Exception {
+
+        when(this.couchDbService.findChangedDocuments(eq("0"), anyMap(), anyInt()))
+                .thenReturn(new ChangedDocuments(List.<JsonNode>of(), Set.of(), "2-a", true));
+        when(this.couchDbService.findChangedDocuments(eq("2-a"), anyMap(), anyInt()))
+                .thenReturn(new ChangedDocuments(List.<JsonNode>of(), Set.of(), "2-a", true));
+
+        this.backfill.backfill();
+        // the next start only reads the changes made since the previous backfill
+        assertThat(this.backfill.backfill(), equalTo(0));
+        verify(this.couchDbService).findChangedDocuments(eq("0"), anyMap(), anyInt());
+        verify(this.couchDbService).findChangedDocuments(eq("2-a"), anyMap(), anyInt());
+        verify(this.couchDbService, never()).updateDocument(anyString());
+    }
+
+    @Test
+    void backfill_writesNothingWithoutDocuments() throws Exception {
+
+        when(this.couchDbService.findChangedDocuments(eq("0"), anyMap(), anyInt()))
+                .thenReturn(new ChangedDocuments(List.<JsonNode>of(), Set.of(), "0", true));
+
+        assertThat(this.backfill.backfill(), equalTo(0));
+        verify(this.couchDbService, never()).bulkWriteDocuments(anyList());
+        verify(this.couchDbService, never()).writeDocument(anyString(), anyString());
+    }
+
+    private static ObjectNode advisory(String id, String title) {
+
+        ObjectNode advisory = new JsonMapper().createObjectNode();
+        advisory.put("_id", id);
+        advisory.put("_rev", "1-a");
+        advisory.put("type", ObjectType.Advisory.name());
+        ObjectNode document = advisory.putObject("csaf").putObject("document");
+        document.put("title", title);
+        document.putObject("tracking").put("id", "CSAF-" + id.substring(id.length() - 1));
+        return advisory;
+    }
+
+    private AtomicReference<String> storeCheckpointInMock() throws Exception {
+
+        AtomicReference<String> stored = new AtomicReference<>();
+        String checkpointId = "TASK_CHECKPOINT_" + NormalizedFieldsBackfill.TASK_NAME;
+        when(this.couchDbService.readDocumentAsStream(checkpointId)).thenAnswer(invocation -> {
+            if (stored.get() == null) {
+                throw new IdNotFoundException("not found");
+            }
+            return new ByteArrayInputStream(stored.get().getBytes(StandardCharsets.UTF_8));
+        });
+        when(this.couchDbService.writeDocument(eq(checkpointId), anyString())).thenAnswer(invocation -> {
+            stored.set(withRevision(invocation.getArgument(1), "1-c"));
+            return "1-c";
+        });
+        when(this.couchDbService.updateDocument(anyString())).thenAnswer(invocation -> {
+            stored.set(withRevision(invocation.getArgument(0), "2-c"));
+            return "2-c";
+        });
+        return stored;
+    }
+
+    private static String withRevision(String json, String revision) {
+
+        ObjectNode document = (ObjectNode) new JsonMapper().readTree(json);
+        return document.put("_rev", revision).toString();
+    }
+}
@@ -0,0 +1,50 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+import org.junit.jupiter.api.Test;
+
+public class VersionRangeTest {
+
+    @Test
+    void compareVersions_comparesNumericSegmentsByValue() {
+
+        assertThat(VersionRange.compareVersions("1.10.0", "1.9.3"), greaterThan(0));
+        assertThat(VersionRange.compareVersions("1.0", "1.0.0"), equalTo(0));
+        assertThat(VersionRange.compareVersions("2.0.0-rc1", "2.0.0"), lessThan(0));
+        assertThat(VersionRange.compareVersions("1.2a", "1.2b"), lessThan(0));
+    }
+
+    @Test
+    void contains_evaluatesIntervals() {
+
+        VersionRange range = VersionRange.parse("vers:npm/>=1.0.0|<1.5.0|>=2.0.0|<2.1.0").orElseThrow();
+
+        assertThat(range.contains("1.2.3"), is(true));
+        assertThat(range.contains("1.5.0"), is(false));
+        assertThat(range.contains("2.0.9"), is(true));
+        assertThat(range.contains("0.9"), is(false));
+    }
+
+    @Test
+    void contains_evaluatesOpenRangesAndSingleVersions() {
+
+        assertThat(VersionRange.parse("vers:generic/<= 4.2").orElseThrow().contains("4.2"), is(true));
+        assertThat(VersionRange.parse("vers:generic/>4.2").orElseThrow().contains("4.2"), is(false));
+        assertThat(VersionRange.parse("vers:generic/1.0|1.2").orElseThrow().contains("1.2"), is(true));
+        assertThat(VersionRange.parse("vers:generic/1.0|1.2").orElseThrow().contains("1.1"), is(false));
+        assertThat(VersionRange.parse("vers:generic/>=1.0|!=1.1").orElseThrow().contains("1.1"), is(false));
+        assertThat(VersionRange.parse("vers:generic/*").orElseThrow().contains("17"), is(true));
+    }
+
+    @Test
+    void parse_rejectsOtherSyntax() {
+
+        assertThat(VersionRange.parse("<= 4.2").isPresent(), is(false));
+        assertThat(VersionRange.parse("vers:npm/>=").isPresent(), is(false));
+    }
+}
@@ -0,0 +1,170 @@
+package de.bsi.secvisogram.csaf_cms_backend.task;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafAuditTrailConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DeletedDocuments;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.IdNotFoundException;
+import de.bsi.secvisogram.csaf_cms_backend.service.AuditTrailArchive;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
+
+public class AuditTrailArchiveJobTest {
+
+  private AuditTrailArchive archive;
+  private CouchDbService couchDbService;
+  private TaskLeaseService leaseService;
+  private CsafConfiguration configuration;
+  private AuditTrailArchiveJob job;
+  private AtomicReference<String> checkpoint;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    this.archive = mock(AuditTrailArchive.class);
+    this.couchDbService = mock(CouchDbService.class);
+    this.leaseService = mock(TaskLeaseService.class);
+    this.configuration = new CsafConfiguration();
+    this.configuration.setAuditTrail(new CsafAuditTrailConfiguration().setArchiveDirectory("/archive")
+        .setRetentionDays(30).setArchiveBatchSize(2));
+    this.job = createJob();
+    this.checkpoint = storeCheckpointInMock();
+  }
+
+  @AfterEach
+  void tearDown() {
+    this.job.shutdown();
+  }
+
+  @Test
+  void archive_archivesExpiredEntriesAndEntriesOfDeletedAdvisories() throws Exception {
+    when(this.archive.archiveEntriesCreatedBefore(any())).thenReturn(5);
+    when(this.couchDbService.findDeletedDocuments("0", 2))
+        .thenReturn(new DeletedDocuments(Map.of("advisory-1", List.of("2-a"), "comment-1", List.of("3-b")), "5-a", false));
+    when(this.couchDbService.findDeletedDocuments("5-a", 2))
+        .thenReturn(new DeletedDocuments(Map.of("advisory-2", List.of("2-c")), "10-a", true));
+    when(this.archive.archiveEntriesOf(any())).thenReturn(3, 1);
+
+    Instant before = Instant.now();
+    assertEquals(9, this.job.archive());
+
+    ArgumentCaptor<Instant> cutoff = ArgumentCaptor.forClass(Instant.class);
+    verify(this.archive).archiveEntriesCreatedBefore(cutoff.capture());
+    assertFalse(cutoff.getValue().isAfter(before.minus(Duration.ofDays(30)).plusSeconds(60)));
+    verify(this.archive).archiveEntriesOf(Set.of("advisory-1", "comment-1"));
+    verify(this.archive).archiveEntriesOf(Set.of("advisory-2"));
+  }
+
+  @Test
+  void archive_continuesAfterTheLastDeletion() throws Exception {
+    when(this.couchDbService.findDeletedDocuments(anyString(), anyInt()))
+        .thenReturn(new DeletedDocuments(Map.of(), "10-a", true));
+
+    this.job.archive();
+    // a restarted job or another replica continues at the stored checkpoint
+    createJob().archive();
+
+    verify(this.couchDbService).findDeletedDocuments("0", 2);
+    verify(this.couchDbService).findDeletedDocuments("10-a", 2);
+  }
+
+  @Test
+  void archive_keepsCheckpointWhenArchivingFails() throws Exception {
+    when(this.couchDbService.findDeletedDocuments("0", 2))
+        .thenReturn(new DeletedDocuments(Map.of("advisory-1", List.of("2-a")), "5-a", false));
+    when(this.couchDbService.findDeletedDocuments("5-a", 2))
+        .thenReturn(new DeletedDocuments(Map.of("advisory-2", List.of("2-c")), "10-a", true));
+    when(this.archive.archiveEntriesOf(Set.of("advisory-2"))).thenThrow(new IOException("disk full")).thenReturn(1);
+
+    assertThrows(IOException.class, () -> this.job.archive());
+
+    assertTrue(this.checkpoint.get().contains("\"5-a\""));
+    createJob().archive();
+    verify(this.couchDbService, times(2)).findDeletedDocuments("5-a", 2);
+  }
+
+  @Test
+  void archive_keepsExpiredEntriesWithoutRetention() throws Exception {
+    this.configuration.getAuditTrail().setRetentionDays(0);
+    when(this.couchDbService.findDeletedDocuments(anyString(), anyInt()))
+        .thenReturn(new DeletedDocuments(Map.of(), "10-a", true));
+
+    this.job.archive();
+
+    verify(this.archive, never()).archiveEntriesCreatedBefore(any());
+  }
+
+  @Test
+  void start_runsInTheBackground() {
+    when(this.leaseService.tryAcquire(eq(AuditTrailArchiveJob.LEASE_NAME), any())).thenReturn(Optional.empty());
+
+    this.job.start();
+
+    verify(this.leaseService, timeout(5000)).tryAcquire(eq(AuditTrailArchiveJob.LEASE_NAME), any());
+  }
+
+  @Test
+  void run_skipsWhenLeaseIsHeldByAnotherReplica() throws Exception {
+    when(this.leaseService.tryAcquire(eq(AuditTrailArchiveJob.LEASE_NAME), any())).thenReturn(Optional.empty());
+
+    this.job.run();
+
+    verify(this.archive, never()).archiveEntriesCreatedBefore(any());
+    verify(this.couchDbService, never()).findDeletedDocuments(anyString(), anyInt());
+  }
+
+  private AuditTrailArchiveJob createJob() {
+    AuditTrailArchiveJob archiveJob = new AuditTrailArchiveJob();
+    ReflectionTestUtils.setField(archiveJob, "auditTrailArchive", this.archive);
+    ReflectionTestUtils.setField(archiveJob, "couchDbService", this.couchDbService);
+    ReflectionTestUtils.setField(archiveJob, "configuration", this.configuration);
+    ReflectionTestUtils.setField(archiveJob, "taskLeaseService", this.leaseService);
+    return archiveJob;
+  }
+
+  /**
+   * Keep the written checkpoint document in memory and return it on read, with a revision like the database
+   */
+  private AtomicReference<String> storeCheckpointInMock() throws Exception {
+    AtomicReference<String> stored = new AtomicReference<>();
+    String checkpointId = "TASK_CHECKPOINT_" + AuditTrailArchiveJob.LEASE_NAME;
+    when(this.couchDbService.readDocumentAsStream(checkpointId)).thenAnswer(invocation -> {
+      if (stored.get() == null) {
+        throw new IdNotFoundException("not found");
+      }
+      return new ByteArrayInputStream(stored.get().getBytes(StandardCharsets.UTF_8));
+    });
+    when(this.couchDbService.writeDocument(eq(checkpointId), anyString())).thenAnswer(invocation -> {
+      stored.set(withRevision(invocation.getArgument(1), "1-c"));
+      return "1-c";
+    });
+    when(this.couchDbService.updateDocument(anyString())).thenAnswer(invocation -> {
+      stored.set(withRevision(invocation.getArgument(0), "2-c"));
+      return "2-c";
+    });
+    return stored;
+  }
+
+  private static String withRevision(String json, String revision) {
+    ObjectNode document = (ObjectNode) new JsonMapper().readTree(json);
+    return document.put("_rev", revision).toString();
+  }
+}
@@ -0,0 +1,218 @@
+package de.bsi.secvisogram.csaf_cms_backend.task;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.ibm.cloud.cloudant.v1.model.ContentInformationSizes;
+import com.ibm.cloud.cloudant.v1.model.DatabaseInformation;
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafMaintenanceConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DeletedDocuments;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.IdNotFoundException;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
+
+public class MaintenanceJobTest {
+
+  private static final long MB = 1024 * 1024L;
+
+  private CouchDbService couchDbService;
+  private TaskLeaseService leaseService;
+  private CsafConfiguration configuration;
+  private MaintenanceJob job;
+
+  @BeforeEach
+  void setUp() {
+    this.couchDbService = mock(CouchDbService.class);
+    this.leaseService = mock(TaskLeaseService.class);
+    this.configuration = new CsafConfiguration();
+    this.configuration.setMaintenance(
+        new CsafMaintenanceConfiguration().setFragmentationThreshold(0.3).setMinFileSize(10 * MB));
+    this.job = createJob();
+  }
+
+  private MaintenanceJob createJob() {
+    MaintenanceJob maintenanceJob = new MaintenanceJob();
+    ReflectionTestUtils.setField(maintenanceJob, "configuration", this.configuration);
+    ReflectionTestUtils.setField(maintenanceJob, "couchDbService", this.couchDbService);
+    ReflectionTestUtils.setField(maintenanceJob, "taskLeaseService", this.leaseService);
+    return maintenanceJob;
+  }
+
+  @AfterEach
+  void tearDown() {
+    this.job.shutdown();
+  }
+
+  @Test
+  void maintain_compactsFragmentedDatabase() throws Exception {
+    DatabaseInformation fragmented = databaseInformation(100 * MB, 40 * MB, "10-a");
+    DatabaseInformation compacted = databaseInformation(40 * MB, 40 * MB, "10-a");
+    when(this.couchDbService.getDatabaseInformation()).thenReturn(fragmented, compacted);
+
+    this.job.maintain();
+
+    verify(this.couchDbService).cleanupViews();
+    verify(this.couchDbService).compactDatabase();
+    MaintenanceRunStatistics statistics = this.job.getLastRunStatistics();
+    assertNotNull(statistics);
+    assertTrue(statistics.isCompacted());
+    assertEquals(0.6, statistics.getFragmentationBefore(), 0.001);
+    assertEquals(0.0, statistics.getFragmentationAfter(), 0.001);
+    assertEquals(100 * MB, statistics.getFileSizeBefore());
+    assertEquals(40 * MB, statistics.getFileSizeAfter());
+  }
+
+  @Test
+  void maintain_skipsCompactionBelowThreshold() throws Exception {
+    when(this.couchDbService.getDatabaseInformation()).thenReturn(databaseInformation(100 * MB, 80 * MB, "10-a"));
+
+    this.job.maintain();
+
+    verify(this.couchDbService).cleanupViews();
+    verify(this.couchDbService, never()).compactDatabase();
+    assertFalse(this.job.getLastRunStatistics().isCompacted());
+  }
+
+  @Test
+  void maintain_skipsCompactionOfSmallDatabase() throws Exception {
+    when(this.couchDbService.getDatabaseInformation()).thenReturn(databaseInformation(MB, 0, "10-a"));
+
+    this.job.maintain();
+
+    verify(this.couchDbService, never()).compactDatabase();
+  }
+
+  @Test
+  void maintain_purgesOnlyDocumentsDeletedBeforePreviousRun() throws Exception {
+    enablePurge();
+    AtomicReference<String> checkpoint = storeCheckpointInMock();
+    when(this.couchDbService.getDatabaseInformation())
+        .thenReturn(databaseInformation(MB, MB, "10-a"))
+        .thenReturn(databaseInformation(MB, MB, "20-b"));
+    Map<String, List<String>> firstPage = Map.of("doc1", List.of("2-x"));
+    Map<String, List<String>> secondPage = Map.of("doc2", List.of("3-y"), "doc3", List.of("4-z"));
+    // doc3 was deleted after the previous run
+    when(this.couchDbService.findDeletedDocuments("10-a", 1000))
+        .thenReturn(new DeletedDocuments(Map.of("doc3", List.of("4-z")), "20-b", true));
+    when(this.couchDbService.findDeletedDocuments("0", 1000))
+        .thenReturn(new DeletedDocuments(firstPage, "6-c", false));
+    when(this.couchDbService.findDeletedDocuments("6-c", 1000))
+        .thenReturn(new DeletedDocuments(secondPage, "20-b", true));
+    when(this.couchDbService.purgeDocuments(anyMap())).thenAnswer(invocation -> ((Map<?, ?>) invocation.getArgument(0)).size());
+
+    this.job.maintain();
+    verify(this.couchDbService, never()).findDeletedDocuments(anyString(), anyInt());
+    assertEquals(0, this.job.getLastRunStatistics().getPurgedDocuments());
+
+    // the checkpoint survives a restart
+    this.job.shutdown();
+    this.job = createJob();
+    this.job.maintain();
+    verify(this.couchDbService).purgeDocuments(firstPage);
+    verify(this.couchDbService).purgeDocuments(Map.of("doc2", List.of("3-y")));
+    assertEquals(2, this.job.getLastRunStatistics().getPurgedDocuments());
+    assertTrue(checkpoint.get().contains("\"purgedSeq\":\"10-a\""));
+    assertTrue(checkpoint.get().contains("\"purgeUntilSeq\":\"20-b\""));
+  }
+
+  @Test
+  void maintain_purgeCanBeDisabled() throws Exception {
+    this.configuration.getMaintenance().setPurgeTombstones(false);
+    when(this.couchDbService.getDatabaseInformation()).thenReturn(databaseInformation(MB, MB, "10-a"));
+
+    this.job.maintain();
+    this.job.maintain();
+
+    verify(this.couchDbService, never()).findDeletedDocuments(anyString(), anyInt());
+    verify(this.couchDbService, never()).purgeDocuments(anyMap());
+  }
+
+  @Test
+  void run_skipsWhenLeaseIsHeldByAnotherReplica() throws Exception {
+    when(this.leaseService.tryAcquire(eq(MaintenanceJob.LEASE_NAME), any())).thenReturn(Optional.empty());
+
+    this.job.run();
+
+    verify(this.couchDbService, never()).getDatabaseInformation();
+    assertNull(this.job.getLastRunStatistics());
+  }
+
+  @Test
+  void run_releasesLeaseAfterMaintenance() throws Exception {
+    TaskLeaseService.Lease lease = mock(TaskLeaseService.Lease.class);
+    when(this.leaseService.tryAcquire(eq(MaintenanceJob.LEASE_NAME), any())).thenReturn(Optional.of(lease));
+    when(this.couchDbService.getDatabaseInformation()).thenReturn(databaseInformation(MB, MB, "10-a"));
+
+    this.job.run();
+
+    verify(lease).close();
+    assertNotNull(this.job.getLastRunStatistics());
+  }
+
+  @Test
+  void fragmentation_isShareOfUnusedFile() {
+    assertEquals(0.25, MaintenanceRunStatistics.fragmentation(400, 300), 0.001);
+    assertEquals(0.0, MaintenanceRunStatistics.fragmentation(0, 0), 0.001);
+    assertEquals(0.0, MaintenanceRunStatistics.fragmentation(100, 200), 0.001);
+  }
+
+  @Test
+  void purgeTombstones_isDisabledByDefault() {
+    assertFalse(new CsafMaintenanceConfiguration().isPurgeTombstones());
+  }
+
+  private void enablePurge() {
+    this.configuration.getMaintenance().setPurgeTombstones(true);
+  }
+
+  /**
+   * Keep the written checkpoint document in memory and return it on read, with a revision like the database
+   */
+  private AtomicReference<String> storeCheckpointInMock() throws Exception {
+    AtomicReference<String> stored = new AtomicReference<>();
+    String checkpointId = "TASK_CHECKPOINT_" + MaintenanceJob.LEASE_NAME;
+    when(this.couchDbService.readDocumentAsStream(checkpointId)).thenAnswer(invocation -> {
+      if (stored.get() == null) {
+        throw new IdNotFoundException("not found");
+      }
+      return new ByteArrayInputStream(stored.get().getBytes(StandardCharsets.UTF_8));
+    });
+    when(this.couchDbService.writeDocument(eq(checkpointId), anyString())).thenAnswer(invocation -> {
+      stored.set(withRevision(invocation.getArgument(1), "1-c"));
+      return "1-c";
+    });
+    when(this.couchDbService.updateDocument(anyString())).thenAnswer(invocation -> {
+      stored.set(withRevision(invocation.getArgument(0), "2-c"));
+      return "2-c";
+    });
+    return stored;
+  }
+
+  private static String withRevision(String json, String revision) {
+    ObjectNode document = (ObjectNode) new JsonMapper().readTree(json);
+    return document.put("_rev", revision).toString();
+  }
+
+  private static DatabaseInformation databaseInformation(long fileSize, long activeSize, String updateSeq) {
+    ContentInformationSizes sizes = mock(ContentInformationSizes.class);
+    when(sizes.getFile()).thenReturn(fileSize);
+    when(sizes.getActive()).thenReturn(activeSize);
+    DatabaseInformation information = mock(DatabaseInformation.class);
+    when(information.getSizes()).thenReturn(sizes);
+    when(information.getUpdateSeq()).thenReturn(updateSeq);
+    when(information.isCompactRunning()).thenReturn(false);
+    return information;
+  }
+}
@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.*;
 import de.bsi.secvisogram.csaf_cms_backend.config.CsafAutoPublishConfiguration;
 import de.bsi.secvisogram.csaf_cms_backend.config.CsafConfiguration;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -46,6 +47,24 @@ public class PublishConfigTest {
     }
   }
 
+  @Test
+  void taskExecutor_runsTasksConcurrently() throws Exception {
+    PublishConfig cfg = new PublishConfig();
+    DelegatingSecurityContextScheduledExecutorService svc =
+        (DelegatingSecurityContextScheduledExecutorService) cfg.taskExecutor();
+    CountDownLatch released = new CountDownLatch(1);
+
+    try {
+      // a long running task must not block the release timers
+      Future<Boolean> longRunning = svc.submit(() -> released.await(5, TimeUnit.SECONDS));
+      svc.execute(released::countDown);
+
+      assertTrue(longRunning.get(10, TimeUnit.SECONDS));
+    } finally {
+      svc.shutdownNow();
+    }
+  }
+
   @Test
   void configureTasks_whenAutoPublishEnabled_callsRegistrarMethods() {
     PublishConfig cfg = new PublishConfig();
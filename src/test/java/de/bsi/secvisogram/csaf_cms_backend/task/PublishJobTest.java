@@ -5,18 +5,24 @@ import static org.mockito.Mockito.*;
 
 import de.bsi.secvisogram.csaf_cms_backend.config.CsafAutoPublishConfiguration;
 import de.bsi.secvisogram.csaf_cms_backend.config.CsafConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafPublishTargetConfiguration;
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
+import de.bsi.secvisogram.csaf_cms_backend.json.PublishOutboxEntry;
 import de.bsi.secvisogram.csaf_cms_backend.model.DocumentTrackingStatus;
-import de.bsi.secvisogram.csaf_cms_backend.model.ExportFormat;
 import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
 import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryService;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import de.bsi.secvisogram.csaf_cms_backend.service.PublicationCandidates;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Optional;
 import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -31,8 +37,8 @@ public class PublishJobTest {
   @Test
   void buildMultipartBody_containsCsafAndTlpParts() throws Exception {
     PublishJob job = new PublishJob();
-    Path tmp = Files.createTempFile("csaf-test", ".json");
-    MultiValueMap<String, Object> map = ReflectionTestUtils.invokeMethod(job, "buildMultipartBody", tmp, "track1");
+    byte[] csaf = "{\"document\":{}}".getBytes(StandardCharsets.UTF_8);
+    MultiValueMap<String, Object> map = ReflectionTestUtils.invokeMethod(job, "buildMultipartBody", csaf, "track1");
     assertNotNull(map);
     assertTrue(map.containsKey("csaf"));
     assertTrue(map.containsKey("tlp"));
@@ -41,7 +47,10 @@ public class PublishJobTest {
     assertInstanceOf(HttpEntity.class, csafPart);
     HttpEntity<?> csafEntity = (HttpEntity<?>) csafPart;
     assertEquals(MediaType.APPLICATION_JSON, csafEntity.getHeaders().getContentType());
-    Files.deleteIfExists(tmp);
+    // the advisory is sent from memory with the tracking id as filename
+    Resource csafResource = assertInstanceOf(Resource.class, csafEntity.getBody());
+    assertEquals("track1.json", csafResource.getFilename());
+    assertArrayEquals(csaf, csafResource.getContentAsByteArray());
   }
 
   @Test
@@ -58,6 +67,10 @@ public class PublishJobTest {
     cfg.setAutoPublish(ap);
     ReflectionTestUtils.setField(job, "advisoryService", advisoryService);
     ReflectionTestUtils.setField(job, "configuration", cfg);
+    PublishOutbox outbox = mock(PublishOutbox.class);
+    PublishOutboxEntry entry = PublishOutboxEntry.create("adv-1", "rev-1", "default");
+    when(outbox.prepare(any(), any())).thenReturn(List.of(entry));
+    ReflectionTestUtils.setField(job, "outbox", outbox);
 
     // prepare advisory to publish
     AdvisoryInformationResponse adv = new AdvisoryInformationResponse("adv-1", WorkflowState.AutoPublish);
@@ -66,10 +79,9 @@ public class PublishJobTest {
     adv.setDocumentTrackingId("TRACK1");
     adv.setRevision("rev-1");
 
-    when(advisoryService.getAdvisoryInformations("")).thenReturn(List.of(adv));
+    when(advisoryService.getAdvisoriesDueForPublication()).thenReturn(new PublicationCandidates(List.of(adv), 1));
 
-    Path tmp = Files.createTempFile("adv", ".json");
-    when(advisoryService.exportAdvisory("adv-1", ExportFormat.JSON)).thenReturn(tmp);
+    when(advisoryService.exportAdvisoryAsJson("adv-1")).thenReturn("{}".getBytes(StandardCharsets.UTF_8));
 
     // mock RestClient chain that returns successfully
     RestClient mockRestClient = mock(RestClient.class);
@@ -94,6 +106,43 @@ public class PublishJobTest {
     // verify that workflow state change was requested
     verify(advisoryService).changeAdvisoryWorkflowState(
         eq("adv-1"), eq("rev-1"), eq(WorkflowState.Published), anyString(), eq(DocumentTrackingStatus.Final));
+    assertEquals(PublishOutboxEntry.State.Uploaded, entry.getState());
+    verify(outbox).save(entry);
+    verify(outbox).remove(List.of(entry));
+    assertTrue(job.getNextRetry().isEmpty());
+    PublishRunStatistics statistics = job.getLastRunStatistics();
+    assertNotNull(statistics);
+    assertEquals(1, statistics.getDueAdvisories());
+    assertEquals(1, statistics.getPublishedAdvisories());
+    assertEquals(0, statistics.getFailedAdvisories());
+    assertEquals(1, statistics.getDocumentsExamined());
+  }
+
+  @Test
+  void publishJob_skipsAdvisoryWithFutureReleaseDate() throws Exception {
+    PublishJob job = new PublishJob();
+    AdvisoryService advisoryService = mock(AdvisoryService.class);
+    CsafConfiguration cfg = new CsafConfiguration();
+    cfg.setAutoPublish(new CsafAutoPublishConfiguration().setUrl("http://example").setPassword("secret"));
+    ReflectionTestUtils.setField(job, "advisoryService", advisoryService);
+    ReflectionTestUtils.setField(job, "configuration", cfg);
+    ReflectionTestUtils.setField(job, "outbox", mock(PublishOutbox.class));
+
+    // the local time of the release date is in the past, but with its offset it is not yet due
+    AdvisoryInformationResponse adv = new AdvisoryInformationResponse("adv-3", WorkflowState.AutoPublish);
+    adv.setCurrentReleaseDate(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(
+        OffsetDateTime.now(ZoneOffset.ofHours(-5)).plusSeconds(3600)));
+    adv.setDocumentTrackingId("TRACK3");
+    adv.setRevision("rev-3");
+
+    when(advisoryService.getAdvisoriesDueForPublication()).thenReturn(new PublicationCandidates(List.of(adv), 1));
+
+    job.publishJob();
+
+    verify(advisoryService, never()).exportAdvisoryAsJson(anyString());
+    verify(advisoryService, never()).changeAdvisoryWorkflowState(
+        anyString(), anyString(), any(), anyString(), any());
+    assertEquals(0, job.getLastRunStatistics().getPublishedAdvisories());
   }
 
   @Test
@@ -105,19 +154,93 @@ public class PublishJobTest {
     cfg.setAutoPublish(ap);
     ReflectionTestUtils.setField(job, "configuration", cfg);
 
-    String encoded = ReflectionTestUtils.invokeMethod(job, "getAuthenticationCode");
+    String encoded = ReflectionTestUtils.invokeMethod(job, "getAuthenticationCode",
+        cfg.getAutoPublish().getEffectiveTargets().get(0));
     assertNotNull(encoded);
     org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder encoder =
         new org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder();
     assertTrue(encoder.matches("secret", encoded));
   }
 
+  @Test
+  void getAuthenticationCode_reusesHashUntilRotation() {
+    PublishJob job = new PublishJob();
+    CsafConfiguration cfg = new CsafConfiguration();
+    CsafAutoPublishConfiguration ap = new CsafAutoPublishConfiguration()
+        .setPassword("secret");
+    cfg.setAutoPublish(ap);
+    ReflectionTestUtils.setField(job, "configuration", cfg);
+    CsafPublishTargetConfiguration target = ap.getEffectiveTargets().get(0);
+
+    String first = ReflectionTestUtils.invokeMethod(job, "getAuthenticationCode", target);
+    assertEquals(first, ReflectionTestUtils.invokeMethod(job, "getAuthenticationCode", target));
+
+    // a changed password or an elapsed rotation creates a new hash
+    target.setPassword("changed");
+    String changed = ReflectionTestUtils.invokeMethod(job, "getAuthenticationCode", target);
+    assertNotEquals(first, changed);
+    assertTrue(new org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder().matches("changed", changed));
+    ap.setAuthenticationRotation(0);
+    assertNotEquals(changed, ReflectionTestUtils.invokeMethod(job, "getAuthenticationCode", target));
+  }
+
   @Test
   void run_swallowsExceptions() throws Exception {
     PublishJob job = spy(new PublishJob());
-    doThrow(new CsafException("fail", null)).when(job).publishJob();
+    TaskLeaseService taskLeaseService = mock(TaskLeaseService.class);
+    TaskLeaseService.Lease lease = mock(TaskLeaseService.Lease.class);
+    when(taskLeaseService.tryAcquire(eq(PublishJob.LEASE_NAME), any())).thenReturn(Optional.of(lease));
+    CsafConfiguration cfg = new CsafConfiguration();
+    cfg.setAutoPublish(new CsafAutoPublishConfiguration());
+    ReflectionTestUtils.setField(job, "configuration", cfg);
+    ReflectionTestUtils.setField(job, "taskLeaseService", taskLeaseService);
+    doThrow(new CsafException("fail", null)).when(job).publishJob(lease);
     // should not throw
     assertDoesNotThrow(job::run);
+    verify(lease).close();
+  }
+
+  @Test
+  void run_skipsWhenLeaseIsHeldByAnotherReplica() throws Exception {
+    PublishJob job = spy(new PublishJob());
+    CsafConfiguration cfg = new CsafConfiguration();
+    cfg.setAutoPublish(new CsafAutoPublishConfiguration().setLeaseTtl(60000));
+    ReflectionTestUtils.setField(job, "configuration", cfg);
+    TaskLeaseService taskLeaseService = mock(TaskLeaseService.class);
+    when(taskLeaseService.tryAcquire(eq(PublishJob.LEASE_NAME), any())).thenReturn(Optional.empty());
+    ReflectionTestUtils.setField(job, "taskLeaseService", taskLeaseService);
+
+    job.run();
+
+    verify(taskLeaseService).tryAcquire(PublishJob.LEASE_NAME, Duration.ofMillis(60000));
+    verify(job, never()).publishJob(any());
+    // the job tries again when the lease of the other replica has expired
+    assertTrue(job.getNextRetry().isPresent());
+  }
+
+  @Test
+  void publishJob_stopsWhenLeaseIsLost() throws Exception {
+    PublishJob job = new PublishJob();
+    AdvisoryService advisoryService = mock(AdvisoryService.class);
+    CsafConfiguration cfg = new CsafConfiguration();
+    cfg.setAutoPublish(new CsafAutoPublishConfiguration().setUrl("http://example").setPassword("secret"));
+    ReflectionTestUtils.setField(job, "advisoryService", advisoryService);
+    ReflectionTestUtils.setField(job, "configuration", cfg);
+    PublishOutbox outbox = mock(PublishOutbox.class);
+    ReflectionTestUtils.setField(job, "outbox", outbox);
+    TaskLeaseService.Lease lease = mock(TaskLeaseService.Lease.class);
+    when(lease.renew()).thenReturn(false);
+
+    AdvisoryInformationResponse adv = new AdvisoryInformationResponse("adv-5", WorkflowState.AutoPublish);
+    adv.setCurrentReleaseDate(DateTimeFormatter.ISO_INSTANT.format(Instant.now().minusSeconds(60)));
+    adv.setRevision("rev-5");
+    when(advisoryService.getAdvisoriesDueForPublication()).thenReturn(new PublicationCandidates(List.of(adv), 1));
+
+    job.publishJob(lease);
+
+    verifyNoInteractions(outbox);
+    verify(advisoryService, never()).changeAdvisoryWorkflowState(
+        anyString(), anyString(), any(), anyString(), any());
   }
 
   @Test
@@ -133,6 +256,10 @@ public class PublishJobTest {
     cfg.setAutoPublish(ap);
     ReflectionTestUtils.setField(job, "advisoryService", advisoryService);
     ReflectionTestUtils.setField(job, "configuration", cfg);
+    PublishOutbox outbox = mock(PublishOutbox.class);
+    PublishOutboxEntry entry = PublishOutboxEntry.create("adv-2", "rev-2", "default");
+    when(outbox.prepare(any(), any())).thenReturn(List.of(entry));
+    ReflectionTestUtils.setField(job, "outbox", outbox);
 
     AdvisoryInformationResponse adv = new AdvisoryInformationResponse("adv-2", WorkflowState.AutoPublish);
     adv.setCurrentReleaseDate(DateTimeFormatter.ISO_INSTANT.format(Instant.now().minusSeconds(60)));
@@ -140,10 +267,9 @@ public class PublishJobTest {
     adv.setDocumentTrackingId("TRACK2");
     adv.setRevision("rev-2");
 
-    when(advisoryService.getAdvisoryInformations("")).thenReturn(List.of(adv));
+    when(advisoryService.getAdvisoriesDueForPublication()).thenReturn(new PublicationCandidates(List.of(adv), 1));
 
-    Path tmp = Files.createTempFile("adv2", ".json");
-    when(advisoryService.exportAdvisory("adv-2", ExportFormat.JSON)).thenReturn(tmp);
+    when(advisoryService.exportAdvisoryAsJson("adv-2")).thenReturn("{}".getBytes(StandardCharsets.UTF_8));
 
     // mock RestClient chain that triggers the onStatus error handler
     RestClient mockRestClient = mock(RestClient.class);
@@ -170,5 +296,64 @@ public class PublishJobTest {
     // verify that changeAdvisoryWorkflowState was NOT called due to the error
     verify(advisoryService, never()).changeAdvisoryWorkflowState(
         anyString(), anyString(), any(), anyString(), any());
+    assertEquals(1, job.getLastRunStatistics().getFailedAdvisories());
+    // the failure is stored in the outbox and retried after the backoff
+    assertEquals(PublishOutboxEntry.State.Pending, entry.getState());
+    assertEquals(1, entry.getAttempts());
+    verify(outbox).save(entry);
+    verify(outbox, never()).remove(any());
+    assertTrue(job.getNextRetry().isPresent());
+  }
+
+  @Test
+  void publishJob_publishesOnlyWhenAllTargetsUploaded() throws Exception {
+    PublishJob job = new PublishJob();
+    AdvisoryService advisoryService = mock(AdvisoryService.class);
+    CsafConfiguration cfg = new CsafConfiguration();
+    CsafAutoPublishConfiguration ap = new CsafAutoPublishConfiguration()
+        .setTargets(List.of(
+            new CsafPublishTargetConfiguration().setName("first").setUrl("http://first").setPassword("secret"),
+            new CsafPublishTargetConfiguration().setName("second").setUrl("http://second").setPassword("secret")))
+        .setEnabled(true);
+    cfg.setAutoPublish(ap);
+    ReflectionTestUtils.setField(job, "advisoryService", advisoryService);
+    ReflectionTestUtils.setField(job, "configuration", cfg);
+    PublishOutbox outbox = mock(PublishOutbox.class);
+    // the upload to the first target was done by an earlier run
+    PublishOutboxEntry first = PublishOutboxEntry.create("adv-4", "rev-4", "first");
+    first.recordSuccess();
+    PublishOutboxEntry second = PublishOutboxEntry.create("adv-4", "rev-4", "second");
+    when(outbox.prepare(any(), any())).thenReturn(List.of(first, second));
+    ReflectionTestUtils.setField(job, "outbox", outbox);
+
+    AdvisoryInformationResponse adv = new AdvisoryInformationResponse("adv-4", WorkflowState.AutoPublish);
+    adv.setCurrentReleaseDate(DateTimeFormatter.ISO_INSTANT.format(Instant.now().minusSeconds(60)));
+    adv.setDocumentTrackingId("TRACK4");
+    adv.setRevision("rev-4");
+    when(advisoryService.getAdvisoriesDueForPublication()).thenReturn(new PublicationCandidates(List.of(adv), 1));
+    when(advisoryService.exportAdvisoryAsJson("adv-4")).thenReturn("{}".getBytes(StandardCharsets.UTF_8));
+
+    RestClient mockRestClient = mock(RestClient.class);
+    RestClient.RequestBodyUriSpec uriSpec = mock(RestClient.RequestBodyUriSpec.class);
+    RestClient.RequestBodySpec bodySpec = mock(RestClient.RequestBodySpec.class);
+    RestClient.ResponseSpec respSpec = mock(RestClient.ResponseSpec.class);
+    when(mockRestClient.post()).thenReturn(uriSpec);
+    when(uriSpec.uri(anyString())).thenReturn(bodySpec);
+    when(bodySpec.contentType(any(MediaType.class))).thenReturn(bodySpec);
+    when(bodySpec.header(anyString(), anyString())).thenReturn(bodySpec);
+    when(bodySpec.body(any(MultiValueMap.class))).thenReturn(bodySpec);
+    when(bodySpec.retrieve()).thenReturn(respSpec);
+    when(respSpec.onStatus(any(), any())).thenReturn(respSpec);
+    when(respSpec.toBodilessEntity()).thenReturn(null);
+    ReflectionTestUtils.setField(job, "restClient", mockRestClient);
+
+    job.publishJob();
+
+    // only the pending target is uploaded, then the advisory is published
+    verify(uriSpec, never()).uri("http://first");
+    verify(uriSpec).uri("http://second");
+    verify(advisoryService).changeAdvisoryWorkflowState(
+        eq("adv-4"), eq("rev-4"), eq(WorkflowState.Published), anyString(), eq(DocumentTrackingStatus.Final));
+    verify(outbox).remove(List.of(first, second));
   }
 }
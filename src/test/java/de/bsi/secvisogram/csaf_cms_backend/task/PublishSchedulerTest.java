@@ -0,0 +1,148 @@
+package de.bsi.secvisogram.csaf_cms_backend.task;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafAutoPublishConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafConfiguration;
+import de.bsi.secvisogram.csaf_cms_backend.model.AdvisoryChangeType;
+import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryChangedEvent;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryService;
+import de.bsi.secvisogram.csaf_cms_backend.service.PublicationCandidates;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class PublishSchedulerTest {
+
+  private ScheduledThreadPoolExecutor executor;
+  private AdvisoryService advisoryService;
+  private CountDownLatch jobRuns;
+  private AtomicReference<Instant> lastJobRun;
+  private PublishScheduler scheduler;
+
+  @BeforeEach
+  void setUp() {
+    this.executor = new ScheduledThreadPoolExecutor(1);
+    this.advisoryService = mock(AdvisoryService.class);
+    this.jobRuns = new CountDownLatch(1);
+    this.lastJobRun = new AtomicReference<>();
+    PublishJob job = mock(PublishJob.class);
+    doAnswer(invocation -> {
+      this.lastJobRun.set(Instant.now());
+      this.jobRuns.countDown();
+      return null;
+    }).when(job).run();
+    when(job.getNextRetry()).thenReturn(Optional.empty());
+    this.scheduler = new PublishScheduler(job, this.executor);
+    CsafConfiguration cfg = new CsafConfiguration();
+    cfg.setAutoPublish(new CsafAutoPublishConfiguration().setEnabled(true));
+    ReflectionTestUtils.setField(this.scheduler, "configuration", cfg);
+    ReflectionTestUtils.setField(this.scheduler, "advisoryService", this.advisoryService);
+  }
+
+  @AfterEach
+  void tearDown() {
+    this.executor.shutdownNow();
+  }
+
+  @Test
+  void onAdvisoryChanged_runsJobAtReleaseDate() throws Exception {
+    Instant releaseDate = Instant.now().plusMillis(300);
+    this.scheduler.onAdvisoryChanged(new AdvisoryChangedEvent(AdvisoryChangeType.WorkflowStateChanged,
+        createInfo("adv-1", WorkflowState.AutoPublish, releaseDate), null));
+    assertEquals(1, this.scheduler.getPlannedReleaseCount());
+
+    assertTrue(this.jobRuns.await(5, TimeUnit.SECONDS));
+    assertFalse(this.lastJobRun.get().isBefore(releaseDate));
+    assertEquals(0, this.scheduler.getPlannedReleaseCount());
+  }
+
+  @Test
+  void onAdvisoryChanged_leavingAutoPublishCancelsTimer() throws Exception {
+    Instant releaseDate = Instant.now().plusMillis(300);
+    this.scheduler.onAdvisoryChanged(new AdvisoryChangedEvent(AdvisoryChangeType.WorkflowStateChanged,
+        createInfo("adv-1", WorkflowState.AutoPublish, releaseDate), null));
+    this.scheduler.onAdvisoryChanged(new AdvisoryChangedEvent(AdvisoryChangeType.WorkflowStateChanged,
+        createInfo("adv-1", WorkflowState.RfPublication, releaseDate), null));
+
+    assertEquals(0, this.scheduler.getPlannedReleaseCount());
+    assertFalse(this.jobRuns.await(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void onAdvisoryChanged_deletedAdvisoryCancelsTimer() {
+    AdvisoryInformationResponse advisory = createInfo("adv-1", WorkflowState.AutoPublish,
+        Instant.now().plusSeconds(3600));
+    this.scheduler.onAdvisoryChanged(new AdvisoryChangedEvent(AdvisoryChangeType.Created, advisory, null));
+    this.scheduler.onAdvisoryChanged(new AdvisoryChangedEvent(AdvisoryChangeType.Deleted, null, advisory));
+
+    assertEquals(0, this.scheduler.getPlannedReleaseCount());
+  }
+
+  @Test
+  void sweep_runsJobAndPlansFutureReleases() throws Exception {
+    Instant future = Instant.now().plusSeconds(3600);
+    Instant past = Instant.now().minusSeconds(60);
+    this.scheduler.onAdvisoryChanged(new AdvisoryChangedEvent(AdvisoryChangeType.Created,
+        createInfo("adv-removed", WorkflowState.AutoPublish, future), null));
+    when(this.advisoryService.getAutoPublishAdvisories()).thenReturn(new PublicationCandidates(List.of(
+        createInfo("adv-future", WorkflowState.AutoPublish, future),
+        createInfo("adv-past", WorkflowState.AutoPublish, past)), 2));
+
+    this.scheduler.sweep();
+
+    assertEquals(0, this.jobRuns.getCount());
+    // only the future release is planned, the advisory no longer in AutoPublish is removed
+    assertEquals(1, this.scheduler.getPlannedReleaseCount());
+  }
+
+  @Test
+  void sweep_plansRetryOfFailedUploads() throws Exception {
+    PublishJob job = mock(PublishJob.class);
+    CountDownLatch retries = new CountDownLatch(2);
+    doAnswer(invocation -> {
+      retries.countDown();
+      return null;
+    }).when(job).run();
+    when(job.getNextRetry()).thenReturn(Optional.of(Instant.now().plusMillis(200)), Optional.empty());
+    PublishScheduler retryScheduler = new PublishScheduler(job, this.executor);
+    CsafConfiguration cfg = new CsafConfiguration();
+    cfg.setAutoPublish(new CsafAutoPublishConfiguration().setEnabled(true));
+    ReflectionTestUtils.setField(retryScheduler, "configuration", cfg);
+    ReflectionTestUtils.setField(retryScheduler, "advisoryService", this.advisoryService);
+    when(this.advisoryService.getAutoPublishAdvisories()).thenReturn(new PublicationCandidates(List.of(), 0));
+
+    retryScheduler.sweep();
+
+    // the job is run again at the time of the next retry
+    assertTrue(retries.await(5, TimeUnit.SECONDS));
+    verify(job, times(2)).run();
+  }
+
+  @Test
+  void parseReleaseDate() {
+    assertEquals(Instant.parse("2024-01-01T10:00:00Z"), PublishScheduler.parseReleaseDate("2024-01-01T10:00:00.000Z"));
+    assertEquals(Instant.parse("2024-01-01T10:00:00Z"), PublishScheduler.parseReleaseDate("2024-01-01T12:00:00+02:00"));
+    assertNull(PublishScheduler.parseReleaseDate(""));
+    assertNull(PublishScheduler.parseReleaseDate("not a date"));
+  }
+
+  private static AdvisoryInformationResponse createInfo(String advisoryId, WorkflowState state, Instant releaseDate) {
+    AdvisoryInformationResponse advisory = new AdvisoryInformationResponse(advisoryId, state);
+    advisory.setCurrentReleaseDate(DateTimeFormatter.ISO_INSTANT.format(releaseDate));
+    advisory.setRevision("rev-1");
+    return advisory;
+  }
+}
@@ -0,0 +1,158 @@
+package de.bsi.secvisogram.csaf_cms_backend.task;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.ibm.cloud.cloudant.v1.model.DocumentResult;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.IdNotFoundException;
+import de.bsi.secvisogram.csaf_cms_backend.json.TaskLease;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+public class TaskLeaseServiceTest {
+
+  private static final Duration TTL = Duration.ofMinutes(1);
+
+  private CouchDbService couchDbService;
+  private TaskLeaseService leaseService;
+
+  @BeforeEach
+  void setUp() {
+    this.couchDbService = mock(CouchDbService.class);
+    this.leaseService = new TaskLeaseService();
+    ReflectionTestUtils.setField(this.leaseService, "couchDbService", this.couchDbService);
+  }
+
+  @AfterEach
+  void tearDown() {
+    this.leaseService.shutdown();
+  }
+
+  @Test
+  void tryAcquire_createsMissingLease() throws Exception {
+    when(this.couchDbService.readDocumentAsStream("TASK_LEASE_publish")).thenThrow(new IdNotFoundException("missing"));
+    DocumentResult created = written("1-a");
+    when(this.couchDbService.bulkWriteDocuments(anyList())).thenReturn(List.of(created));
+
+    Optional<TaskLeaseService.Lease> lease = this.leaseService.tryAcquire("publish", TTL);
+
+    assertTrue(lease.isPresent());
+    assertTrue(lease.get().isHeld());
+    assertFalse(writtenLeases().get(0).has("_rev"));
+  }
+
+  @Test
+  void tryAcquire_failsWhenAnotherReplicaCreatedTheLease() throws Exception {
+    when(this.couchDbService.readDocumentAsStream("TASK_LEASE_publish")).thenThrow(new IdNotFoundException("missing"));
+    DocumentResult conflict = conflict();
+    when(this.couchDbService.bulkWriteDocuments(anyList())).thenReturn(List.of(conflict));
+
+    assertTrue(this.leaseService.tryAcquire("publish", TTL).isEmpty());
+  }
+
+  @Test
+  void tryAcquire_failsWhileLeaseOfAnotherReplicaIsValid() throws Exception {
+    mockStoredLease("other-replica", Instant.now().plusSeconds(30));
+
+    assertTrue(this.leaseService.tryAcquire("publish", TTL).isEmpty());
+    verify(this.couchDbService, never()).bulkWriteDocuments(anyList());
+  }
+
+  @Test
+  void tryAcquire_takesOverExpiredLease() throws Exception {
+    mockStoredLease("other-replica", Instant.now().minusSeconds(1));
+    DocumentResult takenOver = written("2-b");
+    when(this.couchDbService.bulkWriteDocuments(anyList())).thenReturn(List.of(takenOver));
+
+    Optional<TaskLeaseService.Lease> lease = this.leaseService.tryAcquire("publish", TTL);
+
+    assertTrue(lease.isPresent());
+    assertEquals("1-a", writtenLeases().get(0).get("_rev").asString());
+  }
+
+  @Test
+  void tryAcquire_usesTimeToLiveOfTask() throws Exception {
+    mockStoredLease("other-replica", Instant.now().minusSeconds(1));
+    DocumentResult takenOver = written("2-b");
+    when(this.couchDbService.bulkWriteDocuments(anyList())).thenReturn(List.of(takenOver));
+    Instant before = Instant.now();
+
+    this.leaseService.tryAcquire("publish", Duration.ofHours(2)).orElseThrow();
+
+    Instant expiresAt = Instant.parse(writtenLeases().get(0).get("expiresAt").asString());
+    assertFalse(expiresAt.isBefore(before.plus(Duration.ofHours(2))));
+  }
+
+  @Test
+  void renew_failsWhenLeaseWasTakenOver() throws Exception {
+    mockStoredLease("other-replica", Instant.now().minusSeconds(1));
+    DocumentResult takenOver = written("2-b");
+    DocumentResult conflict = conflict();
+    when(this.couchDbService.bulkWriteDocuments(anyList())).thenReturn(List.of(takenOver), List.of(conflict));
+    TaskLeaseService.Lease lease = this.leaseService.tryAcquire("publish", TTL).orElseThrow();
+
+    // the revision of the lease was changed by another replica
+    assertFalse(lease.renew());
+    assertFalse(lease.isHeld());
+    assertFalse(lease.renew());
+    lease.close();
+    verify(this.couchDbService, times(2)).bulkWriteDocuments(anyList());
+  }
+
+  @Test
+  void close_releasesLease() throws Exception {
+    mockStoredLease("other-replica", Instant.now().minusSeconds(1));
+    DocumentResult takenOver = written("2-b");
+    DocumentResult released = written("3-c");
+    when(this.couchDbService.bulkWriteDocuments(anyList())).thenReturn(List.of(takenOver), List.of(released));
+    TaskLeaseService.Lease lease = this.leaseService.tryAcquire("publish", TTL).orElseThrow();
+
+    lease.close();
+
+    assertFalse(lease.isHeld());
+    List<JsonNode> written = writtenLeases();
+    assertEquals(Instant.EPOCH.toString(), written.get(written.size() - 1).get("expiresAt").asString());
+    assertEquals("2-b", written.get(written.size() - 1).get("_rev").asString());
+  }
+
+  private void mockStoredLease(String owner, Instant expiresAt) throws Exception {
+    TaskLease stored = TaskLease.create("publish");
+    stored.setRev("1-a");
+    stored.assign(owner, expiresAt);
+    byte[] json = new JsonMapper().writeValueAsString(stored).getBytes(StandardCharsets.UTF_8);
+    when(this.couchDbService.readDocumentAsStream("TASK_LEASE_publish"))
+        .thenAnswer(invocation -> new ByteArrayInputStream(json));
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<JsonNode> writtenLeases() throws Exception {
+    ArgumentCaptor<List<JsonNode>> captor = ArgumentCaptor.forClass(List.class);
+    verify(this.couchDbService, atLeastOnce()).bulkWriteDocuments(captor.capture());
+    return captor.getAllValues().stream().map(documents -> documents.get(0)).toList();
+  }
+
+  private static DocumentResult written(String revision) {
+    DocumentResult result = mock(DocumentResult.class);
+    when(result.isOk()).thenReturn(Boolean.TRUE);
+    when(result.getRev()).thenReturn(revision);
+    return result;
+  }
+
+  private static DocumentResult conflict() {
+    DocumentResult result = mock(DocumentResult.class);
+    when(result.getError()).thenReturn("conflict");
+    return result;
+  }
+}